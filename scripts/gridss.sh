@@ -452,9 +452,9 @@ if [[ $do_preprocess == true ]] ; then
 					STOP_AFTER=$metricsrecords \
 					$picardoptions \
 			; } 1>&2 2>> $logfile
-			echo "$(date)	CollectGridssMetricsAndExtractSVReads|samtools	$f" | tee -a $timinglogfile
+			echo "$(date)	CollectGridssMetricsAndPreprocessSVReads	$f" | tee -a $timinglogfile
 			{ $timecmd java -Xmx4g $jvm_args \
-					-cp $gridss_jar gridss.CollectGridssMetricsAndExtractSVReads \
+					-cp $gridss_jar gridss.CollectGridssMetricsAndPreprocessSVReads \
 					TMP_DIR=$dir \
 					ASSUME_SORTED=true \
 					I=$f \
@@ -469,35 +469,14 @@ if [[ $do_preprocess == true ]] ; then
 					GRIDSS_PROGRAM=ReportThresholdCoverage \
 					PROGRAM=null \
 					PROGRAM=CollectInsertSizeMetrics \
-					SV_OUTPUT=/dev/stdout \
-					COMPRESSION_LEVEL=0 \
+					SV_OUTPUT=$tmp_prefix.coordinate.bam \
 					METRICS_OUTPUT=$prefix.sv_metrics \
 					INSERT_SIZE_METRICS=$tmp_prefix.insert_size_metrics \
 					$readpairing_args \
 					UNMAPPED_READS=false \
 					MIN_CLIP_LENGTH=5 \
 					INCLUDE_DUPLICATES=true \
-					$picardoptions \
-			| $timecmd samtools sort \
-					-n \
-					-T $tmp_prefix.namedsorted-tmp \
-					-Obam \
-					-o $tmp_prefix.namedsorted.bam \
-					-@ $threads \
-					/dev/stdin \
-			; } 1>&2 2>> $logfile
-			if [[ -f $tmp_prefix.insert_size_metrics ]] ; then
-				$rmcmd $tmp_prefix.insert_size_metrics $tmp_prefix.insert_size_histogram.pdf
-			fi
-			echo "$(date)	ComputeSamTags|samtools	$f" | tee -a $timinglogfile
-			{ $timecmd java -Xmx4g $jvm_args \
-					-cp $gridss_jar gridss.ComputeSamTags \
-					TMP_DIR=$dir \
-					WORKING_DIR=$workingdir \
 					REFERENCE_SEQUENCE=$reference \
-					COMPRESSION_LEVEL=0 \
-					I=$tmp_prefix.namedsorted.bam \
-					O=/dev/stdout \
 					RECALCULATE_SA_SUPPLEMENTARY=true \
 					SOFTEN_HARD_CLIPS=true \
 					FIX_MATE_INFORMATION=true \
@@ -511,16 +490,11 @@ if [[ $do_preprocess == true ]] ; then
 					TAGS=Q2 \
 					TAGS=MC \
 					TAGS=MQ \
-					ASSUME_SORTED=true \
 					$picardoptions \
-			| $timecmd samtools sort \
-					-T $tmp_prefix.coordinate-tmp \
-					-Obam \
-					-o $tmp_prefix.coordinate.bam \
-					-@ $threads \
-					/dev/stdin \
 			; } 1>&2 2>> $logfile
-			$rmcmd $tmp_prefix.namedsorted.bam
+			if [[ -f $tmp_prefix.insert_size_metrics ]] ; then
+				$rmcmd $tmp_prefix.insert_size_metrics $tmp_prefix.insert_size_histogram.pdf
+			fi
 			echo "$(date)	SoftClipsToSplitReads	$f" | tee -a $timinglogfile
 			{ $timecmd java -Xmx4g $jvm_args \
 					-Dsamjdk.create_index=false \
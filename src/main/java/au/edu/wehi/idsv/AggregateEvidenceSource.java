@@ -3,16 +3,29 @@ package au.edu.wehi.idsv;
 import htsjdk.samtools.QueryInterval;
 import htsjdk.samtools.util.CloseableIterator;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 public class AggregateEvidenceSource extends EvidenceSource implements Iterable<DirectedEvidence> {
 	private final SAMEvidenceSource.EvidenceSortOrder eso;
+	private final boolean useSummary;
 	private List<SAMEvidenceSource> all;
 	public AggregateEvidenceSource(ProcessingContext processContext, List<SAMEvidenceSource> reads, AssemblyEvidenceSource assemblies, SAMEvidenceSource.EvidenceSortOrder eso) {
+		this(processContext, reads, assemblies, eso, false);
+	}
+	/**
+	 * @param useSummary interval queries return evidence from the evidence summary files.
+	 * Such evidence only supports the breakend location, quality, and evidence ID.
+	 */
+	public AggregateEvidenceSource(ProcessingContext processContext, List<SAMEvidenceSource> reads, AssemblyEvidenceSource assemblies, SAMEvidenceSource.EvidenceSortOrder eso, boolean useSummary) {
 		super(processContext, null, null);
 		this.all = new ArrayList<>(reads);
 		this.eso = eso;
+		this.useSummary = useSummary;
+		if (useSummary && eso != SAMEvidenceSource.EvidenceSortOrder.EvidenceStartPosition) {
+			throw new IllegalArgumentException("Evidence summary is only available in evidence start position order");
+		}
 		if (assemblies != null) {
 			this.all.add(assemblies);
 		}
@@ -22,8 +35,19 @@ public class AggregateEvidenceSource extends EvidenceSource implements Iterable<
 		return SAMEvidenceSource.mergedIterator(all, true, eso);
 	}
 	public CloseableIterator<DirectedEvidence> iterator(QueryInterval[] intervals) {
+		if (useSummary) {
+			return SAMEvidenceSource.mergedSummaryIterator(all, intervals);
+		}
 		return SAMEvidenceSource.mergedIterator(all, intervals, eso);
 	}
+	/**
+	 * Ensures the evidence summary of every underlying evidence source exists
+	 */
+	public void ensureEvidenceSummary() throws IOException {
+		for (SAMEvidenceSource ses : all) {
+			ses.ensureEvidenceSummary();
+		}
+	}
 	@Override
 	public int getMaxConcordantFragmentSize() {
 		return all.stream().mapToInt(source -> source.getMaxConcordantFragmentSize()).max().getAsInt();
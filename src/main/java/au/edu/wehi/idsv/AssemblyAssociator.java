@@ -1,11 +1,11 @@
 package au.edu.wehi.idsv;
 
+import au.edu.wehi.idsv.util.LongPair2ObjectOpenHashMap;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.CloserUtil;
 
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Iterator;
 
 /**
@@ -22,10 +22,12 @@ public class AssemblyAssociator implements CloseableIterator<DirectedEvidence> {
 	private final Iterator<DirectedEvidence> it;
 	private final Iterator<SAMRecord> assit;
 	private final int windowSize;
-	private final HashMap<String, String> evidenceToAssemblyName = new HashMap<>();
+	private final EvidenceIdentifierGenerator eidgen;
+	private final LongPair2ObjectOpenHashMap<String> evidenceToAssemblyName = new LongPair2ObjectOpenHashMap<>();
 	private SAMRecord lastAssembly = null;;
-	public AssemblyAssociator(Iterator<DirectedEvidence> it, Iterator<SAMRecord> rawAssemblies, int windowSize) {
+	public AssemblyAssociator(Iterator<DirectedEvidence> it, Iterator<SAMRecord> rawAssemblies, int windowSize, EvidenceIdentifierGenerator eidgen) {
 		this.it = it;
+		this.eidgen = eidgen;
 		this.assit = rawAssemblies;
 		this.windowSize = windowSize;
 	}
@@ -45,7 +47,7 @@ public class AssemblyAssociator implements CloseableIterator<DirectedEvidence> {
 			return e;
 		}
 		ensureAssembliesLoadedUntil(e.getBreakendSummary());
-		setAssociatedAssembly(e, evidenceToAssemblyName.remove(e.getEvidenceID()));
+		setAssociatedAssembly(e, evidenceToAssemblyName.remove(e.getEvidenceIdentifierHigh(), e.getEvidenceIdentifierLow()));
 		flushBefore(e.getBreakendSummary());
 		return e;
 	}
@@ -63,7 +65,8 @@ public class AssemblyAssociator implements CloseableIterator<DirectedEvidence> {
 		assert(ass != null);
 		Collection<String> eids = new AssemblyAttributes(ass).getEvidenceIDs(null, null, null);
 		for (String eid : eids) {
-			evidenceToAssemblyName.put(eid, ass.getReadName());
+			long[] identifier = eidgen.getEvidenceIdentifier(eid);
+			evidenceToAssemblyName.put(identifier[0], identifier[1], ass.getReadName());
 		}
 	}
 	private boolean isAfter(BreakendSummary breakendSummary, SAMRecord position) {
@@ -2,6 +2,7 @@ package au.edu.wehi.idsv;
 
 import au.edu.wehi.idsv.sam.ChimericAlignment;
 import au.edu.wehi.idsv.sam.SamTags;
+import au.edu.wehi.idsv.util.LongPairOpenHashSet;
 import au.edu.wehi.idsv.util.MessageThrottler;
 import com.google.common.collect.Range;
 import com.google.common.collect.Streams;
@@ -199,15 +200,14 @@ public class AssemblyAttributes {
 
 	private static boolean ensureUniqueEvidenceID(String assemblyName, Collection<DirectedEvidence> support) {
 		boolean isUnique = true;
-		Set<String> map = new HashSet<String>();
+		LongPairOpenHashSet map = new LongPairOpenHashSet(support.size());
 		for (DirectedEvidence id : support) {
-			if (map.contains(id.getEvidenceID())) {
+			if (!map.add(id.getEvidenceIdentifierHigh(), id.getEvidenceIdentifierLow())) {
 				if (!MessageThrottler.Current.shouldSupress(log, "duplicated evidenceIDs")) {
 					log.error("Found evidenceID " + id.getEvidenceID() + " multiple times in assembly " + assemblyName);
 				}
 				isUnique = false;
 			}
-			map.add(id.getEvidenceID());
 		}
 		return isUnique;
 	}
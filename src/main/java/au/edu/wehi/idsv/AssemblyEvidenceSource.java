@@ -7,27 +7,31 @@ import au.edu.wehi.idsv.sam.CigarUtil;
 import au.edu.wehi.idsv.sam.SAMFileUtil;
 import au.edu.wehi.idsv.sam.SAMRecordUtil;
 import au.edu.wehi.idsv.sam.SamTags;
+import au.edu.wehi.idsv.sam.WindowedSortingSAMFileWriter;
 import au.edu.wehi.idsv.util.FileHelper;
 import au.edu.wehi.idsv.visualisation.AssemblyTelemetry;
 import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.MoreExecutors;
 import gridss.SoftClipsToSplitReads;
-import gridss.cmdline.CommandLineProgramHelper;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
 import htsjdk.samtools.*;
 import htsjdk.samtools.SAMFileHeader.SortOrder;
 import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.CloserUtil;
 import htsjdk.samtools.util.Log;
 import htsjdk.samtools.util.ProgressLogger;
-import picard.sam.GatherBamFiles;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
@@ -88,7 +92,9 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 		}
 		List<QueryInterval[]> chunks = getContext().getReference().getIntervals(getContext().getConfig().chunkSize, getContext().getConfig().chunkSequenceChangePenalty);
 		List<File> assembledChunk = new ArrayList<>();
-		List<Future<Void>> tasks = new ArrayList<>();
+		// Chunk tasks schedule their own sub-chunk tasks so the queue grows while it is drained
+		Queue<Future<Void>> tasks = new ConcurrentLinkedQueue<>();
+		ExecutorService pool = threadpool;
 		for (int i = 0; i < chunks.size(); i++) {
 			if (i % jobNodes == jobNodeIndex) {
 				QueryInterval[] chunk = chunks.get(i);
@@ -97,7 +103,7 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 				assembledChunk.add(f);
 				if (!f.exists()) {
 					tasks.add(threadpool.submit(() -> {
-						assembleChunk(f, chunkNumber, chunk, excludedRegions, safetyRegions, downsampledRegions);
+						scheduleChunk(pool, tasks, f, chunkNumber, chunk, excludedRegions, safetyRegions, downsampledRegions);
 						return null;
 					}));
 				}
@@ -125,21 +131,8 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 		// Merge chunk files
 		File out = getFile();
 		File tmpout = gridss.Defaults.OUTPUT_TO_TEMP_FILE ? FileSystemContext.getWorkingFileFor(getFile()) : out;
-		GatherBamFiles gather = new picard.sam.GatherBamFiles();
-		List<String> args = new ArrayList<>();
-		for (File f : deduplicatedChunks) {
-			args.add("INPUT=" + f.getPath());
-		}
-		args.add("OUTPUT=" + tmpout.getPath());
-		if (getContext().getCommandLineProgram() != null) {
-			args.addAll(CommandLineProgramHelper.getCommonArgs(getContext().getCommandLineProgram()));
-		}
-		int returnCode = gather.instanceMain(args.toArray(new String[] {}));
-		if (returnCode != 0) {
-			String msg = String.format("Error executing GatherBamFiles. GatherBamFiles returned status code %d", returnCode);
-			log.error(msg);
-			throw new RuntimeException(msg);
-		}
+		// Each chunk is already compressed and coordinate sorted so we can concatenate the BGZF blocks directly
+		BamFileIoUtils.gatherWithBlockCopying(deduplicatedChunks, tmpout, false, false);
 		// Sorting is not required since each chunk was already sorted, and each chunk
 		// contains sequential genomic coordinates. We also don't need to index as we only need assembly.sv.bam indexed
 		// SAMFileUtil.sort(getContext().getFileSystemContext(), tmpout, getFile(), SortOrder.coordinate);
@@ -159,10 +152,11 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 			}
 		}
 	}
-	private void runTasks(List<Future<Void>> tasks) {
+	private void runTasks(Queue<Future<Void>> tasks) {
 		// Assemble as much as we can before dying
 		Exception firstException = null;
-		for (Future<Void> f : tasks) {
+		Future<Void> f;
+		while ((f = tasks.poll()) != null) {
 			try {
 				f.get();
 			} catch (Exception e) {
@@ -177,25 +171,174 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 		}
 		log.info("Breakend assembly complete.");
 	}
-	private void assembleChunk(File output, int chunkNumber, QueryInterval[] qi, IntervalBed excludedRegions, IntervalBed safetyRegions, IntervalBed downsampledRegions) throws IOException {
-		AssemblyIdGenerator assemblyNameGenerator = new SequentialIdGenerator(String.format(getContext().getConfig().getAssembly().contigNamePrefix, chunkNumber));
-		String chuckName = String.format("chunk %d (%s:%d-%s:%d)", chunkNumber,
+	/**
+	 * Splits the chunk at evidence gaps and schedules each sub-chunk direction
+	 * as an independent task. Idle workers can thus pick up the remainder of a
+	 * slow chunk. The last task to complete is responsible for merging the
+	 * chunk output.
+	 * 
+	 * The gap scan runs on a worker so chunks are scanned concurrently. Tasks are
+	 * added to the queue before this method returns so they are waited on by the caller.
+	 */
+	private void scheduleChunk(ExecutorService threadpool, Queue<Future<Void>> tasks, File output, int chunkNumber, QueryInterval[] chunk,
+			IntervalBed excludedRegions, IntervalBed safetyRegions, IntervalBed downsampledRegions) throws IOException {
+		List<QueryInterval[]> subchunks = splitOnEvidenceGaps(chunk, Defaults.ASSEMBLY_MIN_SUBCHUNK_SIZE);
+		BreakendDirection[] directions = BreakendDirection.values();
+		List<File> parts = new ArrayList<>();
+		for (int j = 0; j < subchunks.size(); j++) {
+			for (BreakendDirection direction : directions) {
+				parts.add(FileSystemContext.getWorkingFileFor(output, String.format("subchunk%d.%s.", j, direction.name())));
+			}
+		}
+		AtomicInteger outstanding = new AtomicInteger(parts.size());
+		for (int j = 0; j < subchunks.size(); j++) {
+			for (int d = 0; d < directions.length; d++) {
+				int subchunkNumber = j;
+				int part = j * directions.length + d;
+				BreakendDirection direction = directions[d];
+				tasks.add(threadpool.submit(() -> {
+					assembleChunk(parts.get(part), chunkNumber, subchunkNumber, subchunks.size(), part, parts.size(), subchunks.get(subchunkNumber), direction, excludedRegions, safetyRegions, downsampledRegions);
+					if (outstanding.decrementAndGet() == 0) {
+						mergeChunk(parts, output);
+					}
+					return null;
+				}));
+			}
+		}
+	}
+	/**
+	 * Splits the given chunk into sub-chunks that can be assembled independently.
+	 * 
+	 * Any partitioning of a chunk is valid since evidence is loaded from the padded
+	 * sub-chunk interval and only contigs starting within the sub-chunk are retained.
+	 * Splitting only in the middle of gaps in the evidence ensures that no evidence is loaded
+	 * by more than one sub-chunk.
+	 * 
+	 * @param chunk chunk to split
+	 * @param minSubchunkSize minimum size of each sub-chunk
+	 * @return sub-chunks in genomic coordinate order
+	 */
+	List<QueryInterval[]> splitOnEvidenceGaps(QueryInterval[] chunk, int minSubchunkSize) throws IOException {
+		LinearGenomicCoordinate lgc = getContext().getLinear();
+		long chunkStart = lgc.getLinearCoordinate(chunk[0].referenceIndex, chunk[0].start);
+		long chunkEnd = lgc.getLinearCoordinate(chunk[chunk.length - 1].referenceIndex, chunk[chunk.length - 1].end);
+		if (chunkEnd - chunkStart < 2L * minSubchunkSize) {
+			return ImmutableList.of(chunk);
+		}
+		// gap such that the padded evidence and assembly intervals on either side of the split do not overlap
+		long minGap = 2L * (getAssemblyPadding() + getMaxConcordantFragmentSize() + getMaxReadLength());
+		LongArrayList splits = new LongArrayList();
+		List<SamReader> readers = new ArrayList<>();
+		List<SAMRecordIterator> its = new ArrayList<>();
+		try {
+			for (SAMEvidenceSource ses : source) {
+				SamReader reader = ses.getReader();
+				readers.add(reader);
+				its.add(reader.queryOverlapping(chunk));
+			}
+			Iterator<SAMRecord> it = Iterators.mergeSorted(its, Comparator.comparingLong(r -> lgc.getLinearCoordinate(r.getReferenceIndex(), r.getAlignmentStart())));
+			long lastSplit = chunkStart;
+			long evidenceEnd = chunkStart;
+			while (it.hasNext()) {
+				SAMRecord r = it.next();
+				long start = lgc.getLinearCoordinate(r.getReferenceIndex(), r.getAlignmentStart());
+				if (start - evidenceEnd > minGap) {
+					long split = evidenceEnd + (start - evidenceEnd) / 2;
+					if (split - lastSplit >= minSubchunkSize) {
+						splits.add(split);
+						lastSplit = split;
+					}
+				}
+				evidenceEnd = Math.max(evidenceEnd, lgc.getLinearCoordinate(r.getReferenceIndex(), Math.max(r.getAlignmentStart(), r.getAlignmentEnd())));
+			}
+			if (!splits.isEmpty() && chunkEnd - lastSplit < minSubchunkSize) {
+				// merge undersized final sub-chunk into the previous sub-chunk
+				splits.removeLong(splits.size() - 1);
+			}
+		} finally {
+			for (SAMRecordIterator it : its) {
+				CloserUtil.close(it);
+			}
+			for (SamReader reader : readers) {
+				CloserUtil.close(reader);
+			}
+		}
+		List<QueryInterval[]> subchunks = new ArrayList<>(splits.size() + 1);
+		for (int i = 0; i <= splits.size(); i++) {
+			long subchunkStart = i == 0 ? Long.MIN_VALUE : splits.getLong(i - 1);
+			long subchunkEnd = i == splits.size() ? Long.MAX_VALUE : splits.getLong(i) - 1;
+			List<QueryInterval> subchunk = new ArrayList<>();
+			for (QueryInterval qi : chunk) {
+				long start = Math.max(subchunkStart, lgc.getLinearCoordinate(qi.referenceIndex, qi.start));
+				long end = Math.min(subchunkEnd, lgc.getLinearCoordinate(qi.referenceIndex, qi.end));
+				if (start <= end) {
+					subchunk.add(new QueryInterval(qi.referenceIndex, lgc.getReferencePosition(start), lgc.getReferencePosition(end)));
+				}
+			}
+			if (!subchunk.isEmpty()) {
+				subchunks.add(subchunk.toArray(new QueryInterval[0]));
+			}
+		}
+		return subchunks;
+	}
+	/**
+	 * Merges the sub-chunk assembly output into the chunk output.
+	 * 
+	 * Each direction is written separately so the merge decodes and re-encodes
+	 * the chunk contigs once. This is the cost of assembling directions concurrently.
+	 */
+	private void mergeChunk(List<File> parts, File output) throws IOException {
+		File tmpout = FileSystemContext.getWorkingFileFor(output, "gridss.tmp.");
+		SAMFileUtil.merge(parts, tmpout);
+		FileHelper.move(tmpout, output, true);
+		if (gridss.Defaults.DELETE_TEMPORARY_FILES) {
+			for (File f : parts) {
+				FileHelper.delete(f, true);
+			}
+		}
+		if (gridss.Defaults.DEFENSIVE_GC) {
+			log.debug("Requesting defensive GC to ensure OS file handles are closed");
+			System.gc();
+			System.runFinalization();
+		}
+	}
+	/**
+	 * Assembles the given sub-chunk in a single direction
+	 * @param output sub-chunk direction output file
+	 * @param chunkNumber chunk the sub-chunk belongs to
+	 * @param subchunkNumber sub-chunk index within the chunk
+	 * @param subchunkCount number of sub-chunks the chunk has been split into
+	 * @param part index of this sub-chunk direction within the chunk
+	 * @param partCount number of sub-chunk directions in the chunk
+	 * @param qi sub-chunk intervals
+	 */
+	private void assembleChunk(File output, int chunkNumber, int subchunkNumber, int subchunkCount, int part, int partCount, QueryInterval[] qi, BreakendDirection direction,
+			IntervalBed excludedRegions, IntervalBed safetyRegions, IntervalBed downsampledRegions) throws IOException {
+		// Parts of a chunk share the contig name prefix with each part generating
+		// an interleaved id sequence so contig names are unique and deterministic.
+		AssemblyIdGenerator assemblyNameGenerator = new SequentialIdGenerator(String.format(getContext().getConfig().getAssembly().contigNamePrefix, chunkNumber), "", part + 1, partCount);
+		String chuckName = String.format("chunk %s %s (%s:%d-%s:%d)", subchunkCount == 1 ? Integer.toString(chunkNumber) : String.format("%d.%d", chunkNumber, subchunkNumber), direction.name(),
 			getContext().getDictionary().getSequence(qi[0].referenceIndex).getSequenceName(), qi[0].start,
 			getContext().getDictionary().getSequence(qi[qi.length-1].referenceIndex).getSequenceName(), qi[qi.length-1].end);
 		log.info(String.format("Starting assembly on %s", chuckName));
 		Stopwatch timer = Stopwatch.createStarted();
 		File filteredout = FileSystemContext.getWorkingFileFor(output, "filtered.");
 		File tmpout = FileSystemContext.getWorkingFileFor(output, "gridss.tmp.");
-		try (SAMFileWriter writer = new SAMFileWriterFactory().makeSAMOrBAMWriter(header, false, tmpout)) {
-			if (getContext().getAssemblyParameters().writeFiltered) {
-				try (SAMFileWriter filteredWriter = new SAMFileWriterFactory().makeSAMOrBAMWriter(header, false, filteredout)) {
-					for (BreakendDirection direction : BreakendDirection.values()) {
-						assembleChunk(writer, filteredWriter, chunkNumber, qi, direction, assemblyNameGenerator, excludedRegions, safetyRegions, downsampledRegions);
+		List<CloseableIterator<DirectedEvidence>> inputs = new ArrayList<>();
+		List<AssemblyTelemetry.AssemblyChunkTelemetry> chunkTelemetry = new ArrayList<>();
+		// Contigs are written directly to a sorting window so the output is
+		// coordinate sorted without an external sort.
+		try (SAMFileWriter writer = new WindowedSortingSAMFileWriter(getContext().getFileSystemContext(), header, tmpout, getAssemblySortWindowSize());
+			 SAMFileWriter filteredWriter = getContext().getAssemblyParameters().writeFiltered ? new SAMFileWriterFactory().makeSAMOrBAMWriter(header, false, filteredout) : null) {
+			Iterator<SAMRecord> it = assembleChunk(inputs, chunkTelemetry, chunkNumber, qi, direction, assemblyNameGenerator, excludedRegions, safetyRegions, downsampledRegions);
+			while (it.hasNext()) {
+				SAMRecord asm = it.next();
+				if (shouldFilterAssembly(asm)) {
+					if (filteredWriter != null) {
+						filteredWriter.addAlignment(asm);
 					}
-				}
-			} else {
-				for (BreakendDirection direction : BreakendDirection.values()) {
-					assembleChunk(writer, null, chunkNumber, qi, direction, assemblyNameGenerator, excludedRegions, safetyRegions, downsampledRegions);
+				} else {
+					writer.addAlignment(asm);
 				}
 			}
 		} catch (Exception e) {
@@ -205,53 +348,63 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 			}
 			throw e;
 		} finally {
+			for (AssemblyTelemetry.AssemblyChunkTelemetry t : chunkTelemetry) {
+				t.close();
+			}
+			for (CloseableIterator<DirectedEvidence> input : inputs) {
+				input.close();
+			}
 			timer.stop();
 			log.info(String.format("Completed assembly on %s in %ds (%s)", chuckName, timer.elapsed(TimeUnit.SECONDS), timer.toString()));
 		}
-		SAMFileUtil.sort(getContext().getFileSystemContext(), tmpout, output, SortOrder.coordinate);
+		FileHelper.move(tmpout, output, true);
 		if (gridss.Defaults.DELETE_TEMPORARY_FILES) {
-			tmpout.delete();
 			filteredout.delete();
 		}
-		if (gridss.Defaults.DEFENSIVE_GC) {
-			log.debug("Requesting defensive GC to ensure OS file handles are closed");
-			System.gc();
-			System.runFinalization();
-		}
+	}
+	/**
+	 * Contigs are emitted by the assembler approximately in order of anchor position.
+	 * Contig positions can deviate from strict ordering by up to the maximum assembly
+	 * length and by the out-of-order window of the underlying evidence.
+	 */
+	private int getAssemblySortWindowSize() {
+		return getMaxAssemblyLength() + getSortWindowSize();
 	}
 
 	private QueryInterval[] getExpanded(QueryInterval[] intervals) {
 		QueryInterval[] expanded = QueryIntervalUtil.padIntervals(
 				getContext().getDictionary(),
 				intervals,
-				// expand bounds to keep any contig that could overlap our intervals
-				(int)(2 * getMaxConcordantFragmentSize() * getContext().getConfig().getAssembly().maxExpectedBreakendLengthMultiple) + 1);
+				getAssemblyPadding());
 		return expanded;
 	}
-	private void assembleChunk(SAMFileWriter writer, SAMFileWriter filteredWriter, int chunkNumber, QueryInterval[] intervals, BreakendDirection direction, AssemblyIdGenerator assemblyNameGenerator,
-							   IntervalBed excludedRegions, IntervalBed safetyRegions, IntervalBed downsampledRegions) {
+	private int getAssemblyPadding() {
+		// expand bounds to keep any contig that could overlap our intervals
+		return (int)(2 * getMaxConcordantFragmentSize() * getContext().getConfig().getAssembly().maxExpectedBreakendLengthMultiple) + 1;
+	}
+	/**
+	 * Lazily assembles the given chunk in a single direction.
+	 * @param inputs evidence iterators opened by this call. These must be closed by the caller.
+	 * @param chunkTelemetry telemetry opened by this call. These must be closed by the caller.
+	 * @return assembly contigs starting within the chunk
+	 */
+	private Iterator<SAMRecord> assembleChunk(List<CloseableIterator<DirectedEvidence>> inputs, List<AssemblyTelemetry.AssemblyChunkTelemetry> chunkTelemetry,
+			int chunkNumber, QueryInterval[] intervals, BreakendDirection direction, AssemblyIdGenerator assemblyNameGenerator,
+			IntervalBed excludedRegions, IntervalBed safetyRegions, IntervalBed downsampledRegions) {
 		QueryInterval[] expanded = getExpanded(intervals);
-		try (CloseableIterator<DirectedEvidence> input = mergedIterator(source, expanded, EvidenceSortOrder.SAMRecordStartPosition)) {
-			Iterator<DirectedEvidence> throttledIt = throttled(input, downsampledRegions);
-			PositionalAssembler assembler = new PositionalAssembler(getContext(), AssemblyEvidenceSource.this, assemblyNameGenerator, throttledIt, direction, excludedRegions, safetyRegions);
-			if (telemetry != null) {
-				assembler.setTelemetry(telemetry.getTelemetry(chunkNumber, direction));
-			}
-			while (assembler.hasNext()) {
-				SAMRecord asm = assembler.next();
-				asm = transformAssembly(asm); // transform before chunk bounds checking as the position may have moved
-				if (QueryIntervalUtil.overlaps(intervals, asm.getReferenceIndex(), asm.getAlignmentStart())) {
-					// only output assemblies that start within our chunk
-					if (shouldFilterAssembly(asm)) {
-						if (filteredWriter != null) {
-							filteredWriter.addAlignment(asm);
-						}
-					} else {
-						writer.addAlignment(asm);
-					}
-				}
-			}
-		}
+		CloseableIterator<DirectedEvidence> input = mergedIterator(source, expanded, EvidenceSortOrder.SAMRecordStartPosition);
+		inputs.add(input);
+		Iterator<DirectedEvidence> throttledIt = throttled(input, downsampledRegions);
+		PositionalAssembler assembler = new PositionalAssembler(getContext(), AssemblyEvidenceSource.this, assemblyNameGenerator, throttledIt, direction, excludedRegions, safetyRegions);
+		if (telemetry != null) {
+			AssemblyTelemetry.AssemblyChunkTelemetry t = telemetry.getTelemetry(chunkNumber, direction);
+			chunkTelemetry.add(t);
+			assembler.setTelemetry(t);
+		}
+		// transform before chunk bounds checking as the position may have moved
+		Iterator<SAMRecord> it = Iterators.transform(assembler, asm -> transformAssembly(asm));
+		// only output assemblies that start within our chunk
+		return Iterators.filter(it, asm -> QueryIntervalUtil.overlaps(intervals, asm.getReferenceIndex(), asm.getAlignmentStart()));
 	}
 	@Override
 	public synchronized void ensureExtracted() throws IOException {
@@ -1,6 +1,6 @@
 package au.edu.wehi.idsv;
 
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class CalledBreakpointPositionLookup {
     public static class NominalPosition {
@@ -25,11 +25,16 @@ public class CalledBreakpointPositionLookup {
             );
         }
     }
-    private HashMap<String, NominalPosition> lookup = new HashMap<>();
+    /**
+     * Thread-safe so a single lookup can be shared by concurrently allocated genomic chunks
+     */
+    private final ConcurrentHashMap<String, NominalPosition> lookup = new ConcurrentHashMap<>();
     public void addLower(String eventId, NominalPosition position) {
+        if (eventId == null) return;
         lookup.put(eventId, position.remoteBreakpoint());
     }
     public NominalPosition removeUpper(String eventId) {
+        if (eventId == null) return null;
         return lookup.remove(eventId);
     }
 }
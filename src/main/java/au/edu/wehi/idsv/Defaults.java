@@ -15,6 +15,29 @@ public class Defaults {
 	public static final boolean CACHE_REFERENCE;
 	public static final boolean ATTEMPT_ASSEMBLY_RECOVERY;
 	public static final boolean USE_OPTIMISED_ASSEMBLY_DATA_STRUCTURES;
+	/**
+	 * Number of pre-started external streaming aligner processes to keep on standby
+	 * for each aligner command line. Each standby process holds its own copy of the
+	 * aligner index in memory so standby processes are disabled by default.
+	 */
+	public static final int EXTERNAL_ALIGNER_STANDBY_PROCESSES;
+	/**
+	 * Call variants from a compact evidence summary instead of the SV BAM.
+	 */
+	public static final boolean USE_EVIDENCE_SUMMARY;
+	/**
+	 * Number of threads used to convert SAM records to evidence. Zero performs the conversion on the consuming thread.
+	 * These threads are in addition to the worker threads so conversion is performed on the consuming thread by default.
+	 */
+	public static final int EVIDENCE_TRANSFORM_THREADS;
+	/**
+	 * Call maximal cliques using a segment tree over the active rectangle Y coordinates.
+	 */
+	public static final boolean USE_SEGMENT_TREE_CLIQUE_CALCULATOR;
+	/**
+	 * Minimum size of the independently scheduled sub-chunks that assembly chunks are split into at evidence gaps.
+	 */
+	public static final int ASSEMBLY_MIN_SUBCHUNK_SIZE;
 	static {
 		SANITY_CHECK_ASSEMBLY_GRAPH = Boolean.valueOf(System.getProperty("sanitycheck.assembly", "false"));
 		SANITY_CHECK_EVIDENCE_TRACKER = Boolean.valueOf(System.getProperty("sanitycheck.evidencetracker", "false"));
@@ -28,5 +51,10 @@ public class Defaults {
 		CACHE_REFERENCE = !Boolean.valueOf(System.getProperty("reference.cache", "true"));
 		ATTEMPT_ASSEMBLY_RECOVERY = Boolean.valueOf(System.getProperty("assembly.recover", "true"));
 		USE_OPTIMISED_ASSEMBLY_DATA_STRUCTURES = Boolean.valueOf(System.getProperty("assembly.optimised_data_structures", "true"));
+		EXTERNAL_ALIGNER_STANDBY_PROCESSES = Integer.parseInt(System.getProperty("aligner.standby", "0"));
+		USE_EVIDENCE_SUMMARY = Boolean.valueOf(System.getProperty("evidence.summary", "false"));
+		USE_SEGMENT_TREE_CLIQUE_CALCULATOR = Boolean.valueOf(System.getProperty("clique.segmenttree", "true"));
+		ASSEMBLY_MIN_SUBCHUNK_SIZE = Integer.parseInt(System.getProperty("assembly.subchunk.minsize", "1000000"));
+		EVIDENCE_TRANSFORM_THREADS = Integer.parseInt(System.getProperty("evidence.transformthreads", "0"));
 	}
 }
\ No newline at end of file
@@ -42,6 +42,19 @@ public interface DirectedEvidence {
 	 * @return Unique breakpoint identifier string
 	 */
 	String getEvidenceID();
+	/**
+	 * High 64 bits of the 128 bit identifier of this evidence used to key internal lookups.
+	 * Evidence with the same evidenceID have the same identifier.
+	 */
+	default long getEvidenceIdentifierHigh() {
+		return StringEvidenceIdentifierGenerator.hashEvidenceID(getEvidenceID())[0];
+	}
+	/**
+	 * Low 64 bits of the 128 bit identifier of this evidence used to key internal lookups.
+	 */
+	default long getEvidenceIdentifierLow() {
+		return StringEvidenceIdentifierGenerator.hashEvidenceID(getEvidenceID())[1];
+	}
 	/**
 	 * Unique identifier for the source DNA fragments.
 	 * @return distinct read names of supporting reads
@@ -7,6 +7,7 @@ import htsjdk.samtools.util.CloserUtil;
 import htsjdk.samtools.util.Log;
 
 import java.util.ArrayDeque;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.Queue;
@@ -37,6 +38,16 @@ public class DirectedEvidenceIterator implements CloseableIterator<DirectedEvide
 		}
 	}
 	private void addToBuffer(SAMRecord record) {
+		addEvidence(source, minIndelSize, record, buffer);
+	}
+	/**
+	 * Adds the evidence supported by the given record to the given collection
+	 * @param source evidence source
+	 * @param minIndelSize minimum indel size
+	 * @param record record to convert to evidence
+	 * @param buffer collection to add evidence to
+	 */
+	public static void addEvidence(SAMEvidenceSource source, int minIndelSize, SAMRecord record, Collection<DirectedEvidence> buffer) {
 		if (record == null || record.getReadUnmappedFlag() || record.getMappingQuality() < source.getContext().getConfig().minMapq) {
 			return;
 		}
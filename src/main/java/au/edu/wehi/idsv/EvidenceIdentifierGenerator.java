@@ -41,4 +41,16 @@ public interface EvidenceIdentifierGenerator {
 	String getEvidenceID(SoftClipEvidence e);
 	String getEvidenceID(SplitReadEvidence e);
 	String getEvidenceID(IndelEvidence e);
+	/**
+	 * Gets the 128 bit identifier used to key internal evidence lookups.
+	 * The identifier of an evidenceID parsed from a SAM or VCF file
+	 * equals the identifier of the evidence the evidenceID was generated from.
+	 * @param evidenceId evidenceID
+	 * @return high and low 64 bits of the identifier
+	 */
+	long[] getEvidenceIdentifier(String evidenceId);
+	long[] getEvidenceIdentifier(NonReferenceReadPair e);
+	long[] getEvidenceIdentifier(SoftClipEvidence e);
+	long[] getEvidenceIdentifier(SplitReadEvidence e);
+	long[] getEvidenceIdentifier(IndelEvidence e);
 }
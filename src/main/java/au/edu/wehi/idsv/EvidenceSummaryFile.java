@@ -0,0 +1,446 @@
+package au.edu.wehi.idsv;
+
+import au.edu.wehi.idsv.util.FileHelper;
+import com.google.common.collect.AbstractIterator;
+import htsjdk.samtools.QueryInterval;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.Log;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * Compact, position-indexed summary of the evidence derived from an evidence source.
+ *
+ * Each record contains only the breakend location, score and evidence identifier.
+ * This is sufficient for variant calling which can then stream evidence directly from
+ * a memory-mapped file instead of re-parsing, filtering, transforming and sorting
+ * the underlying SAM records on every pass.
+ *
+ * Records are stored in evidence start position order. The index contains the file offset
+ * of the first record starting in each fixed-size bin of the linear genome.
+ *
+ * The header records a fingerprint of the configuration used to filter the evidence
+ * so stale summaries can be detected when the filtering configuration changes.
+ *
+ * Only the fields used by variant calling are summarised. Read-level accessors of the
+ * returned evidence throw UnsupportedOperationException.
+ */
+public class EvidenceSummaryFile {
+	private static final Log log = Log.getInstance(EvidenceSummaryFile.class);
+	private static final long MAGIC = 0x4752494453534556L; // GRIDSSEV
+	private static final int VERSION = 2;
+	private static final int HEADER_SIZE = 8 + 4 + 8;
+	private static final int BIN_BITS = 16;
+	/**
+	 * Maximum number of bytes to memory map at once
+	 */
+	private static final long MAX_MAPPED_SEGMENT_SIZE = 1 << 28;
+	private static final int FLAG_DIRECTED_BREAKPOINT = 1;
+	private static final int FLAG_BREAKPOINT_SUMMARY = 2;
+	private static final int FLAG_FORWARD = 4;
+	private static final int FLAG_FORWARD2 = 8;
+	private final File file;
+	private final EvidenceSource source;
+	private final LinearGenomicCoordinate linear;
+	private final long[] binOffset;
+	private final int maxBreakendWidth;
+	private EvidenceSummaryFile(File file, EvidenceSource source, LinearGenomicCoordinate linear, long[] binOffset, int maxBreakendWidth) {
+		this.file = file;
+		this.source = source;
+		this.linear = linear;
+		this.binOffset = binOffset;
+		this.maxBreakendWidth = maxBreakendWidth;
+	}
+	/**
+	 * Determines whether the given file is a summary file written with the given fingerprint
+	 * @param file summary file
+	 * @param fingerprint evidence filtering configuration fingerprint
+	 * @return true if the file exists and was written with the given fingerprint, false otherwise
+	 */
+	public static boolean hasFingerprint(File file, long fingerprint) throws IOException {
+		if (!file.exists()) return false;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			return raf.length() >= HEADER_SIZE + 8
+					&& raf.readLong() == MAGIC
+					&& raf.readInt() == VERSION
+					&& raf.readLong() == fingerprint;
+		}
+	}
+	/**
+	 * Opens an existing summary file
+	 * @param file summary file
+	 * @param source evidence source the summary was generated from
+	 * @param linear linear genomic coordinate
+	 */
+	public static EvidenceSummaryFile open(File file, EvidenceSource source, LinearGenomicCoordinate linear) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			if (raf.length() < HEADER_SIZE + 8 || raf.readLong() != MAGIC || raf.readInt() != VERSION) {
+				throw new IOException(String.format("%s is not a valid evidence summary file", file));
+			}
+			raf.seek(raf.length() - 8);
+			long footerOffset = raf.readLong();
+			raf.seek(footerOffset);
+			int maxBreakendWidth = raf.readInt();
+			int binCount = raf.readInt();
+			long[] binOffset = new long[binCount];
+			for (int i = 0; i < binCount; i++) {
+				binOffset[i] = raf.readLong();
+			}
+			return new EvidenceSummaryFile(file, source, linear, binOffset, maxBreakendWidth);
+		}
+	}
+	/**
+	 * Writes a summary of the given evidence
+	 * @param file output file
+	 * @param fingerprint evidence filtering configuration fingerprint
+	 * @param linear linear genomic coordinate
+	 * @param it evidence in evidence start position order
+	 */
+	public static void write(File file, long fingerprint, LinearGenomicCoordinate linear, Iterator<DirectedEvidence> it) throws IOException {
+		File tmp = FileSystemContext.getWorkingFileFor(file);
+		LongArrayList binOffset = new LongArrayList();
+		int maxBreakendWidth = 0;
+		long offset = HEADER_SIZE;
+		long lastStart = Long.MIN_VALUE;
+		try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+			dos.writeLong(MAGIC);
+			dos.writeInt(VERSION);
+			dos.writeLong(fingerprint);
+			while (it.hasNext()) {
+				DirectedEvidence e = it.next();
+				BreakendSummary bs = e.getBreakendSummary();
+				long start = linear.getStartLinearCoordinate(bs);
+				if (start < lastStart) {
+					throw new IllegalArgumentException(String.format("Evidence %s not in evidence start position order", e.getEvidenceID()));
+				}
+				lastStart = start;
+				long bin = start >> BIN_BITS;
+				while (binOffset.size() <= bin) {
+					binOffset.add(offset);
+				}
+				maxBreakendWidth = Math.max(maxBreakendWidth, bs.end - bs.start);
+				offset += writeRecord(dos, e);
+			}
+			int lastReferenceIndex = linear.getDictionary().size() - 1;
+			long endBin = (linear.getLinearCoordinate(lastReferenceIndex, linear.getDictionary().getSequence(lastReferenceIndex).getSequenceLength()) >> BIN_BITS) + 1;
+			while (binOffset.size() <= endBin) {
+				binOffset.add(offset);
+			}
+			dos.writeInt(maxBreakendWidth);
+			dos.writeInt(binOffset.size());
+			for (int i = 0; i < binOffset.size(); i++) {
+				dos.writeLong(binOffset.getLong(i));
+			}
+			dos.writeLong(offset);
+		}
+		FileHelper.move(tmp, file, true);
+	}
+	/**
+	 * Writes the given evidence
+	 * @return number of bytes written
+	 */
+	private static int writeRecord(DataOutputStream dos, DirectedEvidence e) throws IOException {
+		BreakendSummary bs = e.getBreakendSummary();
+		int flags = 0;
+		if (e instanceof DirectedBreakpoint) flags |= FLAG_DIRECTED_BREAKPOINT;
+		if (bs instanceof BreakpointSummary) flags |= FLAG_BREAKPOINT_SUMMARY;
+		if (bs.direction == BreakendDirection.Forward) flags |= FLAG_FORWARD;
+		if (bs instanceof BreakpointSummary && ((BreakpointSummary)bs).direction2 == BreakendDirection.Forward) flags |= FLAG_FORWARD2;
+		int size = 1 + 4 * 4 + 4;
+		dos.writeByte(flags);
+		dos.writeInt(bs.referenceIndex);
+		dos.writeInt(bs.nominal);
+		dos.writeInt(bs.start);
+		dos.writeInt(bs.end);
+		if (bs instanceof BreakpointSummary) {
+			BreakpointSummary bp = (BreakpointSummary)bs;
+			dos.writeInt(bp.referenceIndex2);
+			dos.writeInt(bp.nominal2);
+			dos.writeInt(bp.start2);
+			dos.writeInt(bp.end2);
+			size += 4 * 4;
+		}
+		dos.writeFloat(e.getBreakendQual());
+		if (e instanceof DirectedBreakpoint) {
+			dos.writeFloat(((DirectedBreakpoint)e).getBreakpointQual());
+			size += 4;
+		}
+		byte[] id = e.getEvidenceID().getBytes(StandardCharsets.UTF_8);
+		dos.writeInt(id.length);
+		dos.write(id);
+		size += 4 + id.length;
+		return size;
+	}
+	public File getFile() {
+		return file;
+	}
+	/**
+	 * Iterates over all evidence
+	 */
+	public CloseableIterator<DirectedEvidence> iterator() {
+		return new SummaryIterator(0, binOffset[binOffset.length - 1], null);
+	}
+	/**
+	 * Iterates over evidence with a breakend overlapping the given intervals
+	 */
+	public CloseableIterator<DirectedEvidence> iterator(QueryInterval[] intervals) {
+		if (intervals.length == 0) {
+			return new SummaryIterator(0, 0, intervals);
+		}
+		QueryInterval first = intervals[0];
+		QueryInterval last = intervals[intervals.length - 1];
+		long start = linear.getLinearCoordinate(first.referenceIndex, first.start) - maxBreakendWidth;
+		long end = linear.getLinearCoordinate(last.referenceIndex, last.end);
+		int startBin = (int)Math.min(Math.max(0, start >> BIN_BITS), binOffset.length - 1);
+		int endBin = (int)Math.min(Math.max(0, (end >> BIN_BITS) + 1), binOffset.length - 1);
+		return new SummaryIterator(startBin, binOffset[endBin], intervals);
+	}
+	private class SummaryIterator extends AbstractIterator<DirectedEvidence> implements CloseableIterator<DirectedEvidence> {
+		private final QueryInterval[] intervals;
+		private final long endOffset;
+		private int bin;
+		private long segmentOffset;
+		private MappedByteBuffer buffer = null;
+		private FileChannel channel = null;
+		private RandomAccessFile raf = null;
+		/**
+		 * @param startBin first bin to read
+		 * @param endOffset file offset to stop reading at
+		 * @param intervals intervals to filter to. null to return all records
+		 */
+		public SummaryIterator(int startBin, long endOffset, QueryInterval[] intervals) {
+			this.intervals = intervals;
+			this.bin = startBin;
+			this.segmentOffset = binOffset[startBin];
+			this.endOffset = endOffset;
+		}
+		/**
+		 * Maps the next segment of the file, ending on a bin boundary
+		 * @return true if there are more records to read, false otherwise
+		 */
+		private boolean nextSegment() {
+			if (buffer != null) {
+				segmentOffset += buffer.limit();
+			}
+			if (segmentOffset >= endOffset) return false;
+			long limit = Math.min(endOffset, segmentOffset + MAX_MAPPED_SEGMENT_SIZE);
+			long segmentEnd = segmentOffset;
+			while (bin < binOffset.length && binOffset[bin] <= limit) {
+				segmentEnd = Math.max(segmentEnd, binOffset[bin]);
+				bin++;
+			}
+			if (limit == endOffset) {
+				segmentEnd = endOffset;
+			} else if (segmentEnd <= segmentOffset) {
+				// single bin larger than our maximum segment size
+				segmentEnd = bin < binOffset.length ? Math.min(endOffset, binOffset[bin]) : endOffset;
+			}
+			try {
+				if (raf == null) {
+					raf = new RandomAccessFile(file, "r");
+					channel = raf.getChannel();
+				}
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, segmentOffset, segmentEnd - segmentOffset);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			return true;
+		}
+		@Override
+		protected DirectedEvidence computeNext() {
+			while (true) {
+				while (buffer == null || !buffer.hasRemaining()) {
+					if (!nextSegment()) {
+						close();
+						return endOfData();
+					}
+				}
+				DirectedEvidence e = readRecord(buffer);
+				if (intervals == null || QueryIntervalUtil.overlaps(intervals, e.getBreakendSummary())) {
+					return e;
+				}
+				BreakendSummary bs = e.getBreakendSummary();
+				QueryInterval last = intervals[intervals.length - 1];
+				if (bs.referenceIndex > last.referenceIndex || (bs.referenceIndex == last.referenceIndex && bs.start > last.end)) {
+					close();
+					return endOfData();
+				}
+			}
+		}
+		private DirectedEvidence readRecord(ByteBuffer bb) {
+			int flags = bb.get();
+			BreakendDirection dir = (flags & FLAG_FORWARD) != 0 ? BreakendDirection.Forward : BreakendDirection.Backward;
+			int referenceIndex = bb.getInt();
+			int nominal = bb.getInt();
+			int start = bb.getInt();
+			int end = bb.getInt();
+			BreakendSummary bs;
+			if ((flags & FLAG_BREAKPOINT_SUMMARY) != 0) {
+				BreakendDirection dir2 = (flags & FLAG_FORWARD2) != 0 ? BreakendDirection.Forward : BreakendDirection.Backward;
+				int referenceIndex2 = bb.getInt();
+				int nominal2 = bb.getInt();
+				int start2 = bb.getInt();
+				int end2 = bb.getInt();
+				bs = new BreakpointSummary(referenceIndex, dir, nominal, start, end, referenceIndex2, dir2, nominal2, start2, end2);
+			} else {
+				bs = new BreakendSummary(referenceIndex, dir, nominal, start, end);
+			}
+			float breakendQual = bb.getFloat();
+			float breakpointQual = (flags & FLAG_DIRECTED_BREAKPOINT) != 0 ? bb.getFloat() : 0;
+			byte[] id = new byte[bb.getInt()];
+			bb.get(id);
+			String evidenceId = new String(id, StandardCharsets.UTF_8);
+			if ((flags & FLAG_DIRECTED_BREAKPOINT) != 0) {
+				return new SummaryBreakpoint(source, (BreakpointSummary)bs, breakendQual, breakpointQual, evidenceId);
+			}
+			return new SummaryBreakend(source, bs, breakendQual, evidenceId);
+		}
+		@Override
+		public void close() {
+			buffer = null;
+			try {
+				if (raf != null) {
+					raf.close();
+				}
+			} catch (IOException e) {
+				log.debug(e);
+			}
+			raf = null;
+			channel = null;
+		}
+	}
+	/**
+	 * Evidence summary. Only the breakend location, score and identifier are available.
+	 */
+	public static class SummaryBreakend implements DirectedEvidence {
+		private final EvidenceSource source;
+		private final BreakendSummary breakend;
+		private final float breakendQual;
+		private final String evidenceId;
+		public SummaryBreakend(EvidenceSource source, BreakendSummary breakend, float breakendQual, String evidenceId) {
+			this.source = source;
+			this.breakend = breakend;
+			this.breakendQual = breakendQual;
+			this.evidenceId = evidenceId;
+		}
+		protected UnsupportedOperationException notSummarised() {
+			return new UnsupportedOperationException(String.format("Evidence %s is a summary. Use the full evidence source to obtain read-level information.", evidenceId));
+		}
+		@Override
+		public float getBreakendQual() {
+			return breakendQual;
+		}
+		@Override
+		public BreakendSummary getBreakendSummary() {
+			return breakend;
+		}
+		@Override
+		public String getEvidenceID() {
+			return evidenceId;
+		}
+		@Override
+		public EvidenceSource getEvidenceSource() {
+			return source;
+		}
+		@Override
+		public byte[] getBreakendSequence() {
+			throw notSummarised();
+		}
+		@Override
+		public byte[] getBreakendQuality() {
+			throw notSummarised();
+		}
+		@Override
+		public byte[] getAnchorSequence() {
+			throw notSummarised();
+		}
+		@Override
+		public byte[] getAnchorQuality() {
+			throw notSummarised();
+		}
+		@Override
+		public Collection<String> getOriginatingFragmentID(int category) {
+			throw notSummarised();
+		}
+		@Override
+		public int getLocalMapq() {
+			throw notSummarised();
+		}
+		@Override
+		public boolean isBreakendExact() {
+			throw notSummarised();
+		}
+		@Override
+		public double getStrandBias() {
+			throw notSummarised();
+		}
+		@Override
+		public int constituentReads() {
+			throw notSummarised();
+		}
+		@Override
+		public String getAssociatedAssemblyName() {
+			throw notSummarised();
+		}
+		@Override
+		public SAMRecord getUnderlyingSAMRecord() {
+			throw notSummarised();
+		}
+		@Override
+		public String toString() {
+			return String.format("%s %s %.1f", evidenceId, breakend, breakendQual);
+		}
+	}
+	public static class SummaryBreakpoint extends SummaryBreakend implements DirectedBreakpoint {
+		private final float breakpointQual;
+		public SummaryBreakpoint(EvidenceSource source, BreakpointSummary breakpoint, float breakendQual, float breakpointQual, String evidenceId) {
+			super(source, breakpoint, breakendQual, evidenceId);
+			this.breakpointQual = breakpointQual;
+		}
+		@Override
+		public float getBreakpointQual() {
+			return breakpointQual;
+		}
+		@Override
+		public BreakpointSummary getBreakendSummary() {
+			return (BreakpointSummary)super.getBreakendSummary();
+		}
+		@Override
+		public int getRemoteMapq() {
+			throw notSummarised();
+		}
+		@Override
+		public String getUntemplatedSequence() {
+			throw notSummarised();
+		}
+		@Override
+		public String getHomologySequence() {
+			throw notSummarised();
+		}
+		@Override
+		public int getHomologyAnchoredBaseCount() {
+			throw notSummarised();
+		}
+		@Override
+		public DirectedBreakpoint asRemote() {
+			throw notSummarised();
+		}
+		@Override
+		public String getRemoteEvidenceID() {
+			throw notSummarised();
+		}
+	}
+}
@@ -52,6 +52,7 @@ public class FileSystemContext {
 	private static final String COMMON_INITIAL_SUFFIX = ".gridss";
 	private static final String INTERMEDIATE_DIR_SUFFIX = COMMON_INITIAL_SUFFIX + ".working";
 	private static final String FORMAT_SV_SAM = "%1$s/%2$s.sv.bam";
+	private static final String FORMAT_EVIDENCE_SUMMARY = "%1$s/%2$s.sv.evidence";
 	private static final String FORMAT_METRICS_PREFIX = "%1$s/%2$s";
 	private static final String FORMAT_INSERT_SIZE_METRICS = FORMAT_METRICS_PREFIX + ".insert_size_metrics";
 	private static final String FORMAT_IDSV_METRICS = FORMAT_METRICS_PREFIX + CollectIdsvMetrics.METRICS_SUFFIX;
@@ -64,11 +65,14 @@ public class FileSystemContext {
 	private static final String FORMAT_REALIGN_SAM = "%1$s/%2$s.realign.%3$d" + SAM_SUFFIX;
 	private static final String FORMAT_BREAKPOINT_VCF = "%1$s/%2$s.breakpoint" + VCF_SUFFIX;
 	private static final String FORMAT_ASSEMBLY_CHUNK_SAM = "%1$s/%2$s.assembly.chunk%3$d" + SAM_SUFFIX;
-	private static final String FORMAT_ASSEMBLY_TELEMETRY = "%1$s/%2$s.events_%3$d.csv";
+	private static final String FORMAT_ASSEMBLY_TELEMETRY = "%1$s/%2$s.telemetry_%3$d.bin";
 	private static final String FORMAT_ASSEMBLY_EXCLUDED_REGIONS = "%1$s/%2$s.excluded_%3$d.bed";
 	private static final String FORMAT_ASSEMBLY_SAFETY_REGIONS = "%1$s/%2$s.subsetCalled_%3$d.bed";
 	private static final String FORMAT_ASSEMBLY_DOWNSAMPLED_REGIONS = "%1$s/%2$s.downsampled_%3$d.bed";
 	private static final String FORMAT_VARIANT_CALL_CHUNK_VCF = "%1$s/%2$s.breakpoint.chunk%3$d" + VCF_SUFFIX;
+	private static final String FORMAT_ALLOCATION_INPUT_CHUNK_VCF = "%1$s/%2$s.allocation_input.chunk%3$d" + VCF_SUFFIX;
+	private static final String FORMAT_ALLOCATION_CHUNK_VCF = "%1$s/%2$s.allocation.chunk%3$d" + VCF_SUFFIX;
+	private static final String FORMAT_ALLOCATION_DEFERRED_CHUNK_VCF = "%1$s/%2$s.allocation_deferred.chunk%3$d" + VCF_SUFFIX;
 	/**
 	 * Gets the idsv intermediate working directory for the given input
 	 */
@@ -117,6 +121,9 @@ public class FileSystemContext {
 	public File getSVBam(File input) {
 		return getFile(String.format(FORMAT_SV_SAM, getIntermediateDirectory(input), getSource(input).getName()));
 	}
+	public File getEvidenceSummary(File input) {
+		return getFile(String.format(FORMAT_EVIDENCE_SUMMARY, getIntermediateDirectory(input), getSource(input).getName()));
+	}
 	public File getBreakpointVcf(File input) {
 		return getFile(String.format(FORMAT_BREAKPOINT_VCF, getIntermediateDirectory(input), getSource(input).getName()));
 	}
@@ -154,7 +161,7 @@ public class FileSystemContext {
 		return getFile(String.format(FORMAT_ASSEMBLY_CHUNK_SAM, getIntermediateDirectory(input), getSource(input).getName(), chunk));
 	}
 	public File getAssemblyTelemetry(File assembly, int nodeIndex) {
-		return getFile(String.format(FORMAT_ASSEMBLY_TELEMETRY, getIntermediateDirectory(assembly), getSource(assembly).getName()));
+		return getFile(String.format(FORMAT_ASSEMBLY_TELEMETRY, getIntermediateDirectory(assembly), getSource(assembly).getName(), nodeIndex));
 	}
 	public File getAssemblyExcludedRegions(File assembly, int nodeIndex) {
 		return getFile(String.format(FORMAT_ASSEMBLY_EXCLUDED_REGIONS, getIntermediateDirectory(assembly), getSource(assembly).getName(), nodeIndex));
@@ -168,4 +175,13 @@ public class FileSystemContext {
 	public File getVariantCallChunkVcf(File input, int chunk) {
 		return getFile(String.format(FORMAT_VARIANT_CALL_CHUNK_VCF, getIntermediateDirectory(input), getSource(input).getName(), chunk));
 	}
+	public File getAllocationInputChunkVcf(File output, int chunk) {
+		return getFile(String.format(FORMAT_ALLOCATION_INPUT_CHUNK_VCF, getIntermediateDirectory(output), getSource(output).getName(), chunk));
+	}
+	public File getAllocationChunkVcf(File output, int chunk) {
+		return getFile(String.format(FORMAT_ALLOCATION_CHUNK_VCF, getIntermediateDirectory(output), getSource(output).getName(), chunk));
+	}
+	public File getAllocationDeferredChunkVcf(File output, int chunk) {
+		return getFile(String.format(FORMAT_ALLOCATION_DEFERRED_CHUNK_VCF, getIntermediateDirectory(output), getSource(output).getName(), chunk));
+	}
 }
@@ -16,6 +16,10 @@ import java.util.Base64;
  * The second block is the alignment unique hash for that segment (typically 6 bytes = 36 bits)
  * The final block is the overall evidenceid hash for that alignment (typically 6 bytes = 36 bits)
  * 
+ * The 128 bit evidence identifier packs the leading characters of each block
+ * (10 segment, 4 alignment and 6 evidence characters) so it can be calculated
+ * directly from the block hashes without encoding the evidenceID string, and
+ * decoded from an evidenceID string without rehashing.
  * 
  * @author Daniel Cameron
  *
@@ -28,10 +32,16 @@ public class HashedEvidenceIdentifierGenerator implements EvidenceIdentifierGene
 	private final int segmentUniqueBytes;
 	private final int alignmentUniqueBytes;
 	private final int evidenceidUniqueBytes;
+	private final int segmentIdentifierChars;
+	private final int alignmentIdentifierChars;
+	private final int evidenceidIdentifierChars;
 	public HashedEvidenceIdentifierGenerator(int segmentUniqueBytes, int alignmentUniqueBytes, int evidenceidUniqueBytes) {
 		this.segmentUniqueBytes = segmentUniqueBytes;
 		this.alignmentUniqueBytes = alignmentUniqueBytes;
 		this.evidenceidUniqueBytes = evidenceidUniqueBytes;
+		this.segmentIdentifierChars = Math.min(segmentUniqueBytes, 10);
+		this.alignmentIdentifierChars = Math.min(alignmentUniqueBytes, 4);
+		this.evidenceidIdentifierChars = Math.min(evidenceidUniqueBytes, 6);
 	}
 	public HashedEvidenceIdentifierGenerator() {
 		this(20, 6, 6);
@@ -50,6 +60,71 @@ public class HashedEvidenceIdentifierGenerator implements EvidenceIdentifierGene
 		String truncated = encoded.substring(0, bytes);
 		return truncated;
 	}
+	/**
+	 * Gets the bits encoded by the leading characters of the Base64 encoded hash of the given string
+	 * @param chars number of characters
+	 * @return 6 bits per character
+	 */
+	private long hashBits(String s, int chars) {
+		if (chars == 0) return 0;
+		// Base64 encodes the hash bytes most significant bit first
+		long leadingBits = Long.reverseBytes(hf.hashString(s, StandardCharsets.US_ASCII).asLong());
+		return leadingBits >>> (64 - 6 * chars);
+	}
+	/**
+	 * Decodes the given url-safe Base64 characters
+	 * @return 6 bits per character, or -1 if the string contains a non-Base64 character
+	 */
+	private static long decodeBits(String s, int offset, int chars) {
+		long bits = 0;
+		for (int i = offset; i < offset + chars; i++) {
+			char c = s.charAt(i);
+			int value;
+			if (c >= 'A' && c <= 'Z') value = c - 'A';
+			else if (c >= 'a' && c <= 'z') value = c - 'a' + 26;
+			else if (c >= '0' && c <= '9') value = c - '0' + 52;
+			else if (c == '-') value = 62;
+			else if (c == '_') value = 63;
+			else return -1;
+			bits = (bits << 6) | value;
+		}
+		return bits;
+	}
+	private long[] getEvidenceIdentifier(SAMRecord record, String unhashedEvidenceId) {
+		long high = hashBits(gen.getSegmentUniqueName(record), segmentIdentifierChars);
+		long low = (hashBits(gen.getAlignmentUniqueName(record), alignmentIdentifierChars) << (6 * evidenceidIdentifierChars))
+				| hashBits(unhashedEvidenceId, evidenceidIdentifierChars);
+		return new long[] { high, low };
+	}
+	@Override
+	public long[] getEvidenceIdentifier(String evidenceId) {
+		if (evidenceId.length() == segmentUniqueBytes + alignmentUniqueBytes + evidenceidUniqueBytes) {
+			long high = decodeBits(evidenceId, 0, segmentIdentifierChars);
+			long alignment = decodeBits(evidenceId, segmentUniqueBytes, alignmentIdentifierChars);
+			long evidence = decodeBits(evidenceId, segmentUniqueBytes + alignmentUniqueBytes, evidenceidIdentifierChars);
+			if (high >= 0 && alignment >= 0 && evidence >= 0) {
+				return new long[] { high, (alignment << (6 * evidenceidIdentifierChars)) | evidence };
+			}
+		}
+		// not generated by this generator
+		return StringEvidenceIdentifierGenerator.hashEvidenceID(evidenceId);
+	}
+	@Override
+	public long[] getEvidenceIdentifier(NonReferenceReadPair e) {
+		return getEvidenceIdentifier(e.getLocalledMappedRead(), gen.getEvidenceID(e));
+	}
+	@Override
+	public long[] getEvidenceIdentifier(SoftClipEvidence e) {
+		return getEvidenceIdentifier(e.getSAMRecord(), gen.getEvidenceID(e));
+	}
+	@Override
+	public long[] getEvidenceIdentifier(SplitReadEvidence e) {
+		return getEvidenceIdentifier(e.getSAMRecord(), gen.getEvidenceID(e));
+	}
+	@Override
+	public long[] getEvidenceIdentifier(IndelEvidence e) {
+		return getEvidenceIdentifier(e.getSAMRecord(), gen.getEvidenceID(e));
+	}
 	@Override
 	public String extractAlignmentUniqueName(String evidenceId) {
 		return evidenceId.substring(0, segmentUniqueBytes + alignmentUniqueBytes);
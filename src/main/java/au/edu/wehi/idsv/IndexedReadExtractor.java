@@ -3,17 +3,32 @@ package au.edu.wehi.idsv;
 import au.edu.wehi.idsv.bed.IntervalBed;
 import au.edu.wehi.idsv.sam.ChimericAlignment;
 import au.edu.wehi.idsv.sam.SAMFileUtil;
-import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import htsjdk.samtools.*;
 import htsjdk.samtools.util.Log;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static au.edu.wehi.idsv.sam.ChimericAlignment.getChimericAlignments;
 
+/**
+ * Extracts reads using indexed queries.
+ *
+ * Query intervals are split into contiguous shards, each of which is queried
+ * on a separate thread with its own reader. The per-shard outputs are coordinate
+ * sorted so can be merged directly into the final output.
+ */
 public class IndexedReadExtractor extends ReadExtractor {
     private static final Log log = Log.getInstance(IndexedReadExtractor.class);
     public IndexedReadExtractor(LinearGenomicCoordinate lgc, IntervalBed bed, boolean extractMates, boolean extractSplits) {
@@ -22,29 +37,86 @@ public class IndexedReadExtractor extends ReadExtractor {
 
     @Override
     public void extract(File input, File output, int workerThreads) throws IOException {
-        extract(input, output, getRegionBed().asQueryInterval());
+        int shardCount = Math.max(1, workerThreads);
+        ExecutorService threadpool = shardCount == 1 ? MoreExecutors.newDirectExecutorService() :
+                Executors.newFixedThreadPool(shardCount, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("IndexedReadExtractor-%d").build());
+        try {
+            extract(input, output, getRegionBed().asQueryInterval(), shardCount, threadpool);
+        } finally {
+            threadpool.shutdownNow();
+        }
     }
-    private void extract(File input, File output, QueryInterval[] intervals) throws IOException {
-        IntervalBed remoteLocations = new IntervalBed(getLinearGenomicCoordinate());
-        boolean shouldLookupUnmapped = false;
-        File regionOut = FileSystemContext.getWorkingFileFor(output);
-        File offTargetOut =  FileSystemContext.getWorkingFileFor(output, "mate_splits");
+    private void extract(File input, File output, QueryInterval[] intervals, int shardCount, ExecutorService threadpool) throws IOException {
+        SAMFileHeader header;
         try (SamReader reader = SamReaderFactory.makeDefault().open(input)) {
             if (!reader.hasIndex()) {
                 throw new RuntimeException("Missing BAM index for " + input.getName());
             }
-            SAMFileHeader header = reader.getFileHeader();
+            header = reader.getFileHeader();
+        }
+        List<File> shardOutputs = new ArrayList<>();
+        try {
             log.info(String.format("Extracting %d intervals.", intervals.length));
+            List<QueryInterval[]> shards = shard(intervals, shardCount);
+            List<IntervalBed> remoteLocations = new ArrayList<>();
+            AtomicBoolean shouldLookupUnmapped = new AtomicBoolean(false);
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < shards.size(); i++) {
+                QueryInterval[] shard = shards.get(i);
+                QueryInterval previous = previousShardEnd(shards, i);
+                IntervalBed shardRemoteLocations = new IntervalBed(getLinearGenomicCoordinate());
+                File shardOut = FileSystemContext.getWorkingFileFor(output, String.format("gridss.tmp.region%d.", i));
+                remoteLocations.add(shardRemoteLocations);
+                shardOutputs.add(shardOut);
+                tasks.add(() -> {
+                    extractRegion(input, header, shard, previous, shardOut, shardRemoteLocations, shouldLookupUnmapped);
+                    return null;
+                });
+            }
+            runTasks(threadpool, tasks);
+            // iterator over remote targets
+            QueryInterval[] offTarget = IntervalBed.merge(getLinearGenomicCoordinate(), remoteLocations).asQueryInterval();
+            log.info(String.format("Querying %d intervals for mates and split reads.", offTarget.length));
+            shards = shard(offTarget, shardCount);
+            tasks.clear();
+            for (int i = 0; i < shards.size(); i++) {
+                QueryInterval[] shard = shards.get(i);
+                QueryInterval previous = previousShardEnd(shards, i);
+                File shardOut = FileSystemContext.getWorkingFileFor(output, String.format("gridss.tmp.mate_splits%d.", i));
+                shardOutputs.add(shardOut);
+                tasks.add(() -> {
+                    extractRemote(input, header, shard, previous, shardOut);
+                    return null;
+                });
+            }
+            if (shouldLookupUnmapped.get()) {
+                File unmappedOut = FileSystemContext.getWorkingFileFor(output, "gridss.tmp.unmapped.");
+                shardOutputs.add(unmappedOut);
+                tasks.add(() -> {
+                    extractUnmapped(input, header, unmappedOut);
+                    return null;
+                });
+            }
+            runTasks(threadpool, tasks);
+            SAMFileUtil.merge(shardOutputs, output);
+        } finally {
+            for (File f : shardOutputs) {
+                Files.deleteIfExists(f.toPath());
+            }
+        }
+    }
+    private void extractRegion(File input, SAMFileHeader header, QueryInterval[] intervals, QueryInterval previous, File output,
+            IntervalBed remoteLocations, AtomicBoolean shouldLookupUnmapped) throws IOException {
+        try (SamReader reader = SamReaderFactory.makeDefault().open(input)) {
             try (SAMRecordIterator it = reader.query(intervals, false)) {
-                //ProgressLoggingSAMRecordIterator it = new ProgressLoggingSAMRecordIterator(it, new ProgressLogger(log));
-                try (SAMFileWriter writer = new SAMFileWriterFactory().setCompressionLevel(0).makeBAMWriter(header, true, regionOut)) {
+                try (SAMFileWriter writer = new SAMFileWriterFactory().setCompressionLevel(0).makeBAMWriter(header, true, output)) {
                     while (it.hasNext()) {
                         SAMRecord r = it.next();
-                        if (overlapsRegionBed(r)) {
+                        if (overlapsRegionBed(r) && !overlaps(previous, r)) {
                             writer.addAlignment(r);
                             if (shouldExtractMates() && r.getReadPairedFlag()) {
                                 if (r.getMateUnmappedFlag()) {
-                                    shouldLookupUnmapped = true;
+                                    shouldLookupUnmapped.set(true);
                                 } else {
                                     remoteLocations.addInterval(r.getMateReferenceIndex(), r.getMateAlignmentStart(), r.getMateAlignmentStart());
                                 }
@@ -59,32 +131,88 @@ public class IndexedReadExtractor extends ReadExtractor {
                     }
                 }
             }
-            // iterator over remote targets
-            QueryInterval[] offTarget = remoteLocations.asQueryInterval();
-            log.info(String.format("Querying %d intervals for mates and split reads.", offTarget.length));
-            try (SAMFileWriter writer = new SAMFileWriterFactory().makeSAMOrBAMWriter(header, true, offTargetOut)) {
-                try (SAMRecordIterator it = reader.query(remoteLocations.asQueryInterval(), false)) {
+        }
+    }
+    private void extractRemote(File input, SAMFileHeader header, QueryInterval[] intervals, QueryInterval previous, File output) throws IOException {
+        try (SamReader reader = SamReaderFactory.makeDefault().open(input)) {
+            try (SAMRecordIterator it = reader.query(intervals, false)) {
+                try (SAMFileWriter writer = new SAMFileWriterFactory().setCompressionLevel(0).makeBAMWriter(header, true, output)) {
                     while (it.hasNext()) {
                         SAMRecord r = it.next();
-                        if (!overlapsRegionBed(r) && shouldExtract(r)) {
+                        if (!overlapsRegionBed(r) && !overlaps(previous, r) && shouldExtract(r)) {
                             writer.addAlignment(r);
                         }
                     }
                 }
-                if (shouldLookupUnmapped) {
-                    try (SAMRecordIterator it = reader.queryUnmapped()) {
-                        while (it.hasNext()) {
-                            SAMRecord r = it.next();
-                            if (shouldExtract(r)) {
-                                writer.addAlignment(r);
-                            }
+            }
+        }
+    }
+    private void extractUnmapped(File input, SAMFileHeader header, File output) throws IOException {
+        try (SamReader reader = SamReaderFactory.makeDefault().open(input)) {
+            try (SAMRecordIterator it = reader.queryUnmapped()) {
+                try (SAMFileWriter writer = new SAMFileWriterFactory().setCompressionLevel(0).makeBAMWriter(header, true, output)) {
+                    while (it.hasNext()) {
+                        SAMRecord r = it.next();
+                        if (shouldExtract(r)) {
+                            writer.addAlignment(r);
                         }
                     }
                 }
             }
         }
-        SAMFileUtil.merge(ImmutableList.of(regionOut, offTargetOut), output);
-        Files.delete(regionOut.toPath());
-        Files.delete(offTargetOut.toPath());
+    }
+    /**
+     * Splits the given sorted, non-overlapping intervals into contiguous shards
+     * @return at least one shard
+     */
+    private static List<QueryInterval[]> shard(QueryInterval[] intervals, int shardCount) {
+        List<QueryInterval[]> shards = new ArrayList<>();
+        int n = Math.max(1, Math.min(shardCount, intervals.length));
+        for (int i = 0; i < n; i++) {
+            shards.add(Arrays.copyOfRange(intervals, (int)((long)intervals.length * i / n), (int)((long)intervals.length * (i + 1) / n)));
+        }
+        return shards;
+    }
+    /**
+     * Gets the last interval of the shard preceding the given shard.
+     *
+     * Records overlapping intervals in multiple shards are returned by the query of each shard.
+     * A record is only written by the first shard it is returned by. Since records are contiguous,
+     * any record that overlaps an interval from an earlier shard as well as an interval from the
+     * current shard must also overlap the last interval of the previous shard.
+     */
+    private static QueryInterval previousShardEnd(List<QueryInterval[]> shards, int shardIndex) {
+        for (int i = shardIndex - 1; i >= 0; i--) {
+            QueryInterval[] shard = shards.get(i);
+            if (shard.length > 0) {
+                return shard[shard.length - 1];
+            }
+        }
+        return null;
+    }
+    private static boolean overlaps(QueryInterval qi, SAMRecord r) {
+        if (qi == null || r.getReferenceIndex() != qi.referenceIndex) return false;
+        int start = r.getAlignmentStart();
+        int end = r.getReadUnmappedFlag() ? start : Math.max(start, r.getAlignmentEnd());
+        return start <= (qi.end <= 0 ? Integer.MAX_VALUE : qi.end) && end >= qi.start;
+    }
+    private static void runTasks(ExecutorService threadpool, List<Callable<Void>> tasks) throws IOException {
+        List<Future<Void>> futures = new ArrayList<>();
+        for (Callable<Void> task : tasks) {
+            futures.add(threadpool.submit(task));
+        }
+        for (Future<Void> f : futures) {
+            try {
+                f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (Exception e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException)e.getCause();
+                }
+                throw new RuntimeException(e);
+            }
+        }
     }
 }
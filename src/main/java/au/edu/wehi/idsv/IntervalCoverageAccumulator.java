@@ -26,6 +26,32 @@ public class IntervalCoverageAccumulator {
 		this.dictionary = dictionary;
 		this.coverage = initCoverage(dictionary, binWidth, it);
 	}
+	private IntervalCoverageAccumulator(IntervalCoverageAccumulator template, int referenceIndex) {
+		this.method = template.method;
+		this.dictionary = template.dictionary;
+		this.coverage = new IntervalAccumulator[template.coverage.length];
+		this.coverage[referenceIndex] = template.coverage[referenceIndex].emptyCopy();
+	}
+	/**
+	 * Creates an empty accumulator for a single contig.
+	 * Shards can be independently populated and then merged back into this accumulator.
+	 * @param referenceIndex contig of the shard. Only reads mapped to this contig can be added to the shard.
+	 * @return empty accumulator with the same bins as this accumulator
+	 */
+	public IntervalCoverageAccumulator createShard(int referenceIndex) {
+		return new IntervalCoverageAccumulator(this, referenceIndex);
+	}
+	/**
+	 * Adds the coverage of the given shard to this accumulator
+	 * @param shard shard created by createShard()
+	 */
+	public void merge(IntervalCoverageAccumulator shard) {
+		for (int i = 0; i < coverage.length; i++) {
+			if (shard.coverage[i] != null) {
+				coverage[i].merge(shard.coverage[i]);
+			}
+		}
+	}
 	private static IntervalAccumulator[] initCoverage(SAMSequenceDictionary dictionary, int binWidth, Iterator<VariantContextDirectedEvidence> it) {
 		IntervalAccumulator[] coverage = new IntervalAccumulator[dictionary.getSequences().size()];
 		for (int i = 0; i < coverage.length; i++) {
@@ -26,6 +26,9 @@ public abstract class NonReferenceReadPair implements DirectedEvidence {
 	private final BreakendSummary location;
 	private final SAMEvidenceSource source;
 	private String evidenceID = null;
+	private long evidenceIdentifierHigh;
+	private long evidenceIdentifierLow;
+	private volatile boolean hasEvidenceIdentifier = false;
 	private String associatedAssemblyName;
 	protected NonReferenceReadPair(SAMRecord local, SAMRecord remote, SAMEvidenceSource source) {
 		if (local == null) throw new IllegalArgumentException("local is null");
@@ -267,6 +270,25 @@ public abstract class NonReferenceReadPair implements DirectedEvidence {
 		}
 		return evidenceID;
 	}
+	private void ensureEvidenceIdentifier() {
+		if (!hasEvidenceIdentifier) {
+			EvidenceIdentifierGenerator gen = source.getContext().getEvidenceIDGenerator();
+			long[] eid = evidenceID != null ? gen.getEvidenceIdentifier(evidenceID) : gen.getEvidenceIdentifier(this);
+			evidenceIdentifierHigh = eid[0];
+			evidenceIdentifierLow = eid[1];
+			hasEvidenceIdentifier = true;
+		}
+	}
+	@Override
+	public long getEvidenceIdentifierHigh() {
+		ensureEvidenceIdentifier();
+		return evidenceIdentifierHigh;
+	}
+	@Override
+	public long getEvidenceIdentifierLow() {
+		ensureEvidenceIdentifier();
+		return evidenceIdentifierLow;
+	}
 	@Override
 	public BreakendSummary getBreakendSummary() {
 		return location;
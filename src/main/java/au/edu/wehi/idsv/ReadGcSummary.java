@@ -1,5 +1,6 @@
 package au.edu.wehi.idsv;
 
+import au.edu.wehi.idsv.picard.TwoBitBufferedReferenceSequenceFile;
 import au.edu.wehi.idsv.sam.SAMRecordUtil;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SamPairUtil.PairOrientation;
@@ -15,6 +16,16 @@ public class ReadGcSummary {
 	public final int fragmentEnd;
 	public final double gcPercentage;
 	public ReadGcSummary(SAMRecord record, ReferenceSequence refSeq, int defaultFragmentSize, ReadPairConcordanceCalculator rpcc) {
+		this(record, defaultFragmentSize, rpcc, (start, end) -> getReferenceGCPercentage(start - 1, end, refSeq));
+	}
+	/**
+	 * Calculates fragment GC using the cumulative base counts of the 2bit reference.
+	 * This is a constant time lookup independent of the fragment size.
+	 */
+	public ReadGcSummary(SAMRecord record, TwoBitBufferedReferenceSequenceFile reference, int defaultFragmentSize, ReadPairConcordanceCalculator rpcc) {
+		this(record, defaultFragmentSize, rpcc, (start, end) -> getReferenceGCPercentage(record.getReferenceIndex(), start, end, reference));
+	}
+	private ReadGcSummary(SAMRecord record, int defaultFragmentSize, ReadPairConcordanceCalculator rpcc, FragmentGcLookup lookup) {
 		if (record.getReadUnmappedFlag()) {
 			throw new IllegalArgumentException("Read must be mapped.");
 		}
@@ -27,7 +38,23 @@ public class ReadGcSummary {
     		this.fragmentStart = record.getAlignmentStart();
     		this.fragmentEnd = fragmentStart + fragmentSize - 1;
     	}
-    	this.gcPercentage = getReferenceGCPercentage(fragmentStart -1, fragmentEnd, refSeq);    	
+    	this.gcPercentage = lookup.getGcPercentage(fragmentStart, fragmentEnd);
+	}
+	@FunctionalInterface
+	private interface FragmentGcLookup {
+		/**
+		 * @param start 1-based start position (inclusive)
+		 * @param end 1-based end position (inclusive)
+		 */
+		double getGcPercentage(int start, int end);
+	}
+	private static double getReferenceGCPercentage(int referenceIndex, int start, int end, TwoBitBufferedReferenceSequenceFile reference) {
+		int gcCount = reference.getGcCount(referenceIndex, start, end);
+		int totalCount = reference.getUnambiguousCount(referenceIndex, start, end);
+		if (totalCount == 0) {
+			return UNDEFINED_GC;
+		}
+		return gcCount / (double)totalCount;
 	}
 	private static double getReferenceGCPercentage(int zeroBasedStartInclusive, int zeroBasedEndExclusive, ReferenceSequence refSeq) {
     	byte[] ref = refSeq.getBases();
@@ -14,6 +14,9 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import gridss.ComputeSamTags;
 import gridss.ExtractSVReads;
 import gridss.SoftClipsToSplitReads;
@@ -31,8 +34,12 @@ import picard.cmdline.CommandLineProgram;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 /**
@@ -275,6 +282,70 @@ public class SAMEvidenceSource extends EvidenceSource {
 		Iterator<DirectedEvidence> eit = asEvidence(it, eso);
 		return new AutoClosingIterator<>(eit, reader, it);
 	}
+	private EvidenceSummaryFile evidenceSummary = null;
+	/**
+	 * Ensures the compact breakend summary of this evidence source exists, is
+	 * at least as recent as the underlying evidence, and was generated using
+	 * the current evidence filtering configuration.
+	 */
+	public synchronized EvidenceSummaryFile ensureEvidenceSummary() throws IOException {
+		if (evidenceSummary == null) {
+			File summaryFile = getContext().getFileSystemContext().getEvidenceSummary(getFile());
+			File svFile = getSVFile();
+			File evidenceFile = svFile.exists() ? svFile : getFile();
+			long fingerprint = getEvidenceFilterFingerprint();
+			if (summaryFile.lastModified() < evidenceFile.lastModified() || !EvidenceSummaryFile.hasFingerprint(summaryFile, fingerprint)) {
+				log.info("Writing evidence summary " + summaryFile);
+				try (CloseableIterator<DirectedEvidence> it = iterator(EvidenceSortOrder.EvidenceStartPosition)) {
+					EvidenceSummaryFile.write(summaryFile, fingerprint, getContext().getLinear(), it);
+				}
+			}
+			evidenceSummary = EvidenceSummaryFile.open(summaryFile, this, getContext().getLinear());
+		}
+		return evidenceSummary;
+	}
+	/**
+	 * Fingerprint of the configuration used to filter and transform records into evidence
+	 */
+	long getEvidenceFilterFingerprint() {
+		GridssConfiguration config = getContext().getConfig();
+		SoftClipConfiguration scc = config.getSoftClip();
+		Hasher hasher = Hashing.murmur3_128().newHasher()
+				.putDouble(config.minMapq)
+				.putBoolean(getContext().isFilterDuplicates())
+				.putInt(scc.minLength)
+				.putFloat(scc.minAverageQual)
+				.putFloat(scc.minAnchorIdentity)
+				.putDouble(config.minAnchorShannonEntropy)
+				.putInt(minIndelSize())
+				.putInt(rpcMinFragmentSize == null ? -1 : rpcMinFragmentSize)
+				.putInt(rpcMaxFragmentSize == null ? -1 : rpcMaxFragmentSize)
+				.putDouble(rpcConcordantPercentage == null ? -1 : rpcConcordantPercentage);
+		for (String adapter : config.adapters.getAdapterSequences()) {
+			hasher.putString(adapter, StandardCharsets.US_ASCII);
+		}
+		for (QueryInterval qi : getBlacklistedRegions().asQueryInterval()) {
+			hasher.putInt(qi.referenceIndex).putInt(qi.start).putInt(qi.end);
+		}
+		return hasher.hash().asLong();
+	}
+	/**
+	 * Iterates over the breakend summary of the evidence overlapping the given intervals
+	 * in breakend start position order.
+	 * 
+	 * Only the breakend location, quality and evidence ID of the returned evidence are available.
+	 */
+	public CloseableIterator<DirectedEvidence> summaryIterator(final QueryInterval[] intervals) {
+		try {
+			CloseableIterator<DirectedEvidence> it = ensureEvidenceSummary().iterator(intervals);
+			if (Defaults.SANITY_CHECK_ITERATORS) {
+				it = new AutoClosingIterator<>(new OrderAssertingIterator<>(it, DirectedEvidenceOrder.ByNatural), it);
+			}
+			return it;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
 	protected SamReader getReader() {
 		File svFile = getSVFile();
 		SamReader reader = getProcessContext().getSamReader(svFile.exists() ? svFile : getFile());
@@ -293,13 +364,35 @@ public class SAMEvidenceSource extends EvidenceSource {
 			throw new IllegalStateException(String.format("Missing required file %s. See GRIDSS pipeline examples and documentation.", svFile));
 		}
 	}
+	/**
+	 * Shared pool for record to evidence conversion.
+	 * This pool is separate to the worker pool as the consuming threads
+	 * are typically worker threads themselves. 
+	 */
+	private static class EvidenceTransformThreadPool {
+		private static final ExecutorService POOL = Executors.newFixedThreadPool(Math.max(1, Defaults.EVIDENCE_TRANSFORM_THREADS),
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("EvidenceTransform-%d").build());
+	}
+	private static final int EVIDENCE_TRANSFORM_BATCH_SIZE = 256;
+	/**
+	 * Maximum number of batches each iterator reads ahead. This is independent of the
+	 * number of transform threads as many iterators share the pool concurrently.
+	 */
+	private static final int EVIDENCE_TRANSFORM_BATCHES_IN_FLIGHT = 4;
 	private Iterator<DirectedEvidence> asEvidence(Iterator<SAMRecord> it, EvidenceSortOrder eso) {
 		it = new BufferedIterator<>(it, 2); // TODO: remove when https://github.com/samtools/htsjdk/issues/760 is resolved
-		it = Iterators.filter(it, r -> !shouldFilterPreTransform(r));
-		it = Iterators.transform(it, r -> transform(r));
-		it = Iterators.filter(it, r -> !shouldFilter(r));		
-		Iterator<DirectedEvidence> eit = new DirectedEvidenceIterator(it, this, minIndelSize());
-		eit = Iterators.filter(eit, e -> !shouldFilter(e));
+		Iterator<DirectedEvidence> eit;
+		if (Defaults.EVIDENCE_TRANSFORM_THREADS > 0) {
+			int minIndelSize = minIndelSize();
+			eit = new BatchedParallelTransformIterator<>(it, r -> asEvidence(r, minIndelSize),
+					EVIDENCE_TRANSFORM_BATCH_SIZE, Math.min(EVIDENCE_TRANSFORM_BATCHES_IN_FLIGHT, 2 * Defaults.EVIDENCE_TRANSFORM_THREADS), EvidenceTransformThreadPool.POOL);
+		} else {
+			it = Iterators.filter(it, r -> !shouldFilterPreTransform(r));
+			it = Iterators.transform(it, r -> transform(r));
+			it = Iterators.filter(it, r -> !shouldFilter(r));
+			eit = new DirectedEvidenceIterator(it, this, minIndelSize());
+			eit = Iterators.filter(eit, e -> !shouldFilter(e));
+		}
 		switch (eso) {
 			case SAMRecordStartPosition:
 				// already sorted by coordinate
@@ -317,6 +410,22 @@ public class SAMEvidenceSource extends EvidenceSource {
 		}
 		return eit;
 	}
+	/**
+	 * Converts a single record to evidence, applying all record and evidence filters.
+	 */
+	private List<DirectedEvidence> asEvidence(SAMRecord r, int minIndelSize) {
+		if (shouldFilterPreTransform(r)) {
+			return ImmutableList.of();
+		}
+		r = transform(r);
+		if (shouldFilter(r)) {
+			return ImmutableList.of();
+		}
+		List<DirectedEvidence> evidence = new ArrayList<>(2);
+		DirectedEvidenceIterator.addEvidence(this, minIndelSize, r, evidence);
+		evidence.removeIf(e -> shouldFilter(e));
+		return evidence;
+	}
 	private static float average(byte[] values) {
 		float total = 0;
 		for (byte b : values) {
@@ -579,6 +688,13 @@ public class SAMEvidenceSource extends EvidenceSource {
 		CloseableIterator<DirectedEvidence> merged = new AutoClosingMergedIterator<DirectedEvidence>(toMerge,  eso == EvidenceSortOrder.EvidenceStartPosition ? DirectedEvidenceOrder.ByNatural : DirectedEvidenceOrder.BySAMStart);
 		return merged;
 	}
+	public static CloseableIterator<DirectedEvidence> mergedSummaryIterator(final List<SAMEvidenceSource> source, final QueryInterval[] intervals) {
+		List<CloseableIterator<DirectedEvidence>> toMerge = Lists.newArrayList();
+		for (SAMEvidenceSource bam : source) {
+			toMerge.add(bam.summaryIterator(intervals));
+		}
+		return new AutoClosingMergedIterator<DirectedEvidence>(toMerge, DirectedEvidenceOrder.ByNatural);
+	}
 	/**
 	 * Maximum distance between the SAM alignment location of evidence, and the extrema of the
 	 * breakend position supported by that evidence. 
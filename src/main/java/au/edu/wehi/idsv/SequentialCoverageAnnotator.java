@@ -18,7 +18,6 @@ import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-import java.util.stream.IntStream;
 
 
 /**
@@ -80,12 +79,12 @@ public class SequentialCoverageAnnotator<T extends VariantContextDirectedEvidenc
 		public final int readPairsSupportingNoBreakendAfter;
 	}
 	private static CoverageResult calculateCoverage(ReferenceCoverageLookup lookup, int referenceIndex, int start, int end) {
-		int reads = IntStream.range(start, end)
-				.map(p -> lookup.readsSupportingNoBreakendAfter(referenceIndex, p))
-				.min().getAsInt();
-		int spans = IntStream.range(start, end)
-				.map(p -> lookup.readPairsSupportingNoBreakendAfter(referenceIndex, p))
-				.min().getAsInt();
+		int reads = Integer.MAX_VALUE;
+		int spans = Integer.MAX_VALUE;
+		for (int p = start; p < end; p++) {
+			reads = Math.min(reads, lookup.readsSupportingNoBreakendAfter(referenceIndex, p));
+			spans = Math.min(spans, lookup.readPairsSupportingNoBreakendAfter(referenceIndex, p));
+		}
 		return new CoverageResult(reads, spans);
 	}
 	@SuppressWarnings("unchecked")
@@ -96,8 +95,11 @@ public class SequentialCoverageAnnotator<T extends VariantContextDirectedEvidenc
 		int start = loc.start + offset;
 		int end = loc.end + 1 + offset;
 		List<Future<CoverageResult>> tasks = new ArrayList<>();
-		for (ReferenceCoverageLookup rcl : reference) {
-			tasks.add(threadpool.submit(() -> calculateCoverage(rcl, referenceIndex, start, end)));
+		if (threadpool != null && reference.size() > 1) {
+			// each input is processed on its own thread
+			for (ReferenceCoverageLookup rcl : reference) {
+				tasks.add(threadpool.submit(() -> calculateCoverage(rcl, referenceIndex, start, end)));
+			}
 		}
 		try {
 			int[] reads = new int[context.getCategoryCount()];
@@ -105,8 +107,9 @@ public class SequentialCoverageAnnotator<T extends VariantContextDirectedEvidenc
 			for (int i = 0; i < reference.size(); i++) {
 				ReferenceCoverageLookup rcl = reference.get(i);
 				assert(rcl.getCategory() < context.getCategoryCount());
-				reads[rcl.getCategory()] += tasks.get(i).get().readsSupportingNoBreakendAfter;
-				spans[rcl.getCategory()] += tasks.get(i).get().readPairsSupportingNoBreakendAfter;
+				CoverageResult cr = tasks.isEmpty() ? calculateCoverage(rcl, referenceIndex, start, end) : tasks.get(i).get();
+				reads[rcl.getCategory()] += cr.readsSupportingNoBreakendAfter;
+				spans[rcl.getCategory()] += cr.readPairsSupportingNoBreakendAfter;
 			}
 			IdsvVariantContextBuilder builder = new IdsvVariantContextBuilder(context, variant);
 			builder.referenceReads(reads);
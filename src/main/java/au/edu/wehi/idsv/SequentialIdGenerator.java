@@ -3,18 +3,29 @@ package au.edu.wehi.idsv;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class SequentialIdGenerator implements VariantIdGenerator, AssemblyIdGenerator {
-	private final AtomicInteger id = new AtomicInteger(0);
+	private final AtomicInteger id;
+	private final int step;
 	private final String prefix;
 	private final String suffix;
 	public SequentialIdGenerator(String prefix) {
 		this(prefix, "");
 	}
 	public SequentialIdGenerator(String prefix, String suffix) {
+		this(prefix, suffix, 1, 1);
+	}
+	/**
+	 * Generates the identifiers firstId, firstId + step, firstId + 2 * step, ...
+	 * 
+	 * Generators with the same step and distinct firstId less than step generate disjoint identifiers.
+	 */
+	public SequentialIdGenerator(String prefix, String suffix, int firstId, int step) {
 		this.prefix = prefix;
 		this.suffix = suffix;
+		this.id = new AtomicInteger(firstId);
+		this.step = step;
 	}
 	public String generate() {
-		return String.format("%s%d%s", prefix, id.incrementAndGet(), suffix);
+		return String.format("%s%d%s", prefix, id.getAndAdd(step), suffix);
 	}
 	@Override
 	public String generate(BreakendSummary breakpoint, byte[] baseCalls, int startAnchoredBaseCount, int endAnchoredBaseCount) {
@@ -1,17 +1,17 @@
 package au.edu.wehi.idsv;
 
-import au.edu.wehi.idsv.util.SlidingWindowList;
+import au.edu.wehi.idsv.util.IntSlidingWindowList;
 import au.edu.wehi.idsv.visualisation.TrackedBuffer;
 import com.google.common.collect.*;
 import gridss.analysis.IdsvMetrics;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.filter.*;
+import it.unimi.dsi.fastutil.ints.IntHeapPriorityQueue;
 
 import java.io.Closeable;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.PriorityQueue;
 
 /**
  * Counts the number of reads and read pairs providing support for the
@@ -25,9 +25,12 @@ public class SequentialReferenceCoverageLookup implements Closeable, ReferenceCo
 	private final List<Closeable> toClose = Lists.newArrayList();
 	private final PeekingIterator<SAMRecord> reads;
 	private final ReadPairConcordanceCalculator pairing;
-	private final PriorityQueue<Integer> currentReferenceRead = Queues.newPriorityQueue();
-	private final PriorityQueue<Integer> currentStartReferencePairs = Queues.newPriorityQueue();
-	private final PriorityQueue<Integer> currentEndReferencePairs = Queues.newPriorityQueue();
+	/**
+	 * Primitive heaps as every read and read pair passes through these queues 
+	 */
+	private final IntHeapPriorityQueue currentReferenceRead = new IntHeapPriorityQueue();
+	private final IntHeapPriorityQueue currentStartReferencePairs = new IntHeapPriorityQueue();
+	private final IntHeapPriorityQueue currentEndReferencePairs = new IntHeapPriorityQueue();
 	/**
 	 * Maximum distance from read alignment start to last concordant support position 
 	 */
@@ -35,8 +38,8 @@ public class SequentialReferenceCoverageLookup implements Closeable, ReferenceCo
 	private int currentReferenceIndex = -1;
 	private int currentPosition;
 	private int largestWindow;
-	private SlidingWindowList<Integer> readCounts;
-	private SlidingWindowList<Integer> pairCounts;
+	private IntSlidingWindowList readCounts;
+	private IntSlidingWindowList pairCounts;
 	/**
 	 * Used to check the data is sequential
 	 */
@@ -74,15 +77,13 @@ public class SequentialReferenceCoverageLookup implements Closeable, ReferenceCo
 		}
 		toClose.clear();
 	}
-	private int getCount(SlidingWindowList<Integer> counts, int referenceIndex, int position) {
+	private int getCount(IntSlidingWindowList counts, int referenceIndex, int position) {
 		if (counts.size() <= position) return 0;
 		// 10 10 0 good
 		// 2 1 1 good
 		// 0 1 1 bad
 		if (position < counts.size() - counts.getWindowSize()) throw new IllegalArgumentException(String.format("position %d outside of window of size %d ending at position %d", position, counts.getWindowSize(), counts.size()));
-		Integer count = counts.get(position);
-		if (count == null) return 0;
-		return (int)count;
+		return counts.get(position);
 	}
 	/* (non-Javadoc)
 	 * @see au.edu.wehi.idsv.ReferenceCoverageLookup#readsSupportingNoBreakendAfter(int, int)
@@ -121,8 +122,8 @@ public class SequentialReferenceCoverageLookup implements Closeable, ReferenceCo
 			currentReferenceRead.clear();
 			currentStartReferencePairs.clear();
 			currentEndReferencePairs.clear();
-			readCounts = new SlidingWindowList<Integer>(largestWindow);
-			pairCounts = new SlidingWindowList<Integer>(largestWindow);
+			readCounts = new IntSlidingWindowList(largestWindow);
+			pairCounts = new IntSlidingWindowList(largestWindow);
 		}
 		// skip until we're close to out window
 		while (reads.hasNext() && reads.peek().getReferenceIndex() < currentReferenceIndex) {
@@ -163,10 +164,10 @@ public class SequentialReferenceCoverageLookup implements Closeable, ReferenceCo
 	private void addRead(SAMRecord read) {
 		if (read.getReadUnmappedFlag()) return;
 		// TODO: process CIGAR instead of just taking the whole alignment length as support for the reference
-		currentReferenceRead.add(read.getAlignmentEnd());
+		currentReferenceRead.enqueue(read.getAlignmentEnd());
 		if (isLowerMappedOfNonOverlappingConcordantPair(read)) {
-			currentStartReferencePairs.add(read.getAlignmentEnd());
-			currentEndReferencePairs.add(read.getMateAlignmentStart());
+			currentStartReferencePairs.enqueue(read.getAlignmentEnd());
+			currentEndReferencePairs.enqueue(read.getMateAlignmentStart());
 		}
 	}
 	/**
@@ -174,9 +175,9 @@ public class SequentialReferenceCoverageLookup implements Closeable, ReferenceCo
 	 * at the given current position
 	 */
 	private void flushQueues() {
-		while (!currentReferenceRead.isEmpty() && currentReferenceRead.peek() <= currentPosition) currentReferenceRead.poll();
-		while (!currentStartReferencePairs.isEmpty() && currentStartReferencePairs.peek() <= currentPosition) currentStartReferencePairs.poll();
-		while (!currentEndReferencePairs.isEmpty() && currentEndReferencePairs.peek() <= currentPosition) currentEndReferencePairs.poll();
+		while (!currentReferenceRead.isEmpty() && currentReferenceRead.firstInt() <= currentPosition) currentReferenceRead.dequeueInt();
+		while (!currentStartReferencePairs.isEmpty() && currentStartReferencePairs.firstInt() <= currentPosition) currentStartReferencePairs.dequeueInt();
+		while (!currentEndReferencePairs.isEmpty() && currentEndReferencePairs.firstInt() <= currentPosition) currentEndReferencePairs.dequeueInt();
 	}
 	private boolean isLowerMappedOfNonOverlappingConcordantPair(SAMRecord read) {
 		return !read.getReadUnmappedFlag()
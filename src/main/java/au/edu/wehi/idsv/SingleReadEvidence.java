@@ -32,6 +32,9 @@ public abstract class SingleReadEvidence implements DirectedEvidence {
 	 */
 	private final int nominalOffset;
 	private String evidenceid;
+	private long evidenceIdentifierHigh;
+	private long evidenceIdentifierLow;
+	private volatile boolean hasEvidenceIdentifier = false;
 	private boolean unableToCalculateHomology = false;
 	private String associatedAssemblyName;
 	private int assemblyOffset = Integer.MIN_VALUE;
@@ -323,6 +326,30 @@ public abstract class SingleReadEvidence implements DirectedEvidence {
 		}
 		return evidenceid;
 	}
+
+	protected abstract long[] getUncachedEvidenceIdentifier();
+
+	private void ensureEvidenceIdentifier() {
+		if (!hasEvidenceIdentifier) {
+			// decoding a previously generated evidenceID is cheaper than recalculating the identifier
+			long[] eid = evidenceid != null ? source.getContext().getEvidenceIDGenerator().getEvidenceIdentifier(evidenceid) : getUncachedEvidenceIdentifier();
+			evidenceIdentifierHigh = eid[0];
+			evidenceIdentifierLow = eid[1];
+			hasEvidenceIdentifier = true;
+		}
+	}
+
+	@Override
+	public long getEvidenceIdentifierHigh() {
+		ensureEvidenceIdentifier();
+		return evidenceIdentifierHigh;
+	}
+
+	@Override
+	public long getEvidenceIdentifierLow() {
+		ensureEvidenceIdentifier();
+		return evidenceIdentifierLow;
+	}
 	
 	public String getHomologySequence() {
 		if (unableToCalculateHomology) throw new IllegalStateException("Unable to calculate homology as reference genome has not been supplied");
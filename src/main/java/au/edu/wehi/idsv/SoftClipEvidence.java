@@ -62,6 +62,10 @@ public class SoftClipEvidence extends SingleReadEvidence {
 		return source.getContext().getEvidenceIDGenerator().getEvidenceID(this);
 	}
 	@Override
+	protected long[] getUncachedEvidenceIdentifier() {
+		return source.getContext().getEvidenceIDGenerator().getEvidenceIdentifier(this);
+	}
+	@Override
 	public boolean isReference() {
 		return false;
 	}
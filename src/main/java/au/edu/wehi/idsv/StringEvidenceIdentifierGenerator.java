@@ -1,12 +1,47 @@
 package au.edu.wehi.idsv;
 
 import au.edu.wehi.idsv.sam.SAMRecordUtil;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.primitives.Longs;
 import htsjdk.samtools.SAMRecord;
 
 public class StringEvidenceIdentifierGenerator implements EvidenceIdentifierGenerator {
 	// can't use /1 and /2 since bwa strips it from the read name during alignment
 	// so realignment will fail
 	private static final char SEPERATOR = '#';
+	private static final HashFunction hf = Hashing.murmur3_128();
+	/**
+	 * Hashes the given evidenceID to a 128 bit identifier.
+	 * Unhashed evidenceIDs are unbounded in length so the identifier is a hash of the full string.
+	 * @param evidenceId evidenceID
+	 * @return high and low 64 bits of the identifier
+	 */
+	public static long[] hashEvidenceID(String evidenceId) {
+		byte[] bytes = hf.hashUnencodedChars(evidenceId).asBytes();
+		return new long[] { Longs.fromBytes(bytes[0], bytes[1], bytes[2], bytes[3], bytes[4], bytes[5], bytes[6], bytes[7]),
+				Longs.fromBytes(bytes[8], bytes[9], bytes[10], bytes[11], bytes[12], bytes[13], bytes[14], bytes[15]) };
+	}
+	@Override
+	public long[] getEvidenceIdentifier(String evidenceId) {
+		return hashEvidenceID(evidenceId);
+	}
+	@Override
+	public long[] getEvidenceIdentifier(NonReferenceReadPair e) {
+		return hashEvidenceID(getEvidenceID(e));
+	}
+	@Override
+	public long[] getEvidenceIdentifier(SoftClipEvidence e) {
+		return hashEvidenceID(getEvidenceID(e));
+	}
+	@Override
+	public long[] getEvidenceIdentifier(SplitReadEvidence e) {
+		return hashEvidenceID(getEvidenceID(e));
+	}
+	@Override
+	public long[] getEvidenceIdentifier(IndelEvidence e) {
+		return hashEvidenceID(getEvidenceID(e));
+	}
 	@Override
 	public String getSegmentUniqueName(SAMRecord record) {
 		return buildSegmentUniqueName(record).toString();
@@ -1,6 +1,7 @@
 package au.edu.wehi.idsv;
 
 import au.edu.wehi.idsv.sam.CigarUtil;
+import au.edu.wehi.idsv.util.LongPairOpenHashSet;
 import au.edu.wehi.idsv.vcf.VcfFilter;
 import au.edu.wehi.idsv.vcf.VcfFormatAttributes;
 import au.edu.wehi.idsv.vcf.VcfInfoAttributes;
@@ -26,7 +27,7 @@ public class StructuralVariationCallBuilder extends IdsvVariantContextBuilder {
 	private final ProcessingContext processContext;
 	private final CalledBreakpointPositionLookup calledBreakpointLookup;
 	private final VariantContextDirectedEvidence parent;
-	private final Set<String> encounteredEvidenceIDs;
+	private final LongPairOpenHashSet encounteredEvidenceIDs;
 	private final List<DirectedBreakpoint> supportingBreakpoint = new ArrayList<>();
 	private final List<DirectedEvidence> supportingBreakend = new ArrayList<>();
 	// breakpoint support
@@ -50,7 +51,7 @@ public class StructuralVariationCallBuilder extends IdsvVariantContextBuilder {
 		this.calledBreakpointLookup = calledBreakpointLookup;
 		this.processContext = processContext;
 		this.parent = parent;
-		this.encounteredEvidenceIDs = deduplicateEvidence ? new HashSet<String>() : null;
+		this.encounteredEvidenceIDs = deduplicateEvidence ? new LongPairOpenHashSet() : null;
 		ensureGenotypeBuilders(processContext);
 		for (int i = 0; i < processContext.getCategoryCount(); i++) {
 			supportingSR.add(new ArrayList<>());
@@ -76,11 +77,10 @@ public class StructuralVariationCallBuilder extends IdsvVariantContextBuilder {
 						parent.getBreakendSummary()));
 			}
 		}
-		String eid = evidence.getEvidenceID();
 		if (encounteredEvidenceIDs != null) {
-			if (encounteredEvidenceIDs.contains(eid)) {
+			if (!encounteredEvidenceIDs.add(evidence.getEvidenceIdentifierHigh(), evidence.getEvidenceIdentifierLow())) {
 				if (deduplicationMessageCount < gridss.Defaults.SUPPRESS_DATA_ERROR_MESSAGES_AFTER) { 
-					log.debug(String.format("Deduplicating %s from %s", eid, parent.getID()));
+					log.debug(String.format("Deduplicating %s from %s", evidence.getEvidenceID(), parent.getID()));
 					deduplicationMessageCount++;
 					if (deduplicationMessageCount == gridss.Defaults.SUPPRESS_DATA_ERROR_MESSAGES_AFTER) {
 						log.debug(String.format("Supressing further deduplication log messages."));
@@ -88,7 +88,6 @@ public class StructuralVariationCallBuilder extends IdsvVariantContextBuilder {
 				}
 				return this;
 			}
-			encounteredEvidenceIDs.add(eid);
 		}
 		if (evidence instanceof DirectedBreakpoint) {
 			supportingBreakpoint.add((DirectedBreakpoint)evidence);
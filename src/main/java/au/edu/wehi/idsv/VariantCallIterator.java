@@ -1,6 +1,6 @@
 package au.edu.wehi.idsv;
 
-import au.edu.wehi.idsv.util.DuplicatingIterable;
+import au.edu.wehi.idsv.util.RoutingIterable;
 import au.edu.wehi.idsv.visualisation.StateTracker;
 import au.edu.wehi.idsv.visualisation.TrackedState;
 import com.google.common.collect.ImmutableList;
@@ -26,9 +26,13 @@ import java.util.concurrent.LinkedBlockingDeque;
 public class VariantCallIterator implements CloseableIterator<VariantContextDirectedEvidence> {
 	private static final Log log = Log.getInstance(VariantCallIterator.class);
 	private static final int ITERATOR_BUFFER_SIZE = 256;
+	/**
+	 * Routes 0-3 are used by the breakpoint callers, with the breakend callers following
+	 */
+	private static final int BREAKEND_ROUTE_OFFSET = BreakendDirection.values().length * BreakendDirection.values().length;
 	private final VariantContextDirectedEvidence endOfStream;
 	private final ProcessingContext processContext;
-	private final DuplicatingIterable<DirectedEvidence> iterable;
+	private final RoutingIterable<DirectedEvidence> iterable;
 	private final QueryInterval[] filterInterval;
 	private final BlockingDeque<VariantContextDirectedEvidence> outBuffer = new LinkedBlockingDeque<>(ITERATOR_BUFFER_SIZE);
 	private VariantContextDirectedEvidence outBufferHeadNextValidRecord = null;
@@ -46,13 +50,14 @@ public class VariantCallIterator implements CloseableIterator<VariantContextDire
 		this.processContext = processContext;
 		boolean callBreakends = processContext.getVariantCallingParameters().callBreakends;
 		this.activeIterators = callBreakends ? 6 : 4;
-		this.iterable = new DuplicatingIterable<>(activeIterators, evidence, ITERATOR_BUFFER_SIZE);
+		// every route must have a consumer so breakend routes are only created when calling breakends
+		this.iterable = new RoutingIterable<>(activeIterators, evidence, e -> route(e, callBreakends), ITERATOR_BUFFER_SIZE);
 		this.filterInterval = interval;
 		for (BreakendDirection localDir : BreakendDirection.values()) {
 			for (BreakendDirection remoteDir : BreakendDirection.values()) {
 				MaximalEvidenceCliqueIterator it = new MaximalEvidenceCliqueIterator(
 						processContext,
-						this.iterable.iterator(),
+						this.iterable.iterator(breakpointRoute(localDir, remoteDir)),
 						localDir,
 						remoteDir,
 						new SequentialIdGenerator(String.format("gridss%d%s%s_", Math.max(intervalNumber, 0), localDir.toChar(), remoteDir.toChar())));
@@ -61,13 +66,41 @@ public class VariantCallIterator implements CloseableIterator<VariantContextDire
 			if (callBreakends) {
 				BreakendMaximalEvidenceCliqueIterator it = new BreakendMaximalEvidenceCliqueIterator(
 						processContext,
-						this.iterable.iterator(),
+						this.iterable.iterator(BREAKEND_ROUTE_OFFSET + localDir.ordinal()),
 						localDir,
 						new SequentialIdGenerator(String.format("gridss%d%s_", Math.max(intervalNumber, 0), localDir.toChar())));
 				async.add(new AsyncDirectionalIterator(it, localDir, null));
 			}
 		}
 	}
+	private static int breakpointRoute(BreakendDirection lowDir, BreakendDirection highDir) {
+		return lowDir.ordinal() * BreakendDirection.values().length + highDir.ordinal();
+	}
+	/**
+	 * Determines which caller should receive the given evidence.
+	 * 
+	 * Breakpoint callers only call from the lower half of each breakpoint so
+	 * evidence for the upper half is not routed to any caller.
+	 * @return caller route, or -1 if no caller requires the evidence
+	 */
+	private int route(DirectedEvidence e, boolean callBreakends) {
+		BreakendSummary loc = e.getBreakendSummary();
+		if (loc instanceof BreakpointSummary) {
+			BreakpointSummary bp = (BreakpointSummary)loc;
+			// Linear coordinates are ordered by contig then position so we don't need to
+			// convert to linear coordinates to determine which half the evidence is in.
+			// Invalid breakpoints are still routed so the caller can report them.
+			if (bp.isValid(processContext.getDictionary())
+					&& (bp.referenceIndex > bp.referenceIndex2 || (bp.referenceIndex == bp.referenceIndex2 && bp.start > bp.start2))) {
+				return -1;
+			}
+			return breakpointRoute(bp.direction, bp.direction2);
+		}
+		if (!callBreakends || e instanceof DirectedBreakpoint) {
+			return -1;
+		}
+		return BREAKEND_ROUTE_OFFSET + loc.direction.ordinal();
+	}
 	public VariantCallIterator(ProcessingContext processContext, Iterator<DirectedEvidence> evidence) {
 		this(processContext, evidence, null, -1);
 	}
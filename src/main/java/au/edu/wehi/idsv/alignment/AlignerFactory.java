@@ -14,7 +14,11 @@ public class AlignerFactory {
 	private static final Log log = Log.getInstance(AlignerFactory.class);
 	private static final String SSW_JNI_JAR_LOCATION = "/libsswjni.so";
 	private static boolean sswjniLoaded;
-	private static final Aligner defaultAligner;
+	/**
+	 * Aligners are not shared across threads so concurrent alignments
+	 * do not contend on a single instance.
+	 */
+	private static final ThreadLocal<Aligner> threadAligner = ThreadLocal.withInitial(() -> createDefault());
     static {
     	if (!Defaults.NO_LIBSSW) {
     		try {
@@ -43,8 +47,7 @@ public class AlignerFactory {
     	} else {
     		sswjniLoaded = false;
     	}
-        defaultAligner = create(1, -4, -4, 6, 1); // bwa mem
-        // defaultAligner = create(2, -6, -1, 5, 3); // bowtie2
+        Aligner defaultAligner = createDefault();
         if (sswjniLoaded) {
         	try {
         		log.debug("Testing JNI alignment");
@@ -56,7 +59,7 @@ public class AlignerFactory {
         	}
         }
         if (!sswjniLoaded) {
-        	log.error("Unable to use sswjni library - inexact homology annotation will be very slow. Please ensure libsswjni for your OS and architecture can be found on java.library.path");
+        	log.info("Unable to use sswjni library - falling back to Java Smith-Waterman implementation.");
         }
     }
     private static void unpacksswjni(File destination) throws IOException {
@@ -79,10 +82,17 @@ public class AlignerFactory {
 		if (sswjniLoaded) {
 			return new SswJniAligner(match, mismatch, ambiguous, gapOpen, gapExtend);
 		} else {
-			return new JAlignerAligner(match, mismatch, ambiguous, gapOpen, gapExtend);
+			return new SswCompatibleSmithWatermanAligner(match, mismatch, ambiguous, gapOpen, gapExtend);
 		}
 	}
+	private static Aligner createDefault() {
+		return create(1, -4, -4, 6, 1); // bwa mem
+		// return create(2, -6, -1, 5, 3); // bowtie2
+	}
+	/**
+	 * Gets the default aligner for the current thread.
+	 */
 	public static Aligner create() {
-		return defaultAligner;
+		return threadAligner.get();
 	}
 }
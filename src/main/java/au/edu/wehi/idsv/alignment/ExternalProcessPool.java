@@ -0,0 +1,99 @@
+package au.edu.wehi.idsv.alignment;
+
+import au.edu.wehi.idsv.Defaults;
+import htsjdk.samtools.util.Log;
+
+import java.io.IOException;
+import java.lang.ProcessBuilder.Redirect;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pool of pre-started external aligner processes.
+ *
+ * Streaming aligners such as bwa mem only emit the final partial batch of
+ * alignments when their input stream is closed so a process cannot be reused
+ * once it has been flushed. Instead, whenever a process is acquired, a
+ * replacement process is started so that it can load its index in the background
+ * and be ready for the next flush or caller within this JVM.
+ *
+ * Each standby process loads its own copy of the aligner index so enabling
+ * standby processes increases the aligner memory footprint proportionally.
+ *
+ * Standby processes are destroyed when the JVM exits.
+ */
+public class ExternalProcessPool {
+	private static final Log log = Log.getInstance(ExternalProcessPool.class);
+	public static final ExternalProcessPool Current = new ExternalProcessPool(Defaults.EXTERNAL_ALIGNER_STANDBY_PROCESSES);
+	private final int standbyProcesses;
+	private final Map<List<String>, Deque<Process>> standby = new HashMap<>();
+	private boolean shutdownHookRegistered = false;
+	/**
+	 * @param standbyProcesses number of idle processes to keep started for each command line
+	 */
+	public ExternalProcessPool(int standbyProcesses) {
+		this.standbyProcesses = standbyProcesses;
+	}
+	/**
+	 * Acquires a started process for the given command line. The caller is responsible
+	 * for shutting down the process.
+	 * @param commandline command line to execute
+	 * @return started process with piped stdin and stdout
+	 */
+	public synchronized Process acquire(List<String> commandline) throws IOException {
+		Deque<Process> queue = standby.computeIfAbsent(new ArrayList<>(commandline), k -> new ArrayDeque<>());
+		Process process = null;
+		while (process == null && !queue.isEmpty()) {
+			process = queue.poll();
+			if (!process.isAlive()) {
+				log.warn(String.format("Standby external aligner terminated with exit code %d. Starting new aligner.", process.exitValue()));
+				process = null;
+			}
+		}
+		if (process == null) {
+			process = start(commandline);
+		} else {
+			log.debug("Using standby external aligner");
+		}
+		while (queue.size() < standbyProcesses) {
+			queue.add(start(commandline));
+			ensureShutdownHook();
+		}
+		return process;
+	}
+	private static Process start(List<String> commandline) throws IOException {
+		return new ProcessBuilder(commandline)
+				.redirectInput(Redirect.PIPE)
+				.redirectOutput(Redirect.PIPE)
+				.redirectError(Redirect.INHERIT)
+				.start();
+	}
+	private void ensureShutdownHook() {
+		if (!shutdownHookRegistered) {
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> close(), "ExternalProcessPool-shutdown"));
+			shutdownHookRegistered = true;
+		}
+	}
+	/**
+	 * Number of standby processes for the given command line
+	 */
+	public synchronized int standbyCount(List<String> commandline) {
+		Deque<Process> queue = standby.get(commandline);
+		return queue == null ? 0 : queue.size();
+	}
+	/**
+	 * Destroys all standby processes
+	 */
+	public synchronized void close() {
+		for (Deque<Process> queue : standby.values()) {
+			for (Process p : queue) {
+				p.destroy();
+			}
+			queue.clear();
+		}
+	}
+}
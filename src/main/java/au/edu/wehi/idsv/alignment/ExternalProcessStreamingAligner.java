@@ -9,7 +9,6 @@ import htsjdk.samtools.util.Log;
 import org.apache.commons.lang3.SystemUtils;
 
 import java.io.*;
-import java.lang.ProcessBuilder.Redirect;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -31,6 +30,7 @@ import java.util.stream.Collectors;
  */
 public class ExternalProcessStreamingAligner implements Closeable, Flushable, StreamingAligner, Iterator<SAMRecord> {
 	private static final int POLL_INTERVAL = 1000;
+	private static final int WRITE_BUFFER_SIZE = 1 << 16;
 	private static final Log log = Log.getInstance(ExternalProcessStreamingAligner.class);	
 	private final AtomicInteger outstandingReads = new AtomicInteger(0);
 	private final BlockingQueue<SAMRecord> buffer = new LinkedBlockingQueue<>();
@@ -60,8 +60,9 @@ public class ExternalProcessStreamingAligner implements Closeable, Flushable, St
 	public synchronized void asyncAlign(FastqRecord fq) throws IOException {
 		ensureAligner();
 		outstandingReads.incrementAndGet();
+		// No need to flush every record: the aligner processes input in batches
+		// and outstanding records are flushed when the aligner is closed 
 		toExternalProgram.write(fq);
-		toExternalProgram.flush();
 	}
 	private void ensureAligner() throws IOException {
 		if (aligner == null) {
@@ -74,12 +75,9 @@ public class ExternalProcessStreamingAligner implements Closeable, Flushable, St
 						.map(s -> s.replace('\\', '/'))
 						.collect(Collectors.toList());
 			}
-			aligner = new ProcessBuilder(commandline)
-					.redirectInput(Redirect.PIPE)
-					.redirectOutput(Redirect.PIPE)
-					.redirectError(Redirect.INHERIT)
-					.start();
-			toExternalProgram = new BasicFastqWriter(new PrintStream(new BufferedOutputStream(aligner.getOutputStream())));
+			// pre-started aligners will have already loaded the index
+			aligner = ExternalProcessPool.Current.acquire(commandline);
+			toExternalProgram = new BasicFastqWriter(new PrintStream(new BufferedOutputStream(aligner.getOutputStream(), WRITE_BUFFER_SIZE)));
 			reader = new Thread(() -> readAllAlignments(readerFactory));
 			reader.setName("ExternalProcessStreamingAligner");
 			reader.start();
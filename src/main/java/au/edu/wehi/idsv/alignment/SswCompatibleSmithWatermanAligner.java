@@ -0,0 +1,326 @@
+package au.edu.wehi.idsv.alignment;
+
+/**
+ * Pure Java Smith-Waterman aligner reporting the same alignments as
+ * the SSW library used by SswJniAligner.
+ *
+ * This is a scalar implementation, not a striped (Farrar 2007) one. It
+ * reproduces the scores SSW obtains from its striped lane layout and
+ * lazy-F correction, along with SSW's alignment start/end position
+ * tie-breaking and banded CIGAR traceback. Alignments are therefore identical
+ * to those reported by the native library for the same scoring parameters.
+ * This allows the native library to be replaced without changing results on
+ * platforms for which it is not available.
+ *
+ * Instances are immutable and can be used concurrently.
+ */
+public class SswCompatibleSmithWatermanAligner implements Aligner {
+	private static final int MATRIX_SIZE = 128;
+	/**
+	 * SSW first aligns using 16 8-bit SIMD lanes
+	 */
+	private static final int BYTE_LANES = 16;
+	/**
+	 * SSW falls back to 8 16-bit lanes if the alignment score does not fit in a byte
+	 */
+	private static final int WORD_LANES = 8;
+	private static final int BYTE_MAX = 255;
+	private static final int NO_TERMINATE = -1;
+	private final int gapOpen;
+	private final int gapExtend;
+	private final int[][] matrix;
+	/**
+	 * Offset ensuring all 8-bit profile scores are non-negative
+	 */
+	private final int bias;
+	public SswCompatibleSmithWatermanAligner(int match, int mismatch, int ambiguous, int gapOpen, int gapExtend) {
+		this.gapOpen = gapOpen;
+		this.gapExtend = gapExtend;
+		this.matrix = SswJniAligner.createMatrix(match, mismatch, ambiguous);
+		int min = 0;
+		for (int[] row : matrix) {
+			for (int score : row) {
+				min = Math.min(min, score);
+			}
+		}
+		this.bias = -min;
+	}
+	/**
+	 * Best scoring alignment end position
+	 */
+	private static class AlignmentEnd {
+		private final int score;
+		private final int refEnd;
+		private final int readEnd;
+		private final boolean overflow;
+		private AlignmentEnd(int score, int refEnd, int readEnd, boolean overflow) {
+			this.score = score;
+			this.refEnd = refEnd;
+			this.readEnd = readEnd;
+			this.overflow = overflow;
+		}
+	}
+	@Override
+	public Alignment align_smith_waterman(byte[] seq, byte[] ref) {
+		seq = SswJniAligner.clean(seq);
+		ref = SswJniAligner.clean(ref);
+		if (seq == null || seq.length == 0) {
+			throw new IllegalArgumentException("seq must be non-zero size");
+		}
+		if (ref == null || ref.length == 0) {
+			throw new IllegalArgumentException("ref must be non-zero size");
+		}
+		boolean word = false;
+		AlignmentEnd end = alignEnd(ref, ref.length, false, seq, seq.length, NO_TERMINATE, false);
+		if (end.overflow) {
+			word = true;
+			end = alignEnd(ref, ref.length, false, seq, seq.length, NO_TERMINATE, true);
+		}
+		// find the start position by aligning the reversed sequences
+		byte[] readReverse = new byte[end.readEnd + 1];
+		for (int i = 0; i < readReverse.length; i++) {
+			readReverse[i] = seq[end.readEnd - i];
+		}
+		AlignmentEnd start = alignEnd(ref, end.refEnd + 1, true, readReverse, readReverse.length, end.score, word);
+		int refBegin = start.refEnd;
+		int readBegin = end.readEnd - start.readEnd;
+		String cigar;
+		if (end.score == 0) {
+			// as per SSW, a sequence with no positive scoring alignment
+			// has its first base aligned immediately before the reference
+			cigar = "1M";
+		} else {
+			cigar = bandedTraceback(ref, refBegin, end.refEnd - refBegin + 1, seq, readBegin, end.readEnd - readBegin + 1, end.score);
+		}
+		if (readBegin != 0) {
+			cigar = Integer.toString(readBegin) + "S" + cigar;
+		}
+		int endOffset = seq.length - end.readEnd - 1;
+		if (endOffset != 0) {
+			cigar += Integer.toString(endOffset) + "S";
+		}
+		return new Alignment(refBegin, cigar);
+	}
+	/**
+	 * Smith-Waterman alignment reporting the first best scoring alignment end position
+	 * as per the SSW striped implementation.
+	 * 
+	 * Columns are calculated in a single scalar pass over the read.
+	 *
+	 * In the striped layout, read position r is stored in lane r / segLen. The first pass
+	 * over a column does not carry F across lanes, and the subsequent lazy-F correction
+	 * of H is not propagated to E. Scores therefore equal those of SSW when F is reset at
+	 * each lane boundary for the purposes of calculating E, but not H. Emulating this
+	 * directly in a single pass over each column is considerably faster than emulating
+	 * the lanes and the lazy-F loop since long gap extensions require the lazy-F loop
+	 * to make multiple passes over the column.
+	 *
+	 * Emulates sw_sse2_byte() when word is false and sw_sse2_word() otherwise.
+	 *
+	 * @param ref reference sequence
+	 * @param refLen number of reference bases to align
+	 * @param refReverse process reference bases in descending order
+	 * @param read query sequence
+	 * @param readLen number of query bases to align
+	 * @param terminate stop once a column with this maximum score is encountered
+	 * @param word use 16-bit lanes
+	 */
+	private AlignmentEnd alignEnd(byte[] ref, int refLen, boolean refReverse, byte[] read, int readLen, int terminate, boolean word) {
+		final int lanes = word ? WORD_LANES : BYTE_LANES;
+		final int segLen = (readLen + lanes - 1) / lanes;
+		final int[][] profiles = new int[MATRIX_SIZE][];
+		int[] hCurrent = new int[readLen];
+		int[] hPrevious = new int[readLen];
+		final int[] e = new int[readLen];
+		final int[] hMax = new int[readLen];
+		int max = 0;
+		int endRef = -1;
+		int begin = refReverse ? refLen - 1 : 0;
+		int stop = refReverse ? -1 : refLen;
+		int step = refReverse ? -1 : 1;
+		for (int i = begin; i != stop; i += step) {
+			int[] scores = profiles[ref[i]];
+			if (scores == null) {
+				scores = new int[readLen];
+				for (int r = 0; r < readLen; r++) {
+					scores[r] = matrix[ref[i]][read[r]];
+				}
+				profiles[ref[i]] = scores;
+			}
+			int[] swap = hPrevious;
+			hPrevious = hCurrent;
+			hCurrent = swap;
+			int columnMax = 0;
+			int diag = 0;
+			// F within the current lane
+			int laneF = 0;
+			// F across the entire column
+			int f = 0;
+			int laneOffset = 0;
+			for (int r = 0; r < readLen; r++) {
+				if (laneOffset == segLen) {
+					laneOffset = 0;
+					laneF = 0;
+				}
+				laneOffset++;
+				int ev = e[r];
+				int h = Math.max(Math.max(diag + scores[r], ev), laneF);
+				int hGap = Math.max(0, h - gapOpen);
+				e[r] = Math.max(Math.max(0, ev - gapExtend), hGap);
+				laneF = Math.max(Math.max(0, laneF - gapExtend), hGap);
+				h = Math.max(h, f);
+				f = Math.max(Math.max(0, f - gapExtend), hGap);
+				diag = hPrevious[r];
+				hCurrent[r] = h;
+				columnMax = Math.max(columnMax, h);
+			}
+			if (columnMax > max) {
+				max = columnMax;
+				if (!word && max + bias >= BYTE_MAX) {
+					return new AlignmentEnd(BYTE_MAX, endRef, readLen - 1, true);
+				}
+				endRef = i;
+				System.arraycopy(hCurrent, 0, hMax, 0, readLen);
+			}
+			if (columnMax == terminate) break;
+		}
+		int endRead = 0;
+		while (endRead < readLen - 1 && hMax[endRead] != max) {
+			endRead++;
+		}
+		return new AlignmentEnd(max, endRef, endRead, false);
+	}
+	/**
+	 * Calculates the CIGAR of the best alignment using a banded global alignment
+	 * of the aligned region, doubling the band width until the local alignment score is attained.
+	 *
+	 * Emulates banded_sw() including its traceback preference order.
+	 */
+	private String bandedTraceback(byte[] ref, int refOffset, int refLen, byte[] read, int readOffset, int readLen, int score) {
+		int bandWidth = Math.abs(refLen - readLen) + 1;
+		int max = 0;
+		byte[] direction;
+		int widthD;
+		do {
+			int width = bandWidth * 2 + 3;
+			widthD = bandWidth * 2 + 1;
+			int[] hB = new int[width];
+			int[] hC = new int[width];
+			int[] eB = new int[width];
+			direction = new byte[widthD * readLen * 3];
+			for (int i = 0; i < readLen; i++) {
+				int beg = Math.max(0, i - bandWidth);
+				int end = Math.min(refLen - 1, i + bandWidth);
+				int edge = Math.min(end + 1, width - 1);
+				int f = 0;
+				hB[0] = eB[0] = hB[edge] = eB[edge] = hC[0] = 0;
+				int line = widthD * i * 3;
+				int[] readScores = matrix[read[readOffset + i]];
+				int u = 0;
+				for (int j = beg; j <= end; j++) {
+					u = bandIndex(bandWidth, i, j);
+					int e = bandIndex(bandWidth, i - 1, j);
+					int b = bandIndex(bandWidth, i, j - 1);
+					int d = bandIndex(bandWidth, i - 1, j - 1);
+					int de = line + directionIndex(bandWidth, i, j, 0);
+					int df = line + directionIndex(bandWidth, i, j, 1);
+					int dh = line + directionIndex(bandWidth, i, j, 2);
+					int temp1 = i == 0 ? -gapOpen : hB[e] - gapOpen;
+					int temp2 = i == 0 ? -gapExtend : eB[e] - gapExtend;
+					eB[u] = Math.max(temp1, temp2);
+					direction[de] = (byte)(temp1 > temp2 ? 3 : 2);
+					temp1 = hC[b] - gapOpen;
+					temp2 = f - gapExtend;
+					f = Math.max(temp1, temp2);
+					direction[df] = (byte)(temp1 > temp2 ? 5 : 4);
+					int e1 = Math.max(eB[u], 0);
+					int f1 = Math.max(f, 0);
+					temp1 = Math.max(e1, f1);
+					temp2 = hB[d] + readScores[ref[refOffset + j]];
+					hC[u] = Math.max(temp1, temp2);
+					max = Math.max(max, hC[u]);
+					if (temp1 <= temp2) {
+						direction[dh] = 1;
+					} else {
+						direction[dh] = e1 > f1 ? direction[de] : direction[df];
+					}
+				}
+				System.arraycopy(hC, 1, hB, 1, u);
+			}
+			bandWidth *= 2;
+		} while (max < score);
+		bandWidth /= 2;
+		// trace back
+		StringBuilder sb = new StringBuilder();
+		int i = readLen - 1;
+		int j = refLen - 1;
+		int e = 0;
+		char op = 'M';
+		char prevOp = 'M';
+		int state = 2;
+		while (i > 0) {
+			int line = widthD * i * 3;
+			switch (direction[line + directionIndex(bandWidth, i, j, state)]) {
+				case 1:
+					--i;
+					--j;
+					state = 2;
+					op = 'M';
+					break;
+				case 2:
+					--i;
+					state = 0;
+					op = 'I';
+					break;
+				case 3:
+					--i;
+					state = 2;
+					op = 'I';
+					break;
+				case 4:
+					--j;
+					state = 1;
+					op = 'D';
+					break;
+				case 5:
+					--j;
+					state = 2;
+					op = 'D';
+					break;
+				default:
+					throw new IllegalStateException("Smith-Waterman traceback error");
+			}
+			if (op == prevOp) {
+				e++;
+			} else {
+				prependCigarElement(sb, e, prevOp);
+				prevOp = op;
+				e = 1;
+			}
+		}
+		if (op == 'M') {
+			prependCigarElement(sb, e + 1, op);
+		} else {
+			prependCigarElement(sb, e, op);
+			prependCigarElement(sb, 1, 'M');
+		}
+		return sb.toString();
+	}
+	private static void prependCigarElement(StringBuilder sb, int length, char op) {
+		sb.insert(0, op);
+		sb.insert(0, length);
+	}
+	/**
+	 * Offset of the given cell within the H and E band buffers
+	 */
+	private static int bandIndex(int bandWidth, int i, int j) {
+		return j - Math.max(0, i - bandWidth) + 1;
+	}
+	/**
+	 * Offset of the given cell within a traceback direction row
+	 * @param matrix 0 for E, 1 for F, 2 for H
+	 */
+	private static int directionIndex(int bandWidth, int i, int j, int matrix) {
+		return (j - Math.max(0, i - bandWidth)) * 3 + matrix;
+	}
+}
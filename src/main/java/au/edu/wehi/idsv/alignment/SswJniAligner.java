@@ -7,6 +7,10 @@ import java.util.Arrays;
 
 public class SswJniAligner implements Aligner {
 	private static final int MATRIX_SIZE = 128;
+	/**
+	 * Lock serialising all native calls when the native library is not to be called concurrently
+	 */
+	private static final Object NATIVE_LOCK = new Object();
 	private final int gapOpen;
 	private final int gapExtend;
 	private final int[][] matrix;
@@ -15,7 +19,7 @@ public class SswJniAligner implements Aligner {
 		this.gapExtend = gapExtend;
 		this.matrix = createMatrix(match, mismatch, ambiguous);
 	}
-	private static int[][] createMatrix(int match, int mismatch, int ambiguous) {
+	static int[][] createMatrix(int match, int mismatch, int ambiguous) {
 		int[][] scores = new int[MATRIX_SIZE][MATRIX_SIZE];
         // Fill the matrix with the scores
         for (int i = 0; i < MATRIX_SIZE; i++) {
@@ -59,8 +63,10 @@ public class SswJniAligner implements Aligner {
 		}
 		return new Alignment(result.ref_begin1, cigar);
 	}
-	private synchronized Alignment sync_do_align_smith_waterman(byte[] seq, byte[] ref) {
-		return do_align_smith_waterman(seq, ref);
+	private Alignment sync_do_align_smith_waterman(byte[] seq, byte[] ref) {
+		synchronized (NATIVE_LOCK) {
+			return do_align_smith_waterman(seq, ref);
+		}
 	}
 	/**
 	 * Converts all non-reference bases to Ns
@@ -68,7 +74,7 @@ public class SswJniAligner implements Aligner {
 	 * @param seq sequence
 	 * @return equivalent sequence containing only ACGTN
 	 */
-	private static byte[] clean(final byte[] seq) {
+	static byte[] clean(final byte[] seq) {
 		byte[] s = htsjdk.samtools.util.SequenceUtil.upperCase(Arrays.copyOf(seq,  seq.length));
 		for (int i = 0; i < seq.length; i++) {
 			if (!htsjdk.samtools.util.SequenceUtil.isValidBase(s[i])) {
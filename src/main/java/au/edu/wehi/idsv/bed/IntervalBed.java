@@ -1,9 +1,9 @@
 package au.edu.wehi.idsv.bed;
 
 import au.edu.wehi.idsv.LinearGenomicCoordinate;
+import au.edu.wehi.idsv.util.LongIntervalSet;
+import com.google.common.collect.BoundType;
 import com.google.common.collect.Range;
-import com.google.common.collect.RangeSet;
-import com.google.common.collect.TreeRangeSet;
 import htsjdk.samtools.QueryInterval;
 import htsjdk.samtools.util.Log;
 import htsjdk.tribble.AbstractFeatureReader;
@@ -16,7 +16,6 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.util.stream.Collectors;
 
 /**
  * Minimal bed wrapper retaining only interval information
@@ -26,36 +25,36 @@ import java.util.stream.Collectors;
 public class IntervalBed {
 	private static final Log log = Log.getInstance(IntervalBed.class);
 	private final LinearGenomicCoordinate linear;
-	private final RangeSet<Long> intervals;
+	private final LongIntervalSet intervals;
 	public int size() {
-		return intervals.asRanges().size();
+		return intervals.size();
 	}
 	public IntervalBed(LinearGenomicCoordinate linear, File bed) throws IOException {
-		this(linear, toRangeSet(linear, bed));
+		this(linear, toIntervalSet(linear, bed));
 	}
 	public IntervalBed(LinearGenomicCoordinate linear) {
-		this(linear, TreeRangeSet.<Long>create());
+		this(linear, new LongIntervalSet());
 	}
 	public IntervalBed(LinearGenomicCoordinate linear, QueryInterval[] intervals) {
-		this(linear, TreeRangeSet.<Long>create());
+		this(linear, new LongIntervalSet());
 		for (QueryInterval qi : intervals) {
 			addInterval(qi);
 		}
 	}
-	private IntervalBed(LinearGenomicCoordinate linear, RangeSet<Long> intervals) {
+	private IntervalBed(LinearGenomicCoordinate linear, LongIntervalSet intervals) {
 		this.linear = linear;
 		this.intervals = intervals;
 	}
 	public static IntervalBed merge(LinearGenomicCoordinate linear, Iterable<IntervalBed> list) {
-		RangeSet<Long> blacklisted = TreeRangeSet.create();
+		LongIntervalSet blacklisted = new LongIntervalSet();
 		for (IntervalBed bed : list) {
 			// TODO assert dictionaries and linear coordinates match
 			blacklisted.addAll(bed.intervals);
 		}
 		return new IntervalBed(linear, blacklisted);
 	}
-	private static RangeSet<Long> toRangeSet(LinearGenomicCoordinate linear, File bed) throws IOException {
-		RangeSet<Long> rs = TreeRangeSet.create();
+	private static LongIntervalSet toIntervalSet(LinearGenomicCoordinate linear, File bed) throws IOException {
+		LongIntervalSet rs = new LongIntervalSet();
 		BEDCodec codec = new BEDCodec();
 	    try (AbstractFeatureReader<BEDFeature, LineIterator> reader = AbstractFeatureReader.getFeatureReader(bed.getPath(), codec, false)) {
 	    	int lineno = 0;
@@ -70,19 +69,16 @@ public class IntervalBed {
 					log.error(msg);
 					throw new IllegalArgumentException(msg);
 				}
-				rs.add(Range.closedOpen(linear.getLinearCoordinate(referenceIndex, start), linear.getLinearCoordinate(referenceIndex, end) + 1));
+				rs.add(linear.getLinearCoordinate(referenceIndex, start), linear.getLinearCoordinate(referenceIndex, end) + 1);
 			}
         }
 		return rs;
 	}
-	public static void addInterval(LinearGenomicCoordinate linear, RangeSet<Long> blacklisted, int referenceIndex, int start, int end) {
-		blacklisted.add(Range.closedOpen(linear.getLinearCoordinate(referenceIndex, start), linear.getLinearCoordinate(referenceIndex, end) + 1));
+	public void addInterval(int referenceIndex, int start, int end) {
+		intervals.add(linear.getLinearCoordinate(referenceIndex, start), linear.getLinearCoordinate(referenceIndex, end) + 1);
 	}
-	public synchronized void addInterval(int referenceIndex, int start, int end) {
-		addInterval(linear, intervals, referenceIndex, start, end);
-	}
-	public synchronized void addInterval(QueryInterval qi) {
-		addInterval(linear, intervals, qi.referenceIndex, qi.start, qi.end);
+	public void addInterval(QueryInterval qi) {
+		addInterval(qi.referenceIndex, qi.start, qi.end);
 	}
 	/**
 	 * Determines whether any of the intervals overlap the given interval
@@ -95,28 +91,36 @@ public class IntervalBed {
 		return overlaps(linear.getLinearCoordinate(referenceIndex, start), linear.getLinearCoordinate(referenceIndex, end));
 	}
 	public boolean overlaps(long start, long end) {
-		Range<Long> r = Range.closedOpen(start, end + 1);
-		return overlaps(r);
+		return intervals.overlaps(start, end + 1);
 	}
 	public boolean overlaps(Range<Long> interval) {
 		if (interval == null) {
 			return false;
 		}
-		return intervals.intersects(interval);
+		long start = Long.MIN_VALUE;
+		long end = Long.MAX_VALUE;
+		if (interval.hasLowerBound()) {
+			start = interval.lowerBoundType() == BoundType.CLOSED ? interval.lowerEndpoint() : interval.lowerEndpoint() + 1;
+		}
+		if (interval.hasUpperBound()) {
+			end = interval.upperBoundType() == BoundType.CLOSED ? interval.upperEndpoint() + 1 : interval.upperEndpoint();
+		}
+		return intervals.overlaps(start, end);
 	}
 	/**
 	 * Removes the given set of intervals
 	 * @param toRemove intervals to remove
 	 */
 	public void remove(IntervalBed toRemove) {
-		intervals.removeAll(toRemove.intervals.asRanges());
+		intervals.removeAll(toRemove.intervals);
 	}
 	public void write(File bed, String name) throws IOException {
 		try (BufferedWriter writer = Files.newBufferedWriter(bed.toPath(), StandardCharsets.US_ASCII)) {
 			writer.write(String.format("track name=\"%s\" description=\"%s\" useScore=0\n", name, name));
-			for (Range<Long> r : intervals.asRanges()) {
-				long lower = r.lowerEndpoint();
-				long upper = r.upperEndpoint();
+			LongIntervalSet snapshot = new LongIntervalSet(intervals);
+			for (int i = 0; i < snapshot.size(); i++) {
+				long lower = snapshot.getStart(i);
+				long upper = snapshot.getEnd(i);
 				int referenceIndex = linear.getReferenceIndex(lower);
 				int referenceIndex2 = linear.getReferenceIndex(upper);
 				assert(referenceIndex == referenceIndex2);
@@ -127,12 +131,14 @@ public class IntervalBed {
 		}
 	}
 	public QueryInterval[] asQueryInterval() {
-		QueryInterval[] qis = new QueryInterval[intervals.asRanges().size()];
-		int i = 0;
-		for (Range<Long> r : intervals.asRanges()) {
-			QueryInterval qi = new QueryInterval(linear.getReferenceIndex(r.lowerEndpoint()), linear.getReferencePosition(r.lowerEndpoint()), linear.getReferencePosition(r.upperEndpoint() - 1));
-			qis[i++] = qi;
-			if (linear.getReferenceIndex(r.upperEndpoint() - 1) != qi.referenceIndex) {
+		LongIntervalSet snapshot = new LongIntervalSet(intervals);
+		QueryInterval[] qis = new QueryInterval[snapshot.size()];
+		for (int i = 0; i < qis.length; i++) {
+			long lower = snapshot.getStart(i);
+			long upper = snapshot.getEnd(i);
+			QueryInterval qi = new QueryInterval(linear.getReferenceIndex(lower), linear.getReferencePosition(lower), linear.getReferencePosition(upper - 1));
+			qis[i] = qi;
+			if (linear.getReferenceIndex(upper - 1) != qi.referenceIndex) {
 				throw new RuntimeException("Not Yet Implemented: support for interval spaning chromosomes and unpadded LinearGenomicCoordinate lookups. This should not happen. Please raise an issue at https://github.com/PapenfussLab/gridss/issues");
 			}
 		}
@@ -144,22 +150,18 @@ public class IntervalBed {
 	 * Expanded intervals are truncated at reference contig bounds.
 	 */
 	public IntervalBed expandIntervals(int startBases, int endBases) {
-		TreeRangeSet<Long> expanded = TreeRangeSet.create(intervals
-				.asRanges()
-				.stream()
-				.map(r -> expand(r, startBases, endBases))
-				.collect(Collectors.toList()));
+		LongIntervalSet snapshot = new LongIntervalSet(intervals);
+		LongIntervalSet expanded = new LongIntervalSet();
+		for (int i = 0; i < snapshot.size(); i++) {
+			long lower = snapshot.getStart(i);
+			long upper = snapshot.getEnd(i);
+			int referenceIndex = linear.getReferenceIndex(lower);
+			int start = linear.getReferencePosition(lower);
+			int end = linear.getReferencePosition(upper);
+			start = Math.max(1, start - startBases);
+			end = Math.min(linear.getDictionary().getSequence(referenceIndex).getSequenceLength() + 1, end + endBases);
+			expanded.add(linear.getLinearCoordinate(referenceIndex, start), linear.getLinearCoordinate(referenceIndex, end));
+		}
 		return new IntervalBed(linear, expanded);
 	}
-	private Range<Long> expand(Range<Long> range, int startBases, int endBases) {
-		int referenceIndex = linear.getReferenceIndex(range.lowerEndpoint());
-		int start = linear.getReferencePosition(range.lowerEndpoint());
-		int end = linear.getReferencePosition(range.upperEndpoint());
-		start = Math.max(1, start - startBases);
-		end = Math.min(linear.getDictionary().getSequence(referenceIndex).getSequenceLength() + 1, end + endBases);
-		return Range.closedOpen(linear.getLinearCoordinate(referenceIndex, start), linear.getLinearCoordinate(referenceIndex, end));
-	}
-	public RangeSet<Long> asRangeSet() {
-		return TreeRangeSet.create(intervals);
-	}
 }
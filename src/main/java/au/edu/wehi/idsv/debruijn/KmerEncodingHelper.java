@@ -319,14 +319,22 @@ public class KmerEncodingHelper {
 	 * @return
 	 */
 	public static int[] baseCounts(int k, LongArrayList path) {
+		return baseCounts(k, path.elements(), path.size());
+	}
+	/**
+	 * Sums base counts for the given sequence
+	 * @param path kmer array
+	 * @param length number of kmers in path
+	 */
+	public static int[] baseCounts(int k, long[] path, int length) {
 		int[] counts = new int[4];
-		long startKmer = path.getLong(0);
+		long startKmer = path[0];
 		for (int i = 0; i < k; i++) {
 			counts[(int)startKmer & 3]++;
 			startKmer >>>= 2;
 		}
-		for (int i = 1; i < path.size(); i++) {
-			counts[(int)path.getLong(i) & 3]++;
+		for (int i = 1; i < length; i++) {
+			counts[(int)path[i] & 3]++;
 		}
 		return counts;
 	}
@@ -344,27 +352,38 @@ public class KmerEncodingHelper {
 	 * @return number of bases different
 	 */
 	public static int partialSequenceBasesDifferent(int k, LongArrayList ref, LongArrayList kmers, int offset, boolean startAnchored) {
+		return partialSequenceBasesDifferent(k, ref, kmers.elements(), kmers.size(), offset, startAnchored);
+	}
+	/**
+	 * Calculates the additional bases difference by incorporating the given
+	 * kmers to a larger sequence anchored at the start or the end of the reference
+	 * sequence
+	 * @param kmers kmer array to compare
+	 * @param kmersLength number of kmers to compare
+	 * @see #partialSequenceBasesDifferent(int, LongArrayList, LongArrayList, int, boolean)
+	 */
+	public static int partialSequenceBasesDifferent(int k, LongArrayList ref, long[] kmers, int kmersLength, int offset, boolean startAnchored) {
 		int basesDiff = 0;
 		if (startAnchored) {
 			if (offset == 0) {
 				// anchored at end
-				basesDiff = KmerEncodingHelper.basesDifference(k, ref.getLong(0), kmers.getLong(0));
+				basesDiff = KmerEncodingHelper.basesDifference(k, ref.getLong(0), kmers[0]);
 			}
-			int loopEnd = Math.min(kmers.size(), ref.size() - offset);
+			int loopEnd = Math.min(kmersLength, ref.size() - offset);
 			for (int i = offset == 0 ? 1 : 0; i < loopEnd; i++) {
-				if (!KmerEncodingHelper.lastBaseMatches(k, ref.getLong(offset + i),  kmers.getLong(i))) {
+				if (!KmerEncodingHelper.lastBaseMatches(k, ref.getLong(offset + i),  kmers[i])) {
 					basesDiff++;
 				}
 			}
 		} else {
-			int loopEnd = kmers.size();
-			if (offset + kmers.size() == ref.size()) {
+			int loopEnd = kmersLength;
+			if (offset + kmersLength == ref.size()) {
 				// anchored at end
-				basesDiff = KmerEncodingHelper.basesDifference(k, ref.getLong(ref.size() - 1), kmers.getLong(kmers.size() - 1));
+				basesDiff = KmerEncodingHelper.basesDifference(k, ref.getLong(ref.size() - 1), kmers[kmersLength - 1]);
 				loopEnd--;
 			}
 			for (int i = Math.max(0, -offset); i < loopEnd; i++) {
-				if (!KmerEncodingHelper.firstBaseMatches(k, ref.getLong(offset + i),  kmers.getLong(i))) {
+				if (!KmerEncodingHelper.firstBaseMatches(k, ref.getLong(offset + i),  kmers[i])) {
 					basesDiff++;
 				}
 			}
@@ -1,14 +1,15 @@
 package au.edu.wehi.idsv.debruijn.positional;
 
 import au.edu.wehi.idsv.Defaults;
+import au.edu.wehi.idsv.DirectedEvidence;
 import au.edu.wehi.idsv.HashedEvidenceIdentifierGenerator;
 import au.edu.wehi.idsv.util.IntervalUtil;
+import au.edu.wehi.idsv.util.LongPair2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
 import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
 import it.unimi.dsi.fastutil.longs.LongSortedSet;
-import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 
 import java.util.*;
@@ -26,7 +27,7 @@ import static au.edu.wehi.idsv.Defaults.SANITY_CHECK_EVIDENCE_TRACKER;
 public class EvidenceTracker {
 	//public static EvidenceTracker TEMP_HACK_CURRENT_TRACKER = null;
 	private final Long2ObjectOpenHashMap<LinkedList<KmerSupportNode>> lookup = new Long2ObjectOpenHashMap<>();
-	private final Object2ObjectOpenHashMap<String, List<KmerEvidence>> id = new Object2ObjectOpenHashMap<>();
+	private final LongPair2ObjectOpenHashMap<List<KmerEvidence>> id = new LongPair2ObjectOpenHashMap<>();
 	private long evidenceTotal = 0;
 	/**
 	 * Tracks evidence emitted from the given iterator
@@ -46,12 +47,13 @@ public class EvidenceTracker {
 		}
 		list.add(support);
 		KmerEvidence ke = support.evidence();
-		String evidenceId = ke.evidence().getEvidenceID();
-		List<KmerEvidence> idvalue = id.get(evidenceId);
+		long evidenceIdHigh = ke.evidence().getEvidenceIdentifierHigh();
+		long evidenceIdLow = ke.evidence().getEvidenceIdentifierLow();
+		List<KmerEvidence> idvalue = id.get(evidenceIdHigh, evidenceIdLow);
 		if (idvalue == null) {
 			evidenceTotal++;
 			idvalue = new ArrayList<>();
-			id.put(evidenceId, idvalue);
+			id.put(evidenceIdHigh, evidenceIdLow, idvalue);
 		}
 		if (!idvalue.contains(ke)) {
 			idvalue.add(ke);
@@ -79,7 +81,7 @@ public class EvidenceTracker {
 	private void addToRemoveList(KmerEvidence evidence, Set<KmerEvidence> removeSet, LongSortedSet kmersInSet) {
 		// Need to remove all KmerEvidence associated with the evidence
 		// Read pairs can have two: one each of the anchored and unanchored reads
-		Collection<KmerEvidence> trackedKmerEvidenceForEvidence = id.remove(evidence.evidence().getEvidenceID());
+		Collection<KmerEvidence> trackedKmerEvidenceForEvidence = id.remove(evidence.evidence().getEvidenceIdentifierHigh(), evidence.evidence().getEvidenceIdentifierLow());
 		if (trackedKmerEvidenceForEvidence == null) {
 			// Will happen when we attempt to remove the second KmerEvidence in a read pair
 			return;
@@ -207,8 +209,8 @@ public class EvidenceTracker {
 		assert(evidenceWeight == expectedWidthWeight);
 		return evidenceWeight == expectedWidthWeight;
 	}
-	public boolean isTracked(String evidenceId) {
-		return id.keySet().contains(evidenceId);
+	public boolean isTracked(DirectedEvidence evidence) {
+		return id.containsKey(evidence.getEvidenceIdentifierHigh(), evidence.getEvidenceIdentifierLow());
 	}
 	public class PathNodeAssertionInterceptor implements Iterator<KmerPathNode> {
 		private final Iterator<KmerPathNode> underlying;
@@ -272,7 +274,11 @@ public class EvidenceTracker {
 				.flatMap(ll -> ll.stream())
 				.map(ksn -> ksn.evidence().evidence().getEvidenceID())
 				.collect(Collectors.toSet());
-		Set<String> idEid = id.keySet().stream().collect(Collectors.toSet());
+		Set<String> idEid = id.values()
+				.stream()
+				.flatMap(ll -> ll.stream())
+				.map(ke -> ke.evidence().getEvidenceID())
+				.collect(Collectors.toSet());
 		Set<String> missingInLookup = new HashSet<>(idEid);
 		Set<String> missingInIds = new HashSet<>(lookupEid);
 		missingInIds.removeAll(idEid);
@@ -349,12 +349,13 @@ public class KmerEvidence extends PackedKmerList {
 	}
 	@Override
 	public int hashCode() {
-		return evidence.getEvidenceID().hashCode() + start;
+		return (int)evidence.getEvidenceIdentifierLow() + start;
 	}
 	public boolean equals(KmerEvidence other) {
 		// Need start in the equality check since discordant read pairs have both reads added
 		return start == other.start &&
-				evidence.getEvidenceID().equals(other.evidence.getEvidenceID());
+				evidence.getEvidenceIdentifierLow() == other.evidence.getEvidenceIdentifierLow() &&
+				evidence.getEvidenceIdentifierHigh() == other.evidence.getEvidenceIdentifierHigh();
 	}
 	@Override
 	public boolean equals(Object obj) {
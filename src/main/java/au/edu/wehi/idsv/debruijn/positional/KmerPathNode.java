@@ -29,10 +29,32 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 	private static final List<KmerPathNode> EMPTY_EDGE_LIST = ImmutableList.of();
 	private static final Ordering<KmerNode> NEXT_SORT_ORDER = KmerNodeUtil.ByFirstStart;
 	private static final Ordering<KmerNode> PREV_SORT_ORDER = KmerNodeUtil.ByLastStart;
-	private LongArrayList kmers; // FIXME: replace with 2-bit encoding of kmer sequence
+	/**
+	 * Object layout sizes of a 64-bit JVM with compressed oops
+	 */
+	private static final int OBJECT_HEADER_BYTES = 12;
+	private static final int ARRAY_HEADER_BYTES = 16;
+	private static final int REFERENCE_BYTES = 4;
+	/**
+	 * Size of a node object (6 references, 4 ints and 2 booleans) and the headers of its kmer and weight arrays
+	 */
+	private static final int NODE_OVERHEAD_BYTES = align(OBJECT_HEADER_BYTES + 6 * REFERENCE_BYTES + 4 * Integer.BYTES + 2) + 2 * ARRAY_HEADER_BYTES;
+	/**
+	 * Size of a fastutil array list object (array reference and size) and the header of its backing array
+	 */
+	private static final int ARRAY_LIST_OVERHEAD_BYTES = align(OBJECT_HEADER_BYTES + REFERENCE_BYTES + Integer.BYTES) + ARRAY_HEADER_BYTES;
+	private static int align(int bytes) {
+		return (bytes + 7) & ~7;
+	}
+	/**
+	 * Kmers and weights are stored in raw primitive arrays instead of list wrappers
+	 * to reduce the per-node object count. Only the first length elements are valid.
+	 */
+	private long[] kmers; // FIXME: replace with 2-bit encoding of kmer sequence
+	private int[] weight;
+	private int length;
 	private LongArrayList additionalKmers = null;
 	private IntArrayList additionalKmerOffsets = null;
-	private IntArrayList weight;
 	private int totalWeight;
 	private int start;
 	private int end;
@@ -58,18 +80,42 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 	public int lastEnd() { return endPosition(length() - 1); }
 	public int firstStart() { return start; }
 	public int firstEnd() { return end; }
-	public long kmer(int offset) { return kmers.getLong(offset); }
+	public long kmer(int offset) { return kmers[offset]; }
 	public int startPosition(int offset) { return start + offset; }
 	public int endPosition(int offset) { return end + offset; }
 	public int weight() { return totalWeight; }
-	public LongArrayList pathKmers() { return kmers; }
-	public IntArrayList pathWeights() { return weight; }
+	/**
+	 * Kmers of this path
+	 * 
+	 * A new list wrapper is allocated on each call. Performance-critical callers
+	 * should use pathKmerArray() and length() instead.
+	 * @return kmers in path order. Callers must not modify the returned list
+	 */
+	public LongArrayList pathKmers() { return LongArrayList.wrap(kmers, length); }
+	/**
+	 * Weights of the kmers in this path
+	 * 
+	 * A new list wrapper is allocated on each call. Performance-critical callers
+	 * should use pathWeightArray() and length() instead.
+	 * @return kmers weights in path order. Callers must not modify the returned list
+	 */
+	public IntArrayList pathWeights() { return IntArrayList.wrap(weight, length); }
+	/**
+	 * Kmers of this path
+	 * @return backing array of path kmers. Only the first length() elements are valid. Callers must not modify the returned array
+	 */
+	public long[] pathKmerArray() { return kmers; }
+	/**
+	 * Weights of the kmers in this path
+	 * @return backing array of path kmer weights. Only the first length() elements are valid. Callers must not modify the returned array
+	 */
+	public int[] pathWeightArray() { return weight; }
 	@Override
 	public int weight(int offset) {
-		return weight.getInt(offset);
+		return weight[offset];
 	}
 	public boolean isReference() { return reference; }
-	public int length() { return kmers.size(); }
+	public int length() { return length; }
 	public int width() { return end - start + 1; }
 	/**
 	 * List of kmers that have been collapsed into this path
@@ -85,45 +131,80 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 	{
 		return additionalKmerOffsets != null ? additionalKmerOffsets : EMPTY_OFFSET_LIST;
 	}
+	/**
+	 * Approximate heap usage of this node, excluding any edge lists
+	 * @return estimated size in bytes
+	 */
+	public int estimatedSizeInBytes() {
+		int size = NODE_OVERHEAD_BYTES;
+		if (kmers != null) {
+			size += kmers.length * Long.BYTES + weight.length * Integer.BYTES;
+		}
+		if (additionalKmers != null) {
+			size += 2 * ARRAY_LIST_OVERHEAD_BYTES + additionalKmers.size() * (Long.BYTES + Integer.BYTES);
+		}
+		return size;
+	}
 	public KmerPathNode(long kmer, int start, int end, boolean reference, int weight) {
-		this.kmers = new LongArrayList(1);
-		this.kmers.add(kmer);
-		this.weight = new IntArrayList(1);
-		this.weight.add(weight);
+		this.kmers = new long[] { kmer };
+		this.weight = new int[] { weight };
+		this.length = 1;
 		this.totalWeight = weight;
 		this.start = start;
 		this.end = end;
 		this.reference = reference;
 	}
-	private KmerPathNode(LongArrayList kmer, int start, int end, boolean reference, int totalWeight, IntArrayList weight) {
-		this.kmers = kmer.clone();
-		this.weight = weight.clone();
+	/**
+	 * Creates a new node taking ownership of the given arrays
+	 */
+	private KmerPathNode(long[] kmer, int[] weight, int length, int start, int end, boolean reference, int totalWeight) {
+		this.kmers = kmer;
+		this.weight = weight;
+		this.length = length;
 		this.totalWeight = totalWeight;
 		this.start = start;
 		this.end = end;
 		this.reference = reference;
 	}
-	private KmerPathNode(LongArrayList kmer, int start, int end, boolean reference, IntArrayList weight) {
-		this(kmer, start, end, reference, sumWeights(weight), weight);
-	}
 	public KmerPathNode(KmerNode node) {
 		this(node.lastKmer(), node.lastStart(), node.lastEnd(), node.isReference(), node.weight());
 	}
-	private static int sumWeights(IntArrayList weight) {
+	private static int sumWeights(int[] weight, int length) {
 		int sum = 0;
-		for (int i = 0; i < weight.size(); i++) {
-			sum += weight.getInt(i);
+		for (int i = 0; i < length; i++) {
+			sum += weight[i];
 		}
 		return sum;
 	}
+	private void ensureCapacity(int capacity) {
+		if (kmers.length < capacity) {
+			int newCapacity = Math.max(capacity, kmers.length + (kmers.length >> 1) + 1);
+			kmers = Arrays.copyOf(kmers, newCapacity);
+			weight = Arrays.copyOf(weight, newCapacity);
+		}
+	}
+	private static boolean rangeEquals(long[] a, long[] b, int length) {
+		for (int i = 0; i < length; i++) {
+			if (a[i] != b[i]) return false;
+		}
+		return true;
+	}
+	private static boolean rangeEquals(int[] a, int[] b, int length) {
+		for (int i = 0; i < length; i++) {
+			if (a[i] != b[i]) return false;
+		}
+		return true;
+	}
 	public void append(KmerNode node) {
 		assert(!(node instanceof KmerPathNode)); // should be using prepend
 		assert(node.lastStart() == lastStart() + 1);
 		assert(node.lastEnd() == lastEnd() + 1);
 		assert(node.isReference() == isReference());
 		assert(nextList == null || nextList.size() == 0);
-		kmers.add(node.lastKmer());
-		weight.add(node.weight());
+		ensureCapacity(length + 1);
+		kmers[length] = node.lastKmer();
+		weight[length] = node.weight();
+		length++;
 		totalWeight += node.weight();
 		reference |= node.isReference();
 		if (Defaults.SANITY_CHECK_ASSEMBLY_GRAPH) {
@@ -145,10 +226,12 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 		assert(prevList.size() == 1);
 		assert(prevList.get(0) == node);
 		int nodeLength = node.length();
-		node.kmers.addAll(kmers);
+		node.ensureCapacity(nodeLength + length);
+		System.arraycopy(kmers, 0, node.kmers, nodeLength, length);
+		System.arraycopy(weight, 0, node.weight, nodeLength, length);
 		kmers = node.kmers;
-		node.weight.addAll(weight);
 		weight = node.weight;
+		length += nodeLength;
 		totalWeight += node.totalWeight;
 		reference |= node.reference;
 		if (additionalKmerOffsets != null) {
@@ -187,8 +270,8 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 				&& length() == node.length()
 				&& reference == node.reference
 				&& totalWeight == node.totalWeight 
-				&& kmers.equals(node.kmers)
-				&& weight.equals(node.weight)
+				&& rangeEquals(kmers, node.kmers, length)
+				&& rangeEquals(weight, node.weight, length)
 				&& hasSameCollapsedKmers(node);
 	}
 	/**
@@ -222,8 +305,9 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 		return next;
 	}
 	private boolean hasSameCollapsedKmers(KmerPathNode node) {
-		if (collapsedKmers().size() != node.collapsedKmers().size()) return false;
-		for (int i = 0; i < node.collapsedKmers().size(); i++) {
+		int count = node.additionalKmers == null ? 0 : node.additionalKmers.size();
+		if ((additionalKmers == null ? 0 : additionalKmers.size()) != count) return false;
+		for (int i = 0; i < count; i++) {
 			if (!containsCollapsedKmer(node.additionalKmers.getLong(i), node.additionalKmerOffsets.getInt(i))) {
 				return false;
 			}
@@ -273,17 +357,17 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 			additionalKmerOffsets.addAll(toMerge.additionalKmerOffsets);
 		}
 		if (additionalKmers == null) {
-			additionalKmers = toMerge.kmers;
-			additionalKmerOffsets = new IntArrayList(toMerge.kmers.size());
+			additionalKmers = new LongArrayList(toMerge.kmers, 0, toMerge.length);
+			additionalKmerOffsets = new IntArrayList(toMerge.length);
 		} else {
-			additionalKmers.addAll(toMerge.kmers);
+			additionalKmers.addElements(additionalKmers.size(), toMerge.kmers, 0, toMerge.length);
 		}
 		for (int i = 0; i < toMerge.length(); i++) {
 			additionalKmerOffsets.add(i);
 		}
 		totalWeight += toMerge.totalWeight;
-		for (int i = 0; i < weight.size(); i++) {
-			weight.set(i, weight.getInt(i) + toMerge.weight.getInt(i));
+		for (int i = 0; i < length; i++) {
+			weight[i] += toMerge.weight[i];
 		}
 		replaceEdges(toMerge, this);
 		if (Defaults.SANITY_CHECK_ASSEMBLY_GRAPH) {
@@ -301,6 +385,7 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 		assert(prevList == null || prevList.size() == 0);
 		kmers = null;
 		weight = null;
+		length = 0;
 		nextList = null;
 		prevList = null;
 		additionalKmers = null;
@@ -514,17 +599,17 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 		assert(firstNodeLength > 0);
 		assert(firstNodeLength < length());
 		// copy our new kmers and weights
-		LongArrayList kmerSecond = new LongArrayList(kmers.subList(firstNodeLength, length()));
-		IntArrayList weightSecond = new IntArrayList(weight.subList(firstNodeLength, length()));
+		long[] kmerSecond = Arrays.copyOfRange(kmers, firstNodeLength, length);
+		int[] weightSecond = Arrays.copyOfRange(weight, firstNodeLength, length);
 		// let split own our current arrays
-		this.kmers.removeElements(firstNodeLength, this.kmers.size());
-		this.weight.removeElements(firstNodeLength, this.weight.size());
 		KmerPathNode split = new KmerPathNode(
 				this.kmers,
+				this.weight,
+				firstNodeLength,
 				start,
 				end,
 				reference,
-				this.weight);
+				sumWeights(this.weight, firstNodeLength));
 		// Update incoming edges to split
 		split.prevList = this.prevList;
 		split.edgesSorted = this.edgesSorted; // edge sorting remains unchanged for all nodes
@@ -537,6 +622,7 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 		// outgoing edges remain unchanged since our end kmer is unchanged
 		this.kmers = kmerSecond;
 		this.weight = weightSecond;
+		this.length = kmerSecond.length;
 		this.totalWeight -= split.weight();
 		this.start += firstNodeLength;
 		this.end += firstNodeLength;
@@ -587,7 +673,7 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 	public KmerPathNode splitAtStartPosition(int newStartPosition) {
 		assert(newStartPosition > start);
 		assert(newStartPosition <= end);
-		KmerPathNode split = new KmerPathNode(kmers, start, newStartPosition - 1, reference, totalWeight, weight);
+		KmerPathNode split = new KmerPathNode(Arrays.copyOf(kmers, length), Arrays.copyOf(weight, length), length, start, newStartPosition - 1, reference, totalWeight);
 		this.start = newStartPosition;
 		if (nextList != null) {
 			ArrayList<KmerPathNode> newNextThis = new ArrayList<KmerPathNode>(nextList.size());
@@ -665,8 +751,8 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 		result = prime * result + end;
 		result = prime * result + totalWeight;
 		if (kmers != null) {
-			result = prime * result + Long.hashCode(kmers.getLong(0));
-			result = prime * result + Long.hashCode(kmers.getLong(kmers.size() - 1));
+			result = prime * result + Long.hashCode(kmers[0]);
+			result = prime * result + Long.hashCode(kmers[length - 1]);
 		}
 		// incorporating these adds hash cost whilst giving minimal improvement
 		// to hash collision rate
@@ -686,10 +772,12 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 		KmerPathNode other = (KmerPathNode) obj;
 		if (end != other.end)
 			return false;
+		if (length != other.length)
+			return false;
 		if (kmers == null) {
 			if (other.kmers != null)
 				return false;
-		} else if (!kmers.equals(other.kmers))
+		} else if (other.kmers == null || !rangeEquals(kmers, other.kmers, length))
 			return false;
 		if (reference != other.reference)
 			return false;
@@ -698,7 +786,7 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 		if (weight == null) {
 			if (other.weight != null)
 				return false;
-		} else if (!weight.equals(other.weight))
+		} else if (other.weight == null || !rangeEquals(weight, other.weight, length))
 			return false;
 		return true;
 	}
@@ -757,9 +845,10 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 			this.start++;
 			this.end++;
 		}
-		totalWeight -= weight.getInt(offset);
-		weight.removeInt(offset);
-		kmers.removeLong(offset);
+		totalWeight -= weight[offset];
+		System.arraycopy(kmers, offset + 1, kmers, offset, length - offset - 1);
+		System.arraycopy(weight, offset + 1, weight, offset, length - offset - 1);
+		length--;
 		if (additionalKmers != null) {
 			if (length() > 0) {
 				int offsetShift = offset == 0 ? 1 : 0;
@@ -849,9 +938,11 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 						long nkmer = n.firstKmer();
 						if (nkmer != node.kmer(i)) {
 							boolean foundMatchingAltKmer = false;
-							for (int j = 0; j < node.collapsedKmers().size(); j++) {
-								if (node.collapsedKmers().getLong(j) == nkmer) {
-									if (node.collapsedKmerOffsets().getInt(j) == i) {
+							LongArrayList collapsedKmers = node.collapsedKmers();
+							IntArrayList collapsedKmerOffsets = node.collapsedKmerOffsets();
+							for (int j = 0; j < collapsedKmers.size(); j++) {
+								if (collapsedKmers.getLong(j) == nkmer) {
+									if (collapsedKmerOffsets.getInt(j) == i) {
 										// found an alt kmer that goes to the expected node
 										foundMatchingAltKmer = true;
 										break;
@@ -1019,7 +1110,7 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 	 */
 	private static KmerPathNode removeWeight(ArrayDeque<KmerPathNode> outList, KmerPathNode node, int offset, int weightToRemove) {
 		assert(node.totalWeight >= weightToRemove);
-		int newWeight = node.weight.getInt(offset) - weightToRemove;
+		int newWeight = node.weight[offset] - weightToRemove;
 		if (newWeight == 0) {
 			// remove entire kmer from KmerPathNode
 			KmerPathNode split = node.removeKmer(offset);
@@ -1029,7 +1120,7 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 				node = split;
 			}
 		} else {
-			node.weight.set(offset, newWeight);
+			node.weight[offset] = newWeight;
 			node.totalWeight -= weightToRemove;
 		}
 		if (!node.isValid()) return null;
@@ -1074,9 +1165,9 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 		assert(length() <= maxPathLength);
 		assert(end - start <= maxSupportWidth);
 		for (int i = 1; i < length(); i++) {
-			assert(KmerEncodingHelper.isNext(k, kmers.getLong(i - 1), kmers.getLong(i)));
+			assert(KmerEncodingHelper.isNext(k, kmers[i - 1], kmers[i]));
 		}
-		assert(sumWeights(weight) == totalWeight);
+		assert(sumWeights(weight, length) == totalWeight);
 		if (nextList != null) {
 			for (KmerPathNode next : nextList) {
 				assert(KmerEncodingHelper.isNext(k, lastKmer(), next.firstKmer()));
@@ -1093,9 +1184,9 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 		assert(isValid());
 		assert(start <= end);
 		assert(totalWeight > 0);
-		assert(kmers.size() == length());
-		assert(weight.size() == length());
-		assert(sumWeights(weight) == totalWeight);
+		assert(kmers.length >= length());
+		assert(weight.length >= length());
+		assert(sumWeights(weight, length) == totalWeight);
 		assert(sanityCheckEdges(this, true));
 		assert(EMPTY_KMER_LIST != null && EMPTY_KMER_LIST.size() == 0); // fastutil doesn't have ImmutableList wrappers
 		assert((additionalKmerOffsets == null && additionalKmers == null) ||
@@ -4,6 +4,7 @@ import au.edu.wehi.idsv.*;
 import au.edu.wehi.idsv.bed.IntervalBed;
 import au.edu.wehi.idsv.debruijn.DeBruijnGraphBase;
 import au.edu.wehi.idsv.debruijn.KmerEncodingHelper;
+import au.edu.wehi.idsv.debruijn.positional.optimiseddatastructures.KmerNodeByFirstStartKmerSortedSet;
 import au.edu.wehi.idsv.graph.ScalingHelper;
 import au.edu.wehi.idsv.model.Models;
 import au.edu.wehi.idsv.util.IntervalUtil;
@@ -72,8 +73,8 @@ public class NonReferenceContigAssembler implements Iterator<SAMRecord> {
 	// TODO: OPT: don't use ArrayList<>() as child structure
 	// sort by end position so we can do fast overlap calculations
 	private Long2ObjectMap<Collection<KmerPathNodeKmerNode>> graphByKmerNode = new Long2ObjectOpenHashMap<Collection<KmerPathNodeKmerNode>>();
-	private TreeSet<KmerPathNode> graphByPosition = new TreeSet<KmerPathNode>(KmerNodeUtil.ByFirstStartKmer); // TODO: OPT: replace data structure
-	private SortedSet<KmerPathNode> nonReferenceGraphByPosition = new TreeSet<KmerPathNode>(KmerNodeUtil.ByFirstStartKmer); // TODO: OPT: replace data structure
+	private NavigableSet<KmerPathNode> graphByPosition = Defaults.USE_OPTIMISED_ASSEMBLY_DATA_STRUCTURES ? new KmerNodeByFirstStartKmerSortedSet<>(16) : new TreeSet<KmerPathNode>(KmerNodeUtil.ByFirstStartKmer);
+	private SortedSet<KmerPathNode> nonReferenceGraphByPosition = Defaults.USE_OPTIMISED_ASSEMBLY_DATA_STRUCTURES ? new KmerNodeByFirstStartKmerSortedSet<>(16) : new TreeSet<KmerPathNode>(KmerNodeUtil.ByFirstStartKmer);
 	private final EvidenceTracker evidenceTracker;
 	private final AssemblyEvidenceSource aes;
 	private final AssemblyIdGenerator assemblyNameGenerator;
@@ -406,6 +407,8 @@ public class NonReferenceContigAssembler implements Iterator<SAMRecord> {
 		}
 		lastNextPosition = nextPosition();
 		int count = 0;
+		long nodeBytes = 0;
+		long kmers = 0;
 		while (underlying.hasNext() && nextPosition() <= loadUntil) {
 			KmerPathNode node = underlying.next();
 			assert(lastUnderlyingStartPosition <= node.firstStart());
@@ -417,6 +420,10 @@ public class NonReferenceContigAssembler implements Iterator<SAMRecord> {
 			consumed++;
 			if (!node.isReference()) {
 				count++;
+				if (getTelemetry() != null) {
+					nodeBytes += node.estimatedSizeInBytes();
+					kmers += node.length();
+				}
 			}
 		}
 		int advanceWidth = nextPosition() - lastNextPosition;
@@ -429,7 +436,7 @@ public class NonReferenceContigAssembler implements Iterator<SAMRecord> {
 		}
 		if (getTelemetry() != null) {
 			long currentTime = System.nanoTime();
-			getTelemetry().loadGraph(referenceIndex, lastNextPosition, nextPosition(), count, filtered, currentTime - telemetryLastloadGraphs);
+			getTelemetry().loadGraph(referenceIndex, lastNextPosition, nextPosition(), count, kmers, graphByPosition.size(), nodeBytes, filtered, currentTime - telemetryLastloadGraphs);
 			telemetryLastloadGraphs = currentTime;
 		}
 		if (Defaults.SANITY_CHECK_ASSEMBLY_GRAPH) {
@@ -346,7 +346,7 @@ public class PathCollapseIterator extends CollapseIterator implements DeBruijnGr
 	}
 	private boolean hasSufficientEntropy(KmerPathNode node) {
 		if (minimumPathNodeEntropy <= 0) return true;
-		double entropy = SequenceUtil.shannonEntropy(KmerEncodingHelper.baseCounts(k, node.pathKmers()));
+		double entropy = SequenceUtil.shannonEntropy(KmerEncodingHelper.baseCounts(k, node.pathKmerArray(), node.length()));
 		return entropy > minimumPathNodeEntropy;
 	}
 	@Override
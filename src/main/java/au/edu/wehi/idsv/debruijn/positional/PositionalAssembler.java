@@ -9,6 +9,7 @@ import au.edu.wehi.idsv.picard.ReferenceLookup;
 import au.edu.wehi.idsv.sam.SamTags;
 import au.edu.wehi.idsv.util.FileHelper;
 import au.edu.wehi.idsv.visualisation.AssemblyTelemetry.AssemblyChunkTelemetry;
+import au.edu.wehi.idsv.visualisation.AssemblyTelemetry.AssemblyStage;
 import au.edu.wehi.idsv.visualisation.PositionalDeBruijnGraphTracker;
 import com.google.common.collect.*;
 import com.google.common.io.MoreFiles;
@@ -63,11 +64,17 @@ public class PositionalAssembler implements Iterator<SAMRecord> {
 	}
 	@Override
 	public boolean hasNext() {
+		long startTime = telemetry == null ? 0 : System.nanoTime();
 		ensureAssembler(Defaults.ATTEMPT_ASSEMBLY_RECOVERY, null);
-		return currentAssembler != null && currentAssembler.hasNext();
+		boolean result = currentAssembler != null && currentAssembler.hasNext();
+		if (telemetry != null) {
+			telemetry.addStageTime(AssemblyStage.Contig, System.nanoTime() - startTime, 0);
+		}
+		return result;
 	}
 	@Override
 	public SAMRecord next() {
+		long startTime = telemetry == null ? 0 : System.nanoTime();
 		ensureAssembler(Defaults.ATTEMPT_ASSEMBLY_RECOVERY, null);
 		SAMRecord r = currentAssembler.next();
 		if (direction != null) {
@@ -75,6 +82,9 @@ public class PositionalAssembler implements Iterator<SAMRecord> {
 			r.setAttribute(SamTags.ASSEMBLY_DIRECTION, direction.toChar());
 		}
 		contigGeneratedSinceException = true;
+		if (telemetry != null) {
+			telemetry.addStageTime(AssemblyStage.Contig, System.nanoTime() - startTime, 1);
+		}
 		return r;
 	}
 	private void flushIfRequired() {
@@ -266,14 +276,14 @@ public class PositionalAssembler implements Iterator<SAMRecord> {
 		currentContig = context.getDictionary().getSequence(referenceIndex).getSequenceName();
 		ReferenceIndexIterator evidenceIt = new ReferenceIndexIterator(inputIterator, referenceIndex);
 		evidenceTracker = new EvidenceTracker();
-		SupportNodeIterator supportIt = new SupportNodeIterator(k, evidenceIt, Math.max(2 * source.getMaxReadLength(), source.getMaxConcordantFragmentSize()), evidenceTracker, ap.includePairAnchors, ap.pairAnchorMismatchIgnoreEndBases);
-		AggregateNodeIterator agIt = new AggregateNodeIterator(supportIt);
-		Iterator<KmerNode> knIt = agIt;
+		SupportNodeIterator supportIt = new SupportNodeIterator(k, timed(evidenceIt, AssemblyStage.Evidence), Math.max(2 * source.getMaxReadLength(), source.getMaxConcordantFragmentSize()), evidenceTracker, ap.includePairAnchors, ap.pairAnchorMismatchIgnoreEndBases);
+		AggregateNodeIterator agIt = new AggregateNodeIterator(timed(supportIt, AssemblyStage.Support));
+		Iterator<KmerNode> knIt = timed(agIt, AssemblyStage.Aggregate);
 		if (Defaults.SANITY_CHECK_ASSEMBLY_GRAPH) {
 			knIt = evidenceTracker.new AggregateNodeAssertionInterceptor(knIt);
 		}
 		PathNodeIterator pathNodeIt = new PathNodeIterator(knIt, maxPathLength, k); 
-		Iterator<KmerPathNode> pnIt = pathNodeIt;
+		Iterator<KmerPathNode> pnIt = timed(pathNodeIt, AssemblyStage.PathNode);
 		if (Defaults.SANITY_CHECK_ASSEMBLY_GRAPH) {
 			pnIt = evidenceTracker.new PathNodeAssertionInterceptor(pnIt, "PathNodeIterator");
 		}
@@ -286,12 +296,12 @@ public class PositionalAssembler implements Iterator<SAMRecord> {
 			} else {
 				collapseIt = new LeafBubbleCollapseIterator(pnIt, k, maxPathCollapseLength, ap.errorCorrection.maxBaseMismatchForCollapse);
 			}
-			pnIt = collapseIt;
+			pnIt = timed(collapseIt, AssemblyStage.Collapse);
 			if (Defaults.SANITY_CHECK_ASSEMBLY_GRAPH) {
 				pnIt = evidenceTracker.new PathNodeAssertionInterceptor(pnIt, "PathCollapseIterator");
 			}
 			simplifyIt = new PathSimplificationIterator(pnIt, maxPathLength, maxKmerSupportIntervalWidth);
-			pnIt = simplifyIt;
+			pnIt = timed(simplifyIt, AssemblyStage.Simplify);
 			if (Defaults.SANITY_CHECK_ASSEMBLY_GRAPH) {
 				pnIt = evidenceTracker.new PathNodeAssertionInterceptor(pnIt, "PathSimplificationIterator");
 			}
@@ -313,6 +323,13 @@ public class PositionalAssembler implements Iterator<SAMRecord> {
 		currentAssembler.setTelemetry(getTelemetry());
 		return currentAssembler;
 	}
+	/**
+	 * Records the time spent in the given assembly stage if telemetry is enabled
+	 */
+	private <T> Iterator<T> timed(Iterator<T> it, AssemblyStage stage) {
+		if (telemetry == null) return it;
+		return telemetry.timed(it, stage);
+	}
 	public AssemblyChunkTelemetry getTelemetry() {
 		return telemetry;
 	}
@@ -0,0 +1,112 @@
+package au.edu.wehi.idsv.debruijn.positional.optimiseddatastructures;
+
+import au.edu.wehi.idsv.debruijn.positional.KmerNode;
+import au.edu.wehi.idsv.debruijn.positional.KmerNodeUtil;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Fully ordered equivalent of a TreeSet sorted by KmerNodeUtil.ByFirstStartKmer.
+ *
+ * Records are bucketed by first start position and kept sorted by descending first kmer
+ * within each position so the head of the set can be peeked and popped from the
+ * end of the position list. Blocks of positions are released as soon as they are emptied
+ * which suits a graph that is loaded at the front and flushed from behind.
+ *
+ * Iteration is lazy and supports both directions but the set must not be modified
+ * during iteration.
+ */
+public class KmerNodeByFirstStartKmerSortedSet<T extends KmerNode> extends SortedByPositionArrayBackedNavigablePartiallyOrderedSet<T> {
+    public KmerNodeByFirstStartKmerSortedSet(int blockBits) {
+        super(blockBits);
+    }
+
+    @Override
+    protected int getPosition(T obj) {
+        return obj.firstStart();
+    }
+
+    @Override
+    protected boolean areConsideredEqual(T o1, T o2) {
+        return o1.firstKmer() == o2.firstKmer();
+    }
+
+    /**
+     * Index of the given kmer in the descending kmer position list,
+     * or (-(insertion point) - 1) if not found
+     */
+    private static <T extends KmerNode> int indexOf(ArrayList<T> existing, long kmer) {
+        int low = 0;
+        int high = existing.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midKmer = existing.get(mid).firstKmer();
+            if (midKmer > kmer) {
+                low = mid + 1;
+            } else if (midKmer < kmer) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    @Override
+    protected boolean addAtPosition(ArrayList<T> existing, T obj) {
+        int index = indexOf(existing, obj.firstKmer());
+        if (index >= 0) return false;
+        existing.add(-index - 1, obj);
+        return true;
+    }
+
+    @Override
+    protected boolean removeAtPosition(ArrayList<T> existing, T obj) {
+        int index = indexOf(existing, obj.firstKmer());
+        if (index < 0) return false;
+        existing.remove(index);
+        return true;
+    }
+
+    @Override
+    protected boolean containsAtPosition(ArrayList<T> existing, T obj) {
+        return indexOf(existing, obj.firstKmer()) >= 0;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return Iterators.concat(Iterators.transform(positionIterator(false), list -> Lists.reverse(list).iterator()));
+    }
+
+    @Override
+    public Iterator<T> descendingIterator() {
+        return Iterators.concat(Iterators.transform(positionIterator(true), list -> list.iterator()));
+    }
+
+    @Override
+    public Object[] toArray() {
+        return Lists.newArrayList(iterator()).toArray();
+    }
+
+    @Override
+    public <U> U[] toArray(U[] a) {
+        return Lists.newArrayList(iterator()).toArray(a);
+    }
+
+    @Override
+    public T last() {
+        Iterator<T> it = descendingIterator();
+        if (!it.hasNext()) throw new NoSuchElementException();
+        return it.next();
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return KmerNodeUtil.ByFirstStartKmer;
+    }
+}
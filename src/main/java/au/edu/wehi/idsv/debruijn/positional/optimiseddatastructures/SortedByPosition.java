@@ -321,6 +321,59 @@ public abstract class SortedByPosition<T, TColl> {
         return list;
     }
 
+    /**
+     * Lazily iterates over the non-empty genomic position collections
+     * directly from the backing blocks.
+     * The collection must not be structurally modified during iteration.
+     * @param descending iterate from the last position to the first
+     */
+    protected Iterator<TColl> positionIterator(boolean descending) {
+        return new Iterator<TColl>() {
+            private Node<TColl> node = descending ? predecessor(null) : head;
+            private int offset = descending ? (1 << blockBits) : -1;
+            private TColl next = null;
+            private void advance() {
+                while (next == null && node != null) {
+                    offset += descending ? -1 : 1;
+                    if (offset < 0 || offset >= node.position.length) {
+                        node = descending ? predecessor(node) : (Node<TColl>)node.next;
+                        offset = descending ? (1 << blockBits) : -1;
+                    } else if (node.position[offset] != null && !positionIsEmpty(node.position[offset])) {
+                        next = node.position[offset];
+                    }
+                }
+            }
+            @Override
+            public boolean hasNext() {
+                advance();
+                return next != null;
+            }
+            @Override
+            public TColl next() {
+                advance();
+                if (next == null) throw new NoSuchElementException();
+                TColl result = next;
+                next = null;
+                return result;
+            }
+        };
+    }
+
+    /**
+     * Finds the block immediately before the given block.
+     * Blocks are singly linked but a collection only spans a small number of blocks.
+     * @param n block to find the predecessor of. null returns the last block.
+     * @return preceding block, null if n is the first block
+     */
+    private Node<TColl> predecessor(Node<TColl> n) {
+        if (head == n) return null;
+        Node<TColl> current = head;
+        while (current.next != n) {
+            current = current.next;
+        }
+        return current;
+    }
+
     public Iterator<T> iterator() {
         if (!"quiet".equals(System.getProperty("SortedByPosition.iterator.spamminess"))) {
             log.warn("SortedByPosition.iterator() call. This is inefficient and should be no be called in production code.");
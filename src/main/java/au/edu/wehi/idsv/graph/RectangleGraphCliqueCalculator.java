@@ -0,0 +1,23 @@
+package au.edu.wehi.idsv.graph;
+
+import au.edu.wehi.idsv.visualisation.TrackedState;
+
+import java.util.List;
+
+/**
+ * Streaming maximal clique calculator for rectangle graphs
+ */
+public interface RectangleGraphCliqueCalculator extends TrackedState {
+	/**
+	 * Adds the given node to the graph.
+	 * Nodes must be added in order of start X then start Y.
+	 * @param node node to add
+	 * @return maximal cliques that have been completed
+	 */
+	List<RectangleGraphNode> next(RectangleGraphNode node);
+	/**
+	 * Indicates that no more nodes will be added
+	 * @return all remaining maximal cliques
+	 */
+	List<RectangleGraphNode> complete();
+}
@@ -1,5 +1,6 @@
 package au.edu.wehi.idsv.graph;
 
+import au.edu.wehi.idsv.Defaults;
 import au.edu.wehi.idsv.visualisation.TrackedState;
 import com.google.common.collect.AbstractIterator;
 
@@ -15,7 +16,7 @@ import java.util.Queue;
  */
 public class RectangleGraphMaximalCliqueIterator extends AbstractIterator<RectangleGraphNode> implements TrackedState {
 	private final Queue<RectangleGraphNode> buffer = new ArrayDeque<RectangleGraphNode>();
-	private RectangleGraphMaximalCliqueCalculator calc = new RectangleGraphMaximalCliqueCalculator();
+	private RectangleGraphCliqueCalculator calc = Defaults.USE_SEGMENT_TREE_CLIQUE_CALCULATOR ? new SegmentTreeRectangleGraphMaximalCliqueCalculator() : new RectangleGraphMaximalCliqueCalculator();
 	private Iterator<RectangleGraphNode> it;
 	public RectangleGraphMaximalCliqueIterator(Iterator<RectangleGraphNode> it) {
 		this.it = it;
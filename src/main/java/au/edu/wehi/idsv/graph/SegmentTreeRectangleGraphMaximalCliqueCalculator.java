@@ -0,0 +1,539 @@
+package au.edu.wehi.idsv.graph;
+
+import au.edu.wehi.idsv.Defaults;
+import au.edu.wehi.idsv.visualisation.TrackedState;
+import com.google.common.collect.ImmutableList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntHeapPriorityQueue;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Calculates all maximal cliques of a rectangle graph.
+ *
+ * Produces the same cliques in the same order as RectangleGraphMaximalCliqueCalculator
+ * but stores the scanline in an array-backed segment tree over the compressed Y coordinates
+ * of the active rectangles instead of a linked list of scanline intervals.
+ *
+ * Each leaf of the tree corresponds to a Y coordinate. Leaves for coordinates at which an
+ * active rectangle starts or ends are live and each live leaf represents the scanline interval
+ * from its coordinate up to the next live coordinate. Interval weights are maintained
+ * by lazy range addition, and maximal clique start X positions by lazy range assignment.
+ *
+ * Since the tree is built over a fixed set of coordinates, incoming nodes are buffered and
+ * the tree is rebuilt with the coordinates of the buffered nodes once the buffer is at least
+ * as large as the number of live coordinates.
+ */
+public class SegmentTreeRectangleGraphMaximalCliqueCalculator implements RectangleGraphCliqueCalculator {
+	private static final int MIN_BATCH_SIZE = 1024;
+	/**
+	 * Scanline interval start X indicating the interval is not a maximal clique
+	 */
+	private static final long NOT_MAXIMAL = Long.MAX_VALUE;
+	private static final long SCANLINE_START = Long.MIN_VALUE;
+	private static final long SCANLINE_END = Long.MAX_VALUE - 1;
+	private final List<RectangleGraphNode> pending = new ArrayList<>();
+	private RectangleGraphNode lastNode = null;
+	private List<RectangleGraphNode> outBuffer = null;
+	/**
+	 * Active nodes by node id
+	 */
+	private RectangleGraphNode[] active = new RectangleGraphNode[16];
+	private final IntArrayList freeIds = new IntArrayList();
+	private int nextUnusedId = 0;
+	private final IntHeapPriorityQueue activeEndingX = new IntHeapPriorityQueue((a, b) -> Long.compare(active[a].endX, active[b].endX));
+	/**
+	 * Nodes starting at the current scanline X position
+	 */
+	private final IntArrayList startingCurrentScanline = new IntArrayList();
+	private long scanlineX = Long.MIN_VALUE;
+	// segment tree
+	private long[] coordinate;
+	private int coordinateCount;
+	private int liveCoordinateCount;
+	private int treeSize;
+	private int treeHeight;
+	/**
+	 * Number of active nodes starting at each coordinate
+	 */
+	private int[] startCount;
+	/**
+	 * Number of active nodes ending immediately before each coordinate
+	 */
+	private int[] endCount;
+	private boolean[] leafLive;
+	/**
+	 * Live leaf with both an active node starting at the interval start, and an active node
+	 * ending at the interval end. Such intervals become maximal cliques when nodes are added.
+	 */
+	private boolean[] leafBounded;
+	private long[] leafStartX;
+	/**
+	 * Pending weight addition for internal nodes, interval weight for leaves
+	 */
+	private long[] weight;
+	private boolean[] hasAssignStartX;
+	private long[] assignStartX;
+	private int[] liveCount;
+	private int[] boundedCount;
+	private int[] maximalCount;
+	/**
+	 * Reference calculator used when sanity checking
+	 */
+	private final RectangleGraphMaximalCliqueCalculator reference;
+	private final Queue<RectangleGraphNode> referenceCliques;
+	public SegmentTreeRectangleGraphMaximalCliqueCalculator() {
+		if (Defaults.SANITY_CHECK_CLIQUE) {
+			reference = new RectangleGraphMaximalCliqueCalculator();
+			referenceCliques = new ArrayDeque<>();
+		} else {
+			reference = null;
+			referenceCliques = null;
+		}
+		rebuild();
+	}
+	@Override
+	public List<RectangleGraphNode> next(RectangleGraphNode node) {
+		assert(node.startX <= node.endX);
+		assert(node.startY <= node.endY);
+		assert(node.weight > 0);
+		assert(lastNode == null || RectangleGraphNode.ByStartXY.compare(lastNode, node) <= 0);
+		lastNode = node;
+		if (reference != null) {
+			referenceCliques.addAll(reference.next(node));
+		}
+		pending.add(node);
+		if (pending.size() >= Math.max(MIN_BATCH_SIZE, liveCoordinateCount)) {
+			processPending();
+		}
+		return getCalledCliques();
+	}
+	@Override
+	public List<RectangleGraphNode> complete() {
+		if (reference != null) {
+			referenceCliques.addAll(reference.complete());
+		}
+		processPending();
+		completeScanline();
+		processEndXBefore(Long.MAX_VALUE);
+		assert(sanityCheckReferenceComplete());
+		return getCalledCliques();
+	}
+	private List<RectangleGraphNode> getCalledCliques() {
+		List<RectangleGraphNode> result = outBuffer == null ? ImmutableList.<RectangleGraphNode>of() : outBuffer;
+		outBuffer = null;
+		return result;
+	}
+	private void processPending() {
+		if (pending.isEmpty()) return;
+		rebuild();
+		for (RectangleGraphNode node : pending) {
+			if (node.startX != scanlineX) {
+				completeScanline();
+				processEndXBefore(node.startX);
+				scanlineX = node.startX;
+			}
+			add(node);
+		}
+		pending.clear();
+	}
+	private void add(RectangleGraphNode node) {
+		int id = allocateId(node);
+		int start = coordinateIndex(node.startY);
+		int end = coordinateIndex(node.endY + 1);
+		makeLive(start);
+		makeLive(end);
+		startCount[start]++;
+		endCount[end]++;
+		updateBoundedAround(start);
+		updateBoundedAround(end);
+		addWeight(1, 0, treeSize, start, end, node.weight);
+		activeEndingX.enqueue(id);
+		startingCurrentScanline.add(id);
+	}
+	/**
+	 * Updates the maximal clique status of the intervals covered by nodes starting on the current scanline
+	 */
+	private void completeScanline() {
+		for (int i = 0; i < startingCurrentScanline.size(); i++) {
+			RectangleGraphNode node = active[startingCurrentScanline.getInt(i)];
+			assignStartX(1, 0, treeSize, coordinateIndex(node.startY), coordinateIndex(node.endY + 1), scanlineX);
+		}
+		startingCurrentScanline.clear();
+	}
+	private void processEndXBefore(long endBeforeX) {
+		IntArrayList ending = new IntArrayList();
+		while (!activeEndingX.isEmpty() && active[activeEndingX.firstInt()].endX < endBeforeX) {
+			scanlineX = active[activeEndingX.firstInt()].endX;
+			while (!activeEndingX.isEmpty() && active[activeEndingX.firstInt()].endX == scanlineX) {
+				ending.add(activeEndingX.dequeueInt());
+			}
+			processEndingXOnCurrentScanline(ending);
+			ending.clear();
+		}
+	}
+	private void processEndingXOnCurrentScanline(IntArrayList ending) {
+		IntArrays.quickSort(ending.elements(), 0, ending.size(), (a, b) -> Long.compare(active[a].startY, active[b].startY));
+		callMaximumCliques(ending);
+		for (int i = 0; i < ending.size(); i++) {
+			RectangleGraphNode node = active[ending.getInt(i)];
+			int start = coordinateIndex(node.startY);
+			int end = coordinateIndex(node.endY + 1);
+			addWeight(1, 0, treeSize, start, end, -node.weight);
+			assignStartX(1, 0, treeSize, start, end, NOT_MAXIMAL);
+			startCount[start]--;
+			endCount[end]--;
+		}
+		// merge intervals no longer separated by any node
+		for (int i = 0; i < ending.size(); i++) {
+			RectangleGraphNode node = active[ending.getInt(i)];
+			makeDeadIfUnused(coordinateIndex(node.startY));
+			makeDeadIfUnused(coordinateIndex(node.endY + 1));
+		}
+		for (int i = 0; i < ending.size(); i++) {
+			int id = ending.getInt(i);
+			RectangleGraphNode node = active[id];
+			updateBoundedAround(coordinateIndex(node.startY));
+			updateBoundedAround(coordinateIndex(node.endY + 1));
+			active[id] = null;
+			freeIds.add(id);
+		}
+	}
+	/**
+	 * Calls maximum cliques
+	 * @param endingCurrentScanline nodes ending here sorted by start Y. Maximum cliques will always occur within one of these intervals
+	 */
+	private void callMaximumCliques(IntArrayList endingCurrentScanline) {
+		IntArrayList leaves = new IntArrayList();
+		int index = 0;
+		while (index < endingCurrentScanline.size()) {
+			long startY = active[endingCurrentScanline.getInt(index)].startY;
+			long endYexclusive = active[endingCurrentScanline.getInt(index)].endY + 1;
+			index++;
+			while (index < endingCurrentScanline.size() && active[endingCurrentScanline.getInt(index)].startY <= endYexclusive) {
+				// expand the current calling interval due to overlap
+				endYexclusive = Math.max(endYexclusive, active[endingCurrentScanline.getInt(index)].endY + 1);
+				index++;
+			}
+			collectMaximal(1, 0, treeSize, coordinateIndex(startY), coordinateIndex(endYexclusive), leaves);
+			for (int i = 0; i < leaves.size(); i++) {
+				int leaf = leaves.getInt(i);
+				RectangleGraphNode clique = new RectangleGraphNode(
+						leafStartX[leaf], scanlineX,
+						coordinate[leaf], coordinate[nextLive(leaf + 1)] - 1, // convert back from half-open to close interval
+						weight[treeSize + leaf]);
+				assert(sanityCheckReference(clique));
+				if (outBuffer == null) {
+					outBuffer = new ArrayList<>();
+				}
+				outBuffer.add(clique);
+			}
+			leaves.clear();
+		}
+	}
+	private int allocateId(RectangleGraphNode node) {
+		int id;
+		if (freeIds.isEmpty()) {
+			id = nextUnusedId++;
+			if (id >= active.length) {
+				active = Arrays.copyOf(active, active.length * 2);
+			}
+		} else {
+			id = freeIds.popInt();
+		}
+		active[id] = node;
+		return id;
+	}
+	private int coordinateIndex(long y) {
+		int index = Arrays.binarySearch(coordinate, 0, coordinateCount, y);
+		assert(index >= 0);
+		return index;
+	}
+	/**
+	 * Splits the scanline interval containing the given coordinate so an interval starts at the coordinate
+	 */
+	private void makeLive(int leaf) {
+		if (leafLive[leaf]) return;
+		// both sides of a split interval are no longer maximal cliques
+		assignStartX(1, 0, treeSize, previousLive(leaf - 1), nextLive(leaf + 1), NOT_MAXIMAL);
+		updateLeaf(leaf, true, false);
+		liveCoordinateCount++;
+	}
+	private void makeDeadIfUnused(int leaf) {
+		if (!leafLive[leaf] || startCount[leaf] != 0 || endCount[leaf] != 0 || leaf == 0 || leaf == coordinateCount - 1) return;
+		updateLeaf(leaf, false, false);
+		liveCoordinateCount--;
+	}
+	/**
+	 * Updates the bounded state of the intervals ending at and starting from the given coordinate
+	 */
+	private void updateBoundedAround(int leaf) {
+		updateBounded(previousLive(leaf));
+		if (leaf > 0) {
+			updateBounded(previousLive(leaf - 1));
+		}
+	}
+	private void updateBounded(int leaf) {
+		if (leaf < 0 || !leafLive[leaf]) return;
+		int next = nextLive(leaf + 1);
+		boolean bounded = next >= 0 && startCount[leaf] > 0 && endCount[next] > 0;
+		if (bounded != leafBounded[leaf]) {
+			updateLeaf(leaf, true, bounded);
+		}
+	}
+	/**
+	 * Rebuilds the segment tree over the live coordinates and the coordinates of all pending nodes
+	 */
+	private void rebuild() {
+		LongArrayList newCoordinates = new LongArrayList(liveCoordinateCount + 2 * pending.size() + 2);
+		newCoordinates.add(SCANLINE_START);
+		newCoordinates.add(SCANLINE_END);
+		for (int i = 0; i < coordinateCount; i++) {
+			if (leafLive[i]) {
+				newCoordinates.add(coordinate[i]);
+			}
+		}
+		for (RectangleGraphNode node : pending) {
+			newCoordinates.add(node.startY);
+			newCoordinates.add(node.endY + 1);
+		}
+		long[] c = newCoordinates.elements();
+		LongArrays.quickSort(c, 0, newCoordinates.size());
+		int n = 0;
+		for (int i = 0; i < newCoordinates.size(); i++) {
+			if (n == 0 || c[n - 1] != c[i]) {
+				c[n++] = c[i];
+			}
+		}
+		// materialise leaf values
+		for (int node = 1; node < treeSize; node++) {
+			push(node);
+		}
+		int height = 1;
+		while ((1 << height) < n) height++;
+		int size = 1 << height;
+		int[] newStartCount = new int[n];
+		int[] newEndCount = new int[n];
+		boolean[] newLeafLive = new boolean[size];
+		boolean[] newLeafBounded = new boolean[size];
+		long[] newLeafStartX = new long[size];
+		long[] newWeight = new long[2 * size];
+		Arrays.fill(newLeafStartX, NOT_MAXIMAL);
+		// last live leaf of the existing tree at or before the current coordinate
+		int owner = -1;
+		int lastLive = -1;
+		int newLiveCount = 0;
+		for (int i = 0, j = 0; i < n; i++) {
+			for (; j < coordinateCount && coordinate[j] <= c[i]; j++) {
+				if (leafLive[j]) {
+					owner = j;
+				}
+			}
+			if (owner >= 0) {
+				newWeight[size + i] = weight[treeSize + owner];
+				if (coordinate[owner] == c[i]) {
+					newLeafLive[i] = true;
+					newLeafStartX[i] = leafStartX[owner];
+					newStartCount[i] = startCount[owner];
+					newEndCount[i] = endCount[owner];
+				}
+			}
+			if (i == 0 || i == n - 1) {
+				newLeafLive[i] = true;
+			}
+			if (newLeafLive[i]) {
+				if (lastLive >= 0) {
+					newLeafBounded[lastLive] = newStartCount[lastLive] > 0 && newEndCount[i] > 0;
+				}
+				lastLive = i;
+				newLiveCount++;
+			}
+		}
+		coordinate = c;
+		coordinateCount = n;
+		liveCoordinateCount = newLiveCount;
+		treeHeight = height;
+		treeSize = size;
+		startCount = newStartCount;
+		endCount = newEndCount;
+		leafLive = newLeafLive;
+		leafBounded = newLeafBounded;
+		leafStartX = newLeafStartX;
+		weight = newWeight;
+		hasAssignStartX = new boolean[size];
+		assignStartX = new long[size];
+		liveCount = new int[2 * size];
+		boundedCount = new int[2 * size];
+		maximalCount = new int[2 * size];
+		for (int i = 0; i < size; i++) {
+			setLeafCounts(i);
+		}
+		for (int node = size - 1; node >= 1; node--) {
+			pull(node);
+		}
+	}
+	private void setLeafCounts(int leaf) {
+		int node = treeSize + leaf;
+		liveCount[node] = leafLive[leaf] ? 1 : 0;
+		boundedCount[node] = leafBounded[leaf] ? 1 : 0;
+		maximalCount[node] = leafLive[leaf] && leafStartX[leaf] != NOT_MAXIMAL ? 1 : 0;
+	}
+	private void updateLeaf(int leaf, boolean live, boolean bounded) {
+		int node = treeSize + leaf;
+		for (int shift = treeHeight; shift > 0; shift--) {
+			push(node >> shift);
+		}
+		leafLive[leaf] = live;
+		leafBounded[leaf] = bounded;
+		setLeafCounts(leaf);
+		for (node >>= 1; node >= 1; node >>= 1) {
+			pull(node);
+		}
+	}
+	private void pull(int node) {
+		liveCount[node] = liveCount[2 * node] + liveCount[2 * node + 1];
+		boundedCount[node] = boundedCount[2 * node] + boundedCount[2 * node + 1];
+		maximalCount[node] = maximalCount[2 * node] + maximalCount[2 * node + 1];
+	}
+	private void push(int node) {
+		if (weight[node] != 0) {
+			weight[2 * node] += weight[node];
+			weight[2 * node + 1] += weight[node];
+			weight[node] = 0;
+		}
+		if (hasAssignStartX[node]) {
+			applyAssignStartX(2 * node, assignStartX[node]);
+			applyAssignStartX(2 * node + 1, assignStartX[node]);
+			hasAssignStartX[node] = false;
+		}
+	}
+	/**
+	 * Sets the start X of all bounded intervals to the given value and all other intervals to NOT_MAXIMAL
+	 */
+	private void applyAssignStartX(int node, long x) {
+		if (node >= treeSize) {
+			int leaf = node - treeSize;
+			leafStartX[leaf] = leafBounded[leaf] ? x : NOT_MAXIMAL;
+			setLeafCounts(leaf);
+		} else {
+			hasAssignStartX[node] = true;
+			assignStartX[node] = x;
+			maximalCount[node] = x == NOT_MAXIMAL ? 0 : boundedCount[node];
+		}
+	}
+	private void assignStartX(int node, int nodeStart, int nodeEnd, int start, int end, long x) {
+		if (end <= nodeStart || nodeEnd <= start) return;
+		if (start <= nodeStart && nodeEnd <= end) {
+			applyAssignStartX(node, x);
+			return;
+		}
+		push(node);
+		int mid = (nodeStart + nodeEnd) >>> 1;
+		assignStartX(2 * node, nodeStart, mid, start, end, x);
+		assignStartX(2 * node + 1, mid, nodeEnd, start, end, x);
+		pull(node);
+	}
+	private void addWeight(int node, int nodeStart, int nodeEnd, int start, int end, long delta) {
+		if (end <= nodeStart || nodeEnd <= start) return;
+		if (start <= nodeStart && nodeEnd <= end) {
+			weight[node] += delta;
+			return;
+		}
+		int mid = (nodeStart + nodeEnd) >>> 1;
+		addWeight(2 * node, nodeStart, mid, start, end, delta);
+		addWeight(2 * node + 1, mid, nodeEnd, start, end, delta);
+	}
+	/**
+	 * Finds the maximal clique intervals starting in the given range.
+	 * Leaf values of the returned leaves are materialised.
+	 */
+	private void collectMaximal(int node, int nodeStart, int nodeEnd, int start, int end, IntArrayList result) {
+		if (end <= nodeStart || nodeEnd <= start || maximalCount[node] == 0) return;
+		if (node >= treeSize) {
+			result.add(nodeStart);
+			return;
+		}
+		push(node);
+		int mid = (nodeStart + nodeEnd) >>> 1;
+		collectMaximal(2 * node, nodeStart, mid, start, end, result);
+		collectMaximal(2 * node + 1, mid, nodeEnd, start, end, result);
+	}
+	/**
+	 * @return first live leaf at or after the given leaf, -1 if no such leaf exists
+	 */
+	private int nextLive(int leaf) {
+		return nextLive(1, 0, treeSize, leaf);
+	}
+	private int nextLive(int node, int nodeStart, int nodeEnd, int leaf) {
+		if (nodeEnd <= leaf || liveCount[node] == 0) return -1;
+		if (node >= treeSize) return nodeStart;
+		int mid = (nodeStart + nodeEnd) >>> 1;
+		int result = nextLive(2 * node, nodeStart, mid, leaf);
+		if (result < 0) {
+			result = nextLive(2 * node + 1, mid, nodeEnd, leaf);
+		}
+		return result;
+	}
+	/**
+	 * @return last live leaf at or before the given leaf, -1 if no such leaf exists
+	 */
+	private int previousLive(int leaf) {
+		return previousLive(1, 0, treeSize, leaf);
+	}
+	private int previousLive(int node, int nodeStart, int nodeEnd, int leaf) {
+		if (leaf < nodeStart || liveCount[node] == 0) return -1;
+		if (node >= treeSize) return nodeStart;
+		int mid = (nodeStart + nodeEnd) >>> 1;
+		int result = previousLive(2 * node + 1, mid, nodeEnd, leaf);
+		if (result < 0) {
+			result = previousLive(2 * node, nodeStart, mid, leaf);
+		}
+		return result;
+	}
+	private boolean sanityCheckReference(RectangleGraphNode clique) {
+		if (!Defaults.SANITY_CHECK_CLIQUE) return true;
+		RectangleGraphNode expected = referenceCliques.poll();
+		assert(expected != null);
+		assert(expected.isSameCoordinate(clique));
+		assert(expected.weight == clique.weight);
+		return true;
+	}
+	private boolean sanityCheckReferenceComplete() {
+		if (!Defaults.SANITY_CHECK_CLIQUE) return true;
+		assert(referenceCliques.isEmpty());
+		return true;
+	}
+
+	@Override
+	public String[] trackedNames() {
+		return new String[] {
+			"outBufferSize",
+			"activeEndingXSize",
+			"pendingSize",
+			"liveCoordinateCount",
+		};
+	}
+
+	@Override
+	public Object[] trackedState() {
+		return new Object[] {
+				outBuffer == null ? 0 : outBuffer.size(),
+				activeEndingX.size(),
+				pending.size(),
+				liveCoordinateCount,
+		};
+	}
+
+	@Override
+	public Collection<TrackedState> trackedObjects() {
+		return ImmutableList.of(this);
+	}
+}
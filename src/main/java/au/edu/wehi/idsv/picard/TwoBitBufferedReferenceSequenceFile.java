@@ -1,27 +1,38 @@
 package au.edu.wehi.idsv.picard;
 
 import au.edu.wehi.idsv.debruijn.KmerEncodingHelper;
-import au.edu.wehi.idsv.debruijn.PackedSequence;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+import com.google.common.math.IntMath;
 import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.reference.ReferenceSequence;
 import htsjdk.samtools.reference.ReferenceSequenceFile;
 import htsjdk.samtools.util.Log;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 
 import java.io.*;
-import java.nio.MappedByteBuffer;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
-import java.time.OffsetTime;
-import java.util.BitSet;
-import java.util.stream.Stream;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.UUID;
 
 /**
  * 2bit encodes and buffers the entire reference to enable efficient random lookup of small subsequences
+ *
+ * The optional cache file stores the packed contigs in a flat binary format that is
+ * memory-mapped on load, avoiding per-process deserialisation of the reference.
  * @author Daniel Cameron
  *
  */
 public class TwoBitBufferedReferenceSequenceFile implements ReferenceSequenceFile, ReferenceLookup {
 	private static final Log log = Log.getInstance(TwoBitBufferedReferenceSequenceFile.class);
+	private static final long CACHE_MAGIC = 0x4752494453533242L; // "GRIDSS2B"
+	private static final int CACHE_VERSION = 1;
 	private final ReferenceSequenceFile underlying;
 	private final PackedReferenceSequence[] referenceIndexLookup;
 	private File cacheFile;
@@ -41,24 +52,89 @@ public class TwoBitBufferedReferenceSequenceFile implements ReferenceSequenceFil
 		this.cacheFile = cache;
 	}
 	public byte getBase(int referenceIndex, int position) {
+		PackedReferenceSequence seq = getPackedSequence(referenceIndex);
+		if (seq.isAmbiguous(position - 1)) {
+			return 'N';
+		}
+		return seq.get(position - 1);
+	}
+	private PackedReferenceSequence getPackedSequence(int referenceIndex) {
 		PackedReferenceSequence seq = referenceIndexLookup[referenceIndex];
 		if (seq == null) {
 			seq = addToCache(underlying.getSequenceDictionary().getSequence(referenceIndex).getSequenceName());
 		}
-		if (seq.ambiguous.get(position - 1)) {
-			return 'N';
-		}
-		return seq.get(position - 1);
+		return seq;
+	}
+	/**
+	 * Counts the G and C bases in the given interval.
+	 * The interval is truncated to the contig bounds.
+	 * @param referenceIndex contig
+	 * @param start 1-based start position (inclusive)
+	 * @param end 1-based end position (inclusive)
+	 * @return number of G or C bases
+	 */
+	public int getGcCount(int referenceIndex, int start, int end) {
+		PackedReferenceSequence seq = getPackedSequence(referenceIndex);
+		int from = clamp(start - 1, seq.length);
+		int to = clamp(end, seq.length);
+		if (to <= from) return 0;
+		return seq.gcCountBefore(to) - seq.gcCountBefore(from);
+	}
+	/**
+	 * Counts the unambiguous (A, C, G, or T) bases in the given interval.
+	 * The interval is truncated to the contig bounds.
+	 * @param referenceIndex contig
+	 * @param start 1-based start position (inclusive)
+	 * @param end 1-based end position (inclusive)
+	 * @return number of unambiguous bases
+	 */
+	public int getUnambiguousCount(int referenceIndex, int start, int end) {
+		PackedReferenceSequence seq = getPackedSequence(referenceIndex);
+		int from = clamp(start - 1, seq.length);
+		int to = clamp(end, seq.length);
+		if (to <= from) return 0;
+		return (to - from) - (seq.ambiguousCountBefore(to) - seq.ambiguousCountBefore(from));
 	}
+	private static int clamp(int offset, int length) {
+		return Math.max(0, Math.min(offset, length));
+	}
+	/**
+	 * Loads the reference genome from the given cache file.
+	 * Packed contig sequences are memory-mapped read-only so the
+	 * cache is shared between processes through the OS page cache.
+	 */
 	public synchronized void load(File file) {
 		ImmutableMap.Builder<String, PackedReferenceSequence> builder = ImmutableMap.<String, PackedReferenceSequence>builder();
-		try(FileInputStream fis = new FileInputStream(file)) {
-			try(ObjectInputStream ois = new ObjectInputStream(fis)) {
-				for (int i =  0; i < referenceIndexLookup.length; i++) {
-					referenceIndexLookup[i] = (PackedReferenceSequence)ois.readObject();
-					builder.put(referenceIndexLookup[i].name, referenceIndexLookup[i]);
+		try (FileInputStream fis = new FileInputStream(file)) {
+			FileChannel channel = fis.getChannel();
+			CountingInputStream cis = new CountingInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+			DataInputStream dis = new DataInputStream(cis);
+			if (dis.readLong() != CACHE_MAGIC || dis.readInt() != CACHE_VERSION) {
+				throw new IOException("Not a 2bit reference cache file or cache format is outdated");
+			}
+			int contigCount = dis.readInt();
+			if (contigCount != referenceIndexLookup.length) {
+				throw new IOException(String.format("Cache contains %d contigs but reference has %d", contigCount, referenceIndexLookup.length));
+			}
+			PackedReferenceSequence[] loaded = new PackedReferenceSequence[contigCount];
+			for (int i = 0; i < contigCount; i++) {
+				String name = dis.readUTF();
+				int contigIndex = dis.readInt();
+				int length = dis.readInt();
+				int ambiguousRuns = dis.readInt();
+				int[] ambiguousStart = new int[ambiguousRuns];
+				int[] ambiguousEnd = new int[ambiguousRuns];
+				for (int j = 0; j < ambiguousRuns; j++) {
+					ambiguousStart[j] = dis.readInt();
+					ambiguousEnd[j] = dis.readInt();
 				}
+				int packedBytes = PackedReferenceSequence.packedByteCount(length);
+				ByteBuffer packed = channel.map(FileChannel.MapMode.READ_ONLY, cis.getCount(), packedBytes);
+				ByteStreams.skipFully(dis, packedBytes);
+				loaded[i] = new PackedReferenceSequence(name, contigIndex, length, packed, ambiguousStart, ambiguousEnd);
+				builder.put(name, loaded[i]);
 			}
+			System.arraycopy(loaded, 0, referenceIndexLookup, 0, contigCount);
 			cache = builder.build();
 		} catch (Exception e) {
 			log.error("Error loading reference genome from cache " + file, e);
@@ -68,60 +144,231 @@ public class TwoBitBufferedReferenceSequenceFile implements ReferenceSequenceFil
 		if (file.exists()) {
 			throw new IllegalArgumentException(file + " already exists");
 		}
+		saveOrReplace(file);
+	}
+	/**
+	 * Writes the cache to a temporary file then atomically moves it into place
+	 * so concurrent processes never observe a partially written cache.
+	 */
+	private synchronized void saveOrReplace(File file) {
 		// Ensure the lookup is fully populated
 		underlying.getSequenceDictionary()
 				.getSequences()
 				.stream()
 				.map(s -> s.getSequenceName())
 				.forEach(s -> cacheLoad(s));
-		try(FileOutputStream fos = new FileOutputStream(file)) {
-			try(ObjectOutputStream oos = new ObjectOutputStream(fos)) {
-				for (int i =  0; i < referenceIndexLookup.length; i++) {
-					oos.writeObject(referenceIndexLookup[i]);
+		File tmp = new File(file.getParentFile(), "gridss.tmp." + UUID.randomUUID() + "." + file.getName());
+		try {
+			try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+				dos.writeLong(CACHE_MAGIC);
+				dos.writeInt(CACHE_VERSION);
+				dos.writeInt(referenceIndexLookup.length);
+				for (int i = 0; i < referenceIndexLookup.length; i++) {
+					referenceIndexLookup[i].write(dos);
 				}
 			}
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
 		} catch (Exception e) {
 			log.error("Error saving reference genome to cache file " + file, e);
 			try {
-				if (file.exists()) {
-					Files.delete(file.toPath());
-				}
+				Files.deleteIfExists(tmp.toPath());
 			} catch (IOException e1) {
 				// swallow recovery exception
 			}
 		}
 	}
-	private static class PackedReferenceSequence extends PackedSequence implements Serializable {
+	private static boolean isCurrentCacheFormat(File file) {
+		try (DataInputStream dis = new DataInputStream(new FileInputStream(file))) {
+			return dis.readLong() == CACHE_MAGIC && dis.readInt() == CACHE_VERSION;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+	/**
+	 * 2bit packed contig sequence with ambiguous bases stored as runs.
+	 * Sequence bytes are either heap allocated or memory-mapped from the cache file.
+	 */
+	private static class PackedReferenceSequence {
+		private static final int BASES_PER_BYTE = 4;
+		/**
+		 * Number of bases between cumulative GC count checkpoints.
+		 * Must be a multiple of the number of bases packed into a long.
+		 */
+		private static final int GC_CHECKPOINT_BASES = 256;
+		/**
+		 * Low bit of each 2bit base. G and C are the only bases with the low bit set.
+		 */
+		private static final long GC_BITS = 0x5555555555555555L;
 		private final String name;
-	    private final int contigIndex;
-	    private final long length;
-	    private final BitSet ambiguous;
+		private final int contigIndex;
+		private final int length;
+		/**
+		 * First base is packed in the MSBs of the first byte
+		 */
+		private final ByteBuffer packed;
+		/**
+		 * Sorted 0-based half-open intervals of ambiguous bases
+		 */
+		private final int[] ambiguousStart;
+		private final int[] ambiguousEnd;
+		/**
+		 * Number of G/C bases before each checkpoint. Lazily calculated.
+		 */
+		private volatile int[] gcCheckpoint;
+		/**
+		 * Number of ambiguous bases before each ambiguous run. Lazily calculated.
+		 */
+		private volatile int[] ambiguousCumulative;
 		public PackedReferenceSequence(ReferenceSequence seq) {
-			super(seq.getBases(), false, false);
 			this.name = seq.getName();
 			this.contigIndex = seq.getContigIndex();
 			this.length = seq.length();
-			this.ambiguous = new BitSet(seq.length());
 			byte[] seqBases = seq.getBases();
+			byte[] bytes = new byte[packedByteCount(length)];
+			IntArrayList start = new IntArrayList();
+			IntArrayList end = new IntArrayList();
 			for (int i = 0; i < length; i++) {
-				if (KmerEncodingHelper.isAmbiguous(seqBases[i])) {
-					ambiguous.set(i);
+				byte base = seqBases[i];
+				if (KmerEncodingHelper.isAmbiguous(base)) {
+					if (!end.isEmpty() && end.getInt(end.size() - 1) == i) {
+						end.set(end.size() - 1, i + 1);
+					} else {
+						start.add(i);
+						end.add(i + 1);
+					}
+				} else {
+					bytes[i / BASES_PER_BYTE] |= KmerEncodingHelper.picardBaseToEncoded(base) << shift(i);
 				}
 			}
+			this.packed = ByteBuffer.wrap(bytes);
+			this.ambiguousStart = start.toIntArray();
+			this.ambiguousEnd = end.toIntArray();
+		}
+		public PackedReferenceSequence(String name, int contigIndex, int length, ByteBuffer packed, int[] ambiguousStart, int[] ambiguousEnd) {
+			this.name = name;
+			this.contigIndex = contigIndex;
+			this.length = length;
+			this.packed = packed;
+			this.ambiguousStart = ambiguousStart;
+			this.ambiguousEnd = ambiguousEnd;
+		}
+		public static int packedByteCount(int length) {
+			return IntMath.divide(length, BASES_PER_BYTE, RoundingMode.CEILING);
+		}
+		private static int shift(int offset) {
+			return 2 * (BASES_PER_BYTE - 1 - (offset % BASES_PER_BYTE));
+		}
+		public byte get(int offset) {
+			int encoded = (packed.get(offset / BASES_PER_BYTE) >>> shift(offset)) & 3;
+			return KmerEncodingHelper.encodedToPicardBase(encoded);
+		}
+		/**
+		 * @return index of the first ambiguous run ending after the given offset
+		 */
+		private int firstAmbiguousRunEndingAfter(int offset) {
+			int i = Arrays.binarySearch(ambiguousEnd, offset);
+			return i >= 0 ? i + 1 : -i - 1;
+		}
+		public boolean isAmbiguous(int offset) {
+			int i = firstAmbiguousRunEndingAfter(offset);
+			return i < ambiguousStart.length && ambiguousStart[i] <= offset;
+		}
+		/**
+		 * Ambiguous bases are packed as T so are never counted as G/C
+		 * @return number of G/C bases in packed bytes [startByte, endByte)
+		 */
+		private int gcCount(int startByte, int endByte) {
+			int count = 0;
+			int i = startByte;
+			for (; i + Long.BYTES <= endByte; i += Long.BYTES) {
+				count += Long.bitCount(packed.getLong(i) & GC_BITS);
+			}
+			for (; i < endByte; i++) {
+				count += Integer.bitCount(packed.get(i) & (int)GC_BITS & 0xFF);
+			}
+			return count;
+		}
+		private int[] ensureGcCheckpoints() {
+			int[] checkpoint = gcCheckpoint;
+			if (checkpoint == null) {
+				int bytesPerCheckpoint = GC_CHECKPOINT_BASES / BASES_PER_BYTE;
+				int packedBytes = packedByteCount(length);
+				checkpoint = new int[length / GC_CHECKPOINT_BASES + 1];
+				for (int i = 1; i < checkpoint.length; i++) {
+					checkpoint[i] = checkpoint[i - 1] + gcCount((i - 1) * bytesPerCheckpoint, Math.min(packedBytes, i * bytesPerCheckpoint));
+				}
+				gcCheckpoint = checkpoint;
+			}
+			return checkpoint;
+		}
+		/**
+		 * @return number of G/C bases before the given offset
+		 */
+		public int gcCountBefore(int offset) {
+			int[] checkpoint = ensureGcCheckpoints();
+			int block = offset / GC_CHECKPOINT_BASES;
+			int fullBytesEnd = offset / BASES_PER_BYTE;
+			int count = checkpoint[block] + gcCount(block * (GC_CHECKPOINT_BASES / BASES_PER_BYTE), fullBytesEnd);
+			int partialBases = offset % BASES_PER_BYTE;
+			if (partialBases > 0) {
+				int mask = (0xFF << (8 - 2 * partialBases)) & (int)GC_BITS & 0xFF;
+				count += Integer.bitCount(packed.get(fullBytesEnd) & mask);
+			}
+			return count;
+		}
+		/**
+		 * @return number of ambiguous bases before the given offset
+		 */
+		public int ambiguousCountBefore(int offset) {
+			int[] cumulative = ambiguousCumulative;
+			if (cumulative == null) {
+				cumulative = new int[ambiguousStart.length + 1];
+				for (int i = 0; i < ambiguousStart.length; i++) {
+					cumulative[i + 1] = cumulative[i] + ambiguousEnd[i] - ambiguousStart[i];
+				}
+				ambiguousCumulative = cumulative;
+			}
+			int i = firstAmbiguousRunEndingAfter(offset);
+			int count = cumulative[i];
+			if (i < ambiguousStart.length && ambiguousStart[i] < offset) {
+				count += offset - ambiguousStart[i];
+			}
+			return count;
 		}
 		public ReferenceSequence getSequence() {
 			return getSubsequenceAt(1, length);
 		}
 		public ReferenceSequence getSubsequenceAt(long start, long stop) {
+			int offset = (int)(start - 1);
 			int length = (int)(stop - start + 1);
-			ReferenceSequence seq = new ReferenceSequence(name, contigIndex, getBytes((int)(start - 1), length));
-			byte[] seqBases = seq.getBases();
+			byte[] seqBases = new byte[length];
 			for (int i = 0; i < length; i++) {
-				if (ambiguous.get((int)start - 1 + i)) {
-					seqBases[i] = 'N';
-				}
+				seqBases[i] = get(offset + i);
+			}
+			for (int i = firstAmbiguousRunEndingAfter(offset); i < ambiguousStart.length && ambiguousStart[i] < offset + length; i++) {
+				int from = Math.max(ambiguousStart[i], offset) - offset;
+				int to = Math.min(ambiguousEnd[i], offset + length) - offset;
+				Arrays.fill(seqBases, from, to, (byte)'N');
+			}
+			return new ReferenceSequence(name, contigIndex, seqBases);
+		}
+		public void write(DataOutputStream dos) throws IOException {
+			dos.writeUTF(name);
+			dos.writeInt(contigIndex);
+			dos.writeInt(length);
+			dos.writeInt(ambiguousStart.length);
+			for (int i = 0; i < ambiguousStart.length; i++) {
+				dos.writeInt(ambiguousStart[i]);
+				dos.writeInt(ambiguousEnd[i]);
+			}
+			ByteBuffer bb = packed.duplicate();
+			bb.clear();
+			byte[] buffer = new byte[64 * 1024];
+			while (bb.hasRemaining()) {
+				int n = Math.min(buffer.length, bb.remaining());
+				bb.get(buffer, 0, n);
+				dos.write(buffer, 0, n);
 			}
-			return seq;
 		}
 	}
 	@Override
@@ -146,7 +393,15 @@ public class TwoBitBufferedReferenceSequenceFile implements ReferenceSequenceFil
 	 */
 	private synchronized PackedReferenceSequence addToCache(String contig) {
 		if (cacheFile != null) {
-			if (cacheFile.exists()) {
+			if (cacheFile.exists() && !isCurrentCacheFormat(cacheFile)) {
+				if (!cacheFile.getParentFile().canWrite()) {
+					log.warn("Ignoring reference genome cache " + cacheFile + " as it is in an outdated format and cannot be replaced.");
+				} else {
+					log.info("Replacing outdated reference genome cache " + cacheFile);
+					saveOrReplace(cacheFile);
+					log.info("Saving reference genome cache complete");
+				}
+			} else if (cacheFile.exists()) {
 				log.info("Loading reference genome from cache " + cacheFile);
 				load(cacheFile);
 				log.info("Loading reference genome complete");
@@ -0,0 +1,92 @@
+package au.edu.wehi.idsv.sam;
+
+import au.edu.wehi.idsv.FileSystemContext;
+import htsjdk.samtools.*;
+import htsjdk.samtools.SAMFileHeader.SortOrder;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.ProgressLoggerInterface;
+import htsjdk.samtools.util.RuntimeIOException;
+import htsjdk.samtools.util.SortingCollection;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Writer that groups records by read name before passing them on to
+ * the underlying writer.
+ *
+ * Records are buffered in memory and spilled to disk once the
+ * in-memory record limit is reached. When the writer is closed, the
+ * queryname sorted records are passed through the template processor
+ * to the underlying writer which is then closed.
+ *
+ * This allows template-level processing such as SAM tag calculation to
+ * be performed on records as they are extracted, without writing and
+ * externally sorting an intermediate file.
+ */
+public class NameGroupingSAMFileWriter implements SAMFileWriter {
+	/**
+	 * Processes all records of each template.
+	 */
+	public interface TemplateProcessor {
+		/**
+		 * @param it records with all records from the same template consecutive
+		 * @param writer writer to write processed records to
+		 */
+		void process(Iterator<SAMRecord> it, SAMFileWriter writer) throws IOException;
+	}
+	private final SAMFileHeader header;
+	private final SAMFileWriter writer;
+	private final TemplateProcessor processor;
+	private final SortingCollection<SAMRecord> collection;
+	/**
+	 * @param fsc file system context determining the temporary directory and in-memory record limit
+	 * @param header input header. Sort order is set to queryname.
+	 * @param writer underlying writer. This writer is closed when this writer is closed.
+	 * @param processor template processor. If null, name grouped records are written directly.
+	 */
+	public NameGroupingSAMFileWriter(FileSystemContext fsc, SAMFileHeader header, SAMFileWriter writer, TemplateProcessor processor) {
+		this.header = header.clone();
+		this.header.setSortOrder(SortOrder.queryname);
+		this.writer = writer;
+		this.processor = processor;
+		this.collection = SortingCollection.newInstance(
+				SAMRecord.class,
+				new BAMRecordCodec(this.header),
+				new SAMRecordQueryNameComparator(),
+				fsc.getMaxBufferedRecordsPerFile(),
+				fsc.getTemporaryDirectory().toPath());
+	}
+	@Override
+	public void addAlignment(SAMRecord r) {
+		collection.add(r);
+	}
+	@Override
+	public SAMFileHeader getFileHeader() {
+		return header;
+	}
+	@Override
+	public void setProgressLogger(ProgressLoggerInterface progress) {
+		writer.setProgressLogger(progress);
+	}
+	@Override
+	public void close() {
+		try {
+			collection.doneAdding();
+			try (CloseableIterator<SAMRecord> it = collection.iterator()) {
+				if (processor == null) {
+					while (it.hasNext()) {
+						writer.addAlignment(it.next());
+					}
+				} else {
+					processor.process(it, writer);
+				}
+			}
+			writer.close();
+		} catch (IOException e) {
+			throw new RuntimeIOException(e);
+		} finally {
+			collection.cleanup();
+		}
+	}
+}
@@ -5,6 +5,7 @@ import au.edu.wehi.idsv.FileSystemContext;
 import au.edu.wehi.idsv.IntermediateFileUtil;
 import au.edu.wehi.idsv.util.AsyncBufferedIterator;
 import au.edu.wehi.idsv.util.FileHelper;
+import au.edu.wehi.idsv.util.OffHeapSortingCollection;
 import au.edu.wehi.idsv.validation.OrderAssertingIterator;
 import com.google.common.collect.PeekingIterator;
 import htsjdk.samtools.*;
@@ -17,6 +18,7 @@ import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.Callable;
 import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
 public class SAMFileUtil {
 	private static final Log log = Log.getInstance(SAMFileUtil.class);
@@ -114,7 +116,7 @@ public class SAMFileUtil {
 					break;
 			}
 			log.info("Sorting " + unsorted);
-			SortingCollection<SAMRecord> collection = null;
+			OffHeapSortingCollection<SAMRecord> collection = null;
 			if (tmpFile != output && tmpFile.exists()) {
 				FileHelper.delete(tmpFile, true);
 			}
@@ -127,10 +129,10 @@ public class SAMFileUtil {
 						header = headerCallback.apply(header);
 					}
 					try (CloseableIterator<SAMRecord> rit = reader.iterator()) {
-						collection = SortingCollection.newInstance(
-								SAMRecord.class,
+						collection = new OffHeapSortingCollection<>(
 								new BAMRecordCodec(header),
 								sortComparator,
+								sortKey(sortComparator),
 								fsc.getMaxBufferedRecordsPerFile(),
 								fsc.getTemporaryDirectory().toPath());
 						while (rit.hasNext()) {
@@ -166,6 +168,48 @@ public class SAMFileUtil {
 			return null;
 		}
 	}
+	/**
+	 * Primitive sort key consistent with the given comparator
+	 * @return sort key, or null if the comparator has no primitive sort key
+	 */
+	static ToLongFunction<SAMRecord> sortKey(SAMRecordComparator comparator) {
+		if (comparator != null && comparator.getClass() == SAMRecordCoordinateComparator.class) {
+			return SAMFileUtil::coordinateSortKey;
+		}
+		if (comparator != null && comparator.getClass() == SAMRecordQueryNameComparator.class) {
+			return SAMFileUtil::queryNameSortKey;
+		}
+		return null;
+	}
+	/**
+	 * Sort key consistent with SAMRecordQueryNameComparator.compareReadNames()
+	 * 
+	 * The key packs the first 8 characters of the read name. Characters are
+	 * clamped to 7 bits so the key remains consistent with String.compareTo()
+	 * when compared as a signed long.
+	 */
+	static long queryNameSortKey(SAMRecord r) {
+		String name = r.getReadName();
+		long key = 0;
+		for (int i = 0; i < 8; i++) {
+			key <<= 8;
+			if (name != null && i < name.length()) {
+				key |= Math.min(name.charAt(i), 0x7F);
+			}
+		}
+		return key;
+	}
+	/**
+	 * Sort key consistent with SAMRecordCoordinateComparator.fileOrderCompare()
+	 */
+	static long coordinateSortKey(SAMRecord r) {
+		int referenceIndex = r.getReferenceIndex();
+		if (referenceIndex < 0) {
+			// unplaced reads sort last and are not ordered by position
+			return Long.MAX_VALUE;
+		}
+		return ((long)referenceIndex << 32) | (r.getAlignmentStart() & 0xFFFFFFFFL);
+	}
 	private static SortOrder getSortOrder(SamReaderFactory readerFactory, File file) throws IOException {
 		try (SamReader reader = readerFactory.open(file)) {
 			return reader.getFileHeader().getSortOrder();
@@ -0,0 +1,128 @@
+package au.edu.wehi.idsv.sam;
+
+import au.edu.wehi.idsv.FileSystemContext;
+import au.edu.wehi.idsv.util.FileHelper;
+import com.google.common.collect.ImmutableList;
+import htsjdk.samtools.*;
+import htsjdk.samtools.SAMFileHeader.SortOrder;
+import htsjdk.samtools.util.Log;
+import htsjdk.samtools.util.ProgressLoggerInterface;
+import htsjdk.samtools.util.RuntimeIOException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.PriorityQueue;
+
+/**
+ * Coordinate sorting writer for mostly-sorted records.
+ *
+ * Records are buffered in memory until no subsequent record within the
+ * window can sort before them. Records that arrive too late to be written
+ * in order are diverted to an overflow file that is sorted and merged
+ * back in when the writer is closed, so the output is always
+ * coordinate sorted but the full sort is only paid for the overflow.
+ */
+public class WindowedSortingSAMFileWriter implements SAMFileWriter {
+	private static final Log log = Log.getInstance(WindowedSortingSAMFileWriter.class);
+	private final FileSystemContext fsc;
+	private final SAMFileHeader header;
+	private final File output;
+	private final File inorder;
+	private final File overflow;
+	private final int windowSize;
+	private final SAMRecordCoordinateComparator comparator = new SAMRecordCoordinateComparator();
+	private final PriorityQueue<SAMRecord> buffer = new PriorityQueue<>(comparator);
+	private final SAMFileWriterFactory factory = new SAMFileWriterFactory();
+	private final SAMFileWriter writer;
+	private SAMFileWriter overflowWriter = null;
+	private SAMRecord lastWritten = null;
+	private int maxReferenceIndex = -1;
+	private int maxAlignmentStart = 0;
+	private long overflowCount = 0;
+	/**
+	 * @param fsc file system context used to sort any overflow records
+	 * @param header output header. Sort order is set to coordinate.
+	 * @param output coordinate sorted output file
+	 * @param windowSize maximum distance records are expected to be out of order by
+	 */
+	public WindowedSortingSAMFileWriter(FileSystemContext fsc, SAMFileHeader header, File output, int windowSize) {
+		this.fsc = fsc;
+		this.header = header.clone();
+		this.header.setSortOrder(SortOrder.coordinate);
+		this.output = output;
+		this.inorder = FileSystemContext.getWorkingFileFor(output, "gridss.tmp.windowed.");
+		this.overflow = FileSystemContext.getWorkingFileFor(output, "gridss.tmp.overflow.");
+		this.windowSize = windowSize;
+		this.writer = factory.makeSAMOrBAMWriter(this.header, true, inorder);
+	}
+	@Override
+	public void addAlignment(SAMRecord r) {
+		if (lastWritten != null && comparator.compare(r, lastWritten) < 0) {
+			writeOverflow(r);
+			return;
+		}
+		buffer.add(r);
+		if (r.getReferenceIndex() >= 0) {
+			int referenceIndex = r.getReferenceIndex();
+			if (referenceIndex > maxReferenceIndex) {
+				maxReferenceIndex = referenceIndex;
+				maxAlignmentStart = r.getAlignmentStart();
+			} else if (referenceIndex == maxReferenceIndex) {
+				maxAlignmentStart = Math.max(maxAlignmentStart, r.getAlignmentStart());
+			}
+		}
+		flush(false);
+	}
+	private void writeOverflow(SAMRecord r) {
+		if (overflowWriter == null) {
+			SAMFileHeader overflowHeader = header.clone();
+			overflowHeader.setSortOrder(SortOrder.unsorted);
+			overflowWriter = factory.makeSAMOrBAMWriter(overflowHeader, true, overflow);
+		}
+		overflowWriter.addAlignment(r);
+		overflowCount++;
+	}
+	private boolean canFlush(SAMRecord r) {
+		int referenceIndex = r.getReferenceIndex();
+		if (referenceIndex < 0) {
+			// unmapped records sort last
+			return false;
+		}
+		return referenceIndex < maxReferenceIndex || r.getAlignmentStart() < maxAlignmentStart - windowSize;
+	}
+	private void flush(boolean all) {
+		while (!buffer.isEmpty() && (all || canFlush(buffer.peek()))) {
+			lastWritten = buffer.poll();
+			writer.addAlignment(lastWritten);
+		}
+	}
+	@Override
+	public SAMFileHeader getFileHeader() {
+		return header;
+	}
+	@Override
+	public void setProgressLogger(ProgressLoggerInterface progress) {
+		writer.setProgressLogger(progress);
+	}
+	@Override
+	public void close() {
+		flush(true);
+		writer.close();
+		try {
+			if (overflowWriter == null) {
+				FileHelper.move(inorder, output, true);
+			} else {
+				overflowWriter.close();
+				log.debug(String.format("%d records outside of %dbp sorting window when writing %s", overflowCount, windowSize, output));
+				File sortedOverflow = FileSystemContext.getWorkingFileFor(output, "gridss.tmp.overflow.sorted.");
+				SAMFileUtil.sort(fsc, overflow, sortedOverflow, SortOrder.coordinate);
+				SAMFileUtil.merge(ImmutableList.of(inorder, sortedOverflow), output);
+				FileHelper.delete(sortedOverflow, true);
+				FileHelper.delete(overflow, true);
+				FileHelper.delete(inorder, true);
+			}
+		} catch (IOException e) {
+			throw new RuntimeIOException(e);
+		}
+	}
+}
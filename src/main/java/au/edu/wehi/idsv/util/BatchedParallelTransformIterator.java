@@ -0,0 +1,101 @@
+package au.edu.wehi.idsv.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Batch-oriented variant of ParallelTransformIterator.
+ *
+ * Records are read from the underlying iterator in batches and each
+ * batch is transformed as a single task. The transform of each record
+ * can return any number of results, allowing filtering and expansion
+ * to be performed in parallel. The order of the resultant iteration
+ * is unchanged.
+ *
+ * Batching amortises the task dispatch and hand-off overhead
+ * so this class is suited to transforms that are cheap relative to
+ * the cost of dispatching a single task.
+ *
+ * This class is not thread-safe and access from multiple threads should
+ * be synchronised.
+ */
+public class BatchedParallelTransformIterator<T, U> implements Iterator<U> {
+	private final Iterator<T> it;
+	private final Function<T, ? extends Iterable<U>> f;
+	private final int batchSize;
+	private final int batchesInFlight;
+	private final Executor threadpool;
+	private final ArrayDeque<CompletableFuture<List<U>>> dispatched = new ArrayDeque<>();
+	private Iterator<U> current = Collections.emptyIterator();
+	/**
+	 * Instantiates a new iterator
+	 * @param it underlying iterator
+	 * @param f transform function returning the results for each record
+	 * @param batchSize number of records in each batch
+	 * @param batchesInFlight number of batches to process in parallel
+	 * @param threadpool executor to perform transform on
+	 */
+	public BatchedParallelTransformIterator(Iterator<T> it, Function<T, ? extends Iterable<U>> f, int batchSize, int batchesInFlight, Executor threadpool) {
+		if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be positive");
+		if (batchesInFlight <= 0) throw new IllegalArgumentException("batchesInFlight must be positive");
+		this.it = it;
+		this.f = f;
+		this.batchSize = batchSize;
+		this.batchesInFlight = batchesInFlight;
+		this.threadpool = threadpool;
+	}
+	@Override
+	public boolean hasNext() {
+		while (!current.hasNext()) {
+			dispatch();
+			if (dispatched.isEmpty()) {
+				return false;
+			}
+			try {
+				current = dispatched.poll().join().iterator();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException)e.getCause();
+				}
+				throw e;
+			}
+			// keep the workers busy while we consume this batch
+			dispatch();
+		}
+		return true;
+	}
+	@Override
+	public U next() {
+		if (!hasNext()) throw new NoSuchElementException();
+		return current.next();
+	}
+	/**
+	 * Dispatches batches until we have batchesInFlight batches outstanding
+	 */
+	private void dispatch() {
+		while (dispatched.size() < batchesInFlight && it.hasNext()) {
+			List<T> batch = new ArrayList<>(batchSize);
+			while (batch.size() < batchSize && it.hasNext()) {
+				batch.add(it.next());
+			}
+			dispatched.add(CompletableFuture.supplyAsync(() -> transform(batch), threadpool));
+		}
+	}
+	private List<U> transform(List<T> batch) {
+		List<U> result = new ArrayList<>(batch.size());
+		for (T record : batch) {
+			for (U u : f.apply(record)) {
+				result.add(u);
+			}
+		}
+		return result;
+	}
+}
@@ -3,19 +3,29 @@ package au.edu.wehi.idsv.util;
 import com.google.common.collect.PeekingIterator;
 import htsjdk.samtools.util.Log;
 
+import java.io.Closeable;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Duplicates the given iterator, feeding internal buffers from a background thread
- * 
+ *
+ * Records are published once to a ring buffer shared by all iterators. Each
+ * iterator tracks its own read sequence and the feeding thread cannot
+ * overwrite a record until every iterator has read it. Neither side takes
+ * a lock: both sides cache the last observed sequence of the other side and only
+ * re-read it once they have caught up, so records are handed off in batches.
+ * A side that has to wait spins briefly then parks, and is unparked by the
+ * other side as soon as it publishes or consumes a record.
+ *
  * This wrapper is thread-safe.
- * 
+ *
  * <b>Separate consumer threads are required as
  * iterator calls block the calling thread when sufficiently
  * far ahead of other iterators.
@@ -23,17 +33,36 @@ import java.util.concurrent.atomic.AtomicInteger;
  * @author Daniel Cameron
  *
  */
-public class DuplicatingIterable<T> implements Iterable<T> {
+public class DuplicatingIterable<T> implements Iterable<T>, Closeable {
 	private static final Log log = Log.getInstance(DuplicatingIterable.class);
-	private static final Object endofstream = new Object();
 	private static final AtomicInteger threadCount = new AtomicInteger(0);
+	private static final int SPIN_TRIES = 128;
+	private static final int YIELD_TRIES = 128;
+	/**
+	 * Defensive upper bound on a single park. Waiting threads are explicitly
+	 * unparked so parks normally end well before this timeout.
+	 */
+	private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
 	private final Iterator<T> it;
 	private final List<DuplicatingIterableIterator> iterators = new ArrayList<DuplicatingIterableIterator>();
-	private final List<BlockingQueue<Object>> queues = new ArrayList<BlockingQueue<Object>>();
+	private final Object[] buffer;
+	/**
+	 * Number of records published to the ring buffer
+	 */
+	private final AtomicLong published = new AtomicLong(0);
+	/**
+	 * Total number of records in the stream. Only valid once the stream has ended.
+	 */
+	private volatile long endOfStream = Long.MAX_VALUE;
+	private volatile boolean closed = false;
+	/**
+	 * Feeding thread if it is waiting for iterators to release buffer slots
+	 */
+	private volatile Thread waitingFeeder = null;
 	private int iteratorsRequested = 0;
 	private FeedingThread thread;
 	private volatile Exception error = null;
-	
+
 	/**
 	 * Duplicates an iterator
 	 * @param nIterators number of consuming iterators
@@ -45,9 +74,9 @@ public class DuplicatingIterable<T> implements Iterable<T> {
 		if (it == null) throw new IllegalArgumentException();
 		if (maxIteratorDifference <= 0) throw new IllegalArgumentException("buffer size must be greater than zero.");
 		this.it = it;
+		this.buffer = new Object[maxIteratorDifference];
 		for (int i = 0; i < nIterators; i++) {
-			queues.add(new ArrayBlockingQueue<Object>(maxIteratorDifference));
-			iterators.add(new DuplicatingIterableIterator(queues.get(i)));
+			iterators.add(new DuplicatingIterableIterator());
 		}
 		this.thread = new FeedingThread();
 		this.thread.setName(String.format("DuplicatingIterable-%d", threadCount.incrementAndGet()));
@@ -61,61 +90,141 @@ public class DuplicatingIterable<T> implements Iterable<T> {
 		if (iteratorsRequested >= iterators.size()) throw new IllegalStateException(String.format("Already created %d iterators", iterators.size()));
 		return iterators.get(iteratorsRequested++);
 	}
+	/**
+	 * Stops feeding records to the iterators.
+	 * Iterators will reach the end of the stream once all currently published records have been consumed.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		LockSupport.unpark(waitingFeeder);
+		unparkIterators();
+	}
+	/**
+	 * Spins then yields before the caller parks
+	 * @param attempt number of previous waits
+	 * @return true if the caller should park
+	 */
+	private static boolean backoff(int attempt) {
+		if (attempt < SPIN_TRIES) {
+			return false;
+		} else if (attempt < SPIN_TRIES + YIELD_TRIES) {
+			Thread.yield();
+			return false;
+		}
+		return true;
+	}
+	private void unparkIterators() {
+		for (int i = 0; i < iterators.size(); i++) {
+			Thread waiting = iterators.get(i).waiting;
+			if (waiting != null) {
+				LockSupport.unpark(waiting);
+			}
+		}
+	}
 	private class FeedingThread extends Thread {
+		/**
+		 * Cached read sequence of the slowest iterator
+		 */
+		private long minConsumed = 0;
 		@Override
 		public void run() {
+			long sequence = 0;
 			try {
-				while (it.hasNext()) {
+				while (!closed && it.hasNext()) {
 					T n = it.next();
-					for (BlockingQueue<Object> queue : queues) {
-						queue.put(n);
-					}
+					if (!awaitCapacity(sequence)) break;
+					buffer[(int)(sequence % buffer.length)] = n;
+					// volatile write orders the publish before the check for parked iterators
+					published.set(++sequence);
+					unparkIterators();
 				}
-				eos();
 			} catch (InterruptedException e) {
 				log.warn("Interrupted waiting to feed next record - ending stream early");
-				for (BlockingQueue<Object> queue : queues) {
-					queue.clear();
-					try {
-						eos();
-					} catch (InterruptedException e1) {
-						log.error("Sanity check failure: end of stream writing should not have blocked.");
-					}
-				}
 			} catch (Exception e) {
 				log.error("Error traversing iterator", e);
 				error = e;
-				try {
-					eos();
-				} catch (InterruptedException e1) {
-					log.error("Interrupted when writing end of stream.");
+			}
+			endOfStream = sequence;
+			unparkIterators();
+		}
+		/**
+		 * Waits until all iterators have consumed the record currently in the slot for the given sequence
+		 * @return false if the stream was closed while waiting
+		 */
+		private boolean awaitCapacity(long sequence) throws InterruptedException {
+			int attempt = 0;
+			while (sequence - minConsumed >= buffer.length) {
+				minConsumed = minConsumed();
+				if (sequence - minConsumed < buffer.length) break;
+				if (closed) return false;
+				if (Thread.interrupted()) throw new InterruptedException();
+				if (backoff(attempt++)) {
+					waitingFeeder = this;
+					// recheck after advertising the wait so a concurrent release is not missed
+					if (sequence - minConsumed() >= buffer.length && !closed) {
+						LockSupport.parkNanos(this, MAX_PARK_NANOS);
+					}
+					waitingFeeder = null;
 				}
 			}
+			return true;
 		}
-		private void eos() throws InterruptedException {
-			for (BlockingQueue<Object> queue : queues) {
-				queue.put(endofstream);
+		private long minConsumed() {
+			long min = Long.MAX_VALUE;
+			for (DuplicatingIterableIterator dii : iterators) {
+				min = Math.min(min, dii.consumed.get());
 			}
+			return min;
 		}
 	}
 	private class DuplicatingIterableIterator implements PeekingIterator<T> {
-		private final BlockingQueue<Object> queue;
 		/**
-		 * Since BlockingQueue does not allow nulls, we can use it as a
-		 * sentinal as to whether we have cached the next result 
+		 * Number of records read from the ring buffer
+		 */
+		private final AtomicLong consumed = new AtomicLong(0);
+		/**
+		 * Consuming thread if it is waiting for the next record to be published
+		 */
+		private volatile Thread waiting = null;
+		/**
+		 * Cached number of records available in the ring buffer
 		 */
+		private long available = 0;
+		private boolean hasRecord = false;
 		private Object nextRecord = null;
-		public DuplicatingIterableIterator(BlockingQueue<Object> queue) {
-			this.queue = queue;
+		private boolean isEndOfStream() {
+			if (consumed.get() < available) return false;
+			int attempt = 0;
+			while (true) {
+				available = published.get();
+				if (consumed.get() < available) return false;
+				// published is always updated before endOfStream so we need to
+				// recheck published after reading endOfStream
+				if (consumed.get() >= endOfStream) {
+					available = published.get();
+					return consumed.get() >= available;
+				}
+				if (backoff(attempt++)) {
+					waiting = Thread.currentThread();
+					// recheck after advertising the wait so a concurrent publish is not missed
+					if (published.get() == available && endOfStream == Long.MAX_VALUE && !closed) {
+						LockSupport.parkNanos(this, MAX_PARK_NANOS);
+					}
+					waiting = null;
+				}
+			}
 		}
 		private void ensureNext() {
-			if (nextRecord == endofstream) return;
-			if (nextRecord == null) {
-				try {
-					nextRecord = queue.take();
-				} catch (InterruptedException e) {
-					log.debug("Interrupted waiting for next record");
-					throw new RuntimeException(e);
+			if (!hasRecord && !isEndOfStream()) {
+				long sequence = consumed.get();
+				nextRecord = buffer[(int)(sequence % buffer.length)];
+				hasRecord = true;
+				// release the slot back to the feeding thread
+				consumed.set(sequence + 1);
+				Thread feeder = waitingFeeder;
+				if (feeder != null) {
+					LockSupport.unpark(feeder);
 				}
 			}
 			if (error != null) {
@@ -125,7 +234,7 @@ public class DuplicatingIterable<T> implements Iterable<T> {
 		@Override
 		public boolean hasNext() {
 			ensureNext();
-			return nextRecord != endofstream;
+			return hasRecord;
 		}
 		@SuppressWarnings("unchecked")
 		@Override
@@ -137,9 +246,10 @@ public class DuplicatingIterable<T> implements Iterable<T> {
 		@Override
 		public T next() {
 			if (!hasNext()) throw new NoSuchElementException();
-			ensureNext();
 			T result = (T)nextRecord;
-			nextRecord = null; // invalidate cached record
+			// invalidate cached record
+			nextRecord = null;
+			hasRecord = false;
 			return result;
 		}
 		@Override
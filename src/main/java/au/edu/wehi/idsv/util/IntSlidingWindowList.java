@@ -0,0 +1,47 @@
+package au.edu.wehi.idsv.util;
+
+/**
+ * Primitive int specialisation of SlidingWindowList
+ *
+ * Only the window size elements with the highest index are retained. All other elements are 0
+ */
+public class IntSlidingWindowList {
+	/**
+	 * Circular array backing store
+	 */
+	private final int[] buffer;
+	/**
+	 * Highest index set
+	 */
+	private int headIndex;
+	public IntSlidingWindowList(int windowSize) {
+		if (windowSize <= 0) throw new IllegalArgumentException("Window size must be positive");
+		buffer = new int[windowSize];
+		headIndex = -1;
+	}
+	public int getWindowSize() {
+		return buffer.length;
+	}
+	public int size() {
+		return headIndex + 1;
+	}
+	/**
+	 * Gets the value at the given index
+	 * @return value at the given index, 0 if the index has exited the window
+	 */
+	public int get(int index) {
+		if (index <= headIndex - buffer.length) return 0;
+		if (index > headIndex || index < 0) throw new IndexOutOfBoundsException("Index: "+index+", Size: "+size());
+		return buffer[index % buffer.length];
+	}
+	public void set(int index, int value) {
+		if (index < 0) throw new IndexOutOfBoundsException("Index: "+index);
+		if (index <= headIndex - buffer.length) return;
+		// zero out all values skipped over by advancing the window
+		for (int i = headIndex + 1; i < index && i < headIndex + buffer.length + 1; i++) {
+			buffer[i % buffer.length] = 0;
+		}
+		buffer[index % buffer.length] = value;
+		headIndex = Math.max(headIndex, index);
+	}
+}
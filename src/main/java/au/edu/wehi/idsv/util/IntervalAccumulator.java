@@ -24,6 +24,41 @@ public class IntervalAccumulator {
 		this.firstBinStart = start;
 		this.lastBinEnd = end;
 	}
+	private IntervalAccumulator(IntervalAccumulator template) {
+		this.bins = new Int2DoubleRBTreeMap(template.bins.keySet().toIntArray(), new double[template.bins.size()]);
+		// bin widths are immutable once finalised
+		this.binWidth = template.binWidth;
+		this.firstBinStart = template.firstBinStart;
+		this.lastBinEnd = template.lastBinEnd;
+	}
+	/**
+	 * Creates an empty accumulator with the same bins as this accumulator
+	 */
+	public IntervalAccumulator emptyCopy() {
+		if (binWidth == null) {
+			throw new IllegalStateException("Must be called after finaliseBins()");
+		}
+		return new IntervalAccumulator(this);
+	}
+	/**
+	 * Adds the accumulated values of the given accumulator to this accumulator
+	 * @param other accumulator with identical bins
+	 */
+	public void merge(IntervalAccumulator other) {
+		if (other.bins.size() != bins.size() || other.firstBinStart != firstBinStart || other.lastBinEnd != lastBinEnd) {
+			throw new IllegalArgumentException("Cannot merge accumulators with different bins");
+		}
+		ObjectBidirectionalIterator<Int2DoubleMap.Entry> it = bins.int2DoubleEntrySet().iterator();
+		ObjectBidirectionalIterator<Int2DoubleMap.Entry> otherIt = other.bins.int2DoubleEntrySet().iterator();
+		while (it.hasNext()) {
+			Int2DoubleMap.Entry entry = it.next();
+			Int2DoubleMap.Entry otherEntry = otherIt.next();
+			if (entry.getIntKey() != otherEntry.getIntKey()) {
+				throw new IllegalArgumentException("Cannot merge accumulators with different bins");
+			}
+			entry.setValue(entry.getDoubleValue() + otherEntry.getDoubleValue());
+		}
+	}
 	/**
 	 * Splits bins at the given 1-based position such that
 	 * a new bin starts at the given position.
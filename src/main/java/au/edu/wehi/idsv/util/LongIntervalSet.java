@@ -0,0 +1,266 @@
+package au.edu.wehi.idsv.util;
+
+import it.unimi.dsi.fastutil.Arrays;
+
+/**
+ * Set of half-open [start, end) long intervals backed by sorted primitive arrays.
+ *
+ * Overlapping and adjacent intervals are coalesced. Queries perform a binary
+ * search over an immutable snapshot of the intervals and do not lock.
+ * Additions are appended to an unsorted pending buffer. When a query is made and
+ * the buffer is too large to scan linearly, it is sorted and merged into a
+ * smaller sorted pending snapshot which is binary searched alongside the main
+ * snapshot. The pending intervals are only merged into the main snapshot once
+ * they are comparable in size to it, so the cost of rebuilding the main snapshot
+ * is amortised over the additions. This makes concurrent appends from multiple
+ * threads cheap whilst queries on an unmodified set remain lock-free.
+ *
+ * This class is thread-safe.
+ */
+public class LongIntervalSet {
+	private static final int MIN_PENDING_BUFFER_SIZE = 1024;
+	private static final int MAX_PENDING_SCAN_SIZE = 32;
+	private static final class Snapshot {
+		private static final Snapshot EMPTY = new Snapshot(new long[0], new long[0], 0);
+		private final long[] start;
+		private final long[] end;
+		private final int size;
+		private Snapshot(long[] start, long[] end, int size) {
+			this.start = start;
+			this.end = end;
+			this.size = size;
+		}
+	}
+	private volatile Snapshot snapshot = Snapshot.EMPTY;
+	private volatile boolean hasPending = false;
+	/**
+	 * Coalesced pending intervals not yet merged into the snapshot. Guarded by the lock.
+	 */
+	private Snapshot sortedPending = Snapshot.EMPTY;
+	private long[] pendingStart = new long[16];
+	private long[] pendingEnd = new long[16];
+	private int pendingSize = 0;
+	public LongIntervalSet() {
+	}
+	public LongIntervalSet(LongIntervalSet set) {
+		this.snapshot = set.current();
+	}
+	private LongIntervalSet(Snapshot snapshot) {
+		this.snapshot = snapshot;
+	}
+	/**
+	 * Adds the given interval to the set
+	 * @param start start position (inclusive)
+	 * @param end end position (exclusive)
+	 */
+	public synchronized void add(long start, long end) {
+		if (end <= start) return;
+		if (pendingSize == pendingStart.length) {
+			pendingStart = java.util.Arrays.copyOf(pendingStart, 2 * pendingSize);
+			pendingEnd = java.util.Arrays.copyOf(pendingEnd, 2 * pendingSize);
+		}
+		pendingStart[pendingSize] = start;
+		pendingEnd[pendingSize] = end;
+		pendingSize++;
+		hasPending = true;
+		if (pendingSize + sortedPending.size >= Math.max(MIN_PENDING_BUFFER_SIZE, snapshot.size)) {
+			consolidate();
+		}
+	}
+	/**
+	 * Adds all intervals in the given set to this set
+	 */
+	public synchronized void addAll(LongIntervalSet set) {
+		consolidate();
+		snapshot = union(snapshot, set.current());
+	}
+	/**
+	 * Removes all intervals in the given set from this set
+	 */
+	public synchronized void removeAll(LongIntervalSet set) {
+		consolidate();
+		snapshot = subtract(snapshot, set.current());
+	}
+	/**
+	 * Determines whether any interval overlaps the given interval
+	 * @param start start position (inclusive)
+	 * @param end end position (exclusive)
+	 */
+	public boolean overlaps(long start, long end) {
+		if (end <= start) return false;
+		if (hasPending) {
+			synchronized (this) {
+				if (pendingSize > MAX_PENDING_SCAN_SIZE) {
+					sortPending();
+				}
+				// cheaper to scan a few pending intervals than to sort them
+				for (int i = 0; i < pendingSize; i++) {
+					if (pendingStart[i] < end && pendingEnd[i] > start) return true;
+				}
+				if (overlaps(sortedPending, start, end)) return true;
+			}
+		}
+		return overlaps(snapshot, start, end);
+	}
+	private static boolean overlaps(Snapshot s, long start, long end) {
+		int i = lastStartingBefore(s, end);
+		return i >= 0 && s.end[i] > start;
+	}
+	/**
+	 * Index of last interval starting before the given position
+	 * @return -1 if no such interval exists
+	 */
+	private static int lastStartingBefore(Snapshot s, long position) {
+		int low = 0;
+		int high = s.size - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (s.start[mid] < position) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return high;
+	}
+	/**
+	 * Number of disjoint intervals in the set
+	 */
+	public int size() {
+		return current().size;
+	}
+	/**
+	 * Gets the start of the given disjoint interval.
+	 * Interval indexes are only stable whilst the set is not modified.
+	 */
+	public long getStart(int index) {
+		Snapshot s = current();
+		if (index < 0 || index >= s.size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + s.size);
+		return s.start[index];
+	}
+	/**
+	 * Gets the (exclusive) end of the given disjoint interval.
+	 * Interval indexes are only stable whilst the set is not modified.
+	 */
+	public long getEnd(int index) {
+		Snapshot s = current();
+		if (index < 0 || index >= s.size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + s.size);
+		return s.end[index];
+	}
+	public static LongIntervalSet union(LongIntervalSet a, LongIntervalSet b) {
+		return new LongIntervalSet(union(a.current(), b.current()));
+	}
+	private Snapshot current() {
+		if (hasPending) {
+			synchronized (this) {
+				consolidate();
+			}
+		}
+		return snapshot;
+	}
+	/**
+	 * Sorts the pending buffer and merges it into the sorted pending intervals.
+	 * Must be called holding the lock.
+	 */
+	private void sortPending() {
+		if (pendingSize == 0) return;
+		final long[] ps = pendingStart;
+		final long[] pe = pendingEnd;
+		Arrays.quickSort(0, pendingSize, (a, b) -> Long.compare(ps[a], ps[b]), (a, b) -> {
+			long t = ps[a]; ps[a] = ps[b]; ps[b] = t;
+			t = pe[a]; pe[a] = pe[b]; pe[b] = t;
+		});
+		sortedPending = union(sortedPending, coalesce(ps, pe, pendingSize));
+		pendingSize = 0;
+		if (pendingStart.length > MIN_PENDING_BUFFER_SIZE) {
+			pendingStart = new long[16];
+			pendingEnd = new long[16];
+		}
+	}
+	/**
+	 * Merges pending intervals into the snapshot. Must be called holding the lock.
+	 */
+	private void consolidate() {
+		if (!hasPending) return;
+		sortPending();
+		snapshot = union(snapshot, sortedPending);
+		sortedPending = Snapshot.EMPTY;
+		hasPending = false;
+	}
+	/**
+	 * Coalesces intervals sorted by start position
+	 */
+	private static Snapshot coalesce(long[] start, long[] end, int size) {
+		long[] cs = new long[size];
+		long[] ce = new long[size];
+		int n = 0;
+		for (int i = 0; i < size; i++) {
+			if (n > 0 && start[i] <= ce[n - 1]) {
+				ce[n - 1] = Math.max(ce[n - 1], end[i]);
+			} else {
+				cs[n] = start[i];
+				ce[n] = end[i];
+				n++;
+			}
+		}
+		return new Snapshot(cs, ce, n);
+	}
+	private static Snapshot union(Snapshot a, Snapshot b) {
+		if (b.size == 0) return a;
+		if (a.size == 0) return b;
+		long[] start = new long[a.size + b.size];
+		long[] end = new long[a.size + b.size];
+		int i = 0, j = 0, n = 0;
+		while (i < a.size || j < b.size) {
+			long s, e;
+			if (j >= b.size || (i < a.size && a.start[i] <= b.start[j])) {
+				s = a.start[i];
+				e = a.end[i];
+				i++;
+			} else {
+				s = b.start[j];
+				e = b.end[j];
+				j++;
+			}
+			if (n > 0 && s <= end[n - 1]) {
+				end[n - 1] = Math.max(end[n - 1], e);
+			} else {
+				start[n] = s;
+				end[n] = e;
+				n++;
+			}
+		}
+		return new Snapshot(start, end, n);
+	}
+	private static Snapshot subtract(Snapshot a, Snapshot b) {
+		if (a.size == 0 || b.size == 0) return a;
+		// each removed interval can split at most one interval in two
+		long[] start = new long[a.size + b.size];
+		long[] end = new long[a.size + b.size];
+		int n = 0;
+		int j = 0;
+		for (int i = 0; i < a.size; i++) {
+			long s = a.start[i];
+			long e = a.end[i];
+			// skip removal intervals entirely before this interval
+			while (j < b.size && b.end[j] <= s) j++;
+			int k = j;
+			while (k < b.size && b.start[k] < e) {
+				if (b.start[k] > s) {
+					start[n] = s;
+					end[n] = b.start[k];
+					n++;
+				}
+				s = Math.max(s, b.end[k]);
+				if (s >= e) break;
+				k++;
+			}
+			if (s < e) {
+				start[n] = s;
+				end[n] = e;
+				n++;
+			}
+		}
+		return new Snapshot(start, end, n);
+	}
+}
@@ -0,0 +1,153 @@
+package au.edu.wehi.idsv.util;
+
+import it.unimi.dsi.fastutil.HashCommon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Open addressing hash map keyed by a pair of longs.
+ *
+ * Keys are stored in primitive arrays so no key object is allocated per entry.
+ * Null values are not supported as empty slots are identified by a null value.
+ */
+public class LongPair2ObjectOpenHashMap<V> {
+	private static final float LOAD_FACTOR = 0.75f;
+	private long[] keyHigh;
+	private long[] keyLow;
+	private Object[] value;
+	private int mask;
+	private int maxFill;
+	private int size;
+	public LongPair2ObjectOpenHashMap() {
+		this(16);
+	}
+	public LongPair2ObjectOpenHashMap(int expected) {
+		allocate(HashCommon.arraySize(expected, LOAD_FACTOR));
+	}
+	private void allocate(int capacity) {
+		keyHigh = new long[capacity];
+		keyLow = new long[capacity];
+		value = new Object[capacity];
+		mask = capacity - 1;
+		maxFill = HashCommon.maxFill(capacity, LOAD_FACTOR);
+	}
+	private int slot(long high, long low) {
+		return (int)HashCommon.mix(high ^ HashCommon.mix(low)) & mask;
+	}
+	private int find(long high, long low) {
+		for (int pos = slot(high, low); value[pos] != null; pos = (pos + 1) & mask) {
+			if (keyHigh[pos] == high && keyLow[pos] == low) {
+				return pos;
+			}
+		}
+		return -1;
+	}
+	@SuppressWarnings("unchecked")
+	public V get(long high, long low) {
+		int pos = find(high, low);
+		return pos < 0 ? null : (V)value[pos];
+	}
+	public boolean containsKey(long high, long low) {
+		return find(high, low) >= 0;
+	}
+	/**
+	 * Associates the given value with the given key
+	 * @return previous value, or null if the key was not present
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long high, long low, V v) {
+		if (v == null) throw new IllegalArgumentException("null values not supported");
+		int pos = slot(high, low);
+		for (; value[pos] != null; pos = (pos + 1) & mask) {
+			if (keyHigh[pos] == high && keyLow[pos] == low) {
+				V old = (V)value[pos];
+				value[pos] = v;
+				return old;
+			}
+		}
+		keyHigh[pos] = high;
+		keyLow[pos] = low;
+		value[pos] = v;
+		if (++size >= maxFill) {
+			rehash(value.length * 2);
+		}
+		return null;
+	}
+	/**
+	 * Removes the given key
+	 * @return removed value, or null if the key was not present
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long high, long low) {
+		int pos = find(high, low);
+		if (pos < 0) return null;
+		V old = (V)value[pos];
+		shiftKeys(pos);
+		size--;
+		return old;
+	}
+	/**
+	 * Closes the gap left by the removed entry by moving back any subsequent
+	 * entries in the probe sequence that would otherwise become unreachable.
+	 */
+	private void shiftKeys(int pos) {
+		while (true) {
+			int last = pos;
+			pos = (pos + 1) & mask;
+			while (true) {
+				if (value[pos] == null) {
+					value[last] = null;
+					return;
+				}
+				int slot = slot(keyHigh[pos], keyLow[pos]);
+				if (last <= pos ? last >= slot || slot > pos : last >= slot && slot > pos) break;
+				pos = (pos + 1) & mask;
+			}
+			keyHigh[last] = keyHigh[pos];
+			keyLow[last] = keyLow[pos];
+			value[last] = value[pos];
+		}
+	}
+	private void rehash(int capacity) {
+		long[] oldHigh = keyHigh;
+		long[] oldLow = keyLow;
+		Object[] oldValue = value;
+		allocate(capacity);
+		for (int i = 0; i < oldValue.length; i++) {
+			if (oldValue[i] != null) {
+				int pos = slot(oldHigh[i], oldLow[i]);
+				while (value[pos] != null) {
+					pos = (pos + 1) & mask;
+				}
+				keyHigh[pos] = oldHigh[i];
+				keyLow[pos] = oldLow[i];
+				value[pos] = oldValue[i];
+			}
+		}
+	}
+	public int size() {
+		return size;
+	}
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	public void clear() {
+		Arrays.fill(value, null);
+		size = 0;
+	}
+	/**
+	 * @return copy of the values in this map
+	 */
+	@SuppressWarnings("unchecked")
+	public List<V> values() {
+		List<V> result = new ArrayList<>(size);
+		for (Object v : value) {
+			if (v != null) {
+				result.add((V)v);
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,36 @@
+package au.edu.wehi.idsv.util;
+
+/**
+ * Open addressing hash set of long pairs.
+ */
+public class LongPairOpenHashSet {
+	private final LongPair2ObjectOpenHashMap<Boolean> map;
+	public LongPairOpenHashSet() {
+		this.map = new LongPair2ObjectOpenHashMap<>();
+	}
+	public LongPairOpenHashSet(int expected) {
+		this.map = new LongPair2ObjectOpenHashMap<>(expected);
+	}
+	/**
+	 * Adds the given pair to the set
+	 * @return true if the set did not already contain the pair
+	 */
+	public boolean add(long high, long low) {
+		return map.put(high, low, Boolean.TRUE) == null;
+	}
+	public boolean contains(long high, long low) {
+		return map.containsKey(high, low);
+	}
+	public boolean remove(long high, long low) {
+		return map.remove(high, low) != null;
+	}
+	public int size() {
+		return map.size();
+	}
+	public boolean isEmpty() {
+		return map.isEmpty();
+	}
+	public void clear() {
+		map.clear();
+	}
+}
@@ -0,0 +1,513 @@
+package au.edu.wehi.idsv.util;
+
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import htsjdk.samtools.util.BlockCompressedStreamConstants;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.RuntimeIOException;
+import htsjdk.samtools.util.SortingCollection;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.ToLongFunction;
+import java.util.stream.IntStream;
+
+/**
+ * External sort with the same life cycle as htsjdk SortingCollection
+ * that does not retain the records being sorted as java objects.
+ *
+ * Records are encoded into direct (off-heap) buffers and the in-memory
+ * sort is performed on primitive sort key and offset arrays. The optional
+ * sort key must be consistent with the comparator: records with a
+ * lower key must sort before records with a higher key. Only records with
+ * equal keys are compared using the comparator. Each group of records with the
+ * same key is decoded once and sorted as java objects so comparisons
+ * do not repeatedly decode records.
+ *
+ * When the in-memory record limit is reached, the buffered records are
+ * sorted and written to a temporary run file in the background whilst
+ * records continue to be added to a second buffer. Run files are written
+ * as independently compressed BGZF segments in parallel, and are merged
+ * using a loser tree.
+ *
+ * This class is not thread-safe.
+ */
+public class OffHeapSortingCollection<T> implements Iterable<T> {
+	/**
+	 * Size of each direct buffer allocation
+	 */
+	private static final int CHUNK_SIZE = 8 << 20;
+	/**
+	 * Number of records in each independently compressed run file segment
+	 */
+	private static final int SEGMENT_SIZE = 8192;
+	/**
+	 * Minimum number of records with the same sort key for the records
+	 * to be sorted in parallel.
+	 */
+	private static final int MIN_PARALLEL_TIES = 8192;
+	private final SortingCollection.Codec<T> codec;
+	private final Comparator<T> comparator;
+	private final ToLongFunction<T> sortKey;
+	private final int maxRecordsInRam;
+	private final Path tmpDir;
+	private final ArrayDeque<ByteBuffer> chunkPool = new ArrayDeque<>();
+	private final List<Path> runs = new ArrayList<>();
+	private final RecordOutputStream encodeBuffer = new RecordOutputStream();
+	private RecordBuffer buffer;
+	private CompletableFuture<Void> spilling = CompletableFuture.completedFuture(null);
+	private boolean doneAdding = false;
+	private boolean iterated = false;
+	private boolean cleanedUp = false;
+	/**
+	 * @param codec record codec
+	 * @param comparator sort order
+	 * @param sortKey primitive sort key consistent with the comparator. If null, all records are compared using the comparator.
+	 * @param maxRecordsInRam number of records to buffer before spilling to disk
+	 * @param tmpDir temporary directory for run files
+	 */
+	public OffHeapSortingCollection(SortingCollection.Codec<T> codec, Comparator<T> comparator, ToLongFunction<T> sortKey, int maxRecordsInRam, Path tmpDir) {
+		if (maxRecordsInRam <= 0) throw new IllegalArgumentException("maxRecordsInRam must be positive");
+		this.codec = codec.clone();
+		this.comparator = comparator;
+		this.sortKey = sortKey;
+		this.maxRecordsInRam = maxRecordsInRam;
+		this.tmpDir = tmpDir;
+		this.codec.setOutputStream(encodeBuffer);
+		this.buffer = new RecordBuffer();
+	}
+	public void add(T record) {
+		if (doneAdding) throw new IllegalStateException("Cannot add after calling doneAdding()");
+		encodeBuffer.reset();
+		codec.encode(record);
+		buffer.add(sortKey == null ? 0 : sortKey.applyAsLong(record), encodeBuffer.buffer(), encodeBuffer.size());
+		if (buffer.size >= maxRecordsInRam) {
+			spill();
+		}
+	}
+	/**
+	 * Sorts the buffered records in the background and writes them to a new run file.
+	 */
+	private void spill() {
+		RecordBuffer toSpill = buffer;
+		// wait for the previous spill so at most two buffers are held in memory
+		join(spilling);
+		buffer = new RecordBuffer();
+		spilling = CompletableFuture.runAsync(() -> {
+			try {
+				toSpill.sort();
+				runs.add(toSpill.write());
+			} catch (IOException e) {
+				throw new RuntimeIOException(e);
+			} finally {
+				toSpill.release();
+			}
+		});
+	}
+	public void doneAdding() {
+		if (doneAdding) return;
+		doneAdding = true;
+		join(spilling);
+		if (runs.isEmpty()) {
+			// everything fits in memory
+			buffer.sort();
+		} else {
+			if (buffer.size > 0) {
+				spill();
+				join(spilling);
+			}
+			buffer.release();
+			buffer = null;
+		}
+	}
+	/**
+	 * Returns an iterator over the sorted records. Can only be called once.
+	 */
+	@Override
+	public CloseableIterator<T> iterator() {
+		if (!doneAdding) doneAdding();
+		if (iterated) throw new IllegalStateException("iterator() can only be called once");
+		iterated = true;
+		if (buffer != null) {
+			return buffer.iterator();
+		}
+		List<RunReader> readers = new ArrayList<>(runs.size());
+		try {
+			for (Path run : runs) {
+				readers.add(new RunReader(run));
+			}
+		} catch (IOException e) {
+			readers.forEach(RunReader::close);
+			throw new RuntimeIOException(e);
+		}
+		return new LoserTreeIterator(readers);
+	}
+	/**
+	 * Deletes all temporary files and releases buffers.
+	 */
+	public void cleanup() {
+		if (cleanedUp) return;
+		cleanedUp = true;
+		try {
+			join(spilling);
+		} catch (RuntimeException e) {
+			// already reported to the caller
+		}
+		if (buffer != null) {
+			buffer.release();
+			buffer = null;
+		}
+		chunkPool.clear();
+		for (Path run : runs) {
+			try {
+				Files.deleteIfExists(run);
+			} catch (IOException e) {
+				throw new RuntimeIOException(e);
+			}
+		}
+	}
+	private static void join(CompletableFuture<Void> future) {
+		try {
+			future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException)e.getCause();
+			}
+			throw e;
+		}
+	}
+	private ByteBuffer allocateChunk(int minSize) {
+		if (minSize <= CHUNK_SIZE) {
+			synchronized (chunkPool) {
+				ByteBuffer chunk = chunkPool.poll();
+				if (chunk != null) {
+					chunk.clear();
+					return chunk;
+				}
+			}
+			return ByteBuffer.allocateDirect(CHUNK_SIZE);
+		}
+		return ByteBuffer.allocateDirect(minSize);
+	}
+	private void releaseChunk(ByteBuffer chunk) {
+		if (chunk.capacity() == CHUNK_SIZE) {
+			synchronized (chunkPool) {
+				chunkPool.add(chunk);
+			}
+		}
+	}
+	private T decode(SortingCollection.Codec<T> decoder, byte[] bytes, int length) {
+		decoder.setInputStream(new ByteArrayInputStream(bytes, 0, length));
+		return decoder.decode();
+	}
+	/**
+	 * Encoded records stored in off-heap memory
+	 */
+	private class RecordBuffer {
+		private final List<ByteBuffer> chunks = new ArrayList<>();
+		private long[] keys = new long[1024];
+		/**
+		 * chunk index in the upper 32 bits, offset within the chunk in the lower 32 bits
+		 */
+		private long[] locations = new long[1024];
+		private int[] lengths = new int[1024];
+		private int size = 0;
+		private ByteBuffer current = null;
+		public void add(long key, byte[] bytes, int length) {
+			if (current == null || current.remaining() < length) {
+				current = allocateChunk(length);
+				chunks.add(current);
+			}
+			if (size == keys.length) {
+				int newSize = Math.min(Math.max(2 * size, 1024), Math.max(maxRecordsInRam, size + 1));
+				keys = Arrays.copyOf(keys, newSize);
+				locations = Arrays.copyOf(locations, newSize);
+				lengths = Arrays.copyOf(lengths, newSize);
+			}
+			keys[size] = key;
+			locations[size] = ((long)(chunks.size() - 1) << 32) | current.position();
+			lengths[size] = length;
+			current.put(bytes, 0, length);
+			size++;
+		}
+		private byte[] read(int index, byte[] buf) {
+			if (buf.length < lengths[index]) {
+				buf = new byte[Math.max(lengths[index], 2 * buf.length)];
+			}
+			ByteBuffer chunk = chunks.get((int)(locations[index] >>> 32)).duplicate();
+			chunk.position((int)locations[index]);
+			chunk.get(buf, 0, lengths[index]);
+			return buf;
+		}
+		private void swap(int a, int b) {
+			long t = keys[a]; keys[a] = keys[b]; keys[b] = t;
+			t = locations[a]; locations[a] = locations[b]; locations[b] = t;
+			int l = lengths[a]; lengths[a] = lengths[b]; lengths[b] = l;
+		}
+		public void sort() {
+			if (sortKey == null) {
+				// all records have the same key
+				if (size > 1) {
+					sortTies(0, size);
+				}
+				return;
+			}
+			it.unimi.dsi.fastutil.Arrays.parallelQuickSort(0, size, (a, b) -> Long.compare(keys[a], keys[b]), this::swap);
+			// resolve records with the same key using the comparator
+			int start = 0;
+			while (start < size) {
+				int end = start + 1;
+				while (end < size && keys[end] == keys[start]) end++;
+				if (end - start > 1) {
+					sortTies(start, end);
+				}
+				start = end;
+			}
+		}
+		private void sortTies(int start, int end) {
+			int n = end - start;
+			@SuppressWarnings("unchecked")
+			Tie<T>[] ties = new Tie[n];
+			if (n >= MIN_PARALLEL_TIES) {
+				IntStream.range(0, (n + SEGMENT_SIZE - 1) / SEGMENT_SIZE).parallel().forEach(segment ->
+					decodeTies(ties, start, start + segment * SEGMENT_SIZE, Math.min(end, start + (segment + 1) * SEGMENT_SIZE)));
+				Arrays.parallelSort(ties, (x, y) -> comparator.compare(x.record, y.record));
+			} else {
+				decodeTies(ties, start, start, end);
+				Arrays.sort(ties, (x, y) -> comparator.compare(x.record, y.record));
+			}
+			for (int i = 0; i < n; i++) {
+				locations[start + i] = ties[i].location;
+				lengths[start + i] = ties[i].length;
+			}
+		}
+		/**
+		 * Decodes the given records
+		 * @param ties decoded records indexed relative to offset
+		 */
+		private void decodeTies(Tie<T>[] ties, int offset, int start, int end) {
+			SortingCollection.Codec<T> decoder = codec.clone();
+			byte[] buf = new byte[256];
+			for (int i = start; i < end; i++) {
+				buf = read(i, buf);
+				ties[i - offset] = new Tie<>(decode(decoder, buf, lengths[i]), locations[i], lengths[i]);
+			}
+		}
+		/**
+		 * Writes the sorted records to a new run file
+		 */
+		public Path write() throws IOException {
+			Path file = Files.createTempFile(tmpDir, "gridss.tmp.sort.", ".run");
+			List<CompletableFuture<byte[]>> segments = new ArrayList<>();
+			for (int i = 0; i < size; i += SEGMENT_SIZE) {
+				final int segmentStart = i;
+				final int segmentEnd = Math.min(size, i + SEGMENT_SIZE);
+				segments.add(CompletableFuture.supplyAsync(() -> compress(segmentStart, segmentEnd)));
+			}
+			try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(file))) {
+				for (CompletableFuture<byte[]> segment : segments) {
+					os.write(segment.join());
+				}
+				os.write(BlockCompressedStreamConstants.EMPTY_GZIP_BLOCK);
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException)e.getCause();
+				}
+				throw e;
+			}
+			return file;
+		}
+		/**
+		 * Compresses the given records into a sequence of BGZF blocks
+		 */
+		private byte[] compress(int start, int end) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try {
+				BlockCompressedOutputStream bgzf = new BlockCompressedOutputStream(bytes, (Path)null);
+				DataOutputStream out = new DataOutputStream(bgzf);
+				byte[] buf = new byte[256];
+				for (int i = start; i < end; i++) {
+					buf = read(i, buf);
+					out.writeLong(keys[i]);
+					out.writeInt(lengths[i]);
+					out.write(buf, 0, lengths[i]);
+				}
+				out.flush();
+				// segments are concatenated so only the final segment should be followed by the terminator
+				bgzf.close(false);
+			} catch (IOException e) {
+				throw new RuntimeIOException(e);
+			}
+			return bytes.toByteArray();
+		}
+		public CloseableIterator<T> iterator() {
+			return new CloseableIterator<T>() {
+				private final SortingCollection.Codec<T> decoder = codec.clone();
+				private byte[] buf = new byte[256];
+				private int index = 0;
+				@Override
+				public boolean hasNext() {
+					return index < size;
+				}
+				@Override
+				public T next() {
+					if (!hasNext()) throw new NoSuchElementException();
+					buf = read(index, buf);
+					return decode(decoder, buf, lengths[index++]);
+				}
+				@Override
+				public void close() {
+				}
+			};
+		}
+		public void release() {
+			for (ByteBuffer chunk : chunks) {
+				releaseChunk(chunk);
+			}
+			chunks.clear();
+			current = null;
+		}
+	}
+	/**
+	 * Sequential reader of a run file
+	 */
+	private class RunReader implements Closeable {
+		private final DataInputStream in;
+		private final SortingCollection.Codec<T> decoder = codec.clone();
+		private byte[] buf = new byte[256];
+		private long key;
+		private T head;
+		public RunReader(Path file) throws IOException {
+			this.in = new DataInputStream(new BlockCompressedInputStream(file.toFile()));
+			advance();
+		}
+		public void advance() {
+			try {
+				key = in.readLong();
+			} catch (EOFException e) {
+				head = null;
+				return;
+			} catch (IOException e) {
+				throw new RuntimeIOException(e);
+			}
+			try {
+				int length = in.readInt();
+				if (buf.length < length) {
+					buf = new byte[Math.max(length, 2 * buf.length)];
+				}
+				in.readFully(buf, 0, length);
+				head = decode(decoder, buf, length);
+			} catch (IOException e) {
+				throw new RuntimeIOException(e);
+			}
+		}
+		@Override
+		public void close() {
+			try {
+				in.close();
+			} catch (IOException e) {
+				throw new RuntimeIOException(e);
+			}
+		}
+	}
+	/**
+	 * K-way merge of the run files using a loser tree.
+	 * tree[0] holds the index of the run with the smallest head record,
+	 * the remaining internal nodes hold the loser of the comparison at that node.
+	 */
+	private class LoserTreeIterator implements CloseableIterator<T> {
+		private final List<RunReader> readers;
+		private final int k;
+		private final int[] tree;
+		public LoserTreeIterator(List<RunReader> readers) {
+			this.readers = readers;
+			this.k = readers.size();
+			this.tree = new int[Math.max(1, k)];
+			Arrays.fill(tree, -1);
+			for (int i = 0; i < k; i++) {
+				adjust(i);
+			}
+		}
+		/**
+		 * Replays the matches from the leaf of the given run to the root.
+		 */
+		private void adjust(int s) {
+			for (int t = (s + k) >> 1; t > 0; t >>= 1) {
+				if (tree[t] == -1) {
+					// tree construction: wait for the other subtree
+					tree[t] = s;
+					return;
+				}
+				if (less(tree[t], s)) {
+					int winner = tree[t];
+					tree[t] = s;
+					s = winner;
+				}
+			}
+			tree[0] = s;
+		}
+		private boolean less(int a, int b) {
+			RunReader ra = readers.get(a);
+			RunReader rb = readers.get(b);
+			if (ra.head == null) return false;
+			if (rb.head == null) return true;
+			int cmp = Long.compare(ra.key, rb.key);
+			if (cmp == 0) {
+				cmp = comparator.compare(ra.head, rb.head);
+			}
+			if (cmp == 0) {
+				cmp = Integer.compare(a, b);
+			}
+			return cmp < 0;
+		}
+		@Override
+		public boolean hasNext() {
+			return k > 0 && readers.get(tree[0]).head != null;
+		}
+		@Override
+		public T next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			int winner = tree[0];
+			RunReader reader = readers.get(winner);
+			T result = reader.head;
+			reader.advance();
+			adjust(winner);
+			return result;
+		}
+		@Override
+		public void close() {
+			readers.forEach(RunReader::close);
+		}
+	}
+	/**
+	 * Decoded record with the same sort key as other records in the buffer
+	 */
+	private static class Tie<T> {
+		private final T record;
+		private final long location;
+		private final int length;
+		public Tie(T record, long location, int length) {
+			this.record = record;
+			this.location = location;
+			this.length = length;
+		}
+	}
+	/**
+	 * Output stream exposing its buffer to avoid copying each encoded record
+	 */
+	private static class RecordOutputStream extends ByteArrayOutputStream {
+		public byte[] buffer() {
+			return buf;
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package au.edu.wehi.idsv.util;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.function.ToIntFunction;
+
+/**
+ * Partitions the given iterator, feeding each record from a background thread
+ * to only the iterator for the route the record is assigned to.
+ *
+ * Records are published once to the ring buffer of a DuplicatingIterable
+ * along with their route. Each route iterator skips the records assigned
+ * to other routes so the router is only evaluated once per record.
+ * Relative record order is retained within each route.
+ *
+ * This wrapper is thread-safe.
+ *
+ * <b>Separate consumer threads are required and the iterator of every route
+ * must be consumed as the feeding thread blocks when any route iterator is
+ * more than the buffer size records behind.
+ * </b>
+ *
+ */
+public class RoutingIterable<T> implements Closeable {
+	private final DuplicatingIterable<RoutedRecord<T>> buffer;
+	private final PeekingIterator<RoutedRecord<T>>[] iterators;
+	private final boolean[] iteratorRequested;
+	private static class RoutedRecord<T> {
+		private final T record;
+		private final int route;
+		public RoutedRecord(T record, int route) {
+			this.record = record;
+			this.route = route;
+		}
+	}
+	/**
+	 * Partitions an iterator
+	 * @param nRoutes number of routes
+	 * @param it underlying iterator
+	 * @param router route of each record. Records with a negative route are discarded.
+	 * @param bufferSize maximum number of records any route iterator can be ahead of the other route iterators
+	 */
+	@SuppressWarnings("unchecked")
+	public RoutingIterable(int nRoutes, Iterator<T> it, ToIntFunction<T> router, int bufferSize) {
+		if (it == null) throw new IllegalArgumentException();
+		if (bufferSize <= 0) throw new IllegalArgumentException("buffer size must be greater than zero.");
+		Iterator<RoutedRecord<T>> routed = Iterators.filter(
+				Iterators.transform(it, r -> new RoutedRecord<>(r, router.applyAsInt(r))),
+				r -> r.route >= 0);
+		this.buffer = new DuplicatingIterable<>(nRoutes, routed, bufferSize);
+		this.iterators = new PeekingIterator[nRoutes];
+		for (int i = 0; i < nRoutes; i++) {
+			iterators[i] = buffer.iterator();
+		}
+		this.iteratorRequested = new boolean[nRoutes];
+	}
+	/**
+	 * Gets the iterator for the given route
+	 */
+	public synchronized PeekingIterator<T> iterator(int route) {
+		if (iteratorRequested[route]) throw new IllegalStateException(String.format("Already created iterator for route %d", route));
+		iteratorRequested[route] = true;
+		return Iterators.peekingIterator(Iterators.transform(Iterators.filter(iterators[route], r -> r.route == route), r -> r.record));
+	}
+	/**
+	 * Stops feeding records to the iterators.
+	 * Iterators will reach the end of the stream once all currently routed records have been consumed.
+	 */
+	@Override
+	public void close() {
+		buffer.close();
+	}
+}
@@ -6,10 +6,10 @@ import au.edu.wehi.idsv.IntermediateFileUtil;
 import au.edu.wehi.idsv.ProcessingContext;
 import au.edu.wehi.idsv.util.AsyncBufferedIterator;
 import au.edu.wehi.idsv.util.FileHelper;
+import au.edu.wehi.idsv.util.OffHeapSortingCollection;
 import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.Log;
-import htsjdk.samtools.util.SortingCollection;
 import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.variantcontext.writer.Options;
 import htsjdk.variant.variantcontext.writer.VariantContextWriter;
@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.function.ToLongFunction;
 
 public class VcfFileUtil {
 	private static final Log log = Log.getInstance(VcfFileUtil.class);
@@ -59,20 +60,28 @@ public class VcfFileUtil {
 		private final File input;
 		private final File output;
 		private final Comparator<VariantContext> sortComparator;
+		private final ToLongFunction<VariantContext> sortKey;
 		private final boolean indexed;
 		public SortCallable(ProcessingContext processContext, File input, File output) {
-			this(processContext, input, output, IdsvVariantContext.VariantContextByLocationStart(processContext.getDictionary()));
+			this(processContext, input, output, IdsvVariantContext.VariantContextByLocationStart(processContext.getDictionary()), locationSortKey(processContext.getDictionary()), false);
 		}
 		public SortCallable(ProcessingContext processContext, File input, File output, Comparator<VariantContext> sortComparator) {
-			this(processContext, input, output, sortComparator, false);
+			this(processContext, input, output, sortComparator, null, false);
 		}
-		private SortCallable(ProcessingContext processContext, File input, File output, Comparator<VariantContext> sortComparator, boolean writeIndex) {
+		private SortCallable(ProcessingContext processContext, File input, File output, Comparator<VariantContext> sortComparator, ToLongFunction<VariantContext> sortKey, boolean writeIndex) {
 			this.processContext = processContext;
 			this.input = input;
 			this.output = output;
 			this.sortComparator = sortComparator;
+			this.sortKey = sortKey;
 			this.indexed = writeIndex;
 		}
+		/**
+		 * Sort key consistent with IdsvVariantContext.VariantContextByLocationStart()
+		 */
+		private static ToLongFunction<VariantContext> locationSortKey(SAMSequenceDictionary dictionary) {
+			return vc -> ((long)dictionary.getSequenceIndex(vc.getContig()) << 32) | (vc.getEnd() & 0xFFFFFFFFL);
+		}
 		@Override
 		public Void call() throws IOException {
 			if (IntermediateFileUtil.checkIntermediate(output)) {
@@ -80,7 +89,7 @@ public class VcfFileUtil {
 				return null;
 			}
 			log.info("Sorting to " + output);
-			SortingCollection<VariantContext> collection = null;
+			OffHeapSortingCollection<VariantContext> collection = null;
 			File tmpout = gridss.Defaults.OUTPUT_TO_TEMP_FILE ? FileSystemContext.getWorkingFileFor(output, "gridss.tmp.sorting.") : output;
 			if (tmpout != output && tmpout.exists()) {
 				FileHelper.delete(tmpout, true);
@@ -89,10 +98,10 @@ public class VcfFileUtil {
 				try (VCFFileReader reader = new VCFFileReader(input, false)) {
 					VCFHeader header = reader.getFileHeader();
 					try (CloseableIterator<VariantContext> rit = reader.iterator()) {
-						collection = SortingCollection.newInstance(
-								VariantContext.class,
+						collection = new OffHeapSortingCollection<>(
 								new VCFRecordCodec(header),
 								sortComparator,
+								sortKey,
 								processContext.getFileSystemContext().getMaxBufferedRecordsPerFile(),
 								processContext.getFileSystemContext().getTemporaryDirectory().toPath());
 						while (rit.hasNext()) {
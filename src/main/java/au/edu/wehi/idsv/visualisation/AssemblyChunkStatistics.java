@@ -0,0 +1,84 @@
+package au.edu.wehi.idsv.visualisation;
+
+import java.beans.ConstructorProperties;
+import java.util.Map;
+
+/**
+ * Summary assembly statistics for a single assembly chunk
+ */
+public class AssemblyChunkStatistics {
+	private final int chunk;
+	private final String direction;
+	private final String contig;
+	private final int position;
+	private final long kmers;
+	private final long elapsedMilliseconds;
+	private final double kmersPerSecond;
+	private final long graphSizeMedian;
+	private final long graphSize90thPercentile;
+	private final long graphSize99thPercentile;
+	private final long graphSizeMax;
+	private final Map<String, Long> stageMilliseconds;
+	@ConstructorProperties({ "chunk", "direction", "contig", "position", "kmers", "elapsedMilliseconds", "kmersPerSecond",
+		"graphSizeMedian", "graphSize90thPercentile", "graphSize99thPercentile", "graphSizeMax", "stageMilliseconds" })
+	public AssemblyChunkStatistics(int chunk, String direction, String contig, int position, long kmers, long elapsedMilliseconds, double kmersPerSecond,
+			long graphSizeMedian, long graphSize90thPercentile, long graphSize99thPercentile, long graphSizeMax, Map<String, Long> stageMilliseconds) {
+		this.chunk = chunk;
+		this.direction = direction;
+		this.contig = contig;
+		this.position = position;
+		this.kmers = kmers;
+		this.elapsedMilliseconds = elapsedMilliseconds;
+		this.kmersPerSecond = kmersPerSecond;
+		this.graphSizeMedian = graphSizeMedian;
+		this.graphSize90thPercentile = graphSize90thPercentile;
+		this.graphSize99thPercentile = graphSize99thPercentile;
+		this.graphSizeMax = graphSizeMax;
+		this.stageMilliseconds = stageMilliseconds;
+	}
+	public int getChunk() {
+		return chunk;
+	}
+	public String getDirection() {
+		return direction;
+	}
+	/**
+	 * @return contig currently being assembled
+	 */
+	public String getContig() {
+		return contig;
+	}
+	/**
+	 * @return start position of the most recently loaded graph
+	 */
+	public int getPosition() {
+		return position;
+	}
+	public long getKmers() {
+		return kmers;
+	}
+	public long getElapsedMilliseconds() {
+		return elapsedMilliseconds;
+	}
+	public double getKmersPerSecond() {
+		return kmersPerSecond;
+	}
+	/**
+	 * Graph size percentiles are approximate and rounded up to the next power of two.
+	 */
+	public long getGraphSizeMedian() {
+		return graphSizeMedian;
+	}
+	public long getGraphSize90thPercentile() {
+		return graphSize90thPercentile;
+	}
+	public long getGraphSize99thPercentile() {
+		return graphSize99thPercentile;
+	}
+	public long getGraphSizeMax() {
+		return graphSizeMax;
+	}
+	public Map<String, Long> getStageMilliseconds() {
+		return stageMilliseconds;
+	}
+}
@@ -4,93 +4,413 @@ import au.edu.wehi.idsv.BreakendDirection;
 import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.util.Log;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.BufferedOutputStream;
 import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileWriter;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Low overhead assembly telemetry.
+ *
+ * Each assembly chunk writes fixed size binary event records into its own preallocated
+ * ring buffer. A background thread drains the ring buffers into the telemetry file and
+ * into an in-process aggregator exposed through JMX.
+ *
+ * Record layout (big-endian, RECORD_SIZE bytes):
+ * <pre>
+ * offset size field
+ *  0     1    event type
+ *  1     1    breakend direction ('f' or 'b')
+ *  2     1    flags (bit 0: graph load filtered due to density)
+ *  3     1    assembly stage ordinal (stage events only)
+ *  4     4    chunk
+ *  8     4    reference index
+ * 12     4    start
+ * 16     4    end
+ * 20     4    count (nodes loaded, contigs flushed, reads flushed, or records processed by stage)
+ * 24     8    elapsed nanoseconds
+ * 32     8    kmers loaded
+ * 40     8    graph size in nodes
+ * 48     8    estimated size of loaded nodes in bytes
+ * </pre>
+ */
 public class AssemblyTelemetry implements Closeable {
 	private static final Log log = Log.getInstance(AssemblyTelemetry.class);
+	public static final byte[] FILE_MAGIC = new byte[] { 'G', 'R', 'I', 'D', 'S', 'S', 'A', 'T' };
+	public static final int FILE_VERSION = 1;
+	public static final int RECORD_SIZE = 56;
+	public static final byte EVENT_LOAD_GRAPH = 0;
+	public static final byte EVENT_FLUSH_CONTIGS = 1;
+	public static final byte EVENT_FLUSH_REFERENCE_NODES = 2;
+	public static final byte EVENT_STAGE = 3;
+	private static final byte FLAG_FILTERED = 1;
+	/**
+	 * Number of records in each chunk ring buffer
+	 */
+	private static final int RING_BUFFER_RECORDS = 1024;
+	/**
+	 * Number of buffered records at which producers wake the writer thread
+	 */
+	private static final int WRITER_WAKE_RECORDS = RING_BUFFER_RECORDS / 2;
+	private static final long WRITER_MIN_IDLE_NANOS = 1000000;
+	/**
+	 * Maximum time the writer thread sleeps when idle. Producers wake the writer
+	 * when their ring buffer starts to fill so this only bounds the latency of
+	 * infrequent events reaching the file and the JMX statistics.
+	 */
+	private static final long WRITER_MAX_IDLE_NANOS = 250000000;
+	private static final AtomicInteger mbeanCount = new AtomicInteger(0);
+	/**
+	 * Assembly pipeline stages in the order in which records flow through them.
+	 */
+	public enum AssemblyStage {
+		Evidence,
+		Support,
+		Aggregate,
+		PathNode,
+		Collapse,
+		Simplify,
+		Contig,
+	}
 	private final File file;
 	private final SAMSequenceDictionary dict;
-	private BlockingQueue<String> queue;
+	private final AssemblyTelemetryAggregator aggregator;
+	private final List<AssemblyChunkTelemetry> chunks = new CopyOnWriteArrayList<>();
+	private final Thread thread;
+	private ObjectName mbeanName;
+	private volatile boolean closed = false;
 	public AssemblyTelemetry(File telemetryFile, SAMSequenceDictionary dict) {
 		this.file = telemetryFile;
-		this.queue = new ArrayBlockingQueue<>(4096);
 		this.dict = dict;
-		Thread thread = new Thread(new WriterRunnable(), "AT:" + file.getName());
-		thread.setDaemon(true);
-		thread.start();
+		this.aggregator = new AssemblyTelemetryAggregator(dict);
+		registerMBean();
+		this.thread = new Thread(new WriterRunnable(), "AT:" + file.getName());
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+	private void registerMBean() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			mbeanName = new ObjectName(String.format("gridss:type=AssemblyTelemetry,name=%s,id=%d", ObjectName.quote(file.getName()), mbeanCount.incrementAndGet()));
+			server.registerMBean(aggregator, mbeanName);
+		} catch (Exception e) {
+			log.debug(e, "Unable to register assembly telemetry MBean");
+			mbeanName = null;
+		}
 	}
-	private static void writeHeader(FileWriter writer) {
+	public AssemblyTelemetryMXBean getAggregator() {
+		return aggregator;
 	}
 	public AssemblyChunkTelemetry getTelemetry(int chunkNumber, BreakendDirection direction) {
-		return new AssemblyChunkTelemetry(chunkNumber, direction);
+		AssemblyChunkTelemetry telemetry = new AssemblyChunkTelemetry(chunkNumber, direction);
+		chunks.add(telemetry);
+		return telemetry;
 	}
+	/**
+	 * Telemetry for a single assembly chunk.
+	 * Each instance must only be written to by a single thread.
+	 */
 	public class AssemblyChunkTelemetry {
-		private int chunk;
-		private BreakendDirection direction;
+		private final int chunk;
+		private final BreakendDirection direction;
+		private final ByteBuffer ring = ByteBuffer.allocate(RING_BUFFER_RECORDS * RECORD_SIZE);
+		/**
+		 * Number of records written to the ring buffer
+		 */
+		private final AtomicLong written = new AtomicLong(0);
+		/**
+		 * Number of records consumed by the writer thread
+		 */
+		private final AtomicLong consumed = new AtomicLong(0);
+		/**
+		 * Cached value of consumed
+		 */
+		private long consumedCache = 0;
+		private volatile boolean chunkClosed = false;
+		private final boolean[] stageTimed = new boolean[AssemblyStage.values().length];
+		private final long[] stageInclusiveNs = new long[AssemblyStage.values().length];
+		private final long[] stageRecords = new long[AssemblyStage.values().length];
+		private final long[] stageReportedExclusiveNs = new long[AssemblyStage.values().length];
+		private final long[] stageReportedRecords = new long[AssemblyStage.values().length];
+		private int lastReferenceIndex = 0;
 		private AssemblyChunkTelemetry(int chunk, BreakendDirection direction) {
 			this.chunk = chunk;
 			this.direction = direction;
 		}
-		public void loadGraph(int referenceIndex, int start, int end, int nodes, boolean filtered, long nsSinceLast) {
-			String str = String.format("%d,%s,load,%s,%d,%d,%d,%b,%d\n", chunk, direction.toChar(), dict.getSequence(referenceIndex).getSequenceName(), start, end, nodes, filtered, nsSinceLast / 1000);
-			put(str);
+		public void loadGraph(int referenceIndex, int start, int end, int nodes, long kmers, long graphSize, long nodeBytes, boolean filtered, long nsSinceLast) {
+			put(EVENT_LOAD_GRAPH, filtered ? FLAG_FILTERED : 0, 0, referenceIndex, start, end, nodes, nsSinceLast, kmers, graphSize, nodeBytes);
+			lastReferenceIndex = referenceIndex;
+			putStageTimings();
 		}
 
 		public void flushContigs(int referenceIndex, int flushStart, int flushEnd, int contigsFlushed, long nsSinceLast) {
-			String str = String.format("%d,%s,flushContigs,%s,%d,%d,%d,,%d\n", chunk, direction.toChar(), dict.getSequence(referenceIndex).getSequenceName(), flushStart, flushEnd, contigsFlushed, nsSinceLast / 1000);
-			put(str);
+			put(EVENT_FLUSH_CONTIGS, 0, 0, referenceIndex, flushStart, flushEnd, contigsFlushed, nsSinceLast, 0, 0, 0);
 		}
 
 		public void flushReferenceNodes(int referenceIndex, int flushStart, int flushEnd, int readsFlushed, long nsSinceLast) {
-			String str = String.format("%d,%s,flushReferenceNodes,%s,%d,%d,%d,,%d\n", chunk, direction.toChar(), dict.getSequence(referenceIndex).getSequenceName(), flushStart, flushEnd, readsFlushed, nsSinceLast / 1000);
-			put(str);
+			put(EVENT_FLUSH_REFERENCE_NODES, 0, 0, referenceIndex, flushStart, flushEnd, readsFlushed, nsSinceLast, 0, 0, 0);
 		}
 		public void callContig(int referenceIndex, int start, int end, int nodes, int reads, boolean repeatsSimplified) {
 		}
+		/**
+		 * Records the time spent in the given assembly stage.
+		 * @param it stage output
+		 * @param stage stage
+		 * @return iterator recording the time taken to traverse the stage output
+		 */
+		public <T> Iterator<T> timed(Iterator<T> it, AssemblyStage stage) {
+			stageTimed[stage.ordinal()] = true;
+			return new TimedIterator<>(it, stage.ordinal());
+		}
+		/**
+		 * Records time spent in the given assembly stage.
+		 * Stage timings are inclusive of all upstream stages.
+		 */
+		public void addStageTime(AssemblyStage stage, long ns, int records) {
+			stageTimed[stage.ordinal()] = true;
+			stageInclusiveNs[stage.ordinal()] += ns;
+			stageRecords[stage.ordinal()] += records;
+		}
+		/**
+		 * Writes the time spent in each stage since the last stage timing events
+		 */
+		private void putStageTimings() {
+			long upstreamInclusive = 0;
+			for (int i = 0; i < stageTimed.length; i++) {
+				if (!stageTimed[i]) continue;
+				long exclusive = stageInclusiveNs[i] - upstreamInclusive;
+				upstreamInclusive = stageInclusiveNs[i];
+				long ns = exclusive - stageReportedExclusiveNs[i];
+				long records = stageRecords[i] - stageReportedRecords[i];
+				// Downstream stages only update their timings when control returns to them
+				// so mid-call exclusive timings can transiently be negative.
+				if (ns >= 0 && (ns != 0 || records != 0)) {
+					put(EVENT_STAGE, 0, i, lastReferenceIndex, 0, 0, (int)records, ns, 0, 0, 0);
+					stageReportedExclusiveNs[i] = exclusive;
+					stageReportedRecords[i] = stageRecords[i];
+				}
+			}
+		}
+		/**
+		 * Indicates assembly of this chunk is complete
+		 */
+		public void close() {
+			putStageTimings();
+			chunkClosed = true;
+		}
+		private void put(byte eventType, int flags, int stage, int referenceIndex, int start, int end, int count, long ns, long kmers, long graphSize, long bytes) {
+			long sequence = written.get();
+			int attempt = 0;
+			while (sequence - consumedCache >= RING_BUFFER_RECORDS) {
+				consumedCache = consumed.get();
+				if (sequence - consumedCache < RING_BUFFER_RECORDS) break;
+				if (closed) return;
+				// wait for the writer thread to catch up
+				LockSupport.unpark(thread);
+				LockSupport.parkNanos(Math.min(WRITER_MIN_IDLE_NANOS, 1000L << Math.min(attempt++, 10)));
+			}
+			int offset = (int)(sequence % RING_BUFFER_RECORDS) * RECORD_SIZE;
+			ring.put(offset, eventType);
+			ring.put(offset + 1, (byte)direction.toChar());
+			ring.put(offset + 2, (byte)flags);
+			ring.put(offset + 3, (byte)stage);
+			ring.putInt(offset + 4, chunk);
+			ring.putInt(offset + 8, referenceIndex);
+			ring.putInt(offset + 12, start);
+			ring.putInt(offset + 16, end);
+			ring.putInt(offset + 20, count);
+			ring.putLong(offset + 24, ns);
+			ring.putLong(offset + 32, kmers);
+			ring.putLong(offset + 40, graphSize);
+			ring.putLong(offset + 48, bytes);
+			written.lazySet(sequence + 1);
+			if (sequence - consumedCache == WRITER_WAKE_RECORDS) {
+				consumedCache = consumed.get();
+				if (sequence - consumedCache >= WRITER_WAKE_RECORDS) {
+					LockSupport.unpark(thread);
+				}
+			}
+		}
+		/**
+		 * Drains the available records
+		 * @return number of records drained
+		 */
+		private int drain(OutputStream out, ByteBuffer record) throws IOException {
+			long available = written.get();
+			long sequence = consumed.get();
+			int count = 0;
+			for (; sequence < available; sequence++) {
+				int offset = (int)(sequence % RING_BUFFER_RECORDS) * RECORD_SIZE;
+				System.arraycopy(ring.array(), offset, record.array(), 0, RECORD_SIZE);
+				if (out != null) {
+					out.write(record.array(), 0, RECORD_SIZE);
+				}
+				aggregator.add(record);
+				count++;
+			}
+			consumed.lazySet(sequence);
+			return count;
+		}
+		private boolean isClosedAndDrained() {
+			return chunkClosed && consumed.get() == written.get();
+		}
+		private class TimedIterator<T> implements Iterator<T> {
+			private final Iterator<T> it;
+			private final int stage;
+			public TimedIterator(Iterator<T> it, int stage) {
+				this.it = it;
+				this.stage = stage;
+			}
+			@Override
+			public boolean hasNext() {
+				long start = System.nanoTime();
+				boolean result = it.hasNext();
+				stageInclusiveNs[stage] += System.nanoTime() - start;
+				return result;
+			}
+			@Override
+			public T next() {
+				long start = System.nanoTime();
+				T result = it.next();
+				stageInclusiveNs[stage] += System.nanoTime() - start;
+				stageRecords[stage]++;
+				return result;
+			}
+		}
 	}
-	private void put(String str) {
-		try {
-			if (queue != null) {
-				queue.put(str);
+	/**
+	 * Converts a binary telemetry file to CSV
+	 */
+	public static void writeCsv(InputStream in, SAMSequenceDictionary dict, Writer writer) throws IOException {
+		DataInputStream dis = new DataInputStream(in);
+		byte[] magic = new byte[FILE_MAGIC.length];
+		dis.readFully(magic);
+		int version = dis.readInt();
+		int recordSize = dis.readInt();
+		if (!java.util.Arrays.equals(magic, FILE_MAGIC) || version != FILE_VERSION || recordSize != RECORD_SIZE) {
+			throw new IOException("Not a version " + FILE_VERSION + " assembly telemetry file");
+		}
+		writer.write("chunk,direction,event,stage,contig,start,end,count,filtered,elapsedNs,kmers,graphSize,bytes\n");
+		ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+		while (true) {
+			try {
+				dis.readFully(record.array());
+			} catch (EOFException e) {
+				break;
 			}
-		} catch (InterruptedException e) {
-			queue = null;
+			byte type = record.get(0);
+			writer.write(String.format("%d,%c,%s,%s,%s,%d,%d,%d,%b,%d,%d,%d,%d\n",
+					record.getInt(4),
+					(char)record.get(1),
+					eventName(type),
+					type == EVENT_STAGE ? AssemblyStage.values()[record.get(3)].name() : "",
+					dict.getSequence(record.getInt(8)).getSequenceName(),
+					record.getInt(12),
+					record.getInt(16),
+					record.getInt(20),
+					(record.get(2) & FLAG_FILTERED) != 0,
+					record.getLong(24),
+					record.getLong(32),
+					record.getLong(40),
+					record.getLong(48)));
+		}
+	}
+	private static String eventName(byte type) {
+		switch (type) {
+			case EVENT_LOAD_GRAPH: return "load";
+			case EVENT_FLUSH_CONTIGS: return "flushContigs";
+			case EVENT_FLUSH_REFERENCE_NODES: return "flushReferenceNodes";
+			case EVENT_STAGE: return "stage";
+			default: return "unknown";
 		}
 	}
 	@Override
 	public void close() {
+		closed = true;
+		LockSupport.unpark(thread);
 		try {
-			queue.put("");
-			queue = null;
+			thread.join();
 		} catch (InterruptedException e) {
+			log.debug(e);
+		}
+		if (mbeanName != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+			} catch (Exception e) {
+				log.debug(e);
+			}
+			mbeanName = null;
 		}
 	}
-	
+
 	private class WriterRunnable implements Runnable {
 		public void run() {
-			boolean shouldWriteHeader = !file.exists();
+			ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+			OutputStream out = null;
 			try {
 				file.getParentFile().mkdirs();
-				try (FileWriter writer = new FileWriter(file, true)) {
-					if (shouldWriteHeader) {
-						writeHeader(writer);
-					}
-					String str = queue.take();
-					while (!str.equals("")) {
+				out = new BufferedOutputStream(new FileOutputStream(file));
+				out.write(FILE_MAGIC);
+				out.write(ByteBuffer.allocate(8).putInt(FILE_VERSION).putInt(RECORD_SIZE).array());
+			} catch (Exception e) {
+				log.debug(e, "Unable to write assembly telemetry to ", file);
+				out = null;
+			}
+			try {
+				boolean finished = false;
+				long idleNanos = WRITER_MIN_IDLE_NANOS;
+				while (!finished) {
+					// read closed before draining so no records written before close() are missed
+					finished = closed;
+					int drained = 0;
+					for (AssemblyChunkTelemetry chunk : chunks) {
 						try {
-							writer.write(str);
-						} catch (Exception e) {
-							// consume all exceptions
+							drained += chunk.drain(out, record);
+						} catch (IOException e) {
+							log.debug(e, "Unable to write assembly telemetry to ", file);
+							out = null;
 						}
-						str = queue.take();
+						if (chunk.isClosedAndDrained()) {
+							chunks.remove(chunk);
+						}
+					}
+					if (drained == 0 && !finished) {
+						if (out != null) {
+							out.flush();
+						}
+						// back off when idle. Producers unpark us when records start to accumulate
+						LockSupport.parkNanos(idleNanos);
+						idleNanos = Math.min(2 * idleNanos, WRITER_MAX_IDLE_NANOS);
+					} else {
+						idleNanos = WRITER_MIN_IDLE_NANOS;
 					}
 				}
 			} catch (Exception e) {
 				log.debug(e);
+			} finally {
+				if (out != null) {
+					try {
+						out.close();
+					} catch (IOException e) {
+						log.debug(e);
+					}
+				}
 			}
 		}
 	}
@@ -0,0 +1,133 @@
+package au.edu.wehi.idsv.visualisation;
+
+import au.edu.wehi.idsv.visualisation.AssemblyTelemetry.AssemblyStage;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregates assembly telemetry events.
+ *
+ * Events are added by the telemetry writer thread and statistics read by JMX clients.
+ */
+public class AssemblyTelemetryAggregator implements AssemblyTelemetryMXBean {
+	private static final int HISTOGRAM_BINS = 64;
+	private final SAMSequenceDictionary dict;
+	private final Map<Long, ChunkStatistics> chunks = new LinkedHashMap<>();
+	private final long[] stageNs = new long[AssemblyStage.values().length];
+	private long eventCount = 0;
+	public AssemblyTelemetryAggregator(SAMSequenceDictionary dict) {
+		this.dict = dict;
+	}
+	private static class ChunkStatistics {
+		private final int chunk;
+		private final char direction;
+		private int referenceIndex;
+		private int position;
+		private long kmers;
+		private long elapsedNs;
+		private long graphSizeMax;
+		private long graphLoads;
+		/**
+		 * log2 histogram of graph sizes
+		 */
+		private final long[] graphSizeHistogram = new long[HISTOGRAM_BINS];
+		private final long[] stageNs = new long[AssemblyStage.values().length];
+		public ChunkStatistics(int chunk, char direction) {
+			this.chunk = chunk;
+			this.direction = direction;
+		}
+		private long graphSizePercentile(double percentile) {
+			if (graphLoads == 0) return 0;
+			long target = (long)Math.ceil(graphLoads * percentile);
+			long cumulative = 0;
+			for (int i = 0; i < HISTOGRAM_BINS; i++) {
+				cumulative += graphSizeHistogram[i];
+				if (cumulative >= target) {
+					return Math.min(graphSizeMax, i == 0 ? 0 : 1L << i);
+				}
+			}
+			return graphSizeMax;
+		}
+	}
+	/**
+	 * Adds the given telemetry record
+	 */
+	synchronized void add(ByteBuffer record) {
+		eventCount++;
+		int chunk = record.getInt(4);
+		char direction = (char)record.get(1);
+		long key = ((long)chunk << 8) | direction;
+		ChunkStatistics cs = chunks.get(key);
+		if (cs == null) {
+			cs = new ChunkStatistics(chunk, direction);
+			chunks.put(key, cs);
+		}
+		long ns = record.getLong(24);
+		switch (record.get(0)) {
+			case AssemblyTelemetry.EVENT_LOAD_GRAPH:
+				long graphSize = record.getLong(40);
+				cs.referenceIndex = record.getInt(8);
+				cs.position = record.getInt(12);
+				cs.kmers += record.getLong(32);
+				cs.graphSizeMax = Math.max(cs.graphSizeMax, graphSize);
+				cs.graphSizeHistogram[64 - Long.numberOfLeadingZeros(graphSize)]++;
+				cs.graphLoads++;
+				cs.elapsedNs += ns;
+				break;
+			case AssemblyTelemetry.EVENT_FLUSH_CONTIGS:
+			case AssemblyTelemetry.EVENT_FLUSH_REFERENCE_NODES:
+				cs.elapsedNs += ns;
+				break;
+			case AssemblyTelemetry.EVENT_STAGE:
+				int stage = record.get(3);
+				cs.stageNs[stage] += ns;
+				stageNs[stage] += ns;
+				break;
+			default:
+				break;
+		}
+	}
+	@Override
+	public synchronized long getEventCount() {
+		return eventCount;
+	}
+	@Override
+	public synchronized List<AssemblyChunkStatistics> getChunkStatistics() {
+		List<AssemblyChunkStatistics> result = new ArrayList<>(chunks.size());
+		for (ChunkStatistics cs : chunks.values()) {
+			SAMSequenceRecord seq = dict == null ? null : dict.getSequence(cs.referenceIndex);
+			result.add(new AssemblyChunkStatistics(
+					cs.chunk,
+					Character.toString(cs.direction),
+					seq == null ? Integer.toString(cs.referenceIndex) : seq.getSequenceName(),
+					cs.position,
+					cs.kmers,
+					TimeUnit.NANOSECONDS.toMillis(cs.elapsedNs),
+					cs.elapsedNs == 0 ? 0 : cs.kmers / (cs.elapsedNs / 1e9),
+					cs.graphSizePercentile(0.5),
+					cs.graphSizePercentile(0.9),
+					cs.graphSizePercentile(0.99),
+					cs.graphSizeMax,
+					toMilliseconds(cs.stageNs)));
+		}
+		return result;
+	}
+	@Override
+	public synchronized Map<String, Long> getStageMilliseconds() {
+		return toMilliseconds(stageNs);
+	}
+	private static Map<String, Long> toMilliseconds(long[] ns) {
+		Map<String, Long> result = new LinkedHashMap<>();
+		for (AssemblyStage stage : AssemblyStage.values()) {
+			result.put(stage.name(), TimeUnit.NANOSECONDS.toMillis(ns[stage.ordinal()]));
+		}
+		return result;
+	}
+}
@@ -0,0 +1,22 @@
+package au.edu.wehi.idsv.visualisation;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assembly telemetry statistics exposed through JMX
+ */
+public interface AssemblyTelemetryMXBean {
+	/**
+	 * @return number of telemetry events processed
+	 */
+	long getEventCount();
+	/**
+	 * @return per chunk assembly statistics
+	 */
+	List<AssemblyChunkStatistics> getChunkStatistics();
+	/**
+	 * @return total time spent in each assembly stage across all chunks
+	 */
+	Map<String, Long> getStageMilliseconds();
+}
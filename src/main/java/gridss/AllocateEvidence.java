@@ -6,22 +6,33 @@ import au.edu.wehi.idsv.SequentialEvidenceAllocator.VariantEvidenceSupport;
 import au.edu.wehi.idsv.configuration.VariantCallingConfiguration;
 import au.edu.wehi.idsv.util.AsyncBufferedIterator;
 import au.edu.wehi.idsv.util.AutoClosingIterator;
+import au.edu.wehi.idsv.util.FileHelper;
 import au.edu.wehi.idsv.validation.OrderAssertingIterator;
-import au.edu.wehi.idsv.validation.PairedEvidenceTracker;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
+import com.google.common.util.concurrent.MoreExecutors;
 import gridss.cmdline.VcfTransformCommandLineProgram;
+import htsjdk.samtools.QueryInterval;
+import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SAMRecordIterator;
 import htsjdk.samtools.SamReader;
 import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.Log;
+import htsjdk.variant.variantcontext.writer.VariantContextWriter;
+import htsjdk.variant.vcf.VCFHeader;
 import org.broadinstitute.barclay.argparser.Argument;
 import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
 
+import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 @CommandLineProgramProperties(
         summary = "Evidence reallocation is required to ensure that any given read/read pair/assembly "
@@ -44,42 +55,288 @@ public class AllocateEvidence extends VcfTransformCommandLineProgram {
 	public static enum EvidenceAllocationStrategy {
 		GREEDY,
 	}
-	private CalledBreakpointPositionLookup lookup = new CalledBreakpointPositionLookup();
-	public CloseableIterator<DirectedEvidence> getReadIterator() {
+	private final CalledBreakpointPositionLookup lookup = new CalledBreakpointPositionLookup();
+	public CloseableIterator<DirectedEvidence> getReadIterator(QueryInterval[] intervals) {
 		CloseableIterator<DirectedEvidence> evidenceIt;
 		List<SAMEvidenceSource> sources = getSamEvidenceSources();
 		sources.stream().forEach(ses -> ses.assertPreprocessingComplete());
-		evidenceIt = SAMEvidenceSource.mergedIterator(ImmutableList.<SAMEvidenceSource>builder().addAll(sources).build(), true, SAMEvidenceSource.EvidenceSortOrder.EvidenceStartPosition);
+		evidenceIt = SAMEvidenceSource.mergedIterator(ImmutableList.<SAMEvidenceSource>builder().addAll(sources).build(), intervals, SAMEvidenceSource.EvidenceSortOrder.EvidenceStartPosition);
 		if (Defaults.SANITY_CHECK_ITERATORS) {
-			evidenceIt = new AutoClosingIterator<>(
-					new PairedEvidenceTracker<>("Reads", new OrderAssertingIterator<>(evidenceIt, DirectedEvidenceOrder.ByNatural), false),
-					evidenceIt);
+			// evidence partner can fall outside of the chunk so we can't track pairing
+			evidenceIt = new AutoClosingIterator<>(new OrderAssertingIterator<>(evidenceIt, DirectedEvidenceOrder.ByNatural), evidenceIt);
 		}
 		return evidenceIt;
 	}
-	public CloseableIterator<DirectedEvidence> getAssemblyIterator() {
+	public CloseableIterator<DirectedEvidence> getAssemblyIterator(QueryInterval[] intervals) {
 		CloseableIterator<DirectedEvidence> evidenceIt;
-		evidenceIt = getAssemblySource().iterator(SAMEvidenceSource.EvidenceSortOrder.EvidenceStartPosition);
+		evidenceIt = getAssemblySource().iterator(intervals, SAMEvidenceSource.EvidenceSortOrder.EvidenceStartPosition);
 		if (Defaults.SANITY_CHECK_ITERATORS) {
-			evidenceIt = new AutoClosingIterator<>(
-					new PairedEvidenceTracker<>("Assemblies", new OrderAssertingIterator<>(evidenceIt, DirectedEvidenceOrder.ByNatural), false),
-					evidenceIt);
+			evidenceIt = new AutoClosingIterator<>(new OrderAssertingIterator<>(evidenceIt, DirectedEvidenceOrder.ByNatural), evidenceIt);
 		}
 		return evidenceIt;
 	}
+	/**
+	 * Allocates evidence independently for each genomic chunk.
+	 * 
+	 * Calls and evidence are loaded with enough padding around each chunk that
+	 * every call starting within the chunk is allocated exactly the same evidence
+	 * as a single sequential pass over the genome would allocate.
+	 * 
+	 * The upper breakend of a breakpoint takes its nominal position from the lower
+	 * breakend. Upper breakends whose lower breakend is in a different chunk are
+	 * annotated after all chunks have been allocated so this ordering is preserved.
+	 * Only the position of these deferred breakends is retained between the passes:
+	 * their evidence is reloaded and reallocated in a second pass over the padded
+	 * regions around the deferred calls.
+	 */
 	@Override
 	public CloseableIterator<VariantContextDirectedEvidence> iterator(CloseableIterator<VariantContextDirectedEvidence> calls, ExecutorService threadpool) {
-		log.info("Allocating evidence"); 
-		CloseableIterator<DirectedEvidence> rawReads = new AsyncBufferedIterator<>(getReadIterator(), "mergedReads-allocation");
-		CloseableIterator<DirectedEvidence> reads = new AsyncBufferedIterator<>(annotateAssembly(rawReads), "annotate-associated-assembly");
-		CloseableIterator<DirectedEvidence> assemblies = new AsyncBufferedIterator<>(getAssemblyIterator(), "assembly-allocation");
-		Iterator<VariantEvidenceSupport> annotator = new SequentialEvidenceAllocator(getContext(), calls, reads, assemblies, SAMEvidenceSource.maximumWindowSize(getContext(), getSamEvidenceSources(), getAssemblySource()), true);
-		CloseableIterator<VariantEvidenceSupport> bufferedAnnotator = new AsyncBufferedIterator<>(annotator, "annotator", 2, 8);
-		Iterator<VariantContextDirectedEvidence> it = Iterators.transform(bufferedAnnotator, bp -> annotate(bp));
-		it = Iterators.filter(it, v -> v != null);
-		return new AutoClosingIterator<>(it, calls, rawReads, reads, assemblies, bufferedAnnotator);
+		log.info("Allocating evidence");
+		if (threadpool == null) {
+			threadpool = MoreExecutors.newDirectExecutorService();
+		}
+		ProcessingContext pc = getContext();
+		int windowSize = SAMEvidenceSource.maximumWindowSize(pc, getSamEvidenceSources(), getAssemblySource());
+		List<QueryInterval[]> chunks = pc.getReference().getIntervals(pc.getConfig().chunkSize, pc.getConfig().chunkSequenceChangePenalty);
+		List<File> chunkInput;
+		try {
+			chunkInput = partitionCalls(calls, chunks, windowSize);
+		} finally {
+			calls.close();
+		}
+		VCFHeader header = getOutputHeader();
+		List<File> chunkOutput = new ArrayList<>();
+		List<File> deferredOutput = new ArrayList<>();
+		try {
+			List<Future<QueryInterval[]>> tasks = new ArrayList<>();
+			for (int i = 0; i < chunks.size(); i++) {
+				File in = chunkInput.get(i);
+				if (in == null) {
+					// no calls to allocate evidence to
+					continue;
+				}
+				File out = pc.getFileSystemContext().getAllocationChunkVcf(OUTPUT_VCF, i);
+				QueryInterval[] chunk = chunks.get(i);
+				int chunkNumber = i;
+				chunkOutput.add(out);
+				tasks.add(threadpool.submit(() -> allocateChunk(in, out, header, chunkNumber, chunk, chunk, windowSize, false)));
+			}
+			List<QueryInterval[]> deferred = waitForAll(tasks);
+			// all lower breakends are now annotated
+			List<Future<QueryInterval[]>> deferredTasks = new ArrayList<>();
+			for (int i = 0, j = 0; i < chunks.size(); i++) {
+				File in = chunkInput.get(i);
+				if (in == null) continue;
+				QueryInterval[] region = deferred.get(j++);
+				if (region.length == 0) continue;
+				File out = pc.getFileSystemContext().getAllocationDeferredChunkVcf(OUTPUT_VCF, i);
+				QueryInterval[] chunk = chunks.get(i);
+				int chunkNumber = i;
+				deferredOutput.add(out);
+				deferredTasks.add(threadpool.submit(() -> allocateChunk(in, out, header, chunkNumber, chunk, region, windowSize, true)));
+			}
+			waitForAll(deferredTasks);
+		} finally {
+			if (gridss.Defaults.DELETE_TEMPORARY_FILES) {
+				for (File f : chunkInput) {
+					if (f != null) {
+						try {
+							FileHelper.delete(f, true);
+						} catch (IOException e) {
+							log.warn(e, "Unable to delete ", f);
+						}
+					}
+				}
+			}
+		}
+		ChunkConcatenatingIterator chunkIt = new ChunkConcatenatingIterator(chunkOutput);
+		ChunkConcatenatingIterator deferredIt = new ChunkConcatenatingIterator(deferredOutput);
+		Iterator<VariantContextDirectedEvidence> it = Iterators.mergeSorted(ImmutableList.of(chunkIt, deferredIt), DirectedEvidenceOrder.ByStartEnd);
+		return new AutoClosingIterator<>(it, chunkIt, deferredIt);
+	}
+	private static <T> List<T> waitForAll(List<Future<T>> tasks) {
+		List<T> result = new ArrayList<>(tasks.size());
+		Exception firstException = null;
+		for (Future<T> f : tasks) {
+			try {
+				result.add(f.get());
+			} catch (Exception e) {
+				if (firstException == null) {
+					firstException = e;
+				}
+			}
+		}
+		if (firstException != null) {
+			log.error(firstException, "Fatal error during evidence allocation");
+			throw new RuntimeException(firstException);
+		}
+		return result;
+	}
+	/**
+	 * Writes each call to the input file of every chunk it could receive evidence from or
+	 * influence the evidence allocation of.
+	 * @return calls for each chunk. null if the chunk has no calls. 
+	 */
+	private List<File> partitionCalls(Iterator<VariantContextDirectedEvidence> calls, List<QueryInterval[]> chunks, int windowSize) {
+		ProcessingContext pc = getContext();
+		LinearGenomicCoordinate linear = pc.getLinear();
+		QueryInterval[][] padded = new QueryInterval[chunks.size()][];
+		long[] paddedStart = new long[chunks.size()];
+		long[] paddedEnd = new long[chunks.size()];
+		for (int i = 0; i < chunks.size(); i++) {
+			padded[i] = QueryIntervalUtil.padIntervals(pc.getDictionary(), chunks.get(i), getCallPadding(windowSize));
+			QueryInterval first = padded[i][0];
+			QueryInterval last = padded[i][padded[i].length - 1];
+			paddedStart[i] = linear.getLinearCoordinate(first.referenceIndex, first.start);
+			paddedEnd[i] = linear.getLinearCoordinate(last.referenceIndex, last.end);
+		}
+		List<File> files = new ArrayList<>(Collections.nCopies(chunks.size(), (File)null));
+		VariantContextWriter[] writers = new VariantContextWriter[chunks.size()];
+		int firstOpenChunk = 0;
+		try {
+			while (calls.hasNext()) {
+				VariantContextDirectedEvidence call = calls.next();
+				BreakendSummary bs = call.getBreakendSummary();
+				long start = linear.getStartLinearCoordinate(bs);
+				long end = linear.getEndLinearCoordinate(bs);
+				while (firstOpenChunk < chunks.size() && paddedEnd[firstOpenChunk] < start) {
+					if (writers[firstOpenChunk] != null) {
+						writers[firstOpenChunk].close();
+						writers[firstOpenChunk] = null;
+					}
+					firstOpenChunk++;
+				}
+				for (int i = firstOpenChunk; i < chunks.size() && paddedStart[i] <= end; i++) {
+					if (QueryIntervalUtil.overlaps(padded[i], bs)) {
+						if (writers[i] == null) {
+							files.set(i, pc.getFileSystemContext().getAllocationInputChunkVcf(OUTPUT_VCF, i));
+							writers[i] = pc.getVariantContextWriter(files.get(i), getInputHeader(), false);
+						}
+						writers[i].add(call);
+					}
+				}
+			}
+		} finally {
+			for (VariantContextWriter w : writers) {
+				if (w != null) {
+					w.close();
+				}
+			}
+		}
+		return files;
 	}
-	private CloseableIterator<DirectedEvidence> annotateAssembly(CloseableIterator<DirectedEvidence> it) {
+	/**
+	 * Padding required to ensure all calls that could compete for evidence
+	 * allocated to a call in the chunk are loaded.
+	 */
+	private static int getCallPadding(int windowSize) {
+		return 3 * (windowSize + 1);
+	}
+	/**
+	 * Padding required to ensure all evidence that could be allocated to calls
+	 * in the chunk, or could influence that allocation, is loaded.
+	 */
+	private static int getEvidencePadding(int windowSize) {
+		return 2 * (windowSize + 1);
+	}
+	private static boolean isInChunk(QueryInterval[] chunk, BreakendSummary bs) {
+		return QueryIntervalUtil.overlaps(chunk, bs.referenceIndex, bs.start);
+	}
+	/**
+	 * Allocates evidence to the calls starting in the given chunk
+	 * 
+	 * Upper breakends whose lower breakend falls in a different chunk are not
+	 * written to the output. These are allocated by a second, deferred pass over
+	 * the chunk once all lower breakends have been annotated.
+	 * 
+	 * @param region intervals to allocate calls in. Calls are only loaded and
+	 * evidence only read from the padded region. This is the chunk itself
+	 * except for the deferred pass.
+	 * @param deferredPass only write the upper breakends deferred by the first pass
+	 * @return positions of the upper breakends deferred by this pass
+	 */
+	private QueryInterval[] allocateChunk(File input, File output, VCFHeader header, int chunkNumber, QueryInterval[] chunk, QueryInterval[] region, int windowSize, boolean deferredPass) throws IOException {
+		ProcessingContext pc = getContext();
+		String chunkMsg = String.format("%schunk %d (%s:%d-%s:%d)", deferredPass ? "deferred calls of " : "", chunkNumber,
+				pc.getDictionary().getSequence(chunk[0].referenceIndex).getSequenceName(), chunk[0].start,
+				pc.getDictionary().getSequence(chunk[chunk.length-1].referenceIndex).getSequenceName(), chunk[chunk.length-1].end);
+		log.debug("Allocating evidence in ", chunkMsg);
+		QueryInterval[] evidenceIntervals = QueryIntervalUtil.padIntervals(pc.getDictionary(), region, getEvidencePadding(windowSize));
+		QueryInterval[] callIntervals = QueryIntervalUtil.padIntervals(pc.getDictionary(), region, getCallPadding(windowSize));
+		List<QueryInterval> deferred = new ArrayList<>();
+		File tmp = gridss.Defaults.OUTPUT_TO_TEMP_FILE ? FileSystemContext.getWorkingFileFor(output) : output;
+		try (CloseableIterator<VariantContextDirectedEvidence> calls = getBreakends(input);
+				CloseableIterator<DirectedEvidence> rawReads = new AsyncBufferedIterator<>(getReadIterator(evidenceIntervals), "mergedReads-allocation " + chunkMsg);
+				CloseableIterator<DirectedEvidence> reads = new AsyncBufferedIterator<>(annotateAssembly(rawReads, evidenceIntervals), "annotate-associated-assembly " + chunkMsg);
+				CloseableIterator<DirectedEvidence> assemblies = new AsyncBufferedIterator<>(getAssemblyIterator(evidenceIntervals), "assembly-allocation " + chunkMsg);
+				VariantContextWriter writer = pc.getVariantContextWriter(tmp, new VCFHeader(header), false)) {
+			Iterator<VariantContextDirectedEvidence> regionCalls = deferredPass ? Iterators.filter(calls, v -> QueryIntervalUtil.overlaps(callIntervals, v.getBreakendSummary())) : calls;
+			Iterator<VariantEvidenceSupport> it = new SequentialEvidenceAllocator(pc, regionCalls, reads, assemblies, windowSize, true);
+			while (it.hasNext()) {
+				VariantEvidenceSupport ves = it.next();
+				BreakendSummary bs = ves.variant.getBreakendSummary();
+				if (!isInChunk(region, bs)) {
+					// padding call: allocated by the chunk containing it
+					continue;
+				}
+				boolean isDeferred = bs instanceof BreakpointSummary && ((BreakpointSummary)bs).isHighBreakend() && !isInChunk(chunk, ((BreakpointSummary)bs).remoteBreakpoint());
+				if (isDeferred != deferredPass) {
+					if (isDeferred) {
+						deferred.add(new QueryInterval(bs.referenceIndex, bs.start, bs.start));
+					}
+					continue;
+				}
+				VariantContextDirectedEvidence v = annotate(ves);
+				if (v != null) {
+					writer.add(v);
+				}
+			}
+		}
+		if (tmp != output) {
+			FileHelper.move(tmp, output, true);
+		}
+		log.debug("Completed evidence allocation in ", chunkMsg);
+		return QueryInterval.optimizeIntervals(deferred.toArray(new QueryInterval[0]));
+	}
+	/**
+	 * Lazily concatenates the allocated chunks, only keeping one chunk open at a time
+	 */
+	private class ChunkConcatenatingIterator extends AbstractIterator<VariantContextDirectedEvidence> implements Closeable {
+		private final Iterator<File> chunkIt;
+		private final List<File> chunks;
+		private CloseableIterator<VariantContextDirectedEvidence> current = null;
+		public ChunkConcatenatingIterator(List<File> chunks) {
+			this.chunks = chunks;
+			this.chunkIt = chunks.iterator();
+		}
+		@Override
+		protected VariantContextDirectedEvidence computeNext() {
+			while (current == null || !current.hasNext()) {
+				if (current != null) {
+					current.close();
+					current = null;
+				}
+				if (!chunkIt.hasNext()) {
+					return endOfData();
+				}
+				current = getBreakends(chunkIt.next());
+			}
+			return current.next();
+		}
+		@Override
+		public void close() throws IOException {
+			if (current != null) {
+				current.close();
+				current = null;
+			}
+			if (gridss.Defaults.DELETE_TEMPORARY_FILES) {
+				for (File f : chunks) {
+					FileHelper.delete(f, true);
+				}
+			}
+		}
+	}
+	private CloseableIterator<DirectedEvidence> annotateAssembly(CloseableIterator<DirectedEvidence> it, QueryInterval[] intervals) {
 		AssemblyEvidenceSource aes = getAssemblySource();
 		// need to use the raw breakend assembly file (prior to realignment) so we annotate correctly
 		File assemblyFile = aes.getFile();
@@ -91,8 +348,17 @@ public class AllocateEvidence extends VcfTransformCommandLineProgram {
 		// defensive over-eager loading
 		windowSize *= 2;
 		SamReader reader = getContext().getSamReader(assemblyFile);
-		SAMRecordIterator assit = reader.iterator();
-		return new AutoClosingIterator<>(new AssemblyAssociator(it, assit, windowSize), assit, reader);
+		QueryInterval[] assemblyIntervals = QueryIntervalUtil.padIntervals(getContext().getDictionary(), intervals, windowSize);
+		SAMRecordIterator assit;
+		Iterator<SAMRecord> filteredAssit;
+		if (reader.hasIndex()) {
+			assit = reader.queryOverlapping(assemblyIntervals);
+			filteredAssit = assit;
+		} else {
+			assit = reader.iterator();
+			filteredAssit = Iterators.filter(assit, r -> !r.getReadUnmappedFlag() && QueryIntervalUtil.overlaps(assemblyIntervals, r.getReferenceIndex(), r.getUnclippedStart(), r.getUnclippedEnd()));
+		}
+		return new AutoClosingIterator<>(new AssemblyAssociator(it, filteredAssit, windowSize, getContext().getEvidenceIDGenerator()), assit, reader);
 	}
 	private VariantContextDirectedEvidence annotate(VariantEvidenceSupport ves) {
 		VariantCallingConfiguration vc = getContext().getConfig().getVariantCalling();
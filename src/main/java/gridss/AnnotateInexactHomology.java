@@ -4,20 +4,27 @@ import au.edu.wehi.idsv.VariantContextDirectedBreakpoint;
 import au.edu.wehi.idsv.VariantContextDirectedEvidence;
 import au.edu.wehi.idsv.alignment.BreakpointHomology;
 import au.edu.wehi.idsv.util.AutoClosingIterator;
-import au.edu.wehi.idsv.util.ParallelTransformIterator;
+import au.edu.wehi.idsv.util.BatchedParallelTransformIterator;
 import gridss.cmdline.VcfTransformCommandLineProgram;
 import htsjdk.samtools.util.CloseableIterator;
 
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.concurrent.ExecutorService;
 
 public class AnnotateInexactHomology extends VcfTransformCommandLineProgram {
+	/**
+	 * Number of calls annotated in each task. Each call requires two
+	 * Smith-Waterman alignments so small batches suffice to amortise task overhead.
+	 */
+	private static final int ANNOTATION_BATCH_SIZE = 16;
 	@Override
 	public CloseableIterator<VariantContextDirectedEvidence> iterator(CloseableIterator<VariantContextDirectedEvidence> calls, ExecutorService threadpool) {
-		Iterator<VariantContextDirectedEvidence> it = new ParallelTransformIterator<VariantContextDirectedEvidence, VariantContextDirectedEvidence>(
+		Iterator<VariantContextDirectedEvidence> it = new BatchedParallelTransformIterator<VariantContextDirectedEvidence, VariantContextDirectedEvidence>(
 				calls,
-				call -> (call instanceof VariantContextDirectedBreakpoint) ? BreakpointHomology.annotate(getContext(), (VariantContextDirectedBreakpoint)call) : call,
-				WORKER_THREADS + 1,
+				call -> Collections.singletonList((call instanceof VariantContextDirectedBreakpoint) ? BreakpointHomology.annotate(getContext(), (VariantContextDirectedBreakpoint)call) : call),
+				ANNOTATION_BATCH_SIZE,
+				2 * Math.max(1, WORKER_THREADS),
 				threadpool);
 		return new AutoClosingIterator<>(it, calls);
 	}
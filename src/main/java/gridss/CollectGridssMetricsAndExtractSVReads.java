@@ -57,8 +57,11 @@ public class CollectGridssMetricsAndExtractSVReads extends CollectGridssMetrics
     public static void main(final String[] args) {
         new CollectGridssMetricsAndExtractSVReads().instanceMainWithExit(args);
     }
+    protected ExtractSVReads newExtractSVReads() {
+    	return new ExtractSVReads();
+    }
     protected ExtractSVReads getExtractSVReads() {
-    	ExtractSVReads extract = new ExtractSVReads();
+    	ExtractSVReads extract = newExtractSVReads();
     	CommandLineProgramHelper.copyInputs(this, extract);
     	extract.MIN_INDEL_SIZE = MIN_INDEL_SIZE;
     	extract.MIN_CLIP_LENGTH = MIN_CLIP_LENGTH;
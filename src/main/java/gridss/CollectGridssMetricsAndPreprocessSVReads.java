@@ -0,0 +1,98 @@
+package gridss;
+
+import au.edu.wehi.idsv.FileSystemContext;
+import au.edu.wehi.idsv.picard.ReferenceLookup;
+import au.edu.wehi.idsv.sam.NameGroupingSAMFileWriter;
+import com.google.common.collect.Sets;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileHeader.SortOrder;
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SAMTag;
+import org.broadinstitute.barclay.argparser.Argument;
+import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
+
+import java.io.File;
+import java.util.Set;
+
+/**
+ * Single pass replacement for CollectGridssMetricsAndExtractSVReads | samtools sort -n | ComputeSamTags | samtools sort
+ *
+ * Extracted reads are grouped by read name in memory (spilling to disk as required),
+ * have their SAM tags computed, then are coordinate sorted directly into the output file.
+ *
+ */
+@CommandLineProgramProperties(
+        summary = "Merging of CollectGridssMetrics, ExtactSVReads, and ComputeSamTags. "
+        		+ "Extracted reads are grouped by read name and have their SAM tags computed before being written in coordinate sorted order. "
+        		+ "Combining the programs removes the I/O overhead of writing and sorting intermediate files.",
+        oneLineSummary = "A \"meta-metrics\" calculating program that produces multiple metrics for the provided SAM/BAM and extracts coordinate sorted, annotated SV reads.",
+        programGroup = gridss.cmdline.programgroups.DataConversion.class
+)
+public class CollectGridssMetricsAndPreprocessSVReads extends CollectGridssMetricsAndExtractSVReads {
+	@Argument(doc="Convert hard clips to soft clips if the entire read sequence for the read is available in another record. "
+			+ "If no base information can be found, N bases with 0 base quality are substituted.", optional=true)
+	public boolean SOFTEN_HARD_CLIPS = true;
+	@Argument(doc="Fixes missing mate information. Unlike Picard tools FixMateInformation, reads for which no mate can be found"
+			+ " are converted to unpaired reads.", optional=true)
+	public boolean FIX_MATE_INFORMATION = true;
+	@Argument(doc="Sets the duplicate flag if any alignment in the read pair is flagged as a duplicate. Many duplicate marking tools do not correctly mark all supplementary alignments.", optional=true)
+	public boolean FIX_DUPLICATE_FLAG = true;
+	@Argument(doc="Fixes the SA tag to match the read alignments. Useful for programs such as GATK indel realignment do not update the SA tag when adjusting read alignments.", optional=true)
+	public boolean FIX_SA = true;
+	@Argument(doc="Adds hard clipping CIGAR elements to truncated alignments. Useful for programs such as GATK indel realignment that strip hard clips. Assumes all alignments form part of the split read thus does not support secondary alignments.", optional=true)
+	public boolean FIX_MISSING_HARD_CLIP = true;
+	@Argument(doc="Recalculates the supplementary flag based on the SA tag. The supplementary flag should be set on all split read alignments except one.", optional=true)
+	public boolean RECALCULATE_SA_SUPPLEMENTARY = true;
+	@Argument(shortName="T", doc="Tags to calculate")
+	public Set<String> TAGS = Sets.newHashSet(
+			SAMTag.NM.name(),
+			SAMTag.SA.name(),
+			SAMTag.R2.name(),
+			SAMTag.MC.name(),
+			SAMTag.MQ.name());
+	public static void main(final String[] args) {
+        new CollectGridssMetricsAndPreprocessSVReads().instanceMainWithExit(args);
+    }
+	@Override
+	protected String[] customCommandLineValidation() {
+		if ((TAGS.contains(SAMTag.NM.name()) || TAGS.contains(SAMTag.SA.name())) && REFERENCE_SEQUENCE == null) {
+			return new String[] { "REFERENCE_SEQUENCE is required to calculate NM and SA tags." };
+		}
+		return super.customCommandLineValidation();
+	}
+	@Override
+	protected ExtractSVReads newExtractSVReads() {
+		return new PreprocessSVReads();
+	}
+	/**
+	 * Extracts SV reads then computes SAM tags and coordinate sorts the extracted reads.
+	 */
+	private class PreprocessSVReads extends ExtractSVReads {
+		public PreprocessSVReads() {
+			// only populated by the command line parser so not copied with the other inputs
+			REFERENCE_SEQUENCE = CollectGridssMetricsAndPreprocessSVReads.this.REFERENCE_SEQUENCE;
+		}
+		@Override
+		protected SAMFileWriter createWriter(SAMFileHeader header, File output) {
+			FileSystemContext fsc = getFileSystemContext();
+			SAMFileHeader sortedHeader = header.clone();
+			sortedHeader.setSortOrder(SortOrder.coordinate);
+			SAMFileWriterFactory writerFactory = new SAMFileWriterFactory()
+					.setTempDirectory(fsc.getTemporaryDirectory())
+					.setMaxRecordsInRam(fsc.getMaxBufferedRecordsPerFile());
+			SAMFileWriter sortingWriter = writerFactory.makeSAMOrBAMWriter(sortedHeader, false, output);
+			ReferenceLookup reference = REFERENCE_SEQUENCE == null ? null : getReference();
+			String threadPrefix = INPUT.getName() + "-";
+			return new NameGroupingSAMFileWriter(fsc, header, sortingWriter, (it, writer) ->
+				ComputeSamTags.compute(it, writer, reference, TAGS,
+						SOFTEN_HARD_CLIPS,
+						FIX_MATE_INFORMATION,
+						FIX_DUPLICATE_FLAG,
+						FIX_SA,
+						FIX_MISSING_HARD_CLIP,
+						RECALCULATE_SA_SUPPLEMENTARY,
+						threadPrefix));
+		}
+	}
+}
@@ -2,6 +2,7 @@ package gridss;
 
 import au.edu.wehi.idsv.*;
 import com.google.common.collect.Iterators;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import gridss.cmdline.GcSinglePassSamProgram;
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMRecord;
@@ -16,7 +17,15 @@ import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 @CommandLineProgramProperties(
 		summary = "Computes reference genome coverage for a given BAM",
@@ -40,10 +49,37 @@ public class ComputeCoverage extends GcSinglePassSamProgram {
 			+ " actual aligned sequence coverage, and FRAGMENT which calculated physical coverage based on the"
 			+ " alignment of read pairs.", optional=true)
 	public CoverageCalculationMethod COVERAGE_METHOD = CoverageCalculationMethod.READ;
+	@Argument(doc="Number of worker threads to spawn. Reads are processed on the calling thread by default."
+			+ " Note that I/O threads are not included in this worker thread count so CPU usage can be higher than the number of worker thread."
+			+ " Output is deterministic for a given number of worker threads.",
+			shortName="THREADS")
+	public int WORKER_THREADS = 1;
+	/**
+	 * Number of reads processed by a worker in each task
+	 */
+	private static final int READ_BATCH_SIZE = 4096;
+	/**
+	 * Maximum number of outstanding tasks per worker thread
+	 */
+	private static final int MAX_OUTSTANDING_BATCHES_PER_THREAD = 4;
 	
 	private IntervalCoverageAccumulator ica_gc;
 	private IntervalCoverageAccumulator ica_raw;
 	private GcBiasAdjuster gcAdjust;
+	/**
+	 * Single-threaded worker lanes. Batch n is always processed by lane n % lanes.length
+	 * so the order in which coverage is summed does not depend on thread scheduling.
+	 */
+	private ExecutorService[] lanes;
+	/**
+	 * Coverage of the current contig accumulated by each lane
+	 */
+	private CoverageShard[] laneShards;
+	private List<SAMRecord> batch;
+	private long batchIndex;
+	private int batchReferenceIndex;
+	private ReferenceSequence batchRefSeq;
+	private final ArrayDeque<Future<?>> outstanding = new ArrayDeque<>();
 	@Override
 	protected String[] customCommandLineValidation() {
 		if (OUTPUT_GC != null) {
@@ -65,6 +101,20 @@ public class ComputeCoverage extends GcSinglePassSamProgram {
 			ica_gc = initIntervalCoverageAccumulator();
 		}
 		ica_raw = initIntervalCoverageAccumulator();
+		if (WORKER_THREADS > 1) {
+			// ensure lazily initialised state is created before the workers start
+			getReadPairConcordanceCalculator();
+			getReference();
+			ThreadFactory threadFactory = new ThreadFactoryBuilder().setDaemon(true).setNameFormat("ComputeCoverage-%d").build();
+			lanes = new ExecutorService[WORKER_THREADS];
+			for (int i = 0; i < lanes.length; i++) {
+				lanes[i] = Executors.newSingleThreadExecutor(threadFactory);
+			}
+			laneShards = new CoverageShard[WORKER_THREADS];
+			batch = new ArrayList<>(READ_BATCH_SIZE);
+			batchIndex = 0;
+			batchReferenceIndex = SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX;
+		}
 	}
 	private IntervalCoverageAccumulator initIntervalCoverageAccumulator() {
 		SAMSequenceDictionary dictionary = getReference().getSequenceDictionary();
@@ -84,14 +134,111 @@ public class ComputeCoverage extends GcSinglePassSamProgram {
 	@Override
 	protected void acceptRead(SAMRecord record, ReferenceSequence refSeq) {
 		if (record.getDuplicateReadFlag() && !INCLUDE_DUPLICATES) return;
-		ReadGcSummary gc = new ReadGcSummary(record, refSeq, UNPAIRED_FRAGMENT_SIZE, getReadPairConcordanceCalculator());
+		if (lanes != null) {
+			acceptReadParallel(record, refSeq);
+			return;
+		}
+		ReadGcSummary gc = getReadGcSummary(record, refSeq);
 		if (ica_gc != null) {
 			ica_gc.add(record, gc, gcAdjust.adjustmentMultiplier((int)gc.gcPercentage));
 		}
 		ica_raw.add(record, gc, 1.0);
 	}
+	/**
+	 * Reads are processed in batches by the worker lanes. Each lane accumulates
+	 * coverage into its own contig shard and the shards are merged in lane order
+	 * whenever the input moves to a new contig.
+	 */
+	private void acceptReadParallel(SAMRecord record, ReferenceSequence refSeq) {
+		if (record.getReferenceIndex() != batchReferenceIndex) {
+			flushBatch();
+			mergeShards();
+			batchReferenceIndex = record.getReferenceIndex();
+		}
+		batchRefSeq = refSeq;
+		batch.add(record);
+		if (batch.size() >= READ_BATCH_SIZE) {
+			flushBatch();
+		}
+	}
+	private void flushBatch() {
+		if (batch.isEmpty()) return;
+		List<SAMRecord> toProcess = batch;
+		ReferenceSequence refSeq = batchRefSeq;
+		batch = new ArrayList<>(READ_BATCH_SIZE);
+		while (outstanding.size() >= MAX_OUTSTANDING_BATCHES_PER_THREAD * WORKER_THREADS) {
+			waitFor(outstanding.removeFirst());
+		}
+		int lane = (int)(batchIndex++ % lanes.length);
+		outstanding.add(lanes[lane].submit(() -> processBatch(lane, toProcess, refSeq)));
+	}
+	private void processBatch(int lane, List<SAMRecord> reads, ReferenceSequence refSeq) {
+		CoverageShard shard = laneShards[lane];
+		for (SAMRecord record : reads) {
+			ReadGcSummary gc = getReadGcSummary(record, refSeq);
+			if (shard == null) {
+				shard = new CoverageShard(gc.referenceIndex);
+				laneShards[lane] = shard;
+			}
+			if (shard.gc != null) {
+				shard.gc.add(record, gc, gcAdjust.adjustmentMultiplier((int)gc.gcPercentage));
+			}
+			shard.raw.add(record, gc, 1.0);
+		}
+	}
+	/**
+	 * Waits for all outstanding batches then merges the lane shards in lane order
+	 */
+	private void mergeShards() {
+		while (!outstanding.isEmpty()) {
+			waitFor(outstanding.removeFirst());
+		}
+		for (int i = 0; i < laneShards.length; i++) {
+			CoverageShard shard = laneShards[i];
+			if (shard != null) {
+				ica_raw.merge(shard.raw);
+				if (ica_gc != null) {
+					ica_gc.merge(shard.gc);
+				}
+				laneShards[i] = null;
+			}
+		}
+		batchIndex = 0;
+	}
+	private static void waitFor(Future<?> future) {
+		try {
+			future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException)e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+	}
+	private class CoverageShard {
+		private final IntervalCoverageAccumulator raw;
+		private final IntervalCoverageAccumulator gc;
+		public CoverageShard(int referenceIndex) {
+			this.raw = ica_raw.createShard(referenceIndex);
+			this.gc = ica_gc == null ? null : ica_gc.createShard(referenceIndex);
+		}
+	}
 	@Override
 	protected void finish() {
+		if (lanes != null) {
+			try {
+				flushBatch();
+				mergeShards();
+			} finally {
+				for (ExecutorService lane : lanes) {
+					lane.shutdownNow();
+				}
+				lanes = null;
+			}
+		}
 		// Write BED files
 		try {
 			ica_raw.writeToBed(OUTPUT);
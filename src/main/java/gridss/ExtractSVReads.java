@@ -40,6 +40,7 @@ public class ExtractSVReads extends ProcessStructuralVariantReadsCommandLineProg
     private SAMFileWriter writer;
     private SamRecordFilter readfilter;
     private SamRecordFilter pairfilter;
+    private ReadPairConcordanceCalculator readPairConcordance;
     private int count;
     @Override
     protected void setup(SAMFileHeader header, File samFile) {
@@ -49,16 +50,16 @@ public class ExtractSVReads extends ProcessStructuralVariantReadsCommandLineProg
     		metricsCollector.OUTPUT = METRICS_OUTPUT;
     		metricsCollector.setup(header, samFile);
     	}
-    	SAMFileWriterFactory writerFactory = new SAMFileWriterFactory();
     	tmpoutput = gridss.Defaults.OUTPUT_TO_TEMP_FILE ? FileSystemContext.getWorkingFileFor(OUTPUT, "gridss.tmp.ExtractSVReads.") : OUTPUT;
-    	writer = writerFactory.makeSAMOrBAMWriter(header, true, tmpoutput);
+    	writer = createWriter(header, tmpoutput);
     	
     	IndelReadFilter indelFilter = new IndelReadFilter(INDELS ? MIN_INDEL_SIZE : Integer.MAX_VALUE);
 		ClippedReadFilter softClipFilter = new ClippedReadFilter(CLIPPED ? MIN_CLIP_LENGTH : Integer.MAX_VALUE); 
 		SplitReadFilter splitReadFilter = new SplitReadFilter();
 		AlignedFilter unmappedFilter = new AlignedFilter(false);
 		OneEndAnchoredReadFilter oeaFilter = new OneEndAnchoredReadFilter();
-		ReadPairConcordanceFilter dpFilter = getReadPairConcordanceCalculator() != null ? new ReadPairConcordanceFilter(getReadPairConcordanceCalculator(), false, true) : null;
+		readPairConcordance = getReadPairConcordanceCalculator();
+		ReadPairConcordanceFilter dpFilter = readPairConcordance != null ? new ReadPairConcordanceFilter(readPairConcordance, false, true) : null;
 		List<SamRecordFilter> readfilters = new ArrayList<>();
 		readfilters.add(indelFilter);
 		readfilters.add(softClipFilter);
@@ -74,6 +75,14 @@ public class ExtractSVReads extends ProcessStructuralVariantReadsCommandLineProg
 			pairfilter = new FixedFilter(true);
 		}
 		count = 0;
+    }
+    /**
+     * Creates the writer that extracted reads are written to.
+     * @param header input file header
+     * @param output output file
+     */
+    protected SAMFileWriter createWriter(SAMFileHeader header, File output) {
+    	return new SAMFileWriterFactory().makeSAMOrBAMWriter(header, true, output);
     }
 	public static boolean[] hasReadAlignmentConsistentWithReference(List<SAMRecord> records) {
 		boolean[] consistent = new boolean[2];
@@ -165,7 +174,7 @@ public class ExtractSVReads extends ProcessStructuralVariantReadsCommandLineProg
         System.exit(new ExtractSVReads().instanceMain(argv));
     }
 	public boolean[] shouldExtract(List<SAMRecord> records, ReferenceLookup lookup) {
-		boolean hasConsistentReadPair = hasReadPairingConsistentWithReference(getReadPairConcordanceCalculator(), records);
+		boolean hasConsistentReadPair = hasReadPairingConsistentWithReference(readPairConcordance, records);
 		boolean[] hasConsistentReadAlignment = hasReadAlignmentConsistentWithReference(records);
 		boolean[] extract = new boolean[records.size()];
 		for (int i = 0; i < records.size(); i++) {
@@ -179,19 +188,26 @@ public class ExtractSVReads extends ProcessStructuralVariantReadsCommandLineProg
 	}
 	@Override
 	protected void acceptFragment(List<SAMRecord> records, ReferenceLookup lookup) {
+		prepareFragment(records, lookup).run();
+	}
+	@Override
+	protected Runnable prepareFragment(List<SAMRecord> records, ReferenceLookup lookup) {
 		boolean[] extract = shouldExtract(records, lookup);
-		for (int i = 0; i < records.size(); i++) {
-			SAMRecord r = records.get(i);
-			if (extract[i]) {
-				writer.addAlignment(r);
-				count++;
-			} else {
-				// ignore remaining reads
+		Runnable metricsAction = metricsCollector == null ? null : metricsCollector.prepareFragment(records, lookup);
+		return () -> {
+			for (int i = 0; i < records.size(); i++) {
+				SAMRecord r = records.get(i);
+				if (extract[i]) {
+					writer.addAlignment(r);
+					count++;
+				} else {
+					// ignore remaining reads
+				}
 			}
-		}
-		if (metricsCollector != null) {
-			metricsCollector.acceptFragment(records, lookup);
-		}
+			if (metricsAction != null) {
+				metricsAction.run();
+			}
+		};
 	}
 	@Override
 	protected void finish() {
@@ -73,7 +73,7 @@ public class CollectFragmentGCMetrics extends GcSinglePassSamProgram {
         	IOUtil.assertFileIsWritable(Histogram_FILE);
         }
         //Delegate actual collection to GcMetricsCollector
-        multiCollector = new GcMetricsCollector(UNPAIRED_FRAGMENT_SIZE, getReadPairConcordanceCalculator(), METRIC_ACCUMULATION_LEVEL, header.getReadGroups());
+        multiCollector = new GcMetricsCollector(this::getReadGcSummary, METRIC_ACCUMULATION_LEVEL, header.getReadGroups());
     }
 
     @Override protected void acceptRead(final SAMRecord record, final ReferenceSequence ref) {
@@ -1,5 +1,6 @@
 package gridss.analysis;
 
+import au.edu.wehi.idsv.ReadPairConcordanceCalculator;
 import au.edu.wehi.idsv.picard.ReferenceLookup;
 import au.edu.wehi.idsv.sam.SAMRecordUtil;
 import gridss.ExtractSVReads;
@@ -40,6 +41,7 @@ public class CollectStructuralVariantReadMetrics extends ProcessStructuralVarian
 	private AlignedFilter unmappedFilter;
 	private OneEndAnchoredReadFilter oeaFilter;
 	private ReadPairConcordanceFilter dpFilter;
+	private ReadPairConcordanceCalculator readPairConcordance;
 	private StructuralVariantReadMetrics metrics;
 	@Override
 	public void setup(SAMFileHeader header, File samFile) {
@@ -48,11 +50,24 @@ public class CollectStructuralVariantReadMetrics extends ProcessStructuralVarian
 		splitReadFilter = new SplitReadFilter();
 		unmappedFilter = new AlignedFilter(false);
 		oeaFilter = new OneEndAnchoredReadFilter();
-		dpFilter = getReadPairConcordanceCalculator() != null ? new ReadPairConcordanceFilter(getReadPairConcordanceCalculator(), false, true) : null;
+		readPairConcordance = getReadPairConcordanceCalculator();
+		dpFilter = readPairConcordance != null ? new ReadPairConcordanceFilter(readPairConcordance, false, true) : null;
 		metrics = new StructuralVariantReadMetrics();
 	}
 	@Override
 	public void acceptFragment(List<SAMRecord> records, ReferenceLookup lookup) {
+		add(metrics, count(records));
+	}
+	@Override
+	public Runnable prepareFragment(List<SAMRecord> records, ReferenceLookup lookup) {
+		StructuralVariantReadMetrics fragmentMetrics = count(records);
+		return () -> add(metrics, fragmentMetrics);
+	}
+	/**
+	 * Calculates the metrics for the given fragment
+	 */
+	private StructuralVariantReadMetrics count(List<SAMRecord> records) {
+		StructuralVariantReadMetrics metrics = new StructuralVariantReadMetrics();
 		if (!INCLUDE_DUPLICATES) {
 			records = new ArrayList<>(records);
 			for (int i = records.size() - 1; i >= 0; i--) {
@@ -61,7 +76,7 @@ public class CollectStructuralVariantReadMetrics extends ProcessStructuralVarian
 				}
 			}
 		}
-		boolean hasConsistentReadPair = ExtractSVReads.hasReadPairingConsistentWithReference(getReadPairConcordanceCalculator(), records);
+		boolean hasConsistentReadPair = ExtractSVReads.hasReadPairingConsistentWithReference(readPairConcordance, records);
 		boolean[] hasConsistentReadAlignment = ExtractSVReads.hasReadAlignmentConsistentWithReference(records);
 		boolean hasOeaAnchor = false;
 		boolean hasDp = false;
@@ -136,6 +151,23 @@ public class CollectStructuralVariantReadMetrics extends ProcessStructuralVarian
 		metrics.SPLIT_READS += countTrues(hasSplitRead, maxSegmentIndex);
 		metrics.UNMAPPED_READS += countTrues(hasUnmapped, maxSegmentIndex);
 		metrics.STRUCTURAL_VARIANT_READS += countTrues(hasSV, maxSegmentIndex);
+		return metrics;
+	}
+	private static void add(StructuralVariantReadMetrics total, StructuralVariantReadMetrics fragment) {
+		total.STRUCTURAL_VARIANT_READS += fragment.STRUCTURAL_VARIANT_READS;
+		total.STRUCTURAL_VARIANT_READ_PAIRS += fragment.STRUCTURAL_VARIANT_READ_PAIRS;
+		total.INDEL_READS += fragment.INDEL_READS;
+		total.SPLIT_READS += fragment.SPLIT_READS;
+		total.SOFT_CLIPPED_READS += fragment.SOFT_CLIPPED_READS;
+		total.UNMAPPED_READS += fragment.UNMAPPED_READS;
+		total.DISCORDANT_READ_PAIRS += fragment.DISCORDANT_READ_PAIRS;
+		total.UNMAPPED_MATE_READS += fragment.UNMAPPED_MATE_READS;
+		total.STRUCTURAL_VARIANT_READ_ALIGNMENTS += fragment.STRUCTURAL_VARIANT_READ_ALIGNMENTS;
+		total.INDEL_READ_ALIGNMENTS += fragment.INDEL_READ_ALIGNMENTS;
+		total.SPLIT_READ_ALIGNMENTS += fragment.SPLIT_READ_ALIGNMENTS;
+		total.SOFT_CLIPPED_READ_ALIGNMENTS += fragment.SOFT_CLIPPED_READ_ALIGNMENTS;
+		total.DISCORDANT_READ_PAIR_ALIGNMENTS += fragment.DISCORDANT_READ_PAIR_ALIGNMENTS;
+		total.UNMAPPED_MATE_READ_ALIGNMENTS += fragment.UNMAPPED_MATE_READ_ALIGNMENTS;
 	}
 	private int countTrues(boolean[] arr, int maxIndex) {
 		int count = 0;
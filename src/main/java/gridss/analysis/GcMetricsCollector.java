@@ -37,23 +37,29 @@ import picard.metrics.PerUnitMetricCollector;
 
 import java.util.List;
 import java.util.Set;
+import java.util.function.BiFunction;
 
 /**
  * Collects InserSizeMetrics on the specified accumulationLevels using
  */
 public class GcMetricsCollector extends MultiLevelCollector<GcMetrics, Integer, Integer> {
-	private final int defaultFragmentSize; 
-	private final ReadPairConcordanceCalculator rpcc;
+	private final BiFunction<SAMRecord, ReferenceSequence, ReadGcSummary> gcLookup;
     public GcMetricsCollector(final int defaultFragmentSize, final ReadPairConcordanceCalculator rpcc,
     		final Set<MetricAccumulationLevel> accumulationLevels, final List<SAMReadGroupRecord> samRgRecords) {
-    	this.defaultFragmentSize = defaultFragmentSize;
-    	this.rpcc = rpcc;
+    	this((samRecord, refSeq) -> new ReadGcSummary(samRecord, refSeq, defaultFragmentSize, rpcc), accumulationLevels, samRgRecords);
+    }
+    /**
+     * @param gcLookup fragment GC calculator
+     */
+    public GcMetricsCollector(final BiFunction<SAMRecord, ReferenceSequence, ReadGcSummary> gcLookup,
+    		final Set<MetricAccumulationLevel> accumulationLevels, final List<SAMReadGroupRecord> samRgRecords) {
+    	this.gcLookup = gcLookup;
         setup(accumulationLevels, samRgRecords);
     }
 
     @Override
     protected Integer makeArg(SAMRecord samRecord, ReferenceSequence refSeq) {
-    	return (int)new ReadGcSummary(samRecord, refSeq, defaultFragmentSize, rpcc).gcPercentage;
+    	return (int)gcLookup.apply(samRecord, refSeq).gcPercentage;
     }
 
     /** Make an InsertSizeCollector with the given arguments */
@@ -3,7 +3,12 @@ package gridss.cmdline;
 import au.edu.wehi.idsv.picard.ReferenceLookup;
 import au.edu.wehi.idsv.picard.TwoBitBufferedReferenceSequenceFile;
 import au.edu.wehi.idsv.util.AsyncBufferedIterator;
+import au.edu.wehi.idsv.util.BatchedParallelTransformIterator;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import htsjdk.samtools.*;
 import htsjdk.samtools.SAMFileHeader.SortOrder;
 import htsjdk.samtools.reference.IndexedFastaSequenceFile;
@@ -17,6 +22,8 @@ import picard.cmdline.StandardOptionDefinitions;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * 
@@ -39,6 +46,16 @@ public abstract class ByReadNameSinglePassSamProgram extends ReferenceCommandLin
     @Argument(doc = "Stop after processing N reads, mainly for debugging.")
     public long STOP_AFTER = 0;
 
+    @Argument(doc="Number of worker threads to spawn. Defaults to 1 which processes fragments on the calling thread."
+			+ " Note that I/O threads are not included in this worker thread count so CPU usage can be higher than the number of worker thread.",
+			shortName="THREADS")
+    public int WORKER_THREADS = 1;
+
+    /**
+     * Number of fragments processed by a worker in each task
+     */
+    private static final int FRAGMENT_BATCH_SIZE = 256;
+
         /**
      * Final implementation of doWork() that checks and loads the input and optionally reference
      * sequence files and the runs the sublcass through the setup() acceptRead() and finish() steps.
@@ -48,7 +65,7 @@ public abstract class ByReadNameSinglePassSamProgram extends ReferenceCommandLin
     	log.debug("Setting language-neutral locale");
     	java.util.Locale.setDefault(Locale.ROOT);
         try {
-			makeItSo(INPUT, REFERENCE_SEQUENCE, ASSUME_SORTED, STOP_AFTER, Arrays.asList(this));
+			makeItSo(INPUT, REFERENCE_SEQUENCE, ASSUME_SORTED, STOP_AFTER, WORKER_THREADS, Arrays.asList(this));
 		} catch (FileNotFoundException e) {
 			throw new RuntimeException(e);
 		}
@@ -60,9 +77,30 @@ public abstract class ByReadNameSinglePassSamProgram extends ReferenceCommandLin
                                 final boolean assumeSorted,
                                 final long stopAfter,
                                 final Collection<ByReadNameSinglePassSamProgram> programs) throws FileNotFoundException {
+        makeItSo(input, referenceSequence, assumeSorted, stopAfter, 1, programs);
+    }
+
+    /**
+     * Runs the given programs over the input.
+     *
+     * When more than one worker thread is requested, BAM decompression is performed on the
+     * htsjdk asynchronous read thread pool and fragments are processed in batches on a worker
+     * thread pool. The order in which each program accepts fragments is unchanged.
+     *
+     * @param workerThreads number of threads to process fragments on
+     */
+    public static void makeItSo(final File input,
+                                final File referenceSequence,
+                                final boolean assumeSorted,
+                                final long stopAfter,
+                                final int workerThreads,
+                                final Collection<ByReadNameSinglePassSamProgram> programs) throws FileNotFoundException {
         // Setup the standard inputs
         IOUtil.assertFileIsReadable(input);
-        SamReader in = SamReaderFactory.makeDefault().referenceSequence(referenceSequence).open(input);
+        SamReader in = SamReaderFactory.makeDefault()
+                .referenceSequence(referenceSequence)
+                .setUseAsyncIo(workerThreads > 1)
+                .open(input);
         // Optionally load up the reference sequence and double check sequence dictionaries
         final ReferenceLookup lookup;
         if (referenceSequence == null) {
@@ -94,42 +132,74 @@ public abstract class ByReadNameSinglePassSamProgram extends ReferenceCommandLin
         final ProgressLogger progress = new ProgressLogger(log);
         final SAMRecordIterator rawit = in.iterator();
         final CloseableIterator<SAMRecord> it = new AsyncBufferedIterator<SAMRecord>(rawit, "ByReadNameSinglePassSamProgram " + input.getName());
+        final ExecutorService threadpool = workerThreads > 1 ? Executors.newFixedThreadPool(workerThreads, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("ByReadName-%d").build()) : null;
         try {
-	        List<SAMRecord> currentRecords = new ArrayList<>();
-	        String currentReadName = null;
-	        while (it.hasNext()) {
-	        	SAMRecord r = it.next();
-	        	String readname = r.getReadName();
-	        	// if read name we have to just treat it as a single read
-	        	if (readname == null || !readname.equals(currentReadName)) {
-	        		if (currentRecords.size() > 0) {
-		        		for (final ByReadNameSinglePassSamProgram program : programs) {
-		        			program.acceptFragment(currentRecords, lookup);
-			            }
-	        		}
-	        		currentRecords.clear();
-	        		currentReadName = readname;
-	        		if (stopAfter > 0 && progress.getCount() >= stopAfter) {
-		                break;
-		            }
-	        	}
-	        	currentRecords.add(r);
-	        	progress.record(r);
-	        }
-	        if (currentRecords.size() > 0) {
-	        	for (final ByReadNameSinglePassSamProgram program : programs) {
-	    			program.acceptFragment(currentRecords, lookup);
-	            }
-	        }
+        	Iterator<List<SAMRecord>> fragments = new ReadNameGroupingIterator(it, stopAfter, progress);
+        	Iterator<Runnable> actions;
+        	if (threadpool == null) {
+        		actions = Iterators.transform(fragments, records -> prepareFragment(programs, records, lookup));
+        	} else {
+        		actions = new BatchedParallelTransformIterator<List<SAMRecord>, Runnable>(fragments,
+        				records -> Collections.singletonList(prepareFragment(programs, records, lookup)),
+        				FRAGMENT_BATCH_SIZE, 2 * workerThreads, threadpool);
+        	}
+        	// apply program state changes in input order
+        	while (actions.hasNext()) {
+        		actions.next().run();
+        	}
         } finally {
 	        CloserUtil.close(it);
 	        CloserUtil.close(rawit);
 	        CloserUtil.close(in);
+	        if (threadpool != null) {
+	        	threadpool.shutdownNow();
+	        }
         }
         for (final ByReadNameSinglePassSamProgram program : programs) {
             program.finish();
         }
     }
+    private static Runnable prepareFragment(final Collection<ByReadNameSinglePassSamProgram> programs, final List<SAMRecord> records, final ReferenceLookup lookup) {
+    	if (programs.size() == 1) {
+    		return programs.iterator().next().prepareFragment(records, lookup);
+    	}
+    	List<Runnable> actions = new ArrayList<>(programs.size());
+    	for (final ByReadNameSinglePassSamProgram program : programs) {
+    		actions.add(program.prepareFragment(records, lookup));
+    	}
+    	return () -> actions.forEach(Runnable::run);
+    }
+    /**
+     * Groups consecutive records with the same read name.
+     * Records without a read name are treated as their own fragment.
+     */
+    private static class ReadNameGroupingIterator extends AbstractIterator<List<SAMRecord>> {
+    	private final PeekingIterator<SAMRecord> it;
+    	private final long stopAfter;
+    	private final ProgressLogger progress;
+    	public ReadNameGroupingIterator(Iterator<SAMRecord> it, long stopAfter, ProgressLogger progress) {
+    		this.it = Iterators.peekingIterator(it);
+    		this.stopAfter = stopAfter;
+    		this.progress = progress;
+    	}
+		@Override
+		protected List<SAMRecord> computeNext() {
+			if (!it.hasNext() || (stopAfter > 0 && progress.getCount() >= stopAfter)) {
+				return endOfData();
+			}
+			List<SAMRecord> records = new ArrayList<>(2);
+			SAMRecord r = it.next();
+			String readname = r.getReadName();
+			records.add(r);
+			progress.record(r);
+			while (readname != null && it.hasNext() && readname.equals(it.peek().getReadName())) {
+				r = it.next();
+				records.add(r);
+				progress.record(r);
+			}
+			return records;
+		}
+    }
     /** Should be implemented by subclasses to do one-time initialization work. */
     protected abstract void setup(final SAMFileHeader header, final File samFile);
     /**
@@ -137,6 +207,19 @@ public abstract class ByReadNameSinglePassSamProgram extends ReferenceCommandLin
      * If a reference sequence file was supplied to the program it will be passed as 'ref'. Otherwise 'ref' may be null.
      */
     protected abstract void acceptFragment(final List<SAMRecord> records, ReferenceLookup lookup);
+    /**
+     * Performs the fragment processing that can be done in parallel.
+     * This method can be called concurrently from multiple threads so must not modify program state.
+     * Any state changes, such as writing output records, should be performed by the returned action.
+     * Actions are invoked from a single thread in input order.
+     *
+     * The default implementation defers all processing to acceptFragment().
+     *
+     * @return action applying the result of processing this fragment
+     */
+    protected Runnable prepareFragment(final List<SAMRecord> records, final ReferenceLookup lookup) {
+    	return () -> acceptFragment(records, lookup);
+    }
     /** Should be implemented by subclasses to do one-time finalization work. */
     protected abstract void finish();
     public void copyInput(ProcessStructuralVariantReadsCommandLineProgram to) {
@@ -145,6 +228,7 @@ public abstract class ByReadNameSinglePassSamProgram extends ReferenceCommandLin
     	to.OUTPUT = OUTPUT;
     	to.ASSUME_SORTED = ASSUME_SORTED;
     	to.STOP_AFTER = STOP_AFTER;
+    	to.WORKER_THREADS = WORKER_THREADS;
     }
     public SinglePassSamProgram asSinglePassSamProgram() {
     	return new WrappedSinglePassSamProgram();
@@ -24,11 +24,14 @@
 
 package gridss.cmdline;
 
+import au.edu.wehi.idsv.ReadGcSummary;
 import au.edu.wehi.idsv.ReadPairConcordanceCalculator;
 import au.edu.wehi.idsv.picard.ReferenceLookup;
 import au.edu.wehi.idsv.picard.TwoBitBufferedReferenceSequenceFile;
 import gridss.analysis.InsertSizeDistribution;
+import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.reference.IndexedFastaSequenceFile;
+import htsjdk.samtools.reference.ReferenceSequence;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.samtools.util.Log;
 import org.broadinstitute.barclay.argparser.Argument;
@@ -81,15 +84,49 @@ public abstract class GcSinglePassSamProgram extends SinglePassSamProgram {
 		return rpcc;
 	}
     // --------- end chunk from ProcessStructuralVariantReadsCommandLineProgram ---------
+	private volatile TwoBitBufferedReferenceSequenceFile gcLookup = null;
+	private volatile boolean gcLookupResolved = false;
+	/**
+	 * Calculates the fragment GC content of the given read.
+	 * Uses the constant time 2bit reference lookup when the reference genome
+	 * has a memory-mapped .gridsscache, falling back to counting the bases
+	 * of the given reference contig sequence loaded by the reference walker.
+	 * 
+	 * This method is thread-safe.
+	 */
+	public ReadGcSummary getReadGcSummary(SAMRecord record, ReferenceSequence refSeq) {
+		if (!gcLookupResolved) {
+			ReferenceLookup ref = getReference();
+			gcLookup = null;
+			if (ref instanceof TwoBitBufferedReferenceSequenceFile && (ref != defaultReference || getReferenceCacheFile().exists())) {
+				// Without the cache the 2bit contigs would be packed onto the heap
+				// in addition to the contig already loaded by the walker
+				gcLookup = (TwoBitBufferedReferenceSequenceFile)ref;
+			}
+			gcLookupResolved = true;
+		}
+		if (gcLookup != null) {
+			return new ReadGcSummary(record, gcLookup, UNPAIRED_FRAGMENT_SIZE, getReadPairConcordanceCalculator());
+		}
+		return new ReadGcSummary(record, refSeq, UNPAIRED_FRAGMENT_SIZE, getReadPairConcordanceCalculator());
+	}
     // --------- start chunk from ReferenceCommandLineProgram ---------
     @Argument(doc="If true, also include reads marked as duplicates.")
     public boolean INCLUDE_DUPLICATES = false;
 	private ReferenceLookup reference;
+	/**
+	 * Reference lookup created by getReference() rather than supplied by setReference()
+	 */
+	private ReferenceLookup defaultReference;
+	private File getReferenceCacheFile() {
+		return new File(REFERENCE_SEQUENCE.getAbsolutePath() + ".gridsscache");
+	}
 	public ReferenceLookup getReference() {
 		IOUtil.assertFileIsReadable(REFERENCE_SEQUENCE);
 		if (reference == null) {
 			try {
-				reference = new TwoBitBufferedReferenceSequenceFile(new IndexedFastaSequenceFile(REFERENCE_SEQUENCE));
+				reference = new TwoBitBufferedReferenceSequenceFile(new IndexedFastaSequenceFile(REFERENCE_SEQUENCE), getReferenceCacheFile());
+				defaultReference = reference;
 			} catch (FileNotFoundException e) {
 				String msg = String.format("Missing reference genome %s", REFERENCE_SEQUENCE);
 				log.error(msg);
@@ -100,6 +137,7 @@ public abstract class GcSinglePassSamProgram extends SinglePassSamProgram {
 	}
 	public void setReference(ReferenceLookup ref) {
 		this.reference = ref;
+		this.gcLookupResolved = false;
 	}
 	@Override
 	protected String[] customCommandLineValidation() {
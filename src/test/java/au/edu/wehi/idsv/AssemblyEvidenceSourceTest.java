@@ -22,6 +22,7 @@ import com.google.common.collect.Lists;
 import au.edu.wehi.idsv.picard.InMemoryReferenceSequenceFile;
 import au.edu.wehi.idsv.sam.SAMRecordUtil;
 import au.edu.wehi.idsv.util.FileHelper;
+import htsjdk.samtools.QueryInterval;
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMFileHeader.SortOrder;
 import htsjdk.samtools.SAMRecord;
@@ -301,6 +302,61 @@ public class AssemblyEvidenceSourceTest extends IntermediateFilesTest {
 		assertEquals(100, list.size());
 	}
 	@Test
+	public void chunk_assembly_should_generate_unique_sorted_contigs() throws IOException {
+		List<SAMRecord> in = new ArrayList<>();
+		for (int i = 50; i < 100; i++) {
+			in.add(withSequence("AATTAATCGCAAGAGCGGGTTGTATTCGACGCCAAGTCAGCTGAAGCACCATTACCCGATCAAAACATATCAGAAATGATTGACGTATCACAAGCCGGA", Read(0, i, "41M58S"))[0]);
+			in.add(withSequence("AATTAATCGCAAGAGCGGGTTGTATTCGACGCCAAGTCAGCTGAAGCACCATTACCCGATCAAAACATATCAGAAATGATTGACGTATCACAAGCCGGA", Read(0, i + 5, "58S41M"))[0]);
+		}
+		createInput(in);
+		ProcessingContext pc = getCommandlineContext();
+		pc.getConfig().getAssembly().minReads = 1;
+		pc.getConfig().chunkSize = 100;
+		SAMEvidenceSource ses = new SAMEvidenceSource(pc, input, null, 0);
+		FileHelper.copy(ses.getFile(), ses.getSVFile(), true);
+		AssemblyEvidenceSource aes = new AssemblyEvidenceSource(pc, ImmutableList.of(ses), assemblyFile);
+		ExecutorService threadpool = Executors.newFixedThreadPool(8);
+		aes.assembleBreakends(threadpool);
+		threadpool.shutdown();
+		List<SAMRecord> contigs = getRecords(assemblyFile);
+		assertTrue(contigs.stream().anyMatch(r -> new AssemblyAttributes(r).getAssemblyDirection() == FWD));
+		assertTrue(contigs.stream().anyMatch(r -> new AssemblyAttributes(r).getAssemblyDirection() == BWD));
+		assertTrue(contigs.stream().allMatch(r -> r.getReadName().matches("asm[0-9]+-[0-9]+")));
+		assertEquals(contigs.size(), contigs.stream().map(r -> r.getReadName()).distinct().count());
+		for (int i = 1; i < contigs.size(); i++) {
+			assertTrue(contigs.get(i - 1).getAlignmentStart() <= contigs.get(i).getAlignmentStart());
+		}
+	}
+	@Test
+	public void splitOnEvidenceGaps_should_split_between_evidence_clusters() throws IOException {
+		List<SAMRecord> in = new ArrayList<>();
+		for (int i = 100; i < 150; i++) {
+			in.add(Read(0, i, "50M50S"));
+			in.add(Read(0, i + 9000, "50M50S"));
+		}
+		createInput(in);
+		ProcessingContext pc = getCommandlineContext();
+		SAMEvidenceSource ses = new SAMEvidenceSource(pc, input, null, 0);
+		FileHelper.copy(ses.getFile(), ses.getSVFile(), true);
+		AssemblyEvidenceSource aes = new AssemblyEvidenceSource(pc, ImmutableList.of(ses), assemblyFile);
+		QueryInterval[] chunk = new QueryInterval[] { new QueryInterval(0, 1, 10000), new QueryInterval(1, 1, 10000) };
+		List<QueryInterval[]> split = aes.splitOnEvidenceGaps(chunk, 1);
+		assertEquals(2, split.size());
+		// sub-chunks partition the chunk
+		assertEquals(1, split.get(0).length);
+		assertEquals(0, split.get(0)[0].referenceIndex);
+		assertEquals(1, split.get(0)[0].start);
+		assertTrue(split.get(0)[0].end > 200 && split.get(0)[0].end < 9000);
+		assertEquals(2, split.get(1).length);
+		assertEquals(split.get(0)[0].end + 1, split.get(1)[0].start);
+		assertEquals(10000, split.get(1)[0].end);
+		assertEquals(1, split.get(1)[1].referenceIndex);
+		assertEquals(1, split.get(1)[1].start);
+		assertEquals(10000, split.get(1)[1].end);
+		// small sub-chunks are not created
+		assertEquals(1, aes.splitOnEvidenceGaps(chunk, 10000).size());
+	}
+	@Test
 	public void bounds_check_should_apply_to_final_assembly_SAMRecord() throws IOException {
 		// TODO: how do we check
 		List<SAMRecord> in = new ArrayList<>();
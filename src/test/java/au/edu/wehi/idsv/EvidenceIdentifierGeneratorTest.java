@@ -56,6 +56,47 @@ public abstract class EvidenceIdentifierGeneratorTest extends TestHelper {
 		assertEquals(ids.size(), ids.stream().distinct().count());
 	}
 	@Test
+	public void identifier_should_match_identifier_of_evidenceid() {
+		SAMRecord r = withName("readname", Read(0, 1, "5M1D1M4S"))[0];
+		List<DirectedEvidence> evidence = Lists.newArrayList(
+				NRRP(ses, withName("readname", DP(0, 1, "5M1D1M4S", true, 1, 1, "10M", false))),
+				NRRP(ses, withName("readname", OEA(0, 1, "5M5S", true))),
+				SCE(FWD, ses, r),
+				IndelEvidence.create(ses, r, 1),
+				IndelEvidence.create(ses, r, 1).asRemote());
+		for (DirectedEvidence e : evidence) {
+			String evidenceID = e.getEvidenceID();
+			long[] parsed = gen.getEvidenceIdentifier(evidenceID);
+			if (e instanceof NonReferenceReadPair) {
+				Assert.assertArrayEquals(parsed, gen.getEvidenceIdentifier((NonReferenceReadPair)e));
+			} else if (e instanceof SoftClipEvidence) {
+				Assert.assertArrayEquals(parsed, gen.getEvidenceIdentifier((SoftClipEvidence)e));
+			} else if (e instanceof IndelEvidence) {
+				Assert.assertArrayEquals(parsed, gen.getEvidenceIdentifier((IndelEvidence)e));
+			}
+			assertEquals(parsed[0], e.getEvidenceIdentifierHigh());
+			assertEquals(parsed[1], e.getEvidenceIdentifierLow());
+		}
+	}
+	@Test
+	public void should_have_unique_identifier() {
+		NonReferenceReadPair rpe = NRRP(ses, withName("readname", DP(0, 1, "5M1D1M4S", true, 1, 1, "10M", false)));
+		SAMRecord r = withName("readname", Read(0, 1, "5M1D1M4S"))[0];
+		SAMRecord r2 = withName("readname", Read(0, 2, "5M1D1M4S"))[0];
+		List<DirectedEvidence> evidence = Lists.newArrayList(
+				rpe,
+				SCE(FWD, ses, r),
+				IndelEvidence.create(ses, r, 1),
+				IndelEvidence.create(ses, r, 1).asRemote(),
+				SCE(FWD, ses, r2),
+				IndelEvidence.create(ses, r2, 1),
+				IndelEvidence.create(ses, r2, 1).asRemote());
+		assertEquals(evidence.size(), evidence.stream()
+				.map(e -> e.getEvidenceIdentifierHigh() + ":" + e.getEvidenceIdentifierLow())
+				.distinct()
+				.count());
+	}
+	@Test
 	public void should_extract_alignment_unique() {
 		NonReferenceReadPair rpe = NRRP(ses, withName("readname", DP(0, 1, "5M1D1M4S", true, 1, 1, "10M", false)));
 		SAMRecord r = withName("readname", Read(0, 1, "5M1D1M4S"))[0];
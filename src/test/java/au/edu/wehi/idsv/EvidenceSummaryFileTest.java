@@ -0,0 +1,126 @@
+package au.edu.wehi.idsv;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import htsjdk.samtools.QueryInterval;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.util.CloseableIterator;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class EvidenceSummaryFileTest extends IntermediateFilesTest {
+	private List<DirectedEvidence> createEvidence(SAMEvidenceSource ses) {
+		List<DirectedEvidence> list = new ArrayList<>();
+		for (int i = 1; i < 2000; i += 7) {
+			SAMRecord[] dp = DP(i % 3, i, "10M", i % 2 == 0, (i + 1) % 3, 2000 - i, "10M", i % 5 == 0);
+			dp[0].setReadName("dp" + i);
+			dp[1].setReadName("dp" + i);
+			list.add(NonReferenceReadPair.create(dp[0], dp[1], ses));
+			list.add(NonReferenceReadPair.create(dp[1], dp[0], ses));
+			SAMRecord sc = Read(i % 4, i, "5S10M5S");
+			sc.setReadName("sc" + i);
+			list.add(SCE(FWD, ses, sc));
+			list.add(SCE(BWD, ses, sc));
+		}
+		list.sort(DirectedEvidenceOrder.ByNatural);
+		return list;
+	}
+	private static void assertSummaryMatches(List<DirectedEvidence> expected, List<DirectedEvidence> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			DirectedEvidence e = expected.get(i);
+			DirectedEvidence a = actual.get(i);
+			assertEquals(e.getEvidenceID(), a.getEvidenceID());
+			assertEquals(e.getBreakendSummary(), a.getBreakendSummary());
+			assertEquals(e.getBreakendQual(), a.getBreakendQual(), 0);
+			assertEquals(e instanceof DirectedBreakpoint, a instanceof DirectedBreakpoint);
+			if (e instanceof DirectedBreakpoint) {
+				assertEquals(((DirectedBreakpoint)e).getBreakpointQual(), ((DirectedBreakpoint)a).getBreakpointQual(), 0);
+			}
+		}
+	}
+	@Test
+	public void should_round_trip_evidence() throws IOException {
+		ProcessingContext pc = getContext();
+		SAMEvidenceSource ses = SES(pc);
+		List<DirectedEvidence> evidence = createEvidence(ses);
+		File file = new File(testFolder.getRoot(), "test.sv.evidence");
+		EvidenceSummaryFile.write(file, 0, pc.getLinear(), evidence.iterator());
+		EvidenceSummaryFile esf = EvidenceSummaryFile.open(file, ses, pc.getLinear());
+		try (CloseableIterator<DirectedEvidence> it = esf.iterator()) {
+			assertSummaryMatches(evidence, Lists.newArrayList(it));
+		}
+	}
+	@Test
+	public void should_return_evidence_overlapping_query_intervals() throws IOException {
+		ProcessingContext pc = getContext();
+		SAMEvidenceSource ses = SES(pc);
+		List<DirectedEvidence> evidence = createEvidence(ses);
+		File file = new File(testFolder.getRoot(), "test.sv.evidence");
+		EvidenceSummaryFile.write(file, 0, pc.getLinear(), evidence.iterator());
+		EvidenceSummaryFile esf = EvidenceSummaryFile.open(file, ses, pc.getLinear());
+		QueryInterval[][] queries = new QueryInterval[][] {
+			new QueryInterval[] { new QueryInterval(0, 1, 100) },
+			new QueryInterval[] { new QueryInterval(0, 500, 1000), new QueryInterval(1, 1, 10) },
+			new QueryInterval[] { new QueryInterval(1, 1900, 10000), new QueryInterval(2, 1, 10000) },
+			new QueryInterval[] { new QueryInterval(3, 1, 1000000) },
+			new QueryInterval[] { },
+		};
+		for (QueryInterval[] qi : queries) {
+			List<DirectedEvidence> expected = evidence.stream()
+					.filter(e -> QueryIntervalUtil.overlaps(qi, e.getBreakendSummary()))
+					.collect(Collectors.toList());
+			try (CloseableIterator<DirectedEvidence> it = esf.iterator(qi)) {
+				assertSummaryMatches(expected, Lists.newArrayList(it));
+			}
+		}
+	}
+	@Test
+	public void should_record_fingerprint() throws IOException {
+		ProcessingContext pc = getContext();
+		SAMEvidenceSource ses = SES(pc);
+		File file = new File(testFolder.getRoot(), "test.sv.evidence");
+		assertFalse(EvidenceSummaryFile.hasFingerprint(file, 1));
+		EvidenceSummaryFile.write(file, 1, pc.getLinear(), createEvidence(ses).iterator());
+		assertTrue(EvidenceSummaryFile.hasFingerprint(file, 1));
+		assertFalse(EvidenceSummaryFile.hasFingerprint(file, 2));
+	}
+	@Test
+	public void fingerprint_should_depend_on_filtering_configuration() {
+		ProcessingContext pc = getContext();
+		SAMEvidenceSource ses = SES(pc);
+		long fingerprint = ses.getEvidenceFilterFingerprint();
+		assertEquals(fingerprint, ses.getEvidenceFilterFingerprint());
+		pc.getConfig().getSoftClip().minLength++;
+		assertNotEquals(fingerprint, ses.getEvidenceFilterFingerprint());
+	}
+	private static String callSummary(VariantContextDirectedEvidence call) {
+		return String.format("%s %f", call.getBreakendSummary(), call.getBreakendQual());
+	}
+	@Test
+	public void variant_calling_should_only_require_summarised_fields() throws IOException {
+		ProcessingContext pc = getContext();
+		SAMEvidenceSource ses = SES(pc);
+		List<DirectedEvidence> evidence = createEvidence(ses);
+		File file = new File(testFolder.getRoot(), "test.sv.evidence");
+		EvidenceSummaryFile.write(file, 0, pc.getLinear(), evidence.iterator());
+		EvidenceSummaryFile esf = EvidenceSummaryFile.open(file, ses, pc.getLinear());
+		List<String> expected = Lists.newArrayList(Iterators.transform(new VariantCallIterator(pc, evidence.iterator()), EvidenceSummaryFileTest::callSummary));
+		List<String> actual;
+		try (CloseableIterator<DirectedEvidence> it = esf.iterator()) {
+			actual = Lists.newArrayList(Iterators.transform(new VariantCallIterator(pc, it), EvidenceSummaryFileTest::callSummary));
+		}
+		// calls of different orientations are not emitted in a deterministic order
+		Collections.sort(expected);
+		Collections.sort(actual);
+		assertEquals(expected, actual);
+	}
+}
@@ -0,0 +1,53 @@
+package au.edu.wehi.idsv;
+
+import au.edu.wehi.idsv.bed.IntervalBed;
+import htsjdk.samtools.SAMRecord;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class IndexedReadExtractorTest extends IntermediateFilesTest {
+	private static String key(SAMRecord r) {
+		return r.getReadName() + "/" + r.getFlags() + "/" + r.getReferenceIndex() + ":" + r.getAlignmentStart();
+	}
+	@Test
+	public void should_extract_same_reads_when_sharded() throws IOException {
+		LinearGenomicCoordinate lgc = new PaddedLinearGenomicCoordinate(getSequenceDictionary(), LCCB);
+		List<SAMRecord> in = new ArrayList<>();
+		for (int i = 1; i < 5000; i += 3) {
+			SAMRecord[] dp = withName("dp" + i, DP(i % 2, i, "100M", true, 1 + i % 3, 5000 - i, "100M", false));
+			in.add(dp[0]);
+			in.add(dp[1]);
+			SAMRecord[] sr = withName("sr" + i, withAttr("SA", String.format("polyACGT,%d,+,50S50M,10,0", 9000 - i), Read(3, i, "50M50S")));
+			in.add(sr[0]);
+			in.add(withName("sr" + i, withAttr("SA", String.format("Npower2,%d,+,50M50S,10,0", i), Read(1, 9000 - i, "50S50M")))[0]);
+		}
+		createInput(in);
+		IntervalBed bed = new IntervalBed(lgc);
+		for (int i = 0; i < 100; i++) {
+			bed.addInterval(i % 4, 40 * i + 1, 40 * i + 20);
+		}
+		File singleThreaded = new File(testFolder.getRoot(), "single.bam");
+		File sharded = new File(testFolder.getRoot(), "sharded.bam");
+		new IndexedReadExtractor(lgc, bed, true, true).extract(input, singleThreaded, 1);
+		new IndexedReadExtractor(lgc, bed, true, true).extract(input, sharded, 8);
+		List<String> expected = getRecords(singleThreaded).stream().map(IndexedReadExtractorTest::key).collect(Collectors.toList());
+		List<String> actual = getRecords(sharded).stream().map(IndexedReadExtractorTest::key).collect(Collectors.toList());
+		assertTrue(expected.size() > 0);
+		assertEquals(expected.size(), new HashSet<>(actual).size());
+		assertEquals(expected, actual);
+		// every read overlapping a region should be extracted along with its mate and split reads
+		IndexedReadExtractor ire = new IndexedReadExtractor(lgc, bed, true, true);
+		Set<String> shouldExtract = in.stream().filter(r -> ire.shouldExtract(r)).map(IndexedReadExtractorTest::key).collect(Collectors.toSet());
+		assertEquals(shouldExtract, new HashSet<>(actual));
+	}
+}
@@ -0,0 +1,37 @@
+package au.edu.wehi.idsv;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import au.edu.wehi.idsv.picard.InMemoryReferenceSequenceFile;
+import au.edu.wehi.idsv.picard.TwoBitBufferedReferenceSequenceFile;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.reference.ReferenceSequence;
+
+
+public class ReadGcSummaryTest extends TestHelper {
+	@Test
+	public void two_bit_lookup_should_match_reference_sequence_gc() {
+		TwoBitBufferedReferenceSequenceFile ref = new TwoBitBufferedReferenceSequenceFile(SMALL_FA);
+		ReadPairConcordanceCalculator rpcc = new FixedSizeReadPairConcordanceCalculator(0, 300);
+		for (int referenceIndex = 0; referenceIndex < SMALL_FA.getSequenceDictionary().size(); referenceIndex++) {
+			ReferenceSequence refSeq = SMALL_FA.getSequence(SMALL_FA.getSequenceDictionary().getSequence(referenceIndex).getSequenceName());
+			for (int pos = 1; pos < 1000; pos += 7) {
+				for (SAMRecord r : RP(referenceIndex, pos, pos + 100, 50)) {
+					ReadGcSummary expected = new ReadGcSummary(r, refSeq, 150, rpcc);
+					ReadGcSummary actual = new ReadGcSummary(r, ref, 150, rpcc);
+					assertEquals(expected.fragmentStart, actual.fragmentStart);
+					assertEquals(expected.fragmentEnd, actual.fragmentEnd);
+					assertEquals(expected.gcPercentage, actual.gcPercentage, 0);
+				}
+			}
+		}
+	}
+	@Test
+	public void should_use_undefined_gc_when_no_unambiguous_bases() {
+		TwoBitBufferedReferenceSequenceFile ref = new TwoBitBufferedReferenceSequenceFile(new InMemoryReferenceSequenceFile(new String[] { "test" }, new byte[][] { B("NNNNNNNNNNNNNNNNNNNN") }));
+		SAMRecord r = Read(0, 1, 10);
+		assertEquals(ReadGcSummary.UNDEFINED_GC, new ReadGcSummary(r, ref, 15, new FixedSizeReadPairConcordanceCalculator(0, 300)).gcPercentage, 0);
+	}
+}
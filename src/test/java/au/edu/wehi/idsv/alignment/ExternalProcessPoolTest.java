@@ -0,0 +1,41 @@
+package au.edu.wehi.idsv.alignment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class ExternalProcessPoolTest {
+	private static final List<String> COMMAND_LINE = ImmutableList.of("cat");
+	@Test
+	public void acquire_should_start_standby_processes() throws IOException, InterruptedException {
+		ExternalProcessPool pool = new ExternalProcessPool(2);
+		Process p1 = pool.acquire(COMMAND_LINE);
+		assertTrue(p1.isAlive());
+		assertEquals(2, pool.standbyCount(COMMAND_LINE));
+		Process p2 = pool.acquire(COMMAND_LINE);
+		assertNotSame(p1, p2);
+		assertTrue(p2.isAlive());
+		assertEquals(2, pool.standbyCount(COMMAND_LINE));
+		p1.getOutputStream().close();
+		p2.getOutputStream().close();
+		p1.waitFor();
+		p2.waitFor();
+		pool.close();
+		assertEquals(0, pool.standbyCount(COMMAND_LINE));
+	}
+	@Test
+	public void should_not_start_standby_processes_when_disabled() throws IOException, InterruptedException {
+		ExternalProcessPool pool = new ExternalProcessPool(0);
+		Process p1 = pool.acquire(COMMAND_LINE);
+		assertEquals(0, pool.standbyCount(COMMAND_LINE));
+		p1.getOutputStream().close();
+		p1.waitFor();
+	}
+}
@@ -0,0 +1,92 @@
+package au.edu.wehi.idsv.alignment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SswCompatibleSmithWatermanAlignerTest {
+	private static final byte[] BASES = new byte[] { 'A', 'C', 'G', 'T' };
+	private final SswCompatibleSmithWatermanAligner aligner = new SswCompatibleSmithWatermanAligner(1, -4, -4, 6, 1);
+	private static String align(Aligner aligner, String seq, String ref) {
+		Alignment aln = aligner.align_smith_waterman(seq.getBytes(), ref.getBytes());
+		return Integer.toString(aln.getStartPosition()) + " " + aln.getCigar();
+	}
+	@Test
+	public void should_align_exact_match() {
+		assertEquals("2 4M", align(aligner, "GTAC", "ACGTACGG"));
+	}
+	@Test
+	public void should_soft_clip_unaligned_bases() {
+		assertEquals("0 2S10M2S", align(aligner, "TTACGTGCATGAGG", "ACGTGCATGA"));
+	}
+	@Test
+	public void should_align_deletion() {
+		assertEquals("0 20M3D20M", align(aligner,
+				"ACGTTGCAAGCTTAGCCGTA" + "GATCCATGGTACCTTAGGCA",
+				"ACGTTGCAAGCTTAGCCGTA" + "TTT" + "GATCCATGGTACCTTAGGCA"));
+	}
+	@Test
+	public void should_align_insertion() {
+		assertEquals("0 20M3I20M", align(aligner,
+				"ACGTTGCAAGCTTAGCCGTA" + "TTT" + "GATCCATGGTACCTTAGGCA",
+				"ACGTTGCAAGCTTAGCCGTA" + "GATCCATGGTACCTTAGGCA"));
+	}
+	@Test
+	public void should_use_16_bit_scores_for_long_alignments() {
+		Random rng = new Random(0);
+		String ref = randomSequence(rng, 600);
+		assertEquals("50 500M", align(aligner, ref.substring(50, 550), ref));
+	}
+	@Test
+	public void should_match_native_library() {
+		Aligner nativeAligner = AlignerFactory.create(1, -4, -4, 6, 1);
+		assumeTrue(nativeAligner instanceof SswJniAligner);
+		Random rng = new Random(0);
+		for (int i = 0; i < 5000; i++) {
+			String ref = randomSequence(rng, 1 + rng.nextInt(i % 10 == 0 ? 600 : 100));
+			String seq = mutate(rng, ref.substring(rng.nextInt(ref.length())));
+			if (rng.nextInt(4) == 0) {
+				seq = randomSequence(rng, rng.nextInt(10)) + seq;
+			}
+			if (seq.length() == 0) continue;
+			String message = seq + " " + ref;
+			assertEquals(message, align(nativeAligner, seq, ref), align(aligner, seq, ref));
+		}
+	}
+	private static String randomSequence(Random rng, int length) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			sb.append((char)BASES[rng.nextInt(BASES.length)]);
+		}
+		return sb.toString();
+	}
+	private static String mutate(Random rng, String seq) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < seq.length(); i++) {
+			switch (rng.nextInt(40)) {
+				case 0:
+					// substitution
+					sb.append((char)BASES[rng.nextInt(BASES.length)]);
+					break;
+				case 1:
+					// deletion
+					i += rng.nextInt(8);
+					break;
+				case 2:
+					// insertion
+					sb.append(randomSequence(rng, 1 + rng.nextInt(8)));
+					sb.append(seq.charAt(i));
+					break;
+				case 3:
+					sb.append('N');
+					break;
+				default:
+					sb.append(seq.charAt(i));
+			}
+		}
+		return sb.toString();
+	}
+}
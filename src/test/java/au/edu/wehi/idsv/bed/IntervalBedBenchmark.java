@@ -0,0 +1,102 @@
+package au.edu.wehi.idsv.bed;
+
+import au.edu.wehi.idsv.util.LongIntervalSet;
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeSet;
+import com.google.common.collect.TreeRangeSet;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the primitive interval set used by IntervalBed against the
+ * Guava RangeSet it replaced.
+ *
+ * Run with:
+ *   mvn -Pbenchmark -DskipTests -Dbenchmark.class=au.edu.wehi.idsv.bed.IntervalBedBenchmark test-compile exec:exec
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+@State(Scope.Benchmark)
+public class IntervalBedBenchmark {
+	private static final long GENOME_SIZE = 3000000000L;
+	private static final int QUERIES = 1 << 16;
+	/**
+	 * Number of intervals in the set
+	 */
+	@Param({ "1000", "100000" })
+	public int intervalCount;
+	private RangeSet<Long> rangeSet;
+	private LongIntervalSet intervalSet;
+	private long[] intervalStart;
+	private long[] queryStart;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Random random = new Random(0);
+		rangeSet = TreeRangeSet.create();
+		intervalSet = new LongIntervalSet();
+		intervalStart = new long[intervalCount];
+		for (int i = 0; i < intervalCount; i++) {
+			intervalStart[i] = (long)(random.nextDouble() * GENOME_SIZE);
+			rangeSet.add(Range.closedOpen(intervalStart[i], intervalStart[i] + 1000));
+			intervalSet.add(intervalStart[i], intervalStart[i] + 1000);
+		}
+		queryStart = new long[QUERIES];
+		for (int i = 0; i < QUERIES; i++) {
+			queryStart[i] = (long)(random.nextDouble() * GENOME_SIZE);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(QUERIES)
+	public void rangeSetOverlaps(Blackhole bh) {
+		for (long start : queryStart) {
+			bh.consume(rangeSet.intersects(Range.closedOpen(start, start + 150)));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(QUERIES)
+	public void longIntervalSetOverlaps(Blackhole bh) {
+		for (long start : queryStart) {
+			bh.consume(intervalSet.overlaps(start, start + 150));
+		}
+	}
+
+	@Benchmark
+	public RangeSet<Long> rangeSetAdd() {
+		RangeSet<Long> rs = TreeRangeSet.create();
+		for (long start : intervalStart) {
+			rs.add(Range.closedOpen(start, start + 1000));
+		}
+		return rs;
+	}
+
+	@Benchmark
+	public int longIntervalSetAdd() {
+		LongIntervalSet set = new LongIntervalSet();
+		for (long start : intervalStart) {
+			set.add(start, start + 1000);
+		}
+		return set.size();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder()
+				.include(IntervalBedBenchmark.class.getSimpleName() + (args.length > 0 ? "." + args[0] : ""))
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(opt).run();
+	}
+}
@@ -63,11 +63,11 @@ public class EvidenceTrackerTest extends TestHelper {
 		List<KmerSupportNode> list = new ArrayList<KmerSupportNode>();
 		list.add(e.node(0));
 		EvidenceTracker tracker = new EvidenceTracker();
-		assertFalse(tracker.isTracked(e.evidence().getEvidenceID()));
+		assertFalse(tracker.isTracked(e.evidence()));
 		tracker.track(list.get(0));
-		assertTrue(tracker.isTracked(e.evidence().getEvidenceID()));
+		assertTrue(tracker.isTracked(e.evidence()));
 		tracker.remove(Collections.singleton(e));
-		assertFalse(tracker.isTracked(e.evidence().getEvidenceID()));
+		assertFalse(tracker.isTracked(e.evidence()));
 	}
 	@Test
 	public void should_remove_efficiently_in_degenerate_sequence() {
@@ -97,11 +97,11 @@ public class EvidenceTrackerTest extends TestHelper {
 				.flatMap(ev -> IntStream.range(0, ev.length()).mapToObj(i -> ev.node(i)))
 				.forEach(ksn -> tracker.track(ksn));
 		assertEquals(2, tracker.getTrackedEvidence().size());
-		assertTrue(tracker.isTracked(nrrp.getEvidenceID()));
+		assertTrue(tracker.isTracked(nrrp));
 		tracker.sanityCheck();
 		tracker.remove(Collections.singleton(e));
 		assertEquals(0, tracker.getTrackedEvidence().size());
-		assertFalse(tracker.isTracked(nrrp.getEvidenceID()));
+		assertFalse(tracker.isTracked(nrrp));
 		tracker.sanityCheck();
 	}
 	@Test
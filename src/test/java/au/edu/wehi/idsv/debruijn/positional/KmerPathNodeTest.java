@@ -4,10 +4,13 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.IntFunction;
 import java.util.stream.IntStream;
 
+import org.junit.Assume;
 import org.junit.Test;
 
 import com.google.common.collect.ImmutableList;
@@ -57,6 +60,78 @@ public class KmerPathNodeTest extends TestHelper {
 		assertEquals(4, pn.weight(2));
 	}
 	@Test
+	public void pathKmers_should_only_include_path_length() {
+		KmerPathNode pn = new KmerPathNode(new ImmutableKmerNode(0, 1, 2, false, 2));
+		pn.append(new ImmutableKmerNode(1, 2, 3, false, 3));
+		pn.append(new ImmutableKmerNode(2, 3, 4, false, 4));
+		assertEquals(new LongArrayList(new long[] { 0, 1, 2 }), pn.pathKmers());
+		assertEquals(new IntArrayList(new int[] { 2, 3, 4 }), pn.pathWeights());
+		assertEquals(new LongArrayList(new long[] { 0, 1, 2 }), LongArrayList.wrap(pn.pathKmerArray(), pn.length()));
+		assertEquals(new IntArrayList(new int[] { 2, 3, 4 }), IntArrayList.wrap(pn.pathWeightArray(), pn.length()));
+	}
+	@Test
+	public void estimatedSizeInBytes_should_increase_with_length() {
+		KmerPathNode pn = new KmerPathNode(new ImmutableKmerNode(0, 1, 2, false, 2));
+		int size = pn.estimatedSizeInBytes();
+		for (int i = 1; i < 16; i++) {
+			pn.append(new ImmutableKmerNode(i, 1 + i, 2 + i, false, 2));
+		}
+		assertTrue(pn.estimatedSizeInBytes() > size);
+	}
+	/**
+	 * Field layout of a node when kmers and weights were held in fastutil array lists
+	 */
+	@SuppressWarnings("unused")
+	private static class ListBackedKmerPathNode {
+		private LongArrayList kmers;
+		private LongArrayList additionalKmers = null;
+		private IntArrayList additionalKmerOffsets = null;
+		private IntArrayList weight;
+		private int totalWeight;
+		private int start;
+		private int end;
+		private boolean reference;
+		private ArrayList<KmerPathNode> nextList = null;
+		private ArrayList<KmerPathNode> prevList = null;
+		private boolean edgesSorted = true;
+		public ListBackedKmerPathNode(long kmer, int start, int end, boolean reference, int weight) {
+			this.kmers = new LongArrayList(1);
+			this.kmers.add(kmer);
+			this.weight = new IntArrayList(1);
+			this.weight.add(weight);
+			this.totalWeight = weight;
+			this.start = start;
+			this.end = end;
+			this.reference = reference;
+		}
+	}
+	private static double allocatedBytesPerNode(IntFunction<Object> factory) {
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		long tid = Thread.currentThread().getId();
+		int n = 100000;
+		Object[] nodes = new Object[n];
+		double best = Double.MAX_VALUE;
+		for (int repeat = 0; repeat < 5; repeat++) {
+			long before = bean.getThreadAllocatedBytes(tid);
+			for (int i = 0; i < n; i++) {
+				nodes[i] = factory.apply(i);
+			}
+			long after = bean.getThreadAllocatedBytes(tid);
+			best = Math.min(best, (after - before) / (double)n);
+		}
+		return best;
+	}
+	@Test
+	public void primitive_arrays_should_reduce_single_kmer_node_size() {
+		Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+		Assume.assumeTrue(((com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean()).isThreadAllocatedMemorySupported());
+		double listBacked = allocatedBytesPerNode(i -> new ListBackedKmerPathNode(i, i, i + 1, false, 1));
+		double arrayBacked = allocatedBytesPerNode(i -> new KmerPathNode(i, i, i + 1, false, 1));
+		// dropping the two list wrapper objects saves around a third of each single kmer node
+		assertTrue(String.format("%.1f bytes per node vs %.1f list backed", arrayBacked, listBacked), arrayBacked < 0.8 * listBacked);
+		assertEquals(arrayBacked, new KmerPathNode(0, 0, 1, false, 1).estimatedSizeInBytes(), 8);
+	}
+	@Test
 	public void prepend_should_add_to_start() {
 		ImmutableKmerNode n0 = new ImmutableKmerNode(0, 1, 2, false, 2);
 		ImmutableKmerNode n1 = new ImmutableKmerNode(0, 1, 2, false, 2);
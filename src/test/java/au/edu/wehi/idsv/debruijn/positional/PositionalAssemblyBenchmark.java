@@ -0,0 +1,371 @@
+package au.edu.wehi.idsv.debruijn.positional;
+
+import au.edu.wehi.idsv.*;
+import au.edu.wehi.idsv.configuration.AssemblyConfiguration;
+import au.edu.wehi.idsv.sim.Fragment;
+import au.edu.wehi.idsv.sim.FragmentedChromosome;
+import com.google.common.collect.Lists;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.util.SequenceUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput benchmarks for each stage of the positional assembly pipeline.
+ *
+ * Evidence is generated from soft clipped reads spanning the junctions of
+ * rearranged chromosomes simulated by {@link FragmentedChromosome}. Each benchmark
+ * times a single stage over the pre-built output of the previous stage. Stages
+ * that modify their input have their input rebuilt before every invocation.
+ * Per-stage input records/s and kmers/s are reported as auxiliary counters
+ * and allocation rates by the GC profiler.
+ *
+ * Run with:
+ *   mvn -Pbenchmark -DskipTests test-compile exec:exec
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+@State(Scope.Benchmark)
+public class PositionalAssemblyBenchmark extends TestHelper {
+	private static final int REFERENCE_INDEX = 2;
+	private static final int READ_LENGTH = 100;
+	public enum Scenario {
+		/**
+		 * Tandem duplications of short units
+		 */
+		TandemDuplication,
+		/**
+		 * Many nearby breakpoints joined to shuffled fragments of the same chromosome
+		 */
+		Chromothripsis,
+		/**
+		 * Single breakpoint with very deep read support
+		 */
+		HighCoverage,
+	}
+	@Param
+	public Scenario scenario;
+	private ProcessingContext pc;
+	private SAMEvidenceSource ses;
+	private AssemblyEvidenceSource aes;
+	private List<DirectedEvidence> evidence;
+	private List<KmerSupportNode> supportNodes;
+	private List<KmerNode> aggregateNodes;
+	private long supportNodeKmers;
+	private long pathNodeCount;
+	private long pathNodeKmers;
+	private long collapsedNodeCount;
+	private long collapsedNodeKmers;
+	private long simplifiedNodeCount;
+	private long simplifiedNodeKmers;
+
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	@State(Scope.Thread)
+	public static class Counters {
+		/**
+		 * Stage input records
+		 */
+		public long records;
+		/**
+		 * Stage input kmers
+		 */
+		public long kmers;
+		@Setup(Level.Iteration)
+		public void reset() {
+			records = 0;
+			kmers = 0;
+		}
+	}
+
+	/**
+	 * Exposes the fragments of the simulated rearranged chromosome
+	 */
+	private static class BenchmarkChromosome extends FragmentedChromosome {
+		private List<Fragment> fragments;
+		public BenchmarkChromosome(GenomicProcessingContext context, String chr, int fragmentLength, int seed) {
+			super(context, chr, 10, fragmentLength, seed);
+		}
+		public List<Fragment> fragment(int fragmentCount) throws IOException {
+			assemble(null, null, fragmentCount, false);
+			return fragments;
+		}
+		public List<Fragment> tandemDuplications(int duplications, int minUnitLength, int maxUnitLength, int copies) {
+			List<Fragment> list = new ArrayList<>();
+			int spacing = seq.length / (duplications + 1);
+			int position = 1;
+			for (int i = 1; i <= duplications; i++) {
+				int unitStart = i * spacing;
+				int unitLength = minUnitLength + rng.nextInt(maxUnitLength - minUnitLength + 1);
+				list.add(createFragment(position, unitStart + unitLength - position, false));
+				for (int j = 1; j < copies; j++) {
+					list.add(createFragment(unitStart, unitLength, false));
+				}
+				position = unitStart + unitLength;
+			}
+			list.add(createFragment(position, seq.length - position + 1, false));
+			return list;
+		}
+		@Override
+		protected void assemble(File fasta, File vcf, List<Fragment> fragList, boolean includeReference) {
+			this.fragments = fragList;
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		pc = getContext();
+		ses = SES(pc);
+		aes = AES(ses);
+		String chr = pc.getDictionary().getSequence(REFERENCE_INDEX).getSequenceName();
+		Random random = new Random(0);
+		evidence = new ArrayList<>();
+		switch (scenario) {
+			case TandemDuplication:
+				addJunctionReads(new BenchmarkChromosome(pc, chr, 0, 0).tandemDuplications(16, 80, 120, 4), 30, 0.01, random);
+				break;
+			case Chromothripsis:
+				addJunctionReads(new BenchmarkChromosome(pc, chr, 150, 0).fragment(30), 30, 0.01, random);
+				break;
+			case HighCoverage:
+				addJunctionReads(new BenchmarkChromosome(pc, chr, 1000, 0).fragment(2), 2000, 0.01, random);
+				break;
+		}
+		evidence.sort(DirectedEvidenceOrder.ByNatural);
+		supportNodes = Lists.newArrayList(supportNodes(evidence.iterator(), new EvidenceTracker()));
+		supportNodeKmers = supportNodes.size();
+		aggregateNodes = Lists.newArrayList(new AggregateNodeIterator(supportNodes.iterator()));
+		List<KmerPathNode> pathNodes = Lists.newArrayList(pathNodes());
+		pathNodeCount = pathNodes.size();
+		pathNodeKmers = kmers(pathNodes);
+		List<KmerPathNode> collapsedNodes = Lists.newArrayList(collapsedNodes(pathNodes.iterator()));
+		collapsedNodeCount = collapsedNodes.size();
+		collapsedNodeKmers = kmers(collapsedNodes);
+		List<KmerPathNode> simplifiedNodes = Lists.newArrayList(simplifiedNodes(collapsedNodes.iterator()));
+		simplifiedNodeCount = simplifiedNodes.size();
+		simplifiedNodeKmers = kmers(simplifiedNodes);
+	}
+
+	/**
+	 * Adds soft clipped reads anchored on either side of each junction between adjacent fragments.
+	 * Only forward evidence is retained as assembly is performed in the forward direction.
+	 * @param fragments fragments of the rearranged chromosome
+	 * @param reads number of reads anchored on each side of each junction
+	 * @param errorRate base substitution error rate
+	 */
+	private void addJunctionReads(List<Fragment> fragments, int reads, double errorRate, Random random) {
+		StringBuilder sb = new StringBuilder();
+		for (Fragment f : fragments) {
+			sb.append(f.getSequence());
+		}
+		byte[] derived = B(sb.toString());
+		int junction = 0;
+		for (int i = 1; i < fragments.size(); i++) {
+			Fragment left = fragments.get(i - 1);
+			Fragment right = fragments.get(i);
+			junction += left.getSequence().length();
+			for (int j = 0; j < reads; j++) {
+				int anchor = 20 + random.nextInt(READ_LENGTH - 40);
+				int clip = READ_LENGTH - anchor;
+				addSoftClip(left, true, addErrors(subsequence(derived, junction - anchor, READ_LENGTH), errorRate, random), anchor, String.format("l%d_%d", i, j));
+				addSoftClip(right, false, addErrors(subsequence(derived, junction - clip, READ_LENGTH), errorRate, random), anchor, String.format("r%d_%d", i, j));
+			}
+		}
+	}
+
+	/**
+	 * Adds the soft clip evidence for the given read
+	 * @param fragment fragment the read is anchored to
+	 * @param anchorAtStart read bases start with the anchor and end with the soft clip
+	 * @param bases read bases in the orientation of the rearranged chromosome
+	 * @param anchor anchor length
+	 */
+	private void addSoftClip(Fragment fragment, boolean anchorAtStart, byte[] bases, int anchor, String readName) {
+		int clip = bases.length - anchor;
+		int firstBase = fragment.getLowBreakend().start;
+		int lastBase = fragment.getHighBreakend().start - 1;
+		boolean negative = fragment.getStartBreakend().direction == BreakendDirection.Forward;
+		if (negative) {
+			// convert to reference orientation
+			SequenceUtil.reverseComplement(bases);
+			anchorAtStart = !anchorAtStart;
+		}
+		// in reference orientation, reads anchored at their start are anchored at the fragment end
+		SAMRecord r = anchorAtStart
+				? Read(REFERENCE_INDEX, lastBase - anchor + 1, String.format("%dM%dS", anchor, clip))
+				: Read(REFERENCE_INDEX, firstBase, String.format("%dS%dM", clip, anchor));
+		r.setReadName(readName);
+		withSequence(bases, r);
+		if (anchorAtStart) {
+			evidence.add(SCE(FWD, ses, r));
+		}
+	}
+
+	private static byte[] subsequence(byte[] seq, int start, int length) {
+		byte[] b = new byte[length];
+		System.arraycopy(seq, start, b, 0, length);
+		return b;
+	}
+
+	private static byte[] addErrors(byte[] bases, double errorRate, Random random) {
+		for (int i = 0; i < bases.length; i++) {
+			if (random.nextDouble() < errorRate) {
+				bases[i] = (byte)"ACGT".charAt(random.nextInt(4));
+			}
+		}
+		return bases;
+	}
+
+	private static long kmers(List<KmerPathNode> nodes) {
+		long n = 0;
+		for (KmerPathNode pn : nodes) {
+			n += pn.length();
+		}
+		return n;
+	}
+
+	private int maxReadLength() {
+		return Math.max(READ_LENGTH, aes.getMaxReadLength());
+	}
+
+	private int maxKmerSupportIntervalWidth() {
+		return aes.getMaxConcordantFragmentSize() - aes.getMinConcordantFragmentSize() + 1;
+	}
+
+	private Iterator<KmerSupportNode> supportNodes(Iterator<DirectedEvidence> it, EvidenceTracker tracker) {
+		AssemblyConfiguration ap = pc.getAssemblyParameters();
+		return new SupportNodeIterator(ap.k, it, Math.max(2 * maxReadLength(), aes.getMaxConcordantFragmentSize()), tracker, ap.includePairAnchors, ap.pairAnchorMismatchIgnoreEndBases);
+	}
+
+	private Iterator<KmerPathNode> pathNodes() {
+		AssemblyConfiguration ap = pc.getAssemblyParameters();
+		return new PathNodeIterator(aggregateNodes.iterator(), ap.positional.maxPathLengthInBases(maxReadLength()), ap.k);
+	}
+
+	private Iterator<KmerPathNode> collapsedNodes(Iterator<KmerPathNode> it) {
+		AssemblyConfiguration ap = pc.getAssemblyParameters();
+		return new LeafBubbleCollapseIterator(it, ap.k, ap.errorCorrection.maxPathCollapseLengthInBases(maxReadLength()), ap.errorCorrection.maxBaseMismatchForCollapse);
+	}
+
+	private Iterator<KmerPathNode> simplifiedNodes(Iterator<KmerPathNode> it) {
+		AssemblyConfiguration ap = pc.getAssemblyParameters();
+		return new PathSimplificationIterator(it, ap.positional.maxPathLengthInBases(maxReadLength()), maxKmerSupportIntervalWidth());
+	}
+
+	private Iterator<SAMRecord> contigs(Iterator<KmerPathNode> it, EvidenceTracker tracker) {
+		AssemblyConfiguration ap = pc.getAssemblyParameters();
+		int maxEvidenceSupportIntervalWidth = maxKmerSupportIntervalWidth() + maxReadLength() - ap.k + 2;
+		return new NonReferenceContigAssembler(it, REFERENCE_INDEX, maxEvidenceSupportIntervalWidth, ap.anchorLength, ap.k, aes,
+				new SequentialIdGenerator("asm"), tracker, pc.getDictionary().getSequence(REFERENCE_INDEX).getSequenceName(),
+				BreakendDirection.Forward, null, null);
+	}
+
+	/**
+	 * Path nodes are modified by the downstream stages so a new copy is required for each invocation
+	 */
+	@State(Scope.Thread)
+	public static class PathNodeInput {
+		public List<KmerPathNode> nodes;
+		@Setup(Level.Invocation)
+		public void setup(PositionalAssemblyBenchmark benchmark) {
+			nodes = Lists.newArrayList(benchmark.pathNodes());
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class CollapsedNodeInput {
+		public List<KmerPathNode> nodes;
+		@Setup(Level.Invocation)
+		public void setup(PositionalAssemblyBenchmark benchmark) {
+			nodes = Lists.newArrayList(benchmark.collapsedNodes(benchmark.pathNodes()));
+		}
+	}
+
+	/**
+	 * Contig assembly removes evidence from the evidence tracker so the tracker is rebuilt for each invocation
+	 */
+	@State(Scope.Thread)
+	public static class SimplifiedNodeInput {
+		public List<KmerPathNode> nodes;
+		public EvidenceTracker tracker;
+		@Setup(Level.Invocation)
+		public void setup(PositionalAssemblyBenchmark benchmark) {
+			tracker = new EvidenceTracker();
+			Iterator<KmerNode> it = new AggregateNodeIterator(benchmark.supportNodes(benchmark.evidence.iterator(), tracker));
+			AssemblyConfiguration ap = benchmark.pc.getAssemblyParameters();
+			Iterator<KmerPathNode> pnIt = new PathNodeIterator(it, ap.positional.maxPathLengthInBases(benchmark.maxReadLength()), ap.k);
+			nodes = Lists.newArrayList(benchmark.simplifiedNodes(benchmark.collapsedNodes(pnIt)));
+		}
+	}
+
+	private static void drain(Iterator<?> it, Blackhole bh) {
+		while (it.hasNext()) {
+			bh.consume(it.next());
+		}
+	}
+
+	@Benchmark
+	public void supportNodeIterator(Counters counters, Blackhole bh) {
+		drain(supportNodes(evidence.iterator(), new EvidenceTracker()), bh);
+		counters.records += evidence.size();
+		counters.kmers += supportNodeKmers;
+	}
+
+	@Benchmark
+	public void aggregateNodeIterator(Counters counters, Blackhole bh) {
+		drain(new AggregateNodeIterator(supportNodes.iterator()), bh);
+		counters.records += supportNodes.size();
+		counters.kmers += supportNodeKmers;
+	}
+
+	@Benchmark
+	public void pathNodeIterator(Counters counters, Blackhole bh) {
+		drain(pathNodes(), bh);
+		counters.records += aggregateNodes.size();
+		counters.kmers += aggregateNodes.size();
+	}
+
+	@Benchmark
+	public void leafBubbleCollapseIterator(PathNodeInput input, Counters counters, Blackhole bh) {
+		drain(collapsedNodes(input.nodes.iterator()), bh);
+		counters.records += pathNodeCount;
+		counters.kmers += pathNodeKmers;
+	}
+
+	@Benchmark
+	public void pathSimplificationIterator(CollapsedNodeInput input, Counters counters, Blackhole bh) {
+		drain(simplifiedNodes(input.nodes.iterator()), bh);
+		counters.records += collapsedNodeCount;
+		counters.kmers += collapsedNodeKmers;
+	}
+
+	@Benchmark
+	public void nonReferenceContigAssembler(SimplifiedNodeInput input, Counters counters, Blackhole bh) {
+		drain(contigs(input.nodes.iterator(), input.tracker), bh);
+		counters.records += simplifiedNodeCount;
+		counters.kmers += simplifiedNodeKmers;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder()
+				.include(PositionalAssemblyBenchmark.class.getSimpleName() + (args.length > 0 ? "." + args[0] : ""))
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(opt).run();
+	}
+}
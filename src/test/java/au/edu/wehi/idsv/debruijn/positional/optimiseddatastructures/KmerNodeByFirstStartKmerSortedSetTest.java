@@ -0,0 +1,68 @@
+package au.edu.wehi.idsv.debruijn.positional.optimiseddatastructures;
+
+import au.edu.wehi.idsv.TestHelper;
+import au.edu.wehi.idsv.debruijn.positional.KmerNodeUtil;
+import au.edu.wehi.idsv.debruijn.positional.KmerPathNode;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+public class KmerNodeByFirstStartKmerSortedSetTest extends TestHelper {
+    @Test
+    public void should_match_tree_set() {
+        int k = 4;
+        KmerPathNode[] list = new KmerPathNode[] {
+            KPN(k, "GTAC", 1, 10, false),
+            KPN(k, "TTAC", 1, 10, true),
+            KPN(k, "AAAA", 1, 10, true),
+            KPN(k, "GTAC", 0, 10, true),
+            KPN(k, "GTAC", 15, 20, true),
+            KPN(k, "CCCC", 15, 20, true),
+            KPN(k, "CCCC", 16, 20, true),
+            KPN(k, "TTTT", 100, 200, true),
+        };
+        Random r = new Random(0);
+        NavigableSet<KmerPathNode> ns = new TreeSet<>(KmerNodeUtil.ByFirstStartKmer);
+        KmerNodeByFirstStartKmerSortedSet<KmerPathNode> set = new KmerNodeByFirstStartKmerSortedSet<>(4);
+        for (int i = 0 ; i < 4096; i++) {
+            KmerPathNode kpn = list[r.nextInt(list.length)];
+            assertEquals(ns.contains(kpn), set.contains(kpn));
+            if (r.nextInt(5) < 2) {
+                assertEquals(ns.remove(kpn), set.remove(kpn));
+            } else {
+                assertEquals(ns.add(kpn), set.add(kpn));
+            }
+            assertEquals(ns.size(), set.size());
+            assertEquals(ns.contains(kpn), set.contains(kpn));
+            assertEquals(Lists.newArrayList(ns), Lists.newArrayList(set.iterator()));
+            assertEquals(Lists.newArrayList(ns.descendingIterator()), Lists.newArrayList(set.descendingIterator()));
+            if (!ns.isEmpty()) {
+                assertEquals(ns.first(), set.first());
+                assertEquals(ns.last(), set.last());
+            }
+        }
+    }
+    @Test
+    public void pollFirst_should_return_in_kmer_order_within_position() {
+        int k = 4;
+        List<KmerPathNode> list = Lists.newArrayList(
+                KPN(k, "TTAC", 1, 10, true),
+                KPN(k, "AAAA", 1, 10, true),
+                KPN(k, "GTAC", 1, 10, true),
+                KPN(k, "CCCC", 1, 10, true),
+                KPN(k, "CCCC", 0, 10, true));
+        KmerNodeByFirstStartKmerSortedSet<KmerPathNode> set = new KmerNodeByFirstStartKmerSortedSet<>(4);
+        set.addAll(list);
+        list.sort(KmerNodeUtil.ByFirstStartKmer);
+        for (KmerPathNode n : list) {
+            assertEquals(n, set.pollFirst());
+        }
+        assertTrue(set.isEmpty());
+    }
+}
@@ -0,0 +1,53 @@
+package au.edu.wehi.idsv.graph;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class SegmentTreeRectangleGraphMaximalCliqueCalculatorTest extends RectangleGraphMaximalCliqueCalculatorTest {
+	@Override
+	protected RectangleGraphCliqueCalculator createCalculator() {
+		return new SegmentTreeRectangleGraphMaximalCliqueCalculator();
+	}
+	private List<String> calls(RectangleGraphCliqueCalculator calc, List<RectangleGraphNode> nodes) {
+		List<RectangleGraphNode> result = new ArrayList<>();
+		for (RectangleGraphNode n : nodes) {
+			result.addAll(calc.next(n));
+		}
+		result.addAll(calc.complete());
+		return result.stream().map(RectangleGraphNode::toString).collect(Collectors.toList());
+	}
+	private void assertMatchesReference(int seed, int count, int xRange, int yRange, int maxWidth) {
+		Random random = new Random(seed);
+		List<RectangleGraphNode> nodes = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			long startX = random.nextInt(xRange);
+			long startY = random.nextInt(yRange);
+			nodes.add(new RectangleGraphNode(
+					startX, startX + random.nextInt(maxWidth),
+					startY, startY + random.nextInt(maxWidth),
+					1 + random.nextInt(10)));
+		}
+		nodes.sort(RectangleGraphNode.ByStartXYEndXY);
+		assertEquals(
+				calls(new RectangleGraphMaximalCliqueCalculator(), nodes),
+				calls(new SegmentTreeRectangleGraphMaximalCliqueCalculator(), nodes));
+	}
+	@Test
+	public void should_match_reference_calculator_call_order() {
+		for (int seed = 0; seed < 64; seed++) {
+			assertMatchesReference(seed, 100, 50, 50, 10);
+		}
+	}
+	@Test
+	public void should_match_reference_calculator_across_tree_rebuilds() {
+		assertMatchesReference(0, 10000, 2000, 100, 50);
+		assertMatchesReference(1, 10000, 100, 2000, 50);
+		assertMatchesReference(2, 10000, 20, 20, 5);
+	}
+}
@@ -6,6 +6,9 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
 import java.util.stream.Collectors;
 
 import htsjdk.samtools.SAMSequenceRecord;
@@ -83,4 +86,72 @@ public class TwoBitBufferedReferenceSequenceFileTest extends TestHelper {
 		file.delete();
 		testFolder.delete();
 	}
+	@Test
+	public void should_round_trip_ambiguous_bases_through_cache() throws IOException {
+		TemporaryFolder testFolder = new TemporaryFolder();
+		testFolder.create();
+		File file = new File(testFolder.getRoot(), "ambiguous.gridsscache");
+		String seq = "NNACGTNNNRYACGTACGTTN";
+		TwoBitBufferedReferenceSequenceFile a = new TwoBitBufferedReferenceSequenceFile(new InMemoryReferenceSequenceFile(new String[] { "test" }, new byte[][] { B(seq) }), file);
+		a.getBase(0, 1);
+		assertTrue(file.exists());
+		TwoBitBufferedReferenceSequenceFile b = new TwoBitBufferedReferenceSequenceFile(new InMemoryReferenceSequenceFile(new String[] { "test" }, new byte[][] { B(seq) }), file);
+		String expected = "NNACGTNNNNNACGTACGTTN";
+		assertEquals(expected, S(b.getSequence("test").getBases()));
+		for (int i = 1; i <= seq.length(); i++) {
+			assertEquals(expected.charAt(i - 1), (char)b.getBase(0, i));
+			for (int j = i; j <= seq.length(); j++) {
+				assertEquals(expected.substring(i - 1, j), S(b.getSubsequenceAt("test", i, j).getBases()));
+			}
+		}
+		testFolder.delete();
+	}
+	@Test
+	public void should_replace_outdated_cache_format() throws IOException {
+		TemporaryFolder testFolder = new TemporaryFolder();
+		testFolder.create();
+		File file = new File(testFolder.getRoot(), "outdated.gridsscache");
+		Files.write(file.toPath(), new byte[] { 1, 2, 3 });
+		TwoBitBufferedReferenceSequenceFile a = new TwoBitBufferedReferenceSequenceFile(SMALL_FA, file);
+		assertEquals(S(SMALL_FA.getSequence("random").getBases()).toUpperCase(), S(a.getSequence("random").getBases()));
+		assertTrue(file.length() > 3);
+		TwoBitBufferedReferenceSequenceFile b = new TwoBitBufferedReferenceSequenceFile(SMALL_FA, file);
+		assertEquals(S(SMALL_FA.getSequence("random").getBases()).toUpperCase(), S(b.getSequence("random").getBases()));
+		testFolder.delete();
+	}
+	@Test
+	public void gc_counts_should_match_sequence() throws IOException {
+		Random random = new Random(0);
+		byte[] bases = new byte[2000];
+		String alphabet = "ACGTacgtNR";
+		for (int i = 0; i < bases.length; i++) {
+			bases[i] = (byte)alphabet.charAt(random.nextInt(alphabet.length()));
+		}
+		// long ambiguous run spanning a checkpoint
+		Arrays.fill(bases, 500, 800, (byte)'N');
+		TwoBitBufferedReferenceSequenceFile b = new TwoBitBufferedReferenceSequenceFile(new InMemoryReferenceSequenceFile(new String[] { "test" }, new byte[][] { bases }));
+		for (int i = 0; i < 5000; i++) {
+			int start = 1 + random.nextInt(bases.length);
+			int end = Math.min(bases.length, start + random.nextInt(600));
+			int gc = 0;
+			int acgt = 0;
+			for (int j = start - 1; j < end; j++) {
+				char c = Character.toUpperCase((char)bases[j]);
+				if (c == 'G' || c == 'C') gc++;
+				if (c == 'A' || c == 'C' || c == 'G' || c == 'T') acgt++;
+			}
+			assertEquals(gc, b.getGcCount(0, start, end));
+			assertEquals(acgt, b.getUnambiguousCount(0, start, end));
+		}
+		b.close();
+	}
+	@Test
+	public void gc_counts_should_truncate_to_contig_bounds() throws IOException {
+		TwoBitBufferedReferenceSequenceFile b = new TwoBitBufferedReferenceSequenceFile(new InMemoryReferenceSequenceFile(new String[] { "test" }, new byte[][] { B("GGCCA") }));
+		assertEquals(4, b.getGcCount(0, -10, 100));
+		assertEquals(5, b.getUnambiguousCount(0, -10, 100));
+		assertEquals(0, b.getGcCount(0, 10, 100));
+		assertEquals(0, b.getUnambiguousCount(0, 6, 5));
+		b.close();
+	}
 }
@@ -0,0 +1,64 @@
+package au.edu.wehi.idsv.sam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import au.edu.wehi.idsv.FileSystemContext;
+import au.edu.wehi.idsv.IntermediateFilesTest;
+import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SAMRecord;
+
+public class NameGroupingSAMFileWriterTest extends IntermediateFilesTest {
+	@Test
+	public void should_group_records_by_read_name() {
+		File out = new File(testFolder.getRoot(), "grouped.bam");
+		List<String> processed = new ArrayList<>();
+		FileSystemContext fsc = new FileSystemContext(testFolder.getRoot(), 2);
+		try (NameGroupingSAMFileWriter writer = new NameGroupingSAMFileWriter(fsc, getHeader(),
+				new SAMFileWriterFactory().makeSAMOrBAMWriter(getHeader(), true, out),
+				(it, w) -> {
+					while (it.hasNext()) {
+						SAMRecord r = it.next();
+						processed.add(r.getReadName());
+						w.addAlignment(r);
+					}
+				})) {
+			for (int i = 0; i < 10; i++) {
+				SAMRecord r = Read(0, i + 1, "1M");
+				r.setReadName("read" + (i % 3));
+				writer.addAlignment(r);
+			}
+		}
+		assertEquals(10, processed.size());
+		Set<String> seen = new HashSet<>();
+		for (int i = 0; i < processed.size(); i++) {
+			if (i == 0 || !processed.get(i).equals(processed.get(i - 1))) {
+				assertTrue(seen.add(processed.get(i)));
+			}
+		}
+		assertEquals(10, getRecords(out).size());
+	}
+	@Test
+	public void should_write_directly_without_processor() {
+		File out = new File(testFolder.getRoot(), "grouped.bam");
+		FileSystemContext fsc = new FileSystemContext(testFolder.getRoot(), 2);
+		try (NameGroupingSAMFileWriter writer = new NameGroupingSAMFileWriter(fsc, getHeader(),
+				new SAMFileWriterFactory().makeSAMOrBAMWriter(getHeader(), true, out), null)) {
+			writer.addAlignment(withReadName("b", Read(0, 1, "1M"))[0]);
+			writer.addAlignment(withReadName("a", Read(0, 2, "1M"))[0]);
+			writer.addAlignment(withReadName("b", Read(0, 3, "1M"))[0]);
+		}
+		List<SAMRecord> list = getRecords(out);
+		assertEquals("a", list.get(0).getReadName());
+		assertEquals("b", list.get(1).getReadName());
+		assertEquals("b", list.get(2).getReadName());
+	}
+}
@@ -15,6 +15,7 @@ import com.google.common.collect.Ordering;
 import au.edu.wehi.idsv.IntermediateFilesTest;
 import htsjdk.samtools.SAMFileHeader.SortOrder;
 import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordQueryNameComparator;
 
 public class SAMFileUtilTest extends IntermediateFilesTest {
 	@Test
@@ -66,4 +67,29 @@ public class SAMFileUtilTest extends IntermediateFilesTest {
 				withReadName("2", Read(1, 5, "1M"))[0]);
 		SAMFileUtil.merge(ImmutableList.of(input, output), output);
 	}
+	@Test
+	public void queryNameSortKey_should_be_consistent_with_comparator() {
+		List<String> names = ImmutableList.of("", "A", "AB", "ABCDEFGH", "ABCDEFGHI", "ABCDEFGG", "ABCDEFGHZ",
+				"ABCDEFG", "a", "read1", "read10", "read2", "r\u00e9ad", "r\u00e9ac", "reaz", "~", "\u00ff", "\u0100");
+		for (String a : names) {
+			for (String b : names) {
+				long keyA = SAMFileUtil.queryNameSortKey(withReadName(a, Read(0, 1, "1M"))[0]);
+				long keyB = SAMFileUtil.queryNameSortKey(withReadName(b, Read(0, 1, "1M"))[0]);
+				if (keyA < keyB) {
+					assertTrue(a + " " + b, SAMRecordQueryNameComparator.compareReadNames(a, b) < 0);
+				}
+			}
+		}
+	}
+	@Test
+	public void sort_should_sort_by_queryname() throws IOException {
+		File output = testFolder.newFile("output.bam");
+		createBAM(input, SortOrder.unsorted,
+				withReadName("read2", Read(5, 1, "1M"))[0],
+				withReadName("read10", Read(3, 3, "1M"))[0],
+				withReadName("read1", Read(1, 5, "1M"))[0],
+				withReadName("read10", Read(1, 5, "1M"))[0]);
+		SAMFileUtil.sort(getFSContext(), input, output, SortOrder.queryname);
+		assertTrue(Ordering.from(SortOrder.queryname.getComparatorInstance()).isOrdered(getRecords(output)));
+	}
 }
@@ -0,0 +1,52 @@
+package au.edu.wehi.idsv.sam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.Ordering;
+
+import au.edu.wehi.idsv.IntermediateFilesTest;
+import htsjdk.samtools.SAMFileHeader.SortOrder;
+import htsjdk.samtools.SAMRecord;
+
+public class WindowedSortingSAMFileWriterTest extends IntermediateFilesTest {
+	@Test
+	public void should_sort_records_within_window() throws IOException {
+		File out = new File(testFolder.getRoot(), "windowed.bam");
+		try (WindowedSortingSAMFileWriter writer = new WindowedSortingSAMFileWriter(getFSContext(), getHeader(), out, 10)) {
+			writer.addAlignment(Read(0, 5, "1M"));
+			writer.addAlignment(Read(0, 1, "1M"));
+			writer.addAlignment(Read(0, 10, "1M"));
+			writer.addAlignment(Read(0, 8, "1M"));
+			writer.addAlignment(Read(1, 1, "1M"));
+			writer.addAlignment(Read(0, 20, "1M"));
+		}
+		List<SAMRecord> list = getRecords(out);
+		assertEquals(6, list.size());
+		assertTrue(Ordering.from(SortOrder.coordinate.getComparatorInstance()).isOrdered(list));
+	}
+	@Test
+	public void should_sort_records_outside_of_window() throws IOException {
+		File out = new File(testFolder.getRoot(), "windowed.bam");
+		try (WindowedSortingSAMFileWriter writer = new WindowedSortingSAMFileWriter(getFSContext(), getHeader(), out, 1)) {
+			writer.addAlignment(Read(0, 100, "1M"));
+			writer.addAlignment(Read(0, 200, "1M"));
+			writer.addAlignment(Read(0, 300, "1M"));
+			writer.addAlignment(Read(0, 1, "1M"));
+			writer.addAlignment(Read(1, 1, "1M"));
+			writer.addAlignment(Read(0, 150, "1M"));
+		}
+		List<SAMRecord> list = getRecords(out);
+		assertEquals(6, list.size());
+		assertTrue(Ordering.from(SortOrder.coordinate.getComparatorInstance()).isOrdered(list));
+		assertFalse(new File(testFolder.getRoot(), "gridss.tmp.overflow.windowed.bam").exists());
+		assertFalse(new File(testFolder.getRoot(), "gridss.tmp.windowed.windowed.bam").exists());
+	}
+}
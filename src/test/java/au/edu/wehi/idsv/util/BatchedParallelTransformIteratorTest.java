@@ -0,0 +1,74 @@
+package au.edu.wehi.idsv.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Ints;
+
+import au.edu.wehi.idsv.util.AsyncBufferedIteratorTest.CIT;
+
+
+public class BatchedParallelTransformIteratorTest {
+	@Test
+	public void should_apply_transform() {
+		for (int batchSize = 1; batchSize < 6; batchSize++) {
+			List<Integer> list = Ints.asList(0, 1, 2, 3);
+			BatchedParallelTransformIterator<Integer, Integer> it = new BatchedParallelTransformIterator<>(list.iterator(), n -> ImmutableList.of(n + 1), batchSize, 2, Runnable::run);
+			assertEquals(Ints.asList(1, 2, 3, 4), Lists.newArrayList(it));
+		}
+	}
+	@Test
+	public void should_allow_filtering_and_expansion() {
+		List<Integer> list = Ints.asList(0, 1, 2, 3);
+		BatchedParallelTransformIterator<Integer, Integer> it = new BatchedParallelTransformIterator<>(list.iterator(), n -> {
+			List<Integer> result = new ArrayList<>();
+			for (int i = 0; i < n; i++) result.add(n);
+			return result;
+		}, 3, 2, Runnable::run);
+		assertEquals(Ints.asList(1, 2, 2, 3, 3, 3), Lists.newArrayList(it));
+	}
+	@Test
+	public void should_read_ahead_batches_in_flight() {
+		CIT cit = new CIT(32);
+		BatchedParallelTransformIterator<Integer, Integer> it = new BatchedParallelTransformIterator<>(cit, n -> ImmutableList.of(n), 4, 2, Runnable::run);
+		assertEquals(32, cit.recordsleft);
+		it.next();
+		// first batch being consumed and two batches in flight
+		assertEquals(32 - 4 * 3, cit.recordsleft);
+	}
+	@Test
+	public void should_retain_iteration_order() {
+		ExecutorService threadpool = Executors.newFixedThreadPool(4);
+		CIT cit = new CIT(32);
+		BatchedParallelTransformIterator<Integer, Integer> it = new BatchedParallelTransformIterator<>(cit, n -> {
+			try {
+				Thread.sleep(n);
+			} catch (InterruptedException e) {
+			}
+			return ImmutableList.of(n);
+		}, 3, 4, threadpool);
+		for (int i = 32; i > 0; i--) assertEquals(i, (int)it.next());
+		threadpool.shutdown();
+	}
+	@Test(expected = IllegalStateException.class)
+	public void should_propagate_transform_exception() {
+		ExecutorService threadpool = Executors.newFixedThreadPool(2);
+		try {
+			BatchedParallelTransformIterator<Integer, Integer> it = new BatchedParallelTransformIterator<>(Ints.asList(0, 1, 2).iterator(), n -> {
+				if (n == 2) throw new IllegalStateException();
+				return ImmutableList.of(n);
+			}, 1, 2, threadpool);
+			Lists.newArrayList(it);
+		} finally {
+			threadpool.shutdown();
+		}
+	}
+}
@@ -136,4 +136,41 @@ public class DuplicatingIterableTest {
 		}
 		assertEquals(n, exceptionsFound);
 	}
-}
\ No newline at end of file
+	@Test
+	public void should_return_all_records_in_order_to_all_iterators() throws InterruptedException {
+		List<Integer> list = new ArrayList<Integer>();
+		for (int i = 0; i < 100000; i++) {
+			list.add(i);
+		}
+		int n = 6;
+		DuplicatingIterable<Integer> dib = new DuplicatingIterable<Integer>(n, list.iterator(), 3);
+		List<List<Integer>> results = new ArrayList<>();
+		Thread[] consumers = new Thread[n];
+		for (int i = 0; i < n; i++) {
+			List<Integer> result = new ArrayList<>();
+			results.add(result);
+			Iterator<Integer> it = dib.iterator();
+			consumers[i] = new Thread(() -> it.forEachRemaining(result::add));
+			consumers[i].start();
+		}
+		for (int i = 0; i < n; i++) {
+			consumers[i].join();
+			assertEquals(list, results.get(i));
+		}
+	}
+	@Test
+	public void close_should_end_stream() throws InterruptedException {
+		List<Integer> list = ImmutableList.of(0, 1, 2, 3, 4, 5, 6, 7);
+		DuplicatingIterable<Integer> dib = new DuplicatingIterable<Integer>(2, list.iterator(), 2);
+		Iterator<Integer> it1 = dib.iterator();
+		dib.iterator();
+		it1.next();
+		dib.close();
+		int count = 1;
+		while (it1.hasNext()) {
+			it1.next();
+			count++;
+		}
+		assertTrue(count < list.size());
+	}
+}
@@ -0,0 +1,42 @@
+package au.edu.wehi.idsv.util;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class IntSlidingWindowListTest {
+	@Test
+	public void should_retain_window_size_highest_indexes() {
+		IntSlidingWindowList list = new IntSlidingWindowList(3);
+		for (int i = 0; i < 10; i++) {
+			list.set(i, i + 100);
+		}
+		assertEquals(10, list.size());
+		assertEquals(0, list.get(6));
+		assertEquals(107, list.get(7));
+		assertEquals(108, list.get(8));
+		assertEquals(109, list.get(9));
+	}
+	@Test
+	public void skipped_indexes_should_be_zero() {
+		IntSlidingWindowList list = new IntSlidingWindowList(4);
+		list.set(0, 1);
+		list.set(1, 1);
+		list.set(2, 1);
+		list.set(3, 1);
+		list.set(6, 1);
+		assertEquals(0, list.get(4));
+		assertEquals(0, list.get(5));
+		assertEquals(1, list.get(6));
+		list.set(100, 1);
+		assertEquals(0, list.get(97));
+		assertEquals(0, list.get(98));
+		assertEquals(0, list.get(99));
+	}
+	@Test(expected=IndexOutOfBoundsException.class)
+	public void get_should_not_read_past_head() {
+		IntSlidingWindowList list = new IntSlidingWindowList(4);
+		list.set(0, 1);
+		list.get(1);
+	}
+}
@@ -59,4 +59,27 @@ public class IntervalAccumulatorTest {
 		Assert.assertArrayEquals(new int[] { 1, 2, 4}, ia.getBinStarts().toIntArray());
 		Assert.assertArrayEquals(new int[] { 1, 2, 2}, IntStream.of(ia.getBinStarts().toIntArray()).map(i -> ia.getBinSize(i)).toArray());
 	}
+	@Test
+	public void merge_should_add_empty_copy_values() {
+		IntervalAccumulator ia = new IntervalAccumulator(1, 5, 3);
+		ia.splitBin(2);
+		ia.finaliseBins();
+		ia.add(1, 5, 1);
+		IntervalAccumulator copy = ia.emptyCopy();
+		Assert.assertArrayEquals(ia.getBinStarts().toIntArray(), copy.getBinStarts().toIntArray());
+		Assert.assertEquals(0, copy.getMeanValue(2), 0);
+		copy.add(2, 3, 2);
+		ia.merge(copy);
+		Assert.assertEquals(1, ia.getMeanValue(1), 0);
+		Assert.assertEquals(3, ia.getMeanValue(2), 0);
+		Assert.assertEquals(1, ia.getMeanValue(4), 0);
+	}
+	@Test(expected=IllegalArgumentException.class)
+	public void merge_should_require_matching_bins() {
+		IntervalAccumulator ia = new IntervalAccumulator(1, 5, 3);
+		ia.finaliseBins();
+		IntervalAccumulator other = new IntervalAccumulator(1, 5, 2);
+		other.finaliseBins();
+		ia.merge(other);
+	}
 }
@@ -0,0 +1,145 @@
+package au.edu.wehi.idsv.util;
+
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeSet;
+import com.google.common.collect.TreeRangeSet;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class LongIntervalSetTest {
+	private static void assertMatches(RangeSet<Long> expected, LongIntervalSet actual) {
+		List<Range<Long>> ranges = new ArrayList<>(expected.asRanges());
+		assertEquals(ranges.size(), actual.size());
+		for (int i = 0; i < ranges.size(); i++) {
+			assertEquals((long)ranges.get(i).lowerEndpoint(), actual.getStart(i));
+			assertEquals((long)ranges.get(i).upperEndpoint(), actual.getEnd(i));
+		}
+	}
+	@Test
+	public void should_coalesce_overlapping_and_adjacent_intervals() {
+		LongIntervalSet set = new LongIntervalSet();
+		set.add(10, 20);
+		set.add(20, 30);
+		set.add(15, 25);
+		set.add(40, 50);
+		set.add(5, 6);
+		assertEquals(3, set.size());
+		assertEquals(5, set.getStart(0));
+		assertEquals(6, set.getEnd(0));
+		assertEquals(10, set.getStart(1));
+		assertEquals(30, set.getEnd(1));
+		assertEquals(40, set.getStart(2));
+		assertEquals(50, set.getEnd(2));
+	}
+	@Test
+	public void overlaps_should_use_half_open_intervals() {
+		LongIntervalSet set = new LongIntervalSet();
+		set.add(10, 20);
+		assertFalse(set.overlaps(0, 10));
+		assertTrue(set.overlaps(0, 11));
+		assertTrue(set.overlaps(19, 30));
+		assertFalse(set.overlaps(20, 30));
+		assertTrue(set.overlaps(0, 100));
+		assertFalse(set.overlaps(15, 15));
+	}
+	@Test
+	public void should_remove_intervals() {
+		LongIntervalSet set = new LongIntervalSet();
+		set.add(0, 100);
+		set.add(200, 300);
+		LongIntervalSet toRemove = new LongIntervalSet();
+		toRemove.add(10, 20);
+		toRemove.add(90, 210);
+		toRemove.add(250, 260);
+		set.removeAll(toRemove);
+		assertEquals(4, set.size());
+		assertEquals(0, set.getStart(0));
+		assertEquals(10, set.getEnd(0));
+		assertEquals(20, set.getStart(1));
+		assertEquals(90, set.getEnd(1));
+		assertEquals(210, set.getStart(2));
+		assertEquals(250, set.getEnd(2));
+		assertEquals(260, set.getStart(3));
+		assertEquals(300, set.getEnd(3));
+	}
+	@Test
+	public void should_match_RangeSet() {
+		Random random = new Random(0);
+		RangeSet<Long> expected = TreeRangeSet.create();
+		LongIntervalSet actual = new LongIntervalSet();
+		RangeSet<Long> expectedRemove = TreeRangeSet.create();
+		LongIntervalSet actualRemove = new LongIntervalSet();
+		for (int i = 0; i < 5000; i++) {
+			long start = random.nextInt(100000);
+			long end = start + 1 + random.nextInt(100);
+			expected.add(Range.closedOpen(start, end));
+			actual.add(start, end);
+			if (i % 3 == 0) {
+				start = random.nextInt(100000);
+				end = start + 1 + random.nextInt(50);
+				expectedRemove.add(Range.closedOpen(start, end));
+				actualRemove.add(start, end);
+			}
+		}
+		assertMatches(expected, actual);
+		for (int i = 0; i < 5000; i++) {
+			long start = random.nextInt(100000);
+			long end = start + 1 + random.nextInt(20);
+			assertEquals(expected.intersects(Range.closedOpen(start, end)), actual.overlaps(start, end));
+		}
+		expected.removeAll(expectedRemove);
+		actual.removeAll(actualRemove);
+		assertMatches(expected, actual);
+		RangeSet<Long> expectedUnion = TreeRangeSet.create(expected);
+		expectedUnion.addAll(expectedRemove);
+		assertMatches(expectedUnion, LongIntervalSet.union(actual, actualRemove));
+	}
+	@Test
+	public void should_match_RangeSet_when_queries_are_interleaved_with_additions() {
+		Random random = new Random(0);
+		RangeSet<Long> expected = TreeRangeSet.create();
+		LongIntervalSet actual = new LongIntervalSet();
+		for (int i = 0; i < 20000; i++) {
+			long start = random.nextInt(1000000);
+			long end = start + 1 + random.nextInt(100);
+			expected.add(Range.closedOpen(start, end));
+			actual.add(start, end);
+			// query after a varying number of additions so both the unsorted and sorted pending intervals are checked
+			for (int j = random.nextInt(3); j > 0; j--) {
+				start = random.nextInt(1000000);
+				end = start + 1 + random.nextInt(20);
+				assertEquals(expected.intersects(Range.closedOpen(start, end)), actual.overlaps(start, end));
+			}
+		}
+		assertMatches(expected, actual);
+	}
+	@Test
+	public void should_allow_concurrent_add() throws Exception {
+		LongIntervalSet set = new LongIntervalSet();
+		ExecutorService threadpool = Executors.newFixedThreadPool(4);
+		List<Future<?>> tasks = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			int offset = t;
+			tasks.add(threadpool.submit(() -> {
+				for (int i = 0; i < 10000; i++) {
+					long start = 10 * (4 * i + offset);
+					set.add(start, start + 5);
+					assertTrue(set.overlaps(start, start + 1));
+				}
+			}));
+		}
+		for (Future<?> f : tasks) {
+			f.get();
+		}
+		threadpool.shutdown();
+		assertEquals(40000, set.size());
+	}
+}
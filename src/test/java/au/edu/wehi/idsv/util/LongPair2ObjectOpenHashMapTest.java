@@ -0,0 +1,80 @@
+package au.edu.wehi.idsv.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+
+public class LongPair2ObjectOpenHashMapTest {
+	@Test
+	public void should_distinguish_high_and_low() {
+		LongPair2ObjectOpenHashMap<String> map = new LongPair2ObjectOpenHashMap<>();
+		map.put(1, 2, "a");
+		map.put(2, 1, "b");
+		assertEquals("a", map.get(1, 2));
+		assertEquals("b", map.get(2, 1));
+		assertNull(map.get(1, 1));
+		assertEquals(2, map.size());
+	}
+	@Test
+	public void put_should_replace_existing_value() {
+		LongPair2ObjectOpenHashMap<String> map = new LongPair2ObjectOpenHashMap<>();
+		assertNull(map.put(0, 0, "a"));
+		assertEquals("a", map.put(0, 0, "b"));
+		assertEquals("b", map.get(0, 0));
+		assertEquals(1, map.size());
+	}
+	@Test(expected=IllegalArgumentException.class)
+	public void should_not_allow_null_values() {
+		new LongPair2ObjectOpenHashMap<String>().put(0, 0, null);
+	}
+	@Test
+	public void should_match_HashMap() {
+		Random rng = new Random(0);
+		LongPair2ObjectOpenHashMap<Integer> map = new LongPair2ObjectOpenHashMap<>(4);
+		Map<String, Integer> expected = new HashMap<>();
+		for (int i = 0; i < 100000; i++) {
+			// small key space to ensure collisions, removals and reinsertions
+			long high = rng.nextInt(64);
+			long low = rng.nextInt(64);
+			String key = high + ":" + low;
+			switch (rng.nextInt(3)) {
+				case 0:
+					assertEquals(expected.put(key, i), map.put(high, low, i));
+					break;
+				case 1:
+					assertEquals(expected.remove(key), map.remove(high, low));
+					break;
+				default:
+					assertEquals(expected.get(key), map.get(high, low));
+					assertEquals(expected.containsKey(key), map.containsKey(high, low));
+					break;
+			}
+			assertEquals(expected.size(), map.size());
+		}
+		List<Integer> values = map.values();
+		assertEquals(expected.size(), values.size());
+		assertTrue(values.containsAll(expected.values()));
+		map.clear();
+		assertTrue(map.isEmpty());
+		assertFalse(map.containsKey(0, 0));
+	}
+	@Test
+	public void set_add_should_return_false_if_present() {
+		LongPairOpenHashSet set = new LongPairOpenHashSet();
+		assertTrue(set.add(1, 2));
+		assertFalse(set.add(1, 2));
+		assertTrue(set.contains(1, 2));
+		assertFalse(set.contains(2, 1));
+		assertTrue(set.remove(1, 2));
+		assertFalse(set.contains(1, 2));
+	}
+}
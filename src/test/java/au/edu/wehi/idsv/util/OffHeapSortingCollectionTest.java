@@ -0,0 +1,151 @@
+package au.edu.wehi.idsv.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import au.edu.wehi.idsv.IntermediateFilesTest;
+import htsjdk.samtools.BAMRecordCodec;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordComparator;
+import htsjdk.samtools.SAMRecordCoordinateComparator;
+import htsjdk.samtools.SAMRecordQueryNameComparator;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.SortingCollection;
+
+public class OffHeapSortingCollectionTest extends IntermediateFilesTest {
+	private static final ToLongFunction<SAMRecord> COORDINATE_KEY = r -> r.getReferenceIndex() < 0 ? Long.MAX_VALUE : ((long)r.getReferenceIndex() << 32) | r.getAlignmentStart();
+	private List<SAMRecord> randomRecords(int n, int positions) {
+		Random random = new Random(0);
+		List<SAMRecord> list = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			SAMRecord r;
+			if (random.nextInt(20) == 0) {
+				r = Unmapped(10);
+			} else {
+				r = Read(random.nextInt(2), 1 + random.nextInt(positions), "10M");
+				r.setReadNegativeStrandFlag(random.nextBoolean());
+			}
+			r.setReadName("r" + random.nextInt(n));
+			r.setMappingQuality(random.nextInt(60));
+			list.add(r);
+		}
+		return list;
+	}
+	private void assertSorted(List<SAMRecord> input, SAMRecordComparator comparator, ToLongFunction<SAMRecord> sortKey, int maxRecordsInRam) throws Exception {
+		List<String> expected = input.stream()
+				.sorted(comparator)
+				.map(SAMRecord::getSAMString)
+				.collect(Collectors.toList());
+		File tmp = testFolder.newFolder();
+		OffHeapSortingCollection<SAMRecord> collection = new OffHeapSortingCollection<>(new BAMRecordCodec(getHeader()), comparator, sortKey, maxRecordsInRam, tmp.toPath());
+		try {
+			for (SAMRecord r : input) {
+				collection.add(r);
+			}
+			collection.doneAdding();
+			List<String> actual = new ArrayList<>();
+			try (CloseableIterator<SAMRecord> it = collection.iterator()) {
+				while (it.hasNext()) {
+					actual.add(it.next().getSAMString());
+				}
+			}
+			assertEquals(expected, actual);
+		} finally {
+			collection.cleanup();
+		}
+		assertFalse(Files.list(tmp.toPath()).findAny().isPresent());
+	}
+	@Test
+	public void should_sort_in_memory() throws Exception {
+		assertSorted(randomRecords(1000, 100), new SAMRecordCoordinateComparator(), COORDINATE_KEY, 100000);
+	}
+	@Test
+	public void should_merge_spilled_runs() throws Exception {
+		assertSorted(randomRecords(10000, 1000), new SAMRecordCoordinateComparator(), COORDINATE_KEY, 777);
+	}
+	@Test
+	public void should_sort_using_comparator_without_sort_key() throws Exception {
+		assertSorted(randomRecords(5000, 1000), new SAMRecordQueryNameComparator(), null, 1000);
+	}
+	@Test
+	public void should_resolve_large_sort_key_ties_using_comparator() throws Exception {
+		assertSorted(randomRecords(5000, 2), new SAMRecordCoordinateComparator(), COORDINATE_KEY, 4000);
+	}
+	@Test
+	public void should_resolve_large_sort_key_ties_using_comparator_spilled() throws Exception {
+		assertSorted(randomRecords(20000, 1), new SAMRecordCoordinateComparator(), r -> 0, 15000);
+	}
+	private long timeOffHeapSort(List<SAMRecord> input, SAMRecordComparator comparator, int maxRecordsInRam) throws Exception {
+		long start = System.nanoTime();
+		OffHeapSortingCollection<SAMRecord> collection = new OffHeapSortingCollection<>(new BAMRecordCodec(getHeader()), comparator, null, maxRecordsInRam, testFolder.newFolder().toPath());
+		try {
+			input.forEach(collection::add);
+			collection.doneAdding();
+			try (CloseableIterator<SAMRecord> it = collection.iterator()) {
+				while (it.hasNext()) it.next();
+			}
+		} finally {
+			collection.cleanup();
+		}
+		return System.nanoTime() - start;
+	}
+	private long timeSortingCollection(List<SAMRecord> input, SAMRecordComparator comparator, int maxRecordsInRam) throws Exception {
+		long start = System.nanoTime();
+		SortingCollection<SAMRecord> collection = SortingCollection.newInstance(SAMRecord.class, new BAMRecordCodec(getHeader()), comparator, maxRecordsInRam, testFolder.newFolder().toPath());
+		try {
+			input.forEach(collection::add);
+			collection.doneAdding();
+			try (CloseableIterator<SAMRecord> it = collection.iterator()) {
+				while (it.hasNext()) it.next();
+			}
+		} finally {
+			collection.cleanup();
+		}
+		return System.nanoTime() - start;
+	}
+	/**
+	 * Times sorting without a sort key relative to SortingCollection.
+	 * @return ratio of the best of several runs
+	 */
+	private double keylessSortTimeRatio(List<SAMRecord> input, int maxRecordsInRam) throws Exception {
+		SAMRecordComparator comparator = new SAMRecordQueryNameComparator();
+		// warm up
+		timeOffHeapSort(input, comparator, maxRecordsInRam);
+		timeSortingCollection(input, comparator, maxRecordsInRam);
+		long offHeap = Long.MAX_VALUE;
+		long sortingCollection = Long.MAX_VALUE;
+		for (int i = 0; i < 3; i++) {
+			offHeap = Math.min(offHeap, timeOffHeapSort(input, comparator, maxRecordsInRam));
+			sortingCollection = Math.min(sortingCollection, timeSortingCollection(input, comparator, maxRecordsInRam));
+		}
+		return (double)offHeap / sortingCollection;
+	}
+	/**
+	 * Records without a sort key form a single tie group which must not
+	 * be sorted by decoding records on every comparison.
+	 */
+	@Test
+	public void sort_without_sort_key_should_not_be_much_slower_than_SortingCollection() throws Exception {
+		List<SAMRecord> input = randomRecords(100000, 100000);
+		// SortingCollection does not encode records that fit in memory
+		double inMemory = keylessSortTimeRatio(input, input.size());
+		assertTrue(String.format("In-memory sort %.1fx slower than SortingCollection", inMemory), inMemory < 6);
+		double spilled = keylessSortTimeRatio(input, input.size() / 4);
+		assertTrue(String.format("Spilled sort %.1fx slower than SortingCollection", spilled), spilled < 2);
+	}
+	@Test
+	public void should_sort_empty_collection() throws Exception {
+		assertSorted(new ArrayList<>(), new SAMRecordCoordinateComparator(), COORDINATE_KEY, 10);
+	}
+}
@@ -0,0 +1,86 @@
+package au.edu.wehi.idsv.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+
+public class RoutingIterableTest {
+	@Test
+	public void should_return_underlying_iterator() {
+		List<Integer> list = ImmutableList.of(0, 1, 2, 3, 4, 5, 6, 7);
+		assertEquals(list, Lists.newArrayList(new RoutingIterable<Integer>(1, list.iterator(), x -> 0, 1).iterator(0)));
+	}
+	@Test
+	public void should_drop_records_with_negative_route() {
+		List<Integer> list = ImmutableList.of(0, 1, 2, 3, 4, 5, 6, 7);
+		assertEquals(ImmutableList.of(1, 3, 5, 7), Lists.newArrayList(new RoutingIterable<Integer>(1, list.iterator(), x -> x % 2 == 0 ? -1 : 0, 1).iterator(0)));
+	}
+	@Test(expected=IllegalStateException.class)
+	public void should_not_allow_multiple_iterators_for_same_route() {
+		RoutingIterable<Integer> ri = new RoutingIterable<Integer>(2, ImmutableList.of(0).iterator(), x -> 0, 1);
+		ri.iterator(0);
+		ri.iterator(0);
+	}
+	@Test
+	public void should_raise_on_all_iterators() {
+		int exceptionsFound = 0;
+		int n = 4;
+		RoutingIterable<Integer> ri = new RoutingIterable<Integer>(n, new ErrorIterator<>(), x -> 0, 16);
+		for (int i = 0; i < n; i++) {
+			Iterator<Integer> it = ri.iterator(i);
+			try {
+				it.next();
+			} catch (RuntimeException e) {
+				exceptionsFound++;
+			}
+		}
+		assertEquals(n, exceptionsFound);
+	}
+	@Test
+	public void should_return_routed_records_in_order() throws InterruptedException {
+		List<Integer> list = new ArrayList<Integer>();
+		for (int i = 0; i < 100000; i++) {
+			list.add(i);
+		}
+		int n = 6;
+		RoutingIterable<Integer> ri = new RoutingIterable<Integer>(n, list.iterator(), x -> x % n, 3);
+		List<List<Integer>> results = new ArrayList<>();
+		Thread[] consumers = new Thread[n];
+		for (int i = 0; i < n; i++) {
+			List<Integer> result = new ArrayList<>();
+			results.add(result);
+			Iterator<Integer> it = ri.iterator(i);
+			consumers[i] = new Thread(() -> it.forEachRemaining(result::add));
+			consumers[i].start();
+		}
+		for (int i = 0; i < n; i++) {
+			int route = i;
+			consumers[i].join();
+			assertEquals(list.stream().filter(x -> x % n == route).collect(Collectors.toList()), results.get(i));
+		}
+	}
+	@Test
+	public void close_should_end_stream() throws InterruptedException {
+		List<Integer> list = ImmutableList.of(0, 1, 2, 3, 4, 5, 6, 7);
+		RoutingIterable<Integer> ri = new RoutingIterable<Integer>(1, list.iterator(), x -> 0, 2);
+		Iterator<Integer> it = ri.iterator(0);
+		it.next();
+		ri.close();
+		int count = 1;
+		while (it.hasNext()) {
+			it.next();
+			count++;
+		}
+		assertTrue(count < list.size());
+	}
+}
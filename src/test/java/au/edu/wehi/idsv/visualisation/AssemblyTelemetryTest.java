@@ -0,0 +1,114 @@
+package au.edu.wehi.idsv.visualisation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import au.edu.wehi.idsv.BreakendDirection;
+import au.edu.wehi.idsv.IntermediateFilesTest;
+import au.edu.wehi.idsv.visualisation.AssemblyTelemetry.AssemblyChunkTelemetry;
+import au.edu.wehi.idsv.visualisation.AssemblyTelemetry.AssemblyStage;
+
+
+public class AssemblyTelemetryTest extends IntermediateFilesTest {
+	@Test
+	public void should_write_fixed_size_records() throws IOException {
+		File file = new File(testFolder.getRoot(), "telemetry.bin");
+		AssemblyTelemetry telemetry = new AssemblyTelemetry(file, getContext().getDictionary());
+		AssemblyChunkTelemetry chunk = telemetry.getTelemetry(1, BreakendDirection.Forward);
+		for (int i = 0; i < 5000; i++) {
+			chunk.loadGraph(0, i, i + 1, 2, 10, 100, 1000, false, 1000);
+		}
+		chunk.flushContigs(0, 0, 10, 1, 1000);
+		chunk.flushReferenceNodes(0, 0, 10, 1, 1000);
+		chunk.close();
+		telemetry.close();
+		assertEquals(16 + 5002 * AssemblyTelemetry.RECORD_SIZE, file.length());
+		assertEquals(5002, telemetry.getAggregator().getEventCount());
+	}
+	@Test
+	public void should_aggregate_chunk_statistics() {
+		File file = new File(testFolder.getRoot(), "telemetry.bin");
+		AssemblyTelemetry telemetry = new AssemblyTelemetry(file, getContext().getDictionary());
+		AssemblyChunkTelemetry chunk = telemetry.getTelemetry(3, BreakendDirection.Backward);
+		for (int i = 1; i <= 100; i++) {
+			chunk.loadGraph(1, i, i + 1, 1, 50, i, 0, false, 1000000);
+		}
+		chunk.close();
+		telemetry.close();
+		List<AssemblyChunkStatistics> stats = telemetry.getAggregator().getChunkStatistics();
+		assertEquals(1, stats.size());
+		AssemblyChunkStatistics s = stats.get(0);
+		assertEquals(3, s.getChunk());
+		assertEquals("b", s.getDirection());
+		assertEquals(getContext().getDictionary().getSequence(1).getSequenceName(), s.getContig());
+		assertEquals(5000, s.getKmers());
+		assertEquals(100, s.getElapsedMilliseconds());
+		assertEquals(50000, s.getKmersPerSecond(), 1);
+		assertEquals(64, s.getGraphSizeMedian());
+		assertEquals(100, s.getGraphSize99thPercentile());
+		assertEquals(100, s.getGraphSizeMax());
+	}
+	@Test
+	public void should_record_exclusive_stage_time() {
+		File file = new File(testFolder.getRoot(), "telemetry.bin");
+		AssemblyTelemetry telemetry = new AssemblyTelemetry(file, getContext().getDictionary());
+		AssemblyChunkTelemetry chunk = telemetry.getTelemetry(0, BreakendDirection.Forward);
+		Iterator<Integer> it = chunk.timed(ImmutableList.of(1, 2, 3).iterator(), AssemblyStage.Evidence);
+		it = chunk.timed(it, AssemblyStage.Support);
+		assertEquals(ImmutableList.of(1, 2, 3), Lists.newArrayList(it));
+		chunk.addStageTime(AssemblyStage.Contig, 1000000000L, 1);
+		chunk.close();
+		telemetry.close();
+		long contigMs = telemetry.getAggregator().getStageMilliseconds().get(AssemblyStage.Contig.name());
+		assertTrue(contigMs > 900 && contigMs <= 1000);
+		assertEquals(contigMs, (long)telemetry.getAggregator().getChunkStatistics().get(0).getStageMilliseconds().get(AssemblyStage.Contig.name()));
+	}
+	@Test
+	public void should_register_mbean_until_closed() throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName query = new ObjectName("gridss:type=AssemblyTelemetry,*");
+		int before = server.queryNames(query, null).size();
+		AssemblyTelemetry telemetry = new AssemblyTelemetry(new File(testFolder.getRoot(), "telemetry.bin"), getContext().getDictionary());
+		AssemblyChunkTelemetry chunk = telemetry.getTelemetry(0, BreakendDirection.Forward);
+		chunk.loadGraph(0, 1, 2, 1, 1, 1, 1, false, 1);
+		chunk.close();
+		Set<ObjectName> names = server.queryNames(query, null);
+		assertEquals(before + 1, names.size());
+		telemetry.close();
+		assertEquals(before, server.queryNames(query, null).size());
+	}
+	@Test
+	public void writeCsv_should_decode_records() throws IOException {
+		File file = new File(testFolder.getRoot(), "telemetry.bin");
+		AssemblyTelemetry telemetry = new AssemblyTelemetry(file, getContext().getDictionary());
+		AssemblyChunkTelemetry chunk = telemetry.getTelemetry(7, BreakendDirection.Forward);
+		chunk.loadGraph(0, 1, 2, 3, 4, 5, 6, true, 7);
+		chunk.close();
+		telemetry.close();
+		StringWriter sw = new StringWriter();
+		try (InputStream in = new FileInputStream(file)) {
+			AssemblyTelemetry.writeCsv(in, getContext().getDictionary(), sw);
+		}
+		String[] lines = sw.toString().split("\n");
+		assertEquals(2, lines.length);
+		assertEquals("7,f,load,," + getContext().getDictionary().getSequence(0).getSequenceName() + ",1,2,3,true,7,4,5,6", lines[1]);
+	}
+}
@@ -266,4 +266,48 @@ public class AllocateEvidenceTest extends IntermediateFilesTest {
 		List<VariantContextDirectedEvidence> results = Lists.newArrayList(cmd.iterator(new AutoClosingIterator<>(vcfs.iterator()), MoreExecutors.newDirectExecutorService()));
 		assertEquals(0, results.size());
 	}
+	@Test
+	public void should_allocate_breakpoints_spanning_chunks() throws IOException, InterruptedException {
+		final ProcessingContext pc = getCommandlineContext();
+		pc.getVariantCallingParameters().minSize = 0;
+		pc.getVariantCallingParameters().minScore = 0;
+		pc.getVariantCallingParameters().minReads = 0;
+		createInput(
+				RP(0, 1, 10),
+				DP(0, 1, "5M5S", true, 1, 10, "5M", true),
+				DP(0, 2, "5M5S", true, 1, 10, "5M", true),
+				DP(1, 5000, "5M5S", true, 2, 7000, "5M", false),
+				DP(1, 5001, "5M5S", true, 2, 7000, "5M", false));
+		SAMEvidenceSource ses = new SAMEvidenceSource(getContext(), input, null, 0);
+		ses.ensureMetrics();
+		FileHelper.copy(ses.getFile(), ses.getSVFile(), true);
+		File assemblyFile = new File(testFolder.getRoot(), "assembly.bam");
+		AssemblyEvidenceSource aes = new AssemblyEvidenceSource(pc, ImmutableList.of(ses), assemblyFile);
+		aes.assembleBreakends(null);
+		aes.ensureExtracted();
+		VariantCaller caller = new VariantCaller(pc, ImmutableList.of(ses), aes);
+		caller.callBreakends(output, MoreExecutors.newDirectExecutorService());
+		AllocateEvidence cmd = new AllocateEvidence();
+		cmd.INPUT_VCF = output;
+		cmd.setContext(pc);
+		cmd.setAssemblySource(aes);
+		cmd.setSamEvidenceSources(ImmutableList.of(ses));
+		cmd.OUTPUT_VCF = new File(testFolder.getRoot(), "annotated.vcf");
+		List<VariantContextDirectedBreakpoint> vcfs = Lists.newArrayList(Iterables.filter(getVcf(output, null), VariantContextDirectedBreakpoint.class));
+		List<VariantContextDirectedEvidence> expected = Lists.newArrayList(cmd.iterator(new AutoClosingIterator<>(vcfs.iterator()), MoreExecutors.newDirectExecutorService()));
+		pc.getConfig().chunkSize = 1000;
+		ExecutorService threadpool = Executors.newFixedThreadPool(4);
+		List<VariantContextDirectedEvidence> results = Lists.newArrayList(cmd.iterator(new AutoClosingIterator<>(vcfs.iterator()), threadpool));
+		threadpool.shutdown();
+		assertEquals(vcfs.size(), results.size());
+		assertSymmetricalCalls(results);
+		assertTrue(DirectedEvidenceOrder.ByStartEnd.isOrdered(results));
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getEvidenceID(), results.get(i).getEvidenceID());
+			assertEquals(((VariantContextDirectedBreakpoint)expected.get(i)).getBreakpointEvidenceCount(), ((VariantContextDirectedBreakpoint)results.get(i)).getBreakpointEvidenceCount());
+			assertEquals(expected.get(i).getBreakendEvidenceCount(), results.get(i).getBreakendEvidenceCount());
+			assertEquals(expected.get(i).getPhredScaledQual(), results.get(i).getPhredScaledQual(), 0.01);
+		}
+		assertEquals(0, testFolder.getRoot().listFiles(f -> f.getName().contains(".allocation")).length);
+	}
 }
@@ -1,7 +1,11 @@
 package gridss;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -9,7 +13,9 @@ import au.edu.wehi.idsv.*;
 import org.junit.Test;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 
+import au.edu.wehi.idsv.alignment.BreakpointHomology;
 import au.edu.wehi.idsv.util.AutoClosingIterator;
 import au.edu.wehi.idsv.vcf.VcfInfoAttributes;
 
@@ -31,4 +37,29 @@ public class AnnotateInexactHomologyTest extends TestHelper {
 		assertEquals(300, ((int[])e.getAttribute(VcfInfoAttributes.INEXACT_HOMPOS.attribute()))[1]);
 		threadpool.shutdown();
 	}
+	@Test
+	public void should_annotate_in_parallel_in_call_order() {
+		ProcessingContext pc = getContext();
+		List<VariantContextDirectedEvidence> calls = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			final int pos = 100 + i;
+			calls.add((VariantContextDirectedEvidence)new IdsvVariantContextBuilder(pc) {{
+				breakpoint(new BreakpointSummary(2, FWD, pos, 6, BWD, pos + 1), "");
+				phredScore(50);
+				id("call" + pos);
+			}}.make());
+		}
+		AnnotateInexactHomology aih = new AnnotateInexactHomology();
+		aih.setContext(pc);
+		aih.WORKER_THREADS = 4;
+		ExecutorService threadpool = Executors.newFixedThreadPool(4);
+		List<VariantContextDirectedEvidence> result = Lists.newArrayList(aih.iterator(new AutoClosingIterator<>(calls.iterator()), threadpool));
+		threadpool.shutdown();
+		assertEquals(calls.size(), result.size());
+		for (int i = 0; i < calls.size(); i++) {
+			assertEquals(calls.get(i).getID(), result.get(i).getID());
+			int[] expected = (int[])BreakpointHomology.annotate(pc, (VariantContextDirectedBreakpoint)calls.get(i)).getAttribute(VcfInfoAttributes.INEXACT_HOMPOS.attribute());
+			assertArrayEquals(expected, (int[])result.get(i).getAttribute(VcfInfoAttributes.INEXACT_HOMPOS.attribute()));
+		}
+	}
 }
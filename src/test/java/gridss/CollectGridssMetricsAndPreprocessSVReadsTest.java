@@ -0,0 +1,57 @@
+package gridss;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.Ordering;
+
+import au.edu.wehi.idsv.IntermediateFilesTest;
+import htsjdk.samtools.SAMFileHeader.SortOrder;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+
+public class CollectGridssMetricsAndPreprocessSVReadsTest extends IntermediateFilesTest {
+	@Test
+	public void should_extract_annotate_and_coordinate_sort_sv_reads() throws Exception {
+		SAMRecord[] dp = DP(1, 100, "100M", true, 0, 10, "100M", false);
+		dp[0].setReadName("dp");
+		dp[1].setReadName("dp");
+		for (SAMRecord r : dp) {
+			r.setAttribute("MC", null);
+			r.setAttribute("NM", null);
+		}
+		SAMRecord sc = Read(0, 1, "50M50S");
+		createInput(dp[0], dp[1], sc, Read(0, 200, "100M"));
+		String prefix = new File(testFolder.getRoot(), "output").getAbsolutePath();
+		File svOutput = new File(testFolder.getRoot(), "sv.bam");
+		int result = new CollectGridssMetricsAndPreprocessSVReads().instanceMain(new String[] {
+			"INPUT=" + input.getAbsolutePath(),
+			"OUTPUT=" + prefix,
+			"SV_OUTPUT=" + svOutput.getAbsolutePath(),
+			"REFERENCE_SEQUENCE=" + reference.getAbsolutePath(),
+			"TMP_DIR=" + testFolder.getRoot().getAbsolutePath(),
+			"THRESHOLD_COVERAGE=1000",
+		});
+		assertEquals(0, result);
+		assertTrue(new File(prefix + ".idsv_metrics").exists());
+		try (SamReader reader = SamReaderFactory.makeDefault().open(svOutput)) {
+			assertEquals(SortOrder.coordinate, reader.getFileHeader().getSortOrder());
+		}
+		List<SAMRecord> out = getRecords(svOutput);
+		assertEquals(3, out.size());
+		assertTrue(Ordering.from(SortOrder.coordinate.getComparatorInstance()).isOrdered(out));
+		for (SAMRecord r : out) {
+			assertNotNull(r.getAttribute("NM"));
+			if (r.getReadName().equals("dp")) {
+				assertEquals("100M", r.getAttribute("MC"));
+			}
+		}
+	}
+}
@@ -5,7 +5,10 @@ import static org.junit.Assert.assertEquals;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -13,6 +16,7 @@ import org.junit.Test;
 import com.google.common.io.Files;
 
 import au.edu.wehi.idsv.IntermediateFilesTest;
+import htsjdk.samtools.SAMRecord;
 import htsjdk.tribble.AbstractFeatureReader;
 import htsjdk.tribble.bed.BEDCodec;
 import htsjdk.tribble.bed.BEDFeature;
@@ -97,4 +101,64 @@ public class ComputeCoverageTest extends IntermediateFilesTest {
 		expectBin("polyA", 21, 30, 50, list.get(2));
 		expectBin("polyA", 31, 40, 0, list.get(3));
 	}
+	@Test
+	public void multithreaded_should_match_single_threaded() throws IOException {
+		Random random = new Random(0);
+		List<SAMRecord> reads = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			int referenceIndex = random.nextInt(3);
+			int pos = 1 + random.nextInt(5000);
+			reads.addAll(Arrays.asList(RP(referenceIndex, pos, pos + 50 + random.nextInt(200), 50)));
+		}
+		createInput(reads);
+		File gcFile = new File(testFolder.getRoot(), "gcbias.txt");
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i <= 100; i++) {
+			sb.append(i);
+			sb.append('\t');
+			sb.append(1 + i / 100.0);
+			sb.append('\n');
+		}
+		Files.write(B(sb.toString()), gcFile);
+		List<List<BEDFeature>> results = new ArrayList<>();
+		int[] threadCounts = new int[] { 1, 4, 4 };
+		for (int run = 0; run < threadCounts.length; run++) {
+			int threads = threadCounts[run];
+			File out = new File(testFolder.getRoot(), "out" + run + ".bed");
+			File outgc = new File(testFolder.getRoot(), "outgc" + run + ".bed");
+			String[] args = new String[] {
+					"INPUT=" + input.toString(),
+					"REFERENCE_SEQUENCE=" + reference.toString(),
+					"OUTPUT=" + out.toString(),
+					"OUTPUT_GC=" + outgc.toString(),
+					"TMP_DIR=" + super.testFolder.getRoot().toString(),
+					"BIN_SIZE=100",
+					"GC_ADJUSTMENT=" + gcFile.toString(),
+					"COVERAGE_METHOD=FRAGMENT",
+					"UNPAIRED_FRAGMENT_SIZE=300",
+					"WORKER_THREADS=" + threads,
+			};
+			assertEquals(0, new ComputeCoverage().instanceMain(args));
+			results.add(getBed(out));
+			results.add(getBed(outgc));
+		}
+		Assert.assertTrue(results.get(0).stream().anyMatch(f -> f.getScore() > 0));
+		for (int i = 0; i < 2; i++) {
+			List<BEDFeature> expected = results.get(i);
+			List<BEDFeature> actual = results.get(i + 2);
+			assertEquals(expected.size(), actual.size());
+			for (int j = 0; j < expected.size(); j++) {
+				expectBin(expected.get(j).getContig(), expected.get(j).getStart(), expected.get(j).getEnd(), expected.get(j).getScore(), actual.get(j));
+			}
+		}
+		// multi-threaded output must be reproducible
+		for (int i = 2; i < 4; i++) {
+			List<BEDFeature> first = results.get(i);
+			List<BEDFeature> second = results.get(i + 2);
+			assertEquals(first.size(), second.size());
+			for (int j = 0; j < first.size(); j++) {
+				assertEquals(first.get(j).getScore(), second.get(j).getScore(), 0);
+			}
+		}
+	}
 }
@@ -7,6 +7,7 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -27,6 +28,7 @@ import au.edu.wehi.idsv.picard.ReferenceLookup;
 import au.edu.wehi.idsv.picard.SynchronousReferenceLookupAdapter;
 import au.edu.wehi.idsv.sam.ChimericAlignment;
 import gridss.analysis.StructuralVariantReadMetrics;
+import htsjdk.samtools.SAMFileHeader.SortOrder;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SamReader;
 import htsjdk.samtools.SamReaderFactory;
@@ -156,6 +158,38 @@ public class ExtractSVReadsTest extends IntermediateFilesTest {
 		Assert.assertTrue(ExtractSVReads.hasReadPairingConsistentWithReference(new FixedSizeReadPairConcordanceCalculator(0, 100), ImmutableList.of(r)));
 	}
 	@Test
+	public void should_preserve_record_order_when_multithreaded() {
+		List<SAMRecord> in = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			String name = "read" + (i / 3);
+			in.add(withReadName(name, Read(0, 1 + i % 100, i % 2 == 0 ? "10M5S" : "5S10M"))[0]);
+		}
+		createBAM(input, SortOrder.unsorted, in);
+		File singleThreadOutput = new File(testFolder.getRoot(), "single.bam");
+		File singleThreadMetrics = new File(testFolder.getRoot(), "single.sv_metrics");
+		new ExtractSVReads().instanceMain(new String[] {
+				"INPUT=" + input.getAbsolutePath(),
+				"OUTPUT=" + singleThreadOutput.getAbsolutePath(),
+				"METRICS_OUTPUT=" + singleThreadMetrics.getAbsolutePath(),
+				"WORKER_THREADS=1",
+		});
+		File metrics = new File(testFolder.getRoot(), "out.sv_metrics");
+		new ExtractSVReads().instanceMain(new String[] {
+				"INPUT=" + input.getAbsolutePath(),
+				"OUTPUT=" + output.getAbsolutePath(),
+				"METRICS_OUTPUT=" + metrics.getAbsolutePath(),
+				"WORKER_THREADS=4",
+		});
+		List<String> expected = getRecords(singleThreadOutput).stream().map(r -> r.getReadName() + r.getCigarString()).collect(Collectors.toList());
+		List<String> actual = getRecords(output).stream().map(r -> r.getReadName() + r.getCigarString()).collect(Collectors.toList());
+		assertEquals(5000, expected.size());
+		assertEquals(expected, actual);
+		StructuralVariantReadMetrics expectedMetric = Iterables.getOnlyElement(Iterables.filter(MetricsFile.readBeans(singleThreadMetrics), StructuralVariantReadMetrics.class));
+		StructuralVariantReadMetrics actualMetric = Iterables.getOnlyElement(Iterables.filter(MetricsFile.readBeans(metrics), StructuralVariantReadMetrics.class));
+		assertEquals(expectedMetric.SOFT_CLIPPED_READS, actualMetric.SOFT_CLIPPED_READS);
+		assertEquals(expectedMetric.STRUCTURAL_VARIANT_READ_ALIGNMENTS, actualMetric.STRUCTURAL_VARIANT_READ_ALIGNMENTS);
+	}
+	@Test
 	public void should_extract_fully_mapped_split_read() {
 		ExtractSVReads extract = new ExtractSVReads();
 		extract.instanceMain(new String[] {